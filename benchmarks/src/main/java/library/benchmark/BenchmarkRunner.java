@@ -0,0 +1,36 @@
+// ====================
+//  BenchmarkRunner.java
+// ====================
+package library.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+  Punto di ingresso di benchmarks.jar: accetta le stesse opzioni della riga di comando
+  di JMH, ma per default scrive i risultati in JSON in jmh-results.json
+  (es. java -jar benchmarks/target/benchmarks.jar Search -rff search.json)
+ **/
+public final class BenchmarkRunner {
+    public static final String DEFAULT_RESULT_FILE = "jmh-results.json";
+    
+    private BenchmarkRunner() {
+    }
+    
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT_FILE);
+        }
+        new Runner(options.build()).run();
+    }
+}
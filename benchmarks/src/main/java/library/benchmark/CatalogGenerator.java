@@ -0,0 +1,132 @@
+// ====================
+//  CatalogGenerator.java
+// ====================
+package library.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import library.Book;
+import library.Collection;
+import library.DVD;
+import library.LibraryItem;
+import library.Magazine;
+
+/**
+  Generatore deterministico di cataloghi sintetici per i benchmark.
+  
+  - size: numero di elementi foglia (Book, Magazine, DVD)
+  - depth: livelli di sotto-collezioni sotto la radice (0 = tutto nella radice)
+  - fanout: sotto-collezioni per ogni collezione
+  - mix: pesi relativi di Book, Magazine e DVD
+  
+  I titoli sono composti da parole di un vocabolario fisso, così una ricerca per
+  parola (ad esempio "giardino") trova circa 1/32 degli elementi.
+ **/
+public class CatalogGenerator {
+    public static final String[] WORDS = {
+        "giardino", "notte", "viaggio", "mare", "città", "storia", "segreto", "tempo",
+        "guerra", "pace", "luce", "ombra", "fiume", "montagna", "vento", "fuoco",
+        "ritorno", "sogno", "silenzio", "memoria", "isola", "strada", "cielo", "porta",
+        "nome", "rosa", "lupo", "specchio", "castello", "inverno", "estate", "ponte"
+    };
+    
+    private final long seed;
+    private int size = 10_000;
+    private int depth = 2;
+    private int fanout = 4;
+    private int bookWeight = 6;
+    private int magazineWeight = 2;
+    private int dvdWeight = 2;
+    
+    public CatalogGenerator(long seed) {
+        this.seed = seed;
+    }
+    
+    public CatalogGenerator size(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Il numero di elementi non può essere negativo");
+        }
+        this.size = size;
+        return this;
+    }
+    
+    public CatalogGenerator depth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("La profondità non può essere negativa");
+        }
+        this.depth = depth;
+        return this;
+    }
+    
+    public CatalogGenerator fanout(int fanout) {
+        if (fanout < 1) {
+            throw new IllegalArgumentException("Il fanout deve essere positivo");
+        }
+        this.fanout = fanout;
+        return this;
+    }
+    
+    public CatalogGenerator mix(int books, int magazines, int dvds) {
+        if (books < 0 || magazines < 0 || dvds < 0 || books + magazines + dvds == 0) {
+            throw new IllegalArgumentException("I pesi devono essere non negativi e non tutti nulli");
+        }
+        this.bookWeight = books;
+        this.magazineWeight = magazines;
+        this.dvdWeight = dvds;
+        return this;
+    }
+    
+    public Collection generate() {
+        Random random = new Random(seed);
+        Collection root = new Collection("Catalogo sintetico");
+        
+        // Albero delle collezioni, livello per livello
+        List<Collection> collections = new ArrayList<>();
+        collections.add(root);
+        List<Collection> level = collections;
+        for (int d = 1; d <= depth; d++) {
+            List<Collection> next = new ArrayList<>();
+            for (Collection parent : level) {
+                for (int f = 0; f < fanout; f++) {
+                    Collection child = new Collection("Sezione " + d + "." + (next.size() + 1));
+                    parent.addItem(child);
+                    next.add(child);
+                }
+            }
+            collections.addAll(next);
+            level = next;
+        }
+        
+        for (int i = 0; i < size; i++) {
+            collections.get(random.nextInt(collections.size())).addItem(item(random, i));
+        }
+        return root;
+    }
+    
+    private LibraryItem item(Random random, int i) {
+        String title = title(random);
+        int year = 1950 + random.nextInt(75);
+        int pick = random.nextInt(bookWeight + magazineWeight + dvdWeight);
+        if (pick < bookWeight) {
+            return new Book(title, "Autore " + random.nextInt(5_000), year, String.format("978-%010d", i));
+        }
+        if (pick < bookWeight + magazineWeight) {
+            return new Magazine(title + " " + i, 1 + random.nextInt(52), "Editore " + random.nextInt(200), year);
+        }
+        return new DVD(title + " " + i, "Regista " + random.nextInt(2_000), 60 + random.nextInt(120), year);
+    }
+    
+    private static String title(Random random) {
+        int words = 2 + random.nextInt(3);
+        StringBuilder sb = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                sb.append(' ');
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(w == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+        }
+        return sb.toString();
+    }
+}
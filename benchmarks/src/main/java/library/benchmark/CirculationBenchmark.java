@@ -0,0 +1,70 @@
+// ====================
+//  CirculationBenchmark.java
+// ====================
+package library.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import library.Book;
+import library.CirculationDesk;
+import library.Loan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+  Throughput di CirculationDesk con 8 thread: checkout + restituzione su elementi
+  casuali (nessuna contesa) e sullo stesso elemento (tutti i thread sulle stesse copie).
+  L'obiettivo è restare ben sopra le 100.000 operazioni al secondo.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class CirculationBenchmark {
+    @Param({ "10000" })
+    private int items;
+    
+    private CirculationDesk desk;
+    private Book[] books;
+    
+    @Setup
+    public void setup() {
+        desk = new CirculationDesk();
+        books = new Book[items];
+        for (int i = 0; i < items; i++) {
+            books[i] = new Book("Libro " + i, "Autore", 2000, "isbn-" + i);
+            desk.addCopies(books[i], 3);
+        }
+    }
+    
+    @Benchmark
+    public Loan checkoutAndReturnRandom() {
+        return checkoutAndReturn(books[ThreadLocalRandom.current().nextInt(items)]);
+    }
+    
+    @Benchmark
+    public Loan checkoutAndReturnHot() {
+        return checkoutAndReturn(books[0]);
+    }
+    
+    private Loan checkoutAndReturn(Book book) {
+        Loan loan = desk.checkout(book, "utente");
+        if (loan != null) {
+            desk.returnItem(loan);
+        }
+        return loan;
+    }
+}
@@ -0,0 +1,110 @@
+// ====================
+//  FactoryBenchmark.java
+// ====================
+package library.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import library.Book;
+import library.DVD;
+import library.Magazine;
+import library.MediaFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+  Throughput di MediaFactory.create*. Con logLevel INFO ogni creazione produce un record
+  di log, che viene formattato e scartato (niente console, che dominerebbe la misura);
+  con WARNING il log delle creazioni riuscite è disattivato.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryBenchmark {
+    @Param({ "WARNING", "INFO" })
+    private String logLevel;
+    
+    private MediaFactory factory;
+    private MediaFactory.Batch batch;
+    private int counter;
+    
+    @Setup
+    public void setup() {
+        Logger root = Logger.getLogger("");
+        for (Handler handler : root.getHandlers()) {
+            root.removeHandler(handler);
+        }
+        root.addHandler(new DiscardingHandler());
+        Logger.getLogger("library").setLevel(Level.parse(logLevel));
+        factory = new MediaFactory();
+        batch = factory.startBatch("benchmark");
+    }
+    
+    @TearDown
+    public void tearDown() {
+        batch.close();
+    }
+    
+    @Benchmark
+    public Book createBook() {
+        int i = counter++;
+        return factory.createBook("Il nome della rosa " + i, "Umberto Eco", 1980, "978-" + i);
+    }
+    
+    // Creazione in blocco: nessun log per elemento, solo il riepilogo alla chiusura
+    @Benchmark
+    public Book createBookInBatch() {
+        int i = counter++;
+        return batch.createBook("Il nome della rosa " + i, "Umberto Eco", 1980, "978-" + i);
+    }
+    
+    @Benchmark
+    public Magazine createMagazine() {
+        int i = counter++;
+        return factory.createMagazine("Focus " + i, 1 + (i & 31), "Mondadori", 2020);
+    }
+    
+    @Benchmark
+    public DVD createDVD() {
+        int i = counter++;
+        return factory.createDVD("Inception " + i, "Christopher Nolan", 148, 2010);
+    }
+    
+    // Formatta i record come farebbe un handler reale, senza scriverli
+    private static final class DiscardingHandler extends Handler {
+        private final SimpleFormatter formatter = new SimpleFormatter();
+        private volatile int sink;
+        
+        @Override
+        public void publish(LogRecord record) {
+            if (isLoggable(record)) {
+                sink += formatter.format(record).length();
+            }
+        }
+        
+        @Override
+        public void flush() {
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
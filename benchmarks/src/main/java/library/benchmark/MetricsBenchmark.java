@@ -0,0 +1,74 @@
+// ====================
+//  MetricsBenchmark.java
+// ====================
+package library.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import library.Book;
+import library.Collection;
+import library.LibraryItem;
+import library.Metrics;
+import library.SearchVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+  Costo delle metriche: ricerca con SearchVisitor e aggiunte a una collezione con
+  Metrics attivo e disattivato (l'obiettivo è meno dell'1% di differenza)
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    @Param({ "false", "true" })
+    private boolean metrics;
+    
+    private Collection catalog;
+    private Book[] books;
+    
+    @Setup
+    public void setup() {
+        Metrics.setEnabled(metrics);
+        catalog = new CatalogGenerator(42).size(10000).depth(2).generate();
+        books = new Book[1000];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new Book("Libro " + i, "Autore", 2000, "isbn-" + i);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Metrics.setEnabled(false);
+    }
+    
+    @Benchmark
+    public List<LibraryItem> search() {
+        SearchVisitor visitor = new SearchVisitor("giardino");
+        catalog.accept(visitor);
+        return visitor.getResults();
+    }
+    
+    @Benchmark
+    public Collection addItems() {
+        Collection collection = new Collection("Nuovi arrivi");
+        for (Book book : books) {
+            collection.addItem(book);
+        }
+        return collection;
+    }
+}
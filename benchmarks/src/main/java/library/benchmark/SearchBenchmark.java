@@ -0,0 +1,59 @@
+// ====================
+//  SearchBenchmark.java
+// ====================
+package library.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import library.Collection;
+import library.LibraryItem;
+import library.SearchVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+  Ricerca con SearchVisitor sull'intero albero (Collection.accept), sequenziale e parallela
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({ "10000", "100000" })
+    private int size;
+    
+    @Param({ "0", "3" })
+    private int depth;
+    
+    private Collection catalog;
+    
+    @Setup
+    public void setup() {
+        catalog = new CatalogGenerator(42).size(size).depth(depth).generate();
+    }
+    
+    @Benchmark
+    public List<LibraryItem> searchVisitor() {
+        SearchVisitor visitor = new SearchVisitor("giardino");
+        catalog.accept(visitor);
+        return visitor.getResults();
+    }
+    
+    @Benchmark
+    public List<LibraryItem> searchVisitorParallel() {
+        SearchVisitor visitor = new SearchVisitor("giardino");
+        catalog.acceptParallel(visitor);
+        return visitor.getResults();
+    }
+}
@@ -0,0 +1,83 @@
+// ====================
+//  StorageBenchmark.java
+// ====================
+package library.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import library.Collection;
+import library.LibraryException;
+import library.LibraryStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+  Salvataggio e caricamento con LibraryStorage, nel formato binario e a blocchi compressi.
+  LibraryStorage accetta solo nomi di file semplici: i file vengono creati
+  nella directory di lavoro e rimossi alla fine.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+    private static final String SAVE_FILE = "jmh-save.cat";
+    private static final String LOAD_FILE = "jmh-load.cat";
+    
+    @Param({ "10000", "100000" })
+    private int size;
+    
+    @Param({ "false", "true" })
+    private boolean compressed;
+    
+    private LibraryStorage storage;
+    private Collection catalog;
+    
+    @Setup
+    public void setup() throws LibraryException {
+        Logger.getLogger("library").setLevel(Level.WARNING);
+        storage = new LibraryStorage();
+        catalog = new CatalogGenerator(42).size(size).depth(3).generate();
+        save(LOAD_FILE);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Paths.get(SAVE_FILE));
+        Files.deleteIfExists(Paths.get(LOAD_FILE));
+    }
+    
+    @Benchmark
+    public void save() throws LibraryException {
+        save(SAVE_FILE);
+    }
+    
+    @Benchmark
+    public Collection load() throws LibraryException {
+        return storage.loadFromFile(LOAD_FILE);
+    }
+    
+    private void save(String filename) throws LibraryException {
+        if (compressed) {
+            storage.saveCompressed(catalog, filename);
+        } else {
+            storage.saveToFile(catalog, filename);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// ====================
+//  TraversalBenchmark.java
+// ====================
+package library.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import library.Collection;
+import library.LibraryItem;
+import library.LibraryIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+  Attraversamento completo dell'albero con CollectionIterator (una pila di iteratori)
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmark {
+    @Param({ "10000", "100000" })
+    private int size;
+    
+    @Param({ "0", "3" })
+    private int depth;
+    
+    private Collection catalog;
+    
+    @Setup
+    public void setup() {
+        catalog = new CatalogGenerator(42).size(size).depth(depth).generate();
+    }
+    
+    @Benchmark
+    public int iterate(Blackhole blackhole) {
+        int count = 0;
+        Deque<LibraryIterator> stack = new ArrayDeque<>();
+        stack.push(catalog.createIterator());
+        while (!stack.isEmpty()) {
+            LibraryIterator iterator = stack.peek();
+            if (!iterator.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            LibraryItem item = iterator.next();
+            blackhole.consume(item);
+            count++;
+            if (item instanceof Collection) {
+                stack.push(((Collection) item).createIterator());
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,71 @@
+// ====================
+//  AbstractRecordReader.java
+// ====================
+package library;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+  Parte comune dei lettori di record (NDJSON e binario): il record in attesa, il report
+  e il salto delle collezioni scartate. Le sottoclassi decodificano i record in hasNext()
+  e li passano a offer(), oppure segnalano con reject() quelli non validi.
+ **/
+abstract class AbstractRecordReader implements CatalogRecordReader {
+    private final ImportReport report = new ImportReport();
+    private CatalogRecord pending;
+    private String pendingPosition;
+    private String lastPosition;
+    private int skippedDepth; // Collezioni scartate ancora aperte
+    
+    @Override
+    public CatalogRecord next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Non ci sono altri record");
+        }
+        CatalogRecord record = pending;
+        lastPosition = pendingPosition;
+        pending = null;
+        return record;
+    }
+    
+    @Override
+    public String lastPosition() {
+        return lastPosition;
+    }
+    
+    @Override
+    public ImportReport getReport() {
+        return report;
+    }
+    
+    // true se c'è un record decodificato che next() non ha ancora restituito
+    final boolean hasPending() {
+        return pending != null;
+    }
+    
+    // Dentro una collezione scartata si salta tutto fino alla sua fine: gli elementi
+    // non finiscono nel genitore e la fine non chiude la collezione sbagliata
+    final void offer(CatalogRecord record, String position) {
+        if (skippedDepth == 0) {
+            pending = record;
+            pendingPosition = position;
+            report.recordRead();
+        } else if (record.getKind() == CatalogRecord.Kind.END_COLLECTION) {
+            skippedDepth--;
+        } else {
+            if (record.getKind() == CatalogRecord.Kind.BEGIN_COLLECTION) {
+                skippedDepth++;
+            }
+            report.recordSkipped(position, "dentro una collezione scartata");
+        }
+    }
+    
+    // Record non valido; se apriva una collezione viene saltato anche il suo contenuto
+    final void reject(String position, String reason, boolean beginsCollection) {
+        report.recordSkipped(position, reason);
+        if (beginsCollection) {
+            skippedDepth++;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+// ====================
+//  AsyncLogHandler.java
+// ====================
+package library;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+  Handler asincrono per java.util.logging: chi registra un evento lo copia in un buffer
+  circolare (senza lock) e prosegue; un thread dedicato li passa all'handler di
+  destinazione (console, file...). L'I/O del log non rallenta quindi i chiamanti.
+  
+  Se il buffer è pieno, gli eventi sotto WARNING vengono scartati e contati
+  (getDropped()); quelli WARNING e SEVERE aspettano che si liberi spazio.
+  Gli scarti vengono segnalati con un evento WARNING appena il buffer si svuota.
+  
+  A buffer vuoto il thread dedicato resta fermo (LockSupport.park senza timeout) finché
+  publish() o close() non lo svegliano: un'applicazione inattiva non lo risveglia mai.
+ **/
+public class AsyncLogHandler extends Handler {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final long RETRY_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // Attese brevi, non a vuoto
+    
+    private final Handler target;
+    private final AtomicReferenceArray<LogRecord> ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(); // Posizioni assegnate ai produttori
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long consumed; // Posizioni già passate all'handler di destinazione
+    private volatile boolean closed;
+    private volatile boolean idle; // Il thread dedicato sta per fermarsi o è fermo a buffer vuoto
+    private final Thread worker;
+    
+    public AsyncLogHandler(Handler target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+    
+    public AsyncLogHandler(Handler target, int capacity) {
+        if (target == null) {
+            throw new IllegalArgumentException("L'handler di destinazione non può essere nullo");
+        }
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacità deve essere una potenza di 2");
+        }
+        this.target = target;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.worker = new Thread(this::drain, "library-log");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    /**
+      Configura il logger "library" (e quindi tutti i logger delle classi del package) con un
+      AsyncLogHandler che scrive su console in formato strutturato (StructuredFormatter).
+      Alla chiusura della JVM gli eventi in coda vengono scritti prima di uscire.
+     **/
+    public static AsyncLogHandler install() {
+        ConsoleHandler console = new ConsoleHandler();
+        console.setFormatter(new StructuredFormatter());
+        AsyncLogHandler handler = new AsyncLogHandler(console);
+        Logger logger = Logger.getLogger("library");
+        for (Handler old : logger.getHandlers()) {
+            logger.removeHandler(old);
+            old.close();
+        }
+        logger.addHandler(handler);
+        logger.setUseParentHandlers(false);
+        Runtime.getRuntime().addShutdownHook(new Thread(handler::close, "library-log-shutdown"));
+        return handler;
+    }
+    
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        boolean important = record.getLevel().intValue() >= Level.WARNING.intValue();
+        while (true) {
+            long position = claimed.get();
+            if (position - consumed >= ring.length()) {
+                if (!important) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(worker);
+                Thread.onSpinWait();
+                continue;
+            }
+            if (claimed.compareAndSet(position, position + 1)) {
+                ring.set((int) (position & mask), record);
+                if (idle) {
+                    LockSupport.unpark(worker);
+                }
+                return;
+            }
+        }
+    }
+    
+    /**
+      Attende che gli eventi registrati finora siano passati all'handler di destinazione
+     **/
+    @Override
+    public void flush() {
+        long last = claimed.get();
+        while (consumed < last && worker.isAlive()) {
+            LockSupport.unpark(worker);
+            LockSupport.parkNanos(RETRY_PARK_NANOS);
+        }
+        target.flush();
+    }
+    
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+    
+    public long getDropped() {
+        return dropped.get();
+    }
+    
+    private void drain() {
+        boolean pending = false; // Eventi scritti dall'ultimo flush
+        long reported = 0; // Scarti già segnalati
+        while (true) {
+            long position = consumed;
+            int slot = (int) (position & mask);
+            LogRecord record = ring.get(slot);
+            if (record == null) {
+                // Buffer vuoto, oppure il produttore ha preso la posizione ma non l'ha ancora scritta
+                boolean empty = claimed.get() == position;
+                long lost = dropped.get() - reported;
+                if (empty && lost > 0) {
+                    reported += lost;
+                    LogRecord warning = new LogRecord(Level.WARNING, "Log sovraccarico: {0} eventi scartati");
+                    warning.setLoggerName(AsyncLogHandler.class.getName());
+                    warning.setParameters(new Object[] { lost });
+                    target.publish(warning);
+                    pending = true;
+                }
+                if (empty && pending) {
+                    target.flush();
+                    pending = false;
+                }
+                if (empty && closed) {
+                    return;
+                }
+                if (!empty) {
+                    LockSupport.parkNanos(RETRY_PARK_NANOS); // La scrittura arriva a momenti
+                    continue;
+                }
+                // idle va scritto prima di ricontrollare claimed: un produttore che lo legge falso
+                // ha già preso la sua posizione, e il controllo qui sotto la vede
+                idle = true;
+                if (claimed.get() == position && !closed) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                continue;
+            }
+            ring.set(slot, null);
+            try {
+                target.publish(record);
+                pending = true;
+            } catch (RuntimeException e) {
+                reportError("Scrittura del log non riuscita", e, ErrorManager.WRITE_FAILURE);
+            }
+            consumed = position + 1; // Dopo publish: flush() attende che l'evento sia arrivato a target
+        }
+    }
+}
@@ -0,0 +1,104 @@
+// ====================
+//  BKTree.java
+// ====================
+package library;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+  BK-tree sul vocabolario delle parole del catalogo (metrica di Levenshtein).
+  Ogni figlio è appeso al genitore con la distanza tra le due parole; per la disuguaglianza
+  triangolare, cercando le parole entro "radius" da un nodo a distanza d basta scendere nei
+  figli con distanza tra d - radius e d + radius. Con raggi piccoli la ricerca visita
+  una piccola parte del vocabolario.
+ **/
+final class BKTree {
+    private Node root;
+    private int size;
+    
+    /**
+      Aggiunge la parola se non è già presente
+     **/
+    void add(String word) {
+        if (root == null) {
+            root = new Node(word);
+            size++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = EditDistance.levenshtein(word, node.word);
+            if (distance == 0) {
+                return;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                node.setChild(distance, new Node(word));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+    
+    /**
+      Parole a distanza di Levenshtein al più "radius" da "word"
+     **/
+    List<String> search(String word, int radius) {
+        List<String> matches = new ArrayList<>();
+        if (root == null) {
+            return matches;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int distance = EditDistance.levenshtein(word, node.word);
+            if (distance <= radius) {
+                matches.add(node.word);
+            }
+            int last = Math.min(distance + radius, node.children.length - 1);
+            for (int d = Math.max(1, distance - radius); d <= last; d++) {
+                if (node.children[d] != null) {
+                    stack.push(node.children[d]);
+                }
+            }
+        }
+        return matches;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    void clear() {
+        root = null;
+        size = 0;
+    }
+    
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        
+        final String word;
+        Node[] children = NO_CHILDREN; // Per distanza dal nodo
+        
+        Node(String word) {
+            this.word = word;
+        }
+        
+        Node child(int distance) {
+            return distance < children.length ? children[distance] : null;
+        }
+        
+        void setChild(int distance, Node child) {
+            if (distance >= children.length) {
+                children = Arrays.copyOf(children, Math.max(distance + 1, 4));
+            }
+            children[distance] = child;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+// ====================
+//  BinaryCatalogReader.java
+// ====================
+package library;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+  Legge un catalogo scritto da BinaryCatalogWriter.
+  Gli elementi vengono ricostruiti con i costruttori, quindi passano dalla stessa
+  validazione dell'input; le collezioni annidate sono gestite con uno stack esplicito.
+ **/
+public class BinaryCatalogReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private String[] names;
+    private boolean flags; // Byte dei flag nelle collezioni (dalla versione 2)
+    
+    public BinaryCatalogReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip(); // Buffer inizialmente vuoto, in modalità lettura
+    }
+    
+    public Collection read() throws IOException {
+        readHeader();
+        ensure(1);
+        if (buffer.get() != CatalogFormat.TAG_COLLECTION) {
+            throw new StreamCorruptedException("Il record radice deve essere una collezione");
+        }
+        Frame root = readCollection();
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.remaining == 0) {
+                // Dopo gli elementi: i duplicati già salvati non vanno rifiutati
+                frame.collection.setRejectDuplicates(frame.rejectDuplicates);
+                stack.pop();
+                continue;
+            }
+            frame.remaining--;
+            ensure(1);
+            byte tag = buffer.get();
+            if (tag == CatalogFormat.TAG_COLLECTION) {
+                Frame child = readCollection();
+                frame.collection.addItem(child.collection);
+                stack.push(child);
+            } else {
+                LibraryItem item = readLeaf(tag);
+                if (item != null) {
+                    frame.collection.addItem(item);
+                }
+            }
+        }
+        return root.collection;
+    }
+    
+    private void readHeader() throws IOException {
+        ensure(Integer.BYTES + Short.BYTES + Integer.BYTES);
+        if (buffer.getInt() != CatalogFormat.MAGIC) {
+            throw new StreamCorruptedException("Il file non è un catalogo binario");
+        }
+        short version = buffer.getShort();
+        if (version != CatalogFormat.VERSION && version != CatalogFormat.VERSION_WITHOUT_FLAGS) {
+            throw new StreamCorruptedException("Versione del catalogo non supportata: " + version);
+        }
+        flags = version != CatalogFormat.VERSION_WITHOUT_FLAGS;
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new StreamCorruptedException("Tabella dei nomi non valida");
+        }
+        // Array allargato man mano: un conteggio corrotto finisce con EOFException, non con OutOfMemoryError
+        names = new String[Math.min(count, 1024)];
+        for (int i = 0; i < count; i++) {
+            if (i == names.length) {
+                names = Arrays.copyOf(names, (int) Math.min(count, 2L * names.length));
+            }
+            names[i] = readString();
+        }
+    }
+    
+    private Frame readCollection() throws IOException {
+        ensure(Long.BYTES);
+        buffer.getLong(); // Lunghezza del sotto-albero: serve solo a chi vuole saltarlo
+        String name = readString();
+        boolean rejectDuplicates = false;
+        if (flags) {
+            ensure(1);
+            rejectDuplicates = (buffer.get() & CatalogFormat.FLAG_REJECT_DUPLICATES) != 0;
+        }
+        ensure(Integer.BYTES);
+        int children = buffer.getInt();
+        if (children < 0) {
+            throw new StreamCorruptedException("Numero di elementi non valido nella collezione " + name);
+        }
+        try {
+            return new Frame(new Collection(name), children, rejectDuplicates);
+        } catch (IllegalArgumentException e) {
+            StreamCorruptedException corrupted = new StreamCorruptedException("Collezione non valida: " + e.getMessage());
+            corrupted.initCause(e);
+            throw corrupted;
+        }
+    }
+    
+    private LibraryItem readLeaf(byte tag) throws IOException {
+        ensure(Integer.BYTES);
+        int length = buffer.getInt();
+        // Il limite evita di allocare un buffer enorme per una lunghezza corrotta
+        if (length < 0 || length > CatalogFormat.MAX_STREAM_RECORD) {
+            throw new StreamCorruptedException("Lunghezza del record non valida: " + length);
+        }
+        ensure(length);
+        // Il corpo del record viene letto da una vista limitata: un record corrotto non sconfina nel successivo
+        ByteBuffer record = buffer.slice();
+        record.limit(length);
+        buffer.position(buffer.position() + length);
+        try {
+            switch (tag) {
+                case CatalogFormat.TAG_BOOK:
+                    return new Book(getString(record), name(record.getInt()), record.getInt(), getString(record));
+                case CatalogFormat.TAG_MAGAZINE: {
+                    String title = getString(record);
+                    int issue = record.getInt();
+                    return new Magazine(title, issue, name(record.getInt()), record.getInt());
+                }
+                case CatalogFormat.TAG_DVD:
+                    return new DVD(getString(record), name(record.getInt()), record.getInt(), record.getInt());
+                default:
+                    return null; // Tipo sconosciuto (versione futura): il record viene saltato
+            }
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            StreamCorruptedException corrupted = new StreamCorruptedException("Record non valido: " + e.getMessage());
+            corrupted.initCause(e);
+            throw corrupted;
+        }
+    }
+    
+    private String name(int ref) throws StreamCorruptedException {
+        if (ref < 0 || ref >= names.length) {
+            throw new StreamCorruptedException("Riferimento a nome inesistente: " + ref);
+        }
+        return names[ref];
+    }
+    
+    private String readString() throws IOException {
+        ensure(Integer.BYTES);
+        int length = buffer.getInt();
+        if (length < 0 || length > CatalogFormat.MAX_STREAM_RECORD) {
+            throw new StreamCorruptedException("Lunghezza della stringa non valida: " + length);
+        }
+        ensure(length);
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+    
+    static String getString(ByteBuffer source) {
+        int length = source.getInt();
+        if (length < 0 || length > source.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(source.array(), source.arrayOffset() + source.position(), length, StandardCharsets.UTF_8);
+        source.position(source.position() + length);
+        return value;
+    }
+    
+    // Garantisce almeno "bytes" byte leggibili nel buffer, ricaricandolo dal canale
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        if (buffer.capacity() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Fine inattesa del file del catalogo");
+            }
+        }
+        buffer.flip();
+    }
+    
+    private static final class Frame {
+        final Collection collection;
+        final boolean rejectDuplicates;
+        int remaining;
+        
+        Frame(Collection collection, int remaining, boolean rejectDuplicates) {
+            this.collection = collection;
+            this.remaining = remaining;
+            this.rejectDuplicates = rejectDuplicates;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+// ====================
+//  BinaryCatalogWriter.java
+// ====================
+package library;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+  Scrive un catalogo nel formato binario descritto in CatalogFormat.
+  La visita è iterativa (nessuna ricorsione sullo stack Java) e i dati passano
+  da un buffer NIO: le lunghezze delle collezioni vengono corrette a posteriori,
+  nel buffer se non ancora scritto oppure con una scrittura posizionale sul canale.
+ **/
+public class BinaryCatalogWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long flushed; // Byte già scritti sul canale
+    private final Map<String, Integer> names = new LinkedHashMap<>();
+    
+    public BinaryCatalogWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+    
+    public void write(Collection root) throws IOException {
+        collectNames(root);
+        
+        buffer.putInt(CatalogFormat.MAGIC);
+        buffer.putShort(CatalogFormat.VERSION);
+        buffer.putInt(names.size());
+        for (String name : names.keySet()) {
+            putString(name);
+        }
+        
+        writeTree(root);
+        flush();
+    }
+    
+    // Prima passata: tabella dei nomi ripetuti (autori, editori, registi); un tipo non
+    // supportato viene rifiutato qui, prima di scrivere qualsiasi cosa
+    private void collectNames(Collection root) throws IOException {
+        TreeIterator iterator = new TreeIterator(root);
+        while (iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            if (!(item instanceof Collection)) {
+                String name = nameOf(item);
+                if (name == null) {
+                    throw new IOException("Tipo di elemento non supportato: " + item.getClass().getSimpleName());
+                }
+                names.putIfAbsent(name, names.size());
+            }
+        }
+    }
+    
+    private void writeTree(Collection root) throws IOException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(beginCollection(root));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.next == frame.children.size()) {
+                endCollection(frame);
+                stack.pop();
+                continue;
+            }
+            LibraryItem child = frame.children.get(frame.next++);
+            if (child instanceof Collection) {
+                stack.push(beginCollection((Collection) child));
+            } else {
+                writeLeaf(child);
+            }
+        }
+    }
+    
+    private Frame beginCollection(Collection collection) throws IOException {
+        ensure(1 + Long.BYTES);
+        buffer.put(CatalogFormat.TAG_COLLECTION);
+        Frame frame = new Frame(collection.getItems(), position());
+        buffer.putLong(0L); // Segnaposto, corretto in endCollection
+        putString(collection.getTitle());
+        ensure(1 + Integer.BYTES);
+        buffer.put(collection.isRejectDuplicates() ? CatalogFormat.FLAG_REJECT_DUPLICATES : 0);
+        buffer.putInt(frame.children.size());
+        return frame;
+    }
+    
+    private void endCollection(Frame frame) throws IOException {
+        long length = position() - frame.lengthPosition - Long.BYTES;
+        if (frame.lengthPosition >= flushed) {
+            buffer.putLong((int) (frame.lengthPosition - flushed), length);
+        } else {
+            ByteBuffer patch = ByteBuffer.allocate(Long.BYTES).putLong(0, length);
+            while (patch.hasRemaining()) {
+                channel.write(patch, frame.lengthPosition + patch.position());
+            }
+        }
+    }
+    
+    private void writeLeaf(LibraryItem item) throws IOException {
+        byte[] title = item.getTitle().getBytes(StandardCharsets.UTF_8);
+        int nameRef = names.get(nameOf(item));
+        if (item instanceof Book) {
+            Book book = (Book) item;
+            byte[] isbn = book.getIsbn().getBytes(StandardCharsets.UTF_8);
+            beginLeaf(CatalogFormat.TAG_BOOK, 4 + title.length + 4 + 4 + 4 + isbn.length);
+            putBytes(title);
+            buffer.putInt(nameRef);
+            buffer.putInt(book.getYear());
+            putBytes(isbn);
+        } else if (item instanceof Magazine) {
+            Magazine magazine = (Magazine) item;
+            beginLeaf(CatalogFormat.TAG_MAGAZINE, 4 + title.length + 4 + 4 + 4);
+            putBytes(title);
+            buffer.putInt(magazine.getIssue());
+            buffer.putInt(nameRef);
+            buffer.putInt(magazine.getYear());
+        } else if (item instanceof DVD) {
+            DVD dvd = (DVD) item;
+            beginLeaf(CatalogFormat.TAG_DVD, 4 + title.length + 4 + 4 + 4);
+            putBytes(title);
+            buffer.putInt(nameRef);
+            buffer.putInt(dvd.getDuration());
+            buffer.putInt(dvd.getYear());
+        } else {
+            throw new IOException("Tipo di elemento non supportato: " + item.getClass().getSimpleName());
+        }
+    }
+    
+    // Il record intero deve stare nel buffer: lo allarghiamo per i (rari) record enormi
+    private void beginLeaf(byte tag, int bodyLength) throws IOException {
+        checkLength(bodyLength);
+        ensure(1 + Integer.BYTES + bodyLength);
+        buffer.put(tag);
+        buffer.putInt(bodyLength);
+    }
+    
+    private void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        checkLength(bytes.length);
+        ensure(Integer.BYTES + bytes.length);
+        putBytes(bytes);
+    }
+    
+    // Stesso limite del lettore: non scriviamo file che poi non si possono caricare
+    private static void checkLength(int length) throws IOException {
+        if (length > CatalogFormat.MAX_STREAM_RECORD) {
+            throw new IOException("Record troppo grande per il catalogo binario: " + length + " byte");
+        }
+    }
+    
+    private void putBytes(byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+    
+    private long position() {
+        return flushed + buffer.position();
+    }
+    
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        flush();
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(bytes);
+        }
+    }
+    
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushed += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    static String nameOf(LibraryItem item) {
+        if (item instanceof Book) {
+            return ((Book) item).getAuthor();
+        }
+        if (item instanceof Magazine) {
+            return ((Magazine) item).getPublisher();
+        }
+        if (item instanceof DVD) {
+            return ((DVD) item).getDirector();
+        }
+        return null;
+    }
+    
+    private static final class Frame {
+        final List<LibraryItem> children;
+        final long lengthPosition;
+        int next;
+        
+        Frame(List<LibraryItem> children, long lengthPosition) {
+            this.children = children;
+            this.lengthPosition = lengthPosition;
+        }
+    }
+}
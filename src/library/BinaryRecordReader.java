@@ -0,0 +1,156 @@
+// ====================
+//  BinaryRecordReader.java
+// ====================
+package library;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32C;
+
+/**
+  Legge la variante in streaming del formato binario con un buffer di dimensione limitata.
+  Un record con marcatore, lunghezza o CRC non validi viene scartato: il lettore cerca
+  il marcatore SYNC successivo e continua da lì.
+ **/
+public class BinaryRecordReader extends AbstractRecordReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER = Short.BYTES + 1 + Integer.BYTES;
+    
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long base; // Offset nel file del primo byte del buffer
+    private boolean eof;
+    private final CRC32C crc = new CRC32C();
+    private boolean resyncing;
+    
+    public BinaryRecordReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.flip();
+        if (!fill(Integer.BYTES + Short.BYTES) || buffer.getInt() != CatalogFormat.STREAM_MAGIC) {
+            throw new StreamCorruptedException("Il file non è un dump binario del catalogo");
+        }
+        short version = buffer.getShort();
+        if (version != CatalogFormat.STREAM_VERSION && version != CatalogFormat.VERSION_WITHOUT_FLAGS) {
+            throw new StreamCorruptedException("Versione del dump non supportata: " + version);
+        }
+    }
+    
+    @Override
+    public boolean hasNext() throws IOException {
+        while (!hasPending()) {
+            if (!fill(HEADER)) {
+                if (buffer.hasRemaining() && !resyncing) {
+                    getReport().recordSkipped("offset " + offset(buffer.position()), "record troncato a fine file");
+                    buffer.position(buffer.limit());
+                }
+                return false;
+            }
+            int start = buffer.position();
+            if (buffer.getShort(start) != CatalogFormat.STREAM_SYNC) {
+                skipByte(start, "marcatore di record mancante");
+                continue;
+            }
+            byte tag = buffer.get(start + 2);
+            int length = buffer.getInt(start + 3);
+            if (length < 0 || length > CatalogFormat.MAX_STREAM_RECORD) {
+                skipByte(start, "lunghezza del record non valida");
+                continue;
+            }
+            if (!fill(HEADER + length + Integer.BYTES)) {
+                // Il record supera la fine del file: lunghezza corrotta o ultimo record troncato.
+                // Si cerca comunque il marcatore successivo, così un errore non interrompe l'importazione
+                skipByte(buffer.position(), "lunghezza del record non valida"); // fill() può aver compattato il buffer
+                continue;
+            }
+            start = buffer.position(); // fill() può aver compattato il buffer
+            crc.reset();
+            crc.update(buffer.array(), start + 2, 1 + Integer.BYTES + length);
+            if ((int) crc.getValue() != buffer.getInt(start + HEADER + length)) {
+                skipByte(start, "CRC non valido");
+                continue;
+            }
+            
+            ByteBuffer body = buffer.slice();
+            body.position(HEADER);
+            body.limit(HEADER + length);
+            buffer.position(start + HEADER + length + Integer.BYTES);
+            resyncing = false;
+            try {
+                offer(decode(tag, body), "offset " + offset(start));
+            } catch (IllegalArgumentException | BufferUnderflowException e) {
+                reject("offset " + offset(start), "record non valido: " + e.getMessage(), tag == CatalogFormat.TAG_COLLECTION);
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    // Il corpo è limitato alla lunghezza del record: nella versione 1 la collezione non ha il byte dei flag
+    static CatalogRecord decode(byte tag, ByteBuffer body) {
+        switch (tag) {
+            case CatalogFormat.TAG_COLLECTION: {
+                String name = BinaryCatalogReader.getString(body);
+                boolean rejectDuplicates = body.hasRemaining() && (body.get() & CatalogFormat.FLAG_REJECT_DUPLICATES) != 0;
+                return CatalogRecord.beginCollection(name, rejectDuplicates);
+            }
+            case CatalogFormat.TAG_END_COLLECTION:
+                return CatalogRecord.endCollection();
+            case CatalogFormat.TAG_BOOK:
+                return CatalogRecord.item(new Book(BinaryCatalogReader.getString(body),
+                        BinaryCatalogReader.getString(body), body.getInt(), BinaryCatalogReader.getString(body)));
+            case CatalogFormat.TAG_MAGAZINE: {
+                String title = BinaryCatalogReader.getString(body);
+                int issue = body.getInt();
+                return CatalogRecord.item(new Magazine(title, issue, BinaryCatalogReader.getString(body), body.getInt()));
+            }
+            case CatalogFormat.TAG_DVD:
+                return CatalogRecord.item(new DVD(BinaryCatalogReader.getString(body),
+                        BinaryCatalogReader.getString(body), body.getInt(), body.getInt()));
+            default:
+                throw new IllegalArgumentException("tipo di record sconosciuto " + tag);
+        }
+    }
+    
+    // Scarta un byte e riprova: una zona corrotta viene segnalata una sola volta
+    private void skipByte(int start, String reason) {
+        if (!resyncing) {
+            getReport().recordSkipped("offset " + offset(start), reason);
+            resyncing = true;
+        }
+        buffer.position(start + 1);
+    }
+    
+    private long offset(int bufferPosition) {
+        return base + bufferPosition;
+    }
+    
+    // Garantisce almeno "bytes" byte leggibili; false se il file finisce prima
+    private boolean fill(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (eof) {
+                return false;
+            }
+            base += buffer.position();
+            if (buffer.capacity() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(bytes);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            int read = channel.read(buffer);
+            if (read < 0) {
+                eof = true;
+            }
+            buffer.flip();
+        }
+        return true;
+    }
+}
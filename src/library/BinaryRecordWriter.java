@@ -0,0 +1,150 @@
+// ====================
+//  BinaryRecordWriter.java
+// ====================
+package library;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+  Scrive i record del catalogo nella variante in streaming del formato binario
+  (vedi CatalogFormat): ogni record è autonomo e protetto da un CRC32C.
+ **/
+public class BinaryRecordWriter implements CatalogRecordWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int OVERHEAD = Short.BYTES + 1 + Integer.BYTES + Integer.BYTES;
+    
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Encoder body = new Encoder(1024);
+    private final CRC32C crc = new CRC32C();
+    
+    public BinaryRecordWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        buffer.putInt(CatalogFormat.STREAM_MAGIC);
+        buffer.putShort(CatalogFormat.STREAM_VERSION);
+    }
+    
+    @Override
+    public void write(CatalogRecord record) throws IOException {
+        body.buffer().clear();
+        byte tag = body.encode(record);
+        ByteBuffer encoded = body.buffer();
+        encoded.flip();
+        
+        int length = encoded.remaining();
+        if (buffer.remaining() < OVERHEAD + length) {
+            flush();
+            if (buffer.capacity() < OVERHEAD + length) {
+                buffer = ByteBuffer.allocate(OVERHEAD + length);
+            }
+        }
+        buffer.putShort(CatalogFormat.STREAM_SYNC);
+        int checked = buffer.position();
+        buffer.put(tag);
+        buffer.putInt(length);
+        buffer.put(encoded);
+        crc.reset();
+        crc.update(buffer.array(), checked, buffer.position() - checked);
+        buffer.putInt((int) crc.getValue());
+    }
+    
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+    
+    /**
+      Corpo dei record, condiviso con CompressedCatalog (che legge con BinaryRecordReader.decode):
+      scrive i campi di un record dalla posizione corrente del buffer, allargandolo se serve
+     **/
+    static final class Encoder {
+        private ByteBuffer buffer;
+        
+        Encoder(int capacity) {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+        
+        // Il buffer cambia quando viene allargato: va riletto dopo ogni scrittura
+        ByteBuffer buffer() {
+            return buffer;
+        }
+        
+        // Scrive il corpo del record e ne restituisce il tipo
+        byte encode(CatalogRecord record) {
+            switch (record.getKind()) {
+                case BEGIN_COLLECTION:
+                    putString(record.getName());
+                    reserve(1);
+                    buffer.put(record.isRejectDuplicates() ? CatalogFormat.FLAG_REJECT_DUPLICATES : 0);
+                    return CatalogFormat.TAG_COLLECTION;
+                case END_COLLECTION:
+                    return CatalogFormat.TAG_END_COLLECTION;
+                default:
+                    return encodeItem(record.getItem());
+            }
+        }
+        
+        private byte encodeItem(LibraryItem item) {
+            putString(item.getTitle());
+            if (item instanceof Book) {
+                Book book = (Book) item;
+                putString(book.getAuthor());
+                putInt(book.getYear());
+                putString(book.getIsbn());
+                return CatalogFormat.TAG_BOOK;
+            }
+            if (item instanceof Magazine) {
+                Magazine magazine = (Magazine) item;
+                putInt(magazine.getIssue());
+                putString(magazine.getPublisher());
+                putInt(magazine.getYear());
+                return CatalogFormat.TAG_MAGAZINE;
+            }
+            if (item instanceof DVD) {
+                DVD dvd = (DVD) item;
+                putString(dvd.getDirector());
+                putInt(dvd.getDuration());
+                putInt(dvd.getYear());
+                return CatalogFormat.TAG_DVD;
+            }
+            throw new IllegalArgumentException("Tipo di elemento non supportato: " + item.getClass().getSimpleName());
+        }
+        
+        private void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            reserve(Integer.BYTES + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+        
+        private void putInt(int value) {
+            reserve(Integer.BYTES);
+            buffer.putInt(value);
+        }
+        
+        void reserve(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+}
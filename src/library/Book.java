@@ -3,6 +3,11 @@
 // ====================
 package library;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+
 /**
   Rappresenta un libro nella biblioteca
   Implementa LibraryItem per polimorfismo
@@ -10,9 +15,17 @@ package library;
 
 public class Book implements LibraryItem {
     private static final long serialVersionUID = 1L; //controllo versione se modifico la classe
+    // Campi del flusso serializzato: l'autore resta una stringa, come nei file già salvati
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("title", String.class),
+        new ObjectStreamField("author", String.class),
+        new ObjectStreamField("year", int.class),
+        new ObjectStreamField("isbn", String.class)
+    };
     
     private String title;
-    private String author;
+    private transient String titleKey; // Titolo normalizzato per la ricerca (TextNormalizer)
+    private transient Name authorName; // Dal NamePool condiviso, con la forma in minuscolo; serializzato come stringa
     private int year;
     private String isbn;
     
@@ -35,20 +48,37 @@ public class Book implements LibraryItem {
         }
         
         this.title = title.trim();
-        this.author = author.trim();
+        this.titleKey = TextNormalizer.normalize(this.title);
+        this.authorName = NamePool.shared().intern(author.trim());
         this.year = year;
         this.isbn = isbn.trim();
     }
     
+    /**
+      Costruttore per le viste lazy (vedi MappedCatalog): i valori arrivano dai getter ridefiniti
+     **/
+    protected Book() {
+    }
+    
     // Getters
     public String getTitle() { return title; }
-    public String getAuthor() { return author; }
+    public String getAuthor() { return authorName.getValue(); }
     public int getYear() { return year; }
     public String getIsbn() { return isbn; }
+    public Name getAuthorName() { return authorName; }
+    
+    /**
+      Titolo normalizzato, calcolato una volta alla creazione o al caricamento
+      (per le viste lazy ad ogni chiamata)
+     **/
+    @Override
+    public String getTitleKey() {
+        return titleKey != null ? titleKey : TextNormalizer.normalize(getTitle());
+    }
     
     @Override
     public String getDescription() {
-        return "Book: " + title + " da " + author + " (" + year + ")";
+        return "Book: " + getTitle() + " da " + getAuthor() + " (" + getYear() + ")";
     }
     
     @Override
@@ -71,13 +101,38 @@ public class Book implements LibraryItem {
     @Override //Confronto tra Book con stesso ISBN
     public boolean equals(Object obj) {
         if (this == obj) return true;
-        if (obj == null || getClass() != obj.getClass()) return false;
+        if (!(obj instanceof Book)) return false; // Anche le viste lazy di Book
         Book book = (Book) obj;
-        return isbn.equals(book.isbn);
+        return getIsbn().equals(book.getIsbn());
     }
     
     @Override // Per collezioni implicato da a.equals(b). Controllo stesso elemento in collezioni
     public int hashCode() {
-        return isbn.hashCode();
+        return getIsbn().hashCode();
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("title", title);
+        fields.put("author", authorName != null ? authorName.getValue() : null);
+        fields.put("year", year);
+        fields.put("isbn", isbn);
+        out.writeFields();
+    }
+    
+    // L'autore torna nel pool condiviso anche per i libri caricati da file serializzati;
+    // la chiave del titolo viene ricalcolata
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        title = (String) fields.get("title", null);
+        String author = (String) fields.get("author", null);
+        year = fields.get("year", 0);
+        isbn = (String) fields.get("isbn", null);
+        if (title != null) {
+            titleKey = TextNormalizer.normalize(title);
+        }
+        if (author != null) {
+            authorName = NamePool.shared().intern(author);
+        }
     }
 }
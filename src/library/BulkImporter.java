@@ -0,0 +1,638 @@
+// ====================
+//  BulkImporter.java
+// ====================
+package library;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+  Importazione in blocco di file CSV o TSV (feed dei fornitori, milioni di righe) in una Collection.
+  
+  La prima riga è l'intestazione con i nomi delle colonne, gli stessi dei record NDJSON:
+  type (book, magazine, dvd), title, author, year, isbn, issue, publisher, director, duration.
+  L'ordine è libero e le colonne sconosciute vengono ignorate; il separatore è la tabulazione
+  se compare nell'intestazione, altrimenti la virgola (CSV con virgolette, una riga per record).
+  
+  Le fasi lavorano in parallelo, collegate da code limitate:
+  
+  - lettura: un thread legge il file a blocchi di chunkBytes byte, tagliati a fine riga;
+  - analisi: "threads" thread dividono le righe in campi e creano gli elementi con un
+    MediaFactory.Batch, quindi con le validazioni dei costruttori di Book, Magazine e DVD;
+  - inserimento: il thread chiamante aggiunge ogni blocco al target con Collection.addItems,
+    nell'ordine del file, e scrive le righe scartate nel file degli errori.
+  
+  Un semaforo limita i blocchi in circolazione: se l'inserimento rallenta, la lettura si
+  ferma (backpressure) e la memoria resta limitata anche su file enormi.
+ **/
+public class BulkImporter {
+    private static final Logger logger = Logger.getLogger(BulkImporter.class.getName());
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+    
+    private static final LatencyHistogram IMPORT_TIME = Metrics.histogram("import.file");
+    private static final Counter ROWS = Metrics.counter("import.rows", IMPORT_TIME);
+    private static final Counter REJECTED = Metrics.counter("import.rejected");
+    
+    private final MediaFactory factory;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int chunkBytes = DEFAULT_CHUNK_BYTES;
+    private int queueCapacity;
+    private Path errorFile;
+    
+    public BulkImporter(MediaFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("La factory non può essere nulla");
+        }
+        this.factory = factory;
+    }
+    
+    /**
+      Thread di analisi (predefinito: uno per core)
+     **/
+    public BulkImporter threads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Il numero di thread deve essere positivo");
+        }
+        this.threads = threads;
+        return this;
+    }
+    
+    /**
+      Dimensione dei blocchi letti dal file; è anche la lunghezza massima di una riga
+     **/
+    public BulkImporter chunkBytes(int chunkBytes) {
+        if (chunkBytes < 16) {
+            throw new IllegalArgumentException("I blocchi devono essere di almeno 16 byte");
+        }
+        this.chunkBytes = chunkBytes;
+        return this;
+    }
+    
+    /**
+      Capacità di ciascuna coda tra le fasi (predefinito: due blocchi per thread)
+     **/
+    public BulkImporter queueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("La capacità delle code deve essere positiva");
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+    
+    /**
+      File in cui scrivere le righe scartate (numero di riga, motivo, riga originale); null per nessuno
+     **/
+    public BulkImporter errorFile(Path errorFile) {
+        this.errorFile = errorFile;
+        return this;
+    }
+    
+    /**
+      Importa il file nel target. Le righe non valide (e i duplicati, se il target li rifiuta)
+      vengono scartate e riportate nell'ImportReport e nel file degli errori, senza
+      interrompere l'importazione.
+     **/
+    public ImportReport importFile(Path source, Collection target) throws LibraryException {
+        if (source == null || target == null) {
+            throw new IllegalArgumentException("File e collezione di destinazione non possono essere nulli");
+        }
+        long start = System.nanoTime();
+        long timing = Metrics.start();
+        int capacity = queueCapacity > 0 ? queueCapacity : 2 * threads;
+        AtomicInteger workerIds = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1, task -> {
+            Thread thread = new Thread(task, "bulk-import-" + workerIds.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            Reader reader = new Reader(channel);
+            Layout layout = Layout.parse(reader.readHeader());
+            Pipeline pipeline = new Pipeline(capacity, capacity * 2 + threads);
+            executor.execute(() -> pipeline.run(() -> reader.produce(pipeline)));
+            for (int i = 0; i < threads; i++) {
+                String batchName = "importazione " + source.getFileName() + " #" + i;
+                executor.execute(() -> pipeline.run(() -> parse(pipeline, layout, batchName)));
+            }
+            ImportReport report;
+            try (ErrorWriter errors = new ErrorWriter(errorFile, layout)) {
+                report = insert(pipeline, target, errors);
+            }
+            report.setErrorFile(errorFile);
+            IMPORT_TIME.recordSince(timing);
+            ROWS.add(report.getRecords());
+            REJECTED.add(report.getSkipped());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            logger.log(Level.INFO, "Importazione da {0}: {1} in {2} s ({3} righe/s)", new Object[] {
+                source.getFileName(), report, String.format("%.2f", seconds), String.format("%.0f", report.getRecords() / seconds) });
+            return report;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Errore durante l'importazione in blocco", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile importare il file " + source.getFileName(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LibraryException("Importazione interrotta: " + source.getFileName(), e);
+        } finally {
+            executor.shutdownNow(); // Sblocca le fasi ancora in attesa se l'inserimento è fallito
+        }
+    }
+    
+    // Fase di analisi: righe -> elementi, con le validazioni dei costruttori (tramite il Batch)
+    private void parse(Pipeline pipeline, Layout layout, String batchName) throws InterruptedException {
+        String[] fields = new String[layout.columns];
+        try (MediaFactory.Batch batch = factory.startBatch(batchName)) {
+            while (true) {
+                Chunk chunk = pipeline.chunks.take();
+                if (chunk == Chunk.END) {
+                    pipeline.parsed.put(Parsed.END);
+                    return;
+                }
+                pipeline.parsed.put(parseChunk(chunk, layout, batch, fields));
+            }
+        }
+    }
+    
+    private static Parsed parseChunk(Chunk chunk, Layout layout, MediaFactory.Batch batch, String[] fields) {
+        if (chunk.oversized) {
+            Parsed parsed = new Parsed(chunk.sequence, "");
+            parsed.lines = 1;
+            parsed.reject(0, 0, 0, "riga più lunga di " + chunk.length + " byte");
+            return parsed;
+        }
+        Parsed parsed = new Parsed(chunk.sequence, new String(chunk.bytes, 0, chunk.length, StandardCharsets.UTF_8));
+        String text = parsed.text;
+        int lineStart = 0;
+        int line = 0;
+        while (lineStart < text.length()) {
+            int newline = text.indexOf('\n', lineStart);
+            int next = newline < 0 ? text.length() : newline + 1;
+            int lineEnd = newline < 0 ? text.length() : newline;
+            if (lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart) { // Le righe vuote vengono ignorate
+                try {
+                    layout.split(text, lineStart, lineEnd, fields);
+                    parsed.add(createItem(layout, fields, batch), line, lineStart, lineEnd);
+                } catch (IllegalArgumentException e) {
+                    parsed.reject(line, lineStart, lineEnd, e.getMessage());
+                }
+            }
+            line++;
+            lineStart = next;
+        }
+        parsed.lines = line;
+        return parsed;
+    }
+    
+    private static LibraryItem createItem(Layout layout, String[] fields, MediaFactory.Batch batch) {
+        String type = Layout.field(fields, layout.type);
+        switch (type == null ? "" : type.trim().toLowerCase(Locale.ROOT)) {
+            case "book":
+                return batch.createBook(Layout.field(fields, layout.title), Layout.field(fields, layout.author),
+                        Layout.number(fields, layout.year, "year"), Layout.field(fields, layout.isbn));
+            case "magazine":
+                return batch.createMagazine(Layout.field(fields, layout.title), Layout.number(fields, layout.issue, "issue"),
+                        Layout.field(fields, layout.publisher), Layout.number(fields, layout.year, "year"));
+            case "dvd":
+                return batch.createDVD(Layout.field(fields, layout.title), Layout.field(fields, layout.director),
+                        Layout.number(fields, layout.duration, "duration"), Layout.number(fields, layout.year, "year"));
+            default:
+                throw new IllegalArgumentException("Tipo di elemento sconosciuto: " + type);
+        }
+    }
+    
+    // Fase di inserimento (thread chiamante): rimette i blocchi in ordine e li aggiunge al target
+    private ImportReport insert(Pipeline pipeline, Collection target, ErrorWriter errors)
+            throws IOException, InterruptedException {
+        ImportReport report = new ImportReport();
+        Map<Long, Parsed> waiting = new HashMap<>();
+        long next = 0;
+        long firstLine = 2; // La riga 1 è l'intestazione
+        int finished = 0;
+        while (finished < threads) {
+            Parsed parsed = pipeline.parsed.poll(100, TimeUnit.MILLISECONDS);
+            pipeline.checkFailure();
+            if (parsed == null) {
+                continue;
+            }
+            if (parsed == Parsed.END) {
+                finished++;
+                continue;
+            }
+            waiting.put(parsed.sequence, parsed);
+            while ((parsed = waiting.remove(next)) != null) {
+                List<LibraryItem> rejected = target.addItems(parsed.items);
+                report.recordRead(parsed.items.size() - rejected.size());
+                for (int i = 0; i < parsed.rejectedLines.size(); i++) {
+                    int[] position = parsed.rejectedLines.get(i);
+                    String reason = parsed.reasons.get(i);
+                    long lineNumber = firstLine + position[0];
+                    report.recordSkipped("riga " + lineNumber, reason);
+                    errors.write(lineNumber, reason, parsed.text, position[1], position[2]);
+                }
+                if (!rejected.isEmpty()) {
+                    duplicates(parsed, rejected, firstLine, report, errors);
+                }
+                firstLine += parsed.lines;
+                next++;
+                pipeline.inFlight.release();
+            }
+        }
+        pipeline.checkFailure();
+        return report;
+    }
+    
+    // Righe degli elementi rifiutati da addItems (stesso ordine del blocco)
+    private static void duplicates(Parsed parsed, List<LibraryItem> rejected, long firstLine,
+            ImportReport report, ErrorWriter errors) throws IOException {
+        int r = 0;
+        for (int i = 0; i < parsed.items.size() && r < rejected.size(); i++) {
+            if (parsed.items.get(i) == rejected.get(r)) {
+                r++;
+                long lineNumber = firstLine + parsed.itemLines[i * 3];
+                String reason = "elemento già presente nella collezione: " + parsed.items.get(i).getTitle();
+                report.recordSkipped("riga " + lineNumber, reason);
+                errors.write(lineNumber, reason, parsed.text, parsed.itemLines[i * 3 + 1], parsed.itemLines[i * 3 + 2]);
+            }
+        }
+    }
+    
+    /**
+      Code tra le fasi, permessi per i blocchi in circolazione e primo errore di una fase
+     **/
+    private static final class Pipeline {
+        final BlockingQueue<Chunk> chunks;
+        final BlockingQueue<Parsed> parsed;
+        final Semaphore inFlight;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        
+        Pipeline(int capacity, int maxInFlight) {
+            chunks = new ArrayBlockingQueue<>(capacity);
+            parsed = new ArrayBlockingQueue<>(capacity);
+            inFlight = new Semaphore(maxInFlight);
+        }
+        
+        void run(Stage stage) {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Importazione terminata dal chiamante
+            } catch (IOException | RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+        
+        void checkFailure() throws IOException {
+            Throwable error = failure.get();
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error != null) {
+                throw (Error) error;
+            }
+        }
+    }
+    
+    private interface Stage {
+        void run() throws IOException, InterruptedException;
+    }
+    
+    /**
+      Fase di lettura: blocchi di righe intere, numerati in ordine
+     **/
+    private final class Reader {
+        private final FileChannel channel;
+        private byte[] carry = new byte[0]; // Inizio della riga che non stava nel blocco precedente
+        private boolean eof;
+        
+        Reader(FileChannel channel) {
+            this.channel = channel;
+        }
+        
+        // Legge l'intestazione (senza BOM) e lascia il resto del primo blocco in "carry"
+        String readHeader() throws IOException {
+            byte[] buffer = new byte[chunkBytes];
+            int length = fill(buffer, 0);
+            int newline = indexOf(buffer, 0, length, (byte) '\n');
+            if (newline < 0 && !eof) {
+                throw new IOException("Intestazione più lunga di " + chunkBytes + " byte");
+            }
+            int end = newline < 0 ? length : newline;
+            int start = length >= 3 && (buffer[0] & 0xFF) == 0xEF && (buffer[1] & 0xFF) == 0xBB && (buffer[2] & 0xFF) == 0xBF ? 3 : 0;
+            carry = newline < 0 ? new byte[0] : Arrays.copyOfRange(buffer, newline + 1, length);
+            String header = new String(buffer, start, Math.max(0, end - start), StandardCharsets.UTF_8);
+            return header.endsWith("\r") ? header.substring(0, header.length() - 1) : header;
+        }
+        
+        void produce(Pipeline pipeline) throws IOException, InterruptedException {
+            long sequence = 0;
+            while (!eof || carry.length > 0) {
+                pipeline.inFlight.acquire();
+                pipeline.chunks.put(nextChunk(sequence++));
+            }
+            for (int i = 0; i < threads; i++) {
+                pipeline.chunks.put(Chunk.END);
+            }
+        }
+        
+        private Chunk nextChunk(long sequence) throws IOException {
+            byte[] buffer = Arrays.copyOf(carry, chunkBytes);
+            int length = fill(buffer, carry.length);
+            int newline = lastIndexOf(buffer, length, (byte) '\n');
+            if (newline >= 0 || eof) {
+                int end = newline >= 0 ? newline + 1 : length;
+                carry = Arrays.copyOfRange(buffer, end, length);
+                return new Chunk(sequence, buffer, end, false);
+            }
+            // Nessun a capo in un blocco intero: la riga viene scartata fino al prossimo a capo
+            while (true) {
+                length = fill(buffer, 0);
+                newline = indexOf(buffer, 0, length, (byte) '\n');
+                if (newline >= 0 || eof) {
+                    carry = newline >= 0 ? Arrays.copyOfRange(buffer, newline + 1, length) : new byte[0];
+                    return new Chunk(sequence, new byte[0], chunkBytes, true);
+                }
+            }
+        }
+        
+        // Riempie il buffer da "offset" fino alla fine o alla fine del file
+        private int fill(byte[] buffer, int offset) throws IOException {
+            ByteBuffer target = ByteBuffer.wrap(buffer, offset, buffer.length - offset);
+            while (target.hasRemaining() && !eof) {
+                if (channel.read(target) < 0) {
+                    eof = true;
+                }
+            }
+            return target.position();
+        }
+    }
+    
+    private static int indexOf(byte[] buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static int lastIndexOf(byte[] buffer, int length, byte value) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+      Blocco di righe intere letto dal file
+     **/
+    private static final class Chunk {
+        static final Chunk END = new Chunk(-1, new byte[0], 0, false);
+        
+        final long sequence;
+        final byte[] bytes;
+        final int length; // Per i blocchi "oversized": la lunghezza massima superata
+        final boolean oversized; // Una sola riga, troppo lunga e già scartata
+        
+        Chunk(long sequence, byte[] bytes, int length, boolean oversized) {
+            this.sequence = sequence;
+            this.bytes = bytes;
+            this.length = length;
+            this.oversized = oversized;
+        }
+    }
+    
+    /**
+      Risultato dell'analisi di un blocco: elementi creati e righe scartate, con la loro
+      posizione nel testo del blocco (per il file degli errori)
+     **/
+    private static final class Parsed {
+        static final Parsed END = new Parsed(-1, "");
+        
+        final long sequence;
+        final String text;
+        final List<LibraryItem> items = new ArrayList<>();
+        int[] itemLines = new int[48]; // Per ogni elemento: riga nel blocco, inizio e fine nel testo
+        final List<int[]> rejectedLines = new ArrayList<>();
+        final List<String> reasons = new ArrayList<>();
+        int lines;
+        
+        Parsed(long sequence, String text) {
+            this.sequence = sequence;
+            this.text = text;
+        }
+        
+        void add(LibraryItem item, int line, int start, int end) {
+            int i = items.size() * 3;
+            if (i + 3 > itemLines.length) {
+                itemLines = Arrays.copyOf(itemLines, itemLines.length * 2);
+            }
+            itemLines[i] = line;
+            itemLines[i + 1] = start;
+            itemLines[i + 2] = end;
+            items.add(item);
+        }
+        
+        void reject(int line, int start, int end, String reason) {
+            rejectedLines.add(new int[] { line, start, end });
+            reasons.add(reason);
+        }
+    }
+    
+    /**
+      Colonne dell'intestazione e separatore; divide le righe in campi
+     **/
+    private static final class Layout {
+        final String header;
+        final char delimiter;
+        final int columns;
+        final int type;
+        final int title;
+        final int author;
+        final int year;
+        final int isbn;
+        final int issue;
+        final int publisher;
+        final int director;
+        final int duration;
+        
+        private Layout(String header, char delimiter, List<String> names) {
+            this.header = header;
+            this.delimiter = delimiter;
+            this.columns = names.size();
+            this.type = names.indexOf("type");
+            this.title = names.indexOf("title");
+            this.author = names.indexOf("author");
+            this.year = names.indexOf("year");
+            this.isbn = names.indexOf("isbn");
+            this.issue = names.indexOf("issue");
+            this.publisher = names.indexOf("publisher");
+            this.director = names.indexOf("director");
+            this.duration = names.indexOf("duration");
+        }
+        
+        static Layout parse(String header) throws IOException {
+            char delimiter = header.indexOf('\t') >= 0 ? '\t' : ',';
+            String[] fields = new String[header.length() + 1];
+            Layout probe = new Layout(header, delimiter, new ArrayList<>());
+            int count;
+            try {
+                count = probe.splitAll(header, 0, header.length(), fields);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Intestazione non valida: " + e.getMessage());
+            }
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                names.add(fields[i].trim().toLowerCase(Locale.ROOT));
+            }
+            if (!names.contains("type") || !names.contains("title")) {
+                throw new IOException("Intestazione non valida: servono almeno le colonne type e title");
+            }
+            return new Layout(header, delimiter, names);
+        }
+        
+        // Riempie "fields" con i campi della riga (null per quelli mancanti)
+        void split(String text, int start, int end, String[] fields) {
+            int count = splitAll(text, start, end, fields);
+            Arrays.fill(fields, Math.min(count, fields.length), fields.length, null);
+        }
+        
+        // CSV: campi tra virgolette con "" per le virgolette; TSV: nessuna virgoletta.
+        // I campi oltre la lunghezza di "fields" vengono ignorati.
+        private int splitAll(String text, int start, int end, String[] fields) {
+            int count = 0;
+            int position = start;
+            while (true) {
+                String value;
+                if (delimiter != '\t' && position < end && text.charAt(position) == '"') {
+                    StringBuilder quoted = new StringBuilder();
+                    int i = position + 1;
+                    while (true) {
+                        if (i >= end) {
+                            throw new IllegalArgumentException("virgolette non chiuse");
+                        }
+                        char c = text.charAt(i);
+                        if (c == '"') {
+                            if (i + 1 < end && text.charAt(i + 1) == '"') {
+                                quoted.append('"');
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        quoted.append(c);
+                        i++;
+                    }
+                    value = quoted.toString();
+                    position = i + 1;
+                    if (position < end && text.charAt(position) != delimiter) {
+                        throw new IllegalArgumentException("testo dopo le virgolette di chiusura");
+                    }
+                } else {
+                    int next = text.indexOf(delimiter, position);
+                    int fieldEnd = next < 0 || next > end ? end : next;
+                    value = text.substring(position, fieldEnd);
+                    position = fieldEnd;
+                }
+                if (count < fields.length) {
+                    fields[count] = value;
+                }
+                count++;
+                if (position >= end) {
+                    return count;
+                }
+                position++; // Salta il separatore
+            }
+        }
+        
+        static String field(String[] fields, int column) {
+            return column < 0 ? null : fields[column];
+        }
+        
+        static int number(String[] fields, int column, String name) {
+            String value = field(fields, column);
+            try {
+                return Integer.parseInt(value == null ? "" : value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Campo numerico mancante o non valido: " + name);
+            }
+        }
+    }
+    
+    /**
+      File degli errori: "line", "error" e poi le colonne originali, con lo stesso separatore
+     **/
+    private static final class ErrorWriter implements AutoCloseable {
+        private final Writer out;
+        private final char delimiter;
+        
+        ErrorWriter(Path file, Layout layout) throws IOException {
+            this.delimiter = layout.delimiter;
+            if (file == null) {
+                out = null;
+                return;
+            }
+            out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 64 * 1024);
+            out.write("line" + delimiter + "error" + delimiter + layout.header + "\n");
+        }
+        
+        void write(long line, String reason, String text, int start, int end) throws IOException {
+            if (out == null) {
+                return;
+            }
+            out.write(Long.toString(line));
+            out.write(delimiter);
+            out.write(quote(reason));
+            out.write(delimiter);
+            out.write(text, start, end - start);
+            out.write('\n');
+        }
+        
+        private String quote(String value) {
+            if (delimiter == '\t') {
+                return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+            }
+            if (value.indexOf(delimiter) < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+}
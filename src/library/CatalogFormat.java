@@ -0,0 +1,88 @@
+// ====================
+//  CatalogFormat.java
+// ====================
+package library;
+
+/**
+  Costanti del formato binario del catalogo (versione 2).
+  
+  Layout del file (big-endian):
+    int    MAGIC ("LIBC")
+    short  VERSION
+    int    numero di nomi nella tabella delle stringhe
+    [str]  nomi (autori, editori, registi), referenziati per indice
+    record radice (sempre una collezione)
+  
+  Ogni record inizia con un tag di un byte seguito dalla lunghezza del corpo,
+  così un lettore può saltare i record che non gli interessano:
+    BOOK       tag, int len, str titolo, int autore, int anno, str isbn
+    MAGAZINE   tag, int len, str titolo, int numero, int editore, int anno
+    DVD        tag, int len, str titolo, int regista, int durata, int anno
+    COLLECTION tag, long len, str nome, byte flag, int figli, record figli...
+  La lunghezza della collezione è long perché comprende l'intero sotto-albero.
+  Il byte dei flag (FLAG_REJECT_DUPLICATES) c'è dalla versione 2 in tutte le varianti;
+  i file della versione 1, senza flag, restano leggibili.
+  Una stringa "str" è un int con la lunghezza in byte seguito dai byte UTF-8.
+  
+  Variante in streaming (BinaryRecordWriter/BinaryRecordReader), pensata per dump
+  enormi letti record per record: nessuna tabella dei nomi, stringhe sempre in linea
+  e collezioni come marcatori di inizio/fine.
+    int    STREAM_MAGIC ("LIBS")
+    short  STREAM_VERSION
+    record: short SYNC, byte tag, int len, corpo, int CRC32C di tag+len+corpo
+    BOOK       str titolo, str autore, int anno, str isbn
+    MAGAZINE   str titolo, int numero, str editore, int anno
+    DVD        str titolo, str regista, int durata, int anno
+    COLLECTION str nome, byte flag (inizio collezione)
+    END        corpo vuoto (fine collezione)
+  Il marcatore SYNC e il CRC permettono di scartare un record corrotto e
+  riagganciarsi al successivo.
+  
+  Variante a blocchi compressi (CompressedCatalog): gli stessi record dello streaming,
+  senza SYNC né CRC, raggruppati in blocchi compressi con Deflate uno indipendente dall'altro.
+    int    BLOCK_MAGIC ("LIBZ")
+    short  BLOCK_VERSION
+    blocchi compressi, uno dopo l'altro; ogni blocco decompresso contiene record interi:
+      byte tag, int len, corpo (come sopra)
+    indice, una voce per blocco:
+      long offset, int lunghezza compressa, int lunghezza originale, int record, int CRC32C
+    int    numero di blocchi
+    long   offset dell'indice
+    int    CRC32C dell'indice
+    int    BLOCK_MAGIC (ripetuto: un file troncato non ha l'indice)
+  Il CRC di un blocco è calcolato sui byte compressi, così un blocco corrotto viene
+  riconosciuto (e segnalato con il suo offset) prima di decomprimerlo.
+ **/
+public final class CatalogFormat {
+    public static final int MAGIC = 0x4C494243; // "LIBC"
+    public static final short VERSION = 2;
+    // Versione delle tre varianti prima del byte dei flag delle collezioni
+    public static final short VERSION_WITHOUT_FLAGS = 1;
+    
+    // Primi byte di uno stream ObjectOutputStream (vecchi salvataggi)
+    public static final short JAVA_SERIALIZATION_MAGIC = (short) 0xACED;
+    
+    public static final byte TAG_BOOK = 1;
+    public static final byte TAG_MAGAZINE = 2;
+    public static final byte TAG_DVD = 3;
+    public static final byte TAG_COLLECTION = 4;
+    public static final byte TAG_END_COLLECTION = 5;
+    
+    // Flag delle collezioni
+    public static final byte FLAG_REJECT_DUPLICATES = 1; // Collection.isRejectDuplicates()
+    
+    public static final int STREAM_MAGIC = 0x4C494253; // "LIBS"
+    public static final short STREAM_VERSION = 2;
+    public static final short STREAM_SYNC = (short) 0xCA7A;
+    public static final int MAX_STREAM_RECORD = 16 * 1024 * 1024;
+    
+    public static final int BLOCK_MAGIC = 0x4C49425A; // "LIBZ"
+    public static final short BLOCK_VERSION = 2;
+    
+    // Intestazione dei segmenti di CatalogJournal (quelli senza intestazione sono della versione 1)
+    public static final int JOURNAL_MAGIC = 0x4C49424A; // "LIBJ"
+    public static final short JOURNAL_VERSION = 2;
+    
+    private CatalogFormat() {
+    }
+}
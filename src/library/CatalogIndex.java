@@ -0,0 +1,480 @@
+// ====================
+//  CatalogIndex.java
+// ====================
+package library;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+  Indice invertito del catalogo: evita la visita completa dell'albero ad ogni ricerca.
+  Ogni elemento riceve un id interno; i campi ricercabili (titolo + autore/editore/regista)
+  vengono normalizzati una sola volta e indicizzati per parola (ricerca per termine e prefisso)
+  e per trigramma (ricerca per sottostringa, stessa semantica di SearchVisitor).
+  L'indice si registra come CollectionListener sulla radice e resta allineato
+  ad ogni addItem/removeItem, anche nelle sotto-collezioni (comprese quelle condivise
+  con altre collezioni: ogni elemento conta quante volte compare sotto la radice).
+  
+  Contiene anche gli indici secondari usati dal planner di Query: una bitmap per tipo
+  (Book, Magazine, DVD, Collection) e un albero ordinato anno -> id per le condizioni sull'anno.
+  
+  Le parole indicizzate formano anche un BKTree, usato dalla ricerca tollerante agli
+  errori di battitura (searchFuzzy).
+ **/
+public class CatalogIndex implements CollectionListener {
+    private static final int GRAM = 3;
+    private static final int MIN_REBUILD = 1024;
+    private static final List<Class<?>> INDEXED_TYPES = List.of(Book.class, Magazine.class, DVD.class, Collection.class);
+    
+    private final Collection root;
+    
+    // Dati per id (gli id non vengono riutilizzati; le rimozioni sono logiche)
+    private final List<LibraryItem> itemsById = new ArrayList<>();
+    private final List<String[]> fieldsById = new ArrayList<>();
+    private int[] refCounts = new int[16];
+    private final BitSet live = new BitSet();
+    private final Map<LibraryItem, Integer> ids = new IdentityHashMap<>();
+    private int deadCount;
+    // Vero finché l'ordine degli id coincide con quello di accept() e ogni elemento compare
+    // una volta sola; lo rendono falso gli inserimenti in mezzo all'albero e gli elementi condivisi
+    private boolean visitOrder = true;
+    
+    private final NavigableMap<String, PostingList> terms = new TreeMap<>();
+    private final NavigableMap<String, PostingList> titles = new TreeMap<>(); // Titolo normalizzato intero
+    private final Map<String, PostingList> grams = new HashMap<>();
+    private final Map<Class<?>, BitSet> types = new HashMap<>();
+    private final NavigableMap<Integer, PostingList> years = new TreeMap<>();
+    private final BKTree vocabulary = new BKTree();
+    
+    public CatalogIndex(Collection root) {
+        if (root == null) {
+            throw new IllegalArgumentException("La collezione da indicizzare non può essere nulla");
+        }
+        this.root = root;
+        indexTree(root);
+        root.addListener(this);
+    }
+    
+    /**
+      Stessi risultati di SearchVisitor: sottostringa case-insensitive su titolo e
+      autore/editore/regista (solo titolo per le collezioni), nell'ordine di accept() e con
+      un elemento ripetuto per ogni punto dell'albero in cui compare.
+     **/
+    public List<LibraryItem> search(String searchTerm) {
+        String term = normalizeQuery(searchTerm);
+        // Verifica finale: i trigrammi danno candidati, contains() conferma la corrispondenza
+        List<LibraryItem> results = collect(candidates(term), term);
+        return visitOrder || results.isEmpty() ? results : inVisitOrder(results);
+    }
+    
+    /**
+      Elementi che contengono esattamente la parola indicata
+     **/
+    public List<LibraryItem> searchTerm(String word) {
+        PostingList list = terms.get(normalizeQuery(word));
+        BitSet matches = new BitSet();
+        if (list != null) {
+            list.addTo(matches);
+        }
+        return collect(matches, null);
+    }
+    
+    /**
+      Elementi con almeno una parola che inizia con il prefisso indicato
+     **/
+    public List<LibraryItem> searchPrefix(String prefix) {
+        String normalized = normalizeQuery(prefix);
+        BitSet matches = new BitSet();
+        for (PostingList list : terms.subMap(normalized, true, normalized + Character.MAX_VALUE, true).values()) {
+            list.addTo(matches);
+        }
+        return collect(matches, null);
+    }
+    
+    /**
+      Ricerca tollerante agli errori di battitura: ogni parola del testo deve corrispondere,
+      a meno di maxDistance modifiche (vedi FuzzySearchVisitor), a una parola del titolo
+      o di autore/editore/regista. Le parole vicine vengono cercate nel BKTree del vocabolario,
+      senza esaminare gli elementi del catalogo. Come search(), i risultati seguono l'ordine
+      di accept() e si ripetono per ogni punto dell'albero in cui compare l'elemento.
+     **/
+    public List<LibraryItem> searchFuzzy(String text, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("La distanza massima non può essere negativa");
+        }
+        List<String> words = words(normalizeQuery(text));
+        if (words.isEmpty()) {
+            return new ArrayList<>();
+        }
+        BitSet matches = null;
+        for (String word : words) {
+            BitSet wordMatches = new BitSet();
+            // Uno scambio di lettere vale 2 per Levenshtein: si cerca con raggio doppio e si filtra
+            for (String term : vocabulary.search(word, 2 * maxDistance)) {
+                if (EditDistance.withTranspositions(word, term, maxDistance) <= maxDistance) {
+                    terms.get(term).addTo(wordMatches);
+                }
+            }
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.and(wordMatches);
+            }
+        }
+        List<LibraryItem> results = collect(matches, null);
+        return visitOrder || results.isEmpty() ? results : inVisitOrder(results);
+    }
+    
+    public int size() {
+        return live.cardinality();
+    }
+    
+    // --- Accesso per RankedSearch (termini già normalizzati) ---
+    
+    // Elementi vivi il cui titolo è uguale al termine o (exact falso) inizia con il termine
+    BitSet titleMatches(String term, boolean exact) {
+        BitSet result = new BitSet();
+        if (exact) {
+            PostingList list = titles.get(term);
+            if (list != null) {
+                list.addTo(result);
+            }
+        } else {
+            for (PostingList list : titles.subMap(term, true, term + Character.MAX_VALUE, true).values()) {
+                list.addTo(result);
+            }
+        }
+        result.and(live);
+        return result;
+    }
+    
+    // Candidati vivi per la ricerca per sottostringa: tutti quelli di search(), più quelli che
+    // hanno i trigrammi del termine ma non il termine (da verificare)
+    BitSet candidates(String term) {
+        if (term.length() < GRAM) {
+            // Termini troppo corti per i trigrammi: scansione dei campi già normalizzati
+            return (BitSet) live.clone();
+        }
+        PostingList[] lists = new PostingList[term.length() - GRAM + 1];
+        for (int i = 0; i < lists.length; i++) {
+            PostingList list = grams.get(term.substring(i, i + GRAM));
+            if (list == null) {
+                return new BitSet();
+            }
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        BitSet candidates = new BitSet();
+        PostingList shortest = lists[0];
+        for (int i = 0; i < shortest.size; i++) {
+            int id = shortest.ids[i];
+            boolean inAll = live.get(id);
+            for (int j = 1; j < lists.length && inAll; j++) {
+                inAll = lists[j].contains(id);
+            }
+            if (inAll) {
+                candidates.set(id);
+            }
+        }
+        return candidates;
+    }
+    
+    // --- Accesso per Query (gli id seguono l'ordine di indicizzazione) ---
+    
+    LibraryItem itemAt(int id) {
+        return itemsById.get(id);
+    }
+    
+    BitSet liveIds() {
+        return (BitSet) live.clone();
+    }
+    
+    // Elementi del tipo indicato; null se il tipo non ha una bitmap (sottoclassi, altri LibraryItem)
+    BitSet ofType(Class<?> type) {
+        if (!INDEXED_TYPES.contains(type)) {
+            return null;
+        }
+        BitSet bitmap = types.get(type);
+        return bitmap == null ? new BitSet() : (BitSet) bitmap.clone();
+    }
+    
+    BitSet yearBetween(int min, int max) {
+        BitSet result = new BitSet();
+        if (min <= max) {
+            for (PostingList list : years.subMap(min, true, max, true).values()) {
+                list.addTo(result);
+            }
+        }
+        return result;
+    }
+    
+    /**
+      Scollega l'indice dalla collezione: non verrà più aggiornato
+     **/
+    public void close() {
+        root.removeListener(this);
+    }
+    
+    // Una sotto-collezione condivisa compare più volte sotto la radice: l'evento arriva una volta
+    // sola, ma i contatori devono cambiare una volta per percorso, come nella visita di indexTree
+    @Override
+    public void itemAdded(Collection parent, LibraryItem item) {
+        int paths = parent.pathsFrom(root);
+        if (paths != 1 || !lastInVisitOrder(parent)) {
+            visitOrder = false; // I nuovi id non vengono dopo tutti gli elementi che la visita incontra dopo
+        }
+        for (; paths > 0; paths--) {
+            indexTree(item);
+        }
+    }
+    
+    // Vero se gli elementi aggiunti in coda a "parent" sono gli ultimi della visita della radice:
+    // parent è la radice, o l'ultimo elemento del suo contenitore, e così via fino alla radice
+    private boolean lastInVisitOrder(Collection parent) {
+        for (Collection c = parent; c != root; c = c.getParent()) {
+            Collection container = c.getParent();
+            if (container == null) {
+                return false;
+            }
+            List<LibraryItem> siblings = container.getItems();
+            if (siblings.get(siblings.size() - 1) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public void itemRemoved(Collection parent, LibraryItem item, int index) {
+        for (int paths = parent.pathsFrom(root); paths > 0; paths--) {
+            if (item instanceof Collection) {
+                TreeIterator iterator = new TreeIterator((Collection) item);
+                while (iterator.hasNext()) {
+                    unindex(iterator.next());
+                }
+            } else {
+                unindex(item);
+            }
+        }
+        if (deadCount > MIN_REBUILD && deadCount > live.cardinality()) {
+            rebuild();
+        }
+    }
+    
+    // Gli id seguono l'ordine di visita di accept()
+    private void indexTree(LibraryItem start) {
+        if (start instanceof Collection) {
+            TreeIterator iterator = new TreeIterator((Collection) start);
+            while (iterator.hasNext()) {
+                index(iterator.next());
+            }
+        } else {
+            index(start);
+        }
+    }
+    
+    private void unindex(LibraryItem item) {
+        Integer id = ids.get(item);
+        if (id != null && --refCounts[id] == 0) {
+            ids.remove(item);
+            live.clear(id);
+            itemsById.set(id, null);
+            fieldsById.set(id, null);
+            deadCount++;
+        }
+    }
+    
+    private void index(LibraryItem item) {
+        Integer existing = ids.get(item);
+        if (existing != null) {
+            refCounts[existing]++; // Stesso elemento presente in più collezioni
+            visitOrder = false;
+            return;
+        }
+        int id = itemsById.size();
+        String[] fields = fieldsOf(item);
+        itemsById.add(item);
+        fieldsById.add(fields);
+        if (id == refCounts.length) {
+            refCounts = Arrays.copyOf(refCounts, id * 2);
+        }
+        refCounts[id] = 1;
+        ids.put(item, id);
+        live.set(id);
+        Class<?> type = indexedType(item);
+        if (type != null) {
+            types.computeIfAbsent(type, k -> new BitSet()).set(id);
+        }
+        Integer year = ItemField.yearOf(item);
+        if (year != null) {
+            years.computeIfAbsent(year, k -> new PostingList()).add(id);
+        }
+        titles.computeIfAbsent(fields[0], k -> new PostingList()).add(id);
+        for (String field : fields) {
+            addTerms(field, id);
+            addGrams(field, id);
+        }
+    }
+    
+    private void addTerms(String field, int id) {
+        for (String word : words(field)) {
+            PostingList list = terms.get(word);
+            if (list == null) {
+                list = new PostingList();
+                terms.put(word, list);
+                vocabulary.add(word);
+            }
+            list.add(id);
+        }
+    }
+    
+    // Parole di un campo già normalizzato: sequenze di lettere e cifre
+    static List<String> words(String field) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= field.length(); i++) {
+            boolean wordChar = i < field.length() && Character.isLetterOrDigit(field.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(field.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+    
+    private void addGrams(String field, int id) {
+        for (int i = 0; i + GRAM <= field.length(); i++) {
+            grams.computeIfAbsent(field.substring(i, i + GRAM), k -> new PostingList()).add(id);
+        }
+    }
+    
+    private List<LibraryItem> collect(BitSet candidates, String verifyTerm) {
+        List<LibraryItem> results = new ArrayList<>();
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            if (!live.get(id)) {
+                continue;
+            }
+            if (verifyTerm == null || matches(fieldsById.get(id), verifyTerm)) {
+                results.add(itemsById.get(id));
+            }
+        }
+        return results;
+    }
+    
+    // Riordina i risultati come la visita della radice, ripetendo gli elementi presenti in più
+    // punti; la visita si ferma appena li ha incontrati tutti, e non confronta alcun testo
+    private List<LibraryItem> inVisitOrder(List<LibraryItem> matches) {
+        Map<LibraryItem, Boolean> matched = new IdentityHashMap<>();
+        int expected = 0;
+        for (LibraryItem item : matches) {
+            matched.put(item, Boolean.TRUE);
+            expected += refCounts[ids.get(item)];
+        }
+        List<LibraryItem> results = new ArrayList<>(expected);
+        TreeIterator iterator = new TreeIterator(root);
+        while (results.size() < expected && iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            if (matched.containsKey(item)) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+    
+    private static boolean matches(String[] fields, String term) {
+        for (String field : fields) {
+            if (field.contains(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Ricostruisce l'indice da zero quando le rimozioni logiche superano gli elementi vivi
+    private void rebuild() {
+        itemsById.clear();
+        fieldsById.clear();
+        refCounts = new int[16];
+        live.clear();
+        ids.clear();
+        terms.clear();
+        titles.clear();
+        grams.clear();
+        types.clear();
+        years.clear();
+        vocabulary.clear();
+        deadCount = 0;
+        visitOrder = true;
+        indexTree(root);
+    }
+    
+    private static Class<?> indexedType(LibraryItem item) {
+        for (Class<?> type : INDEXED_TYPES) {
+            if (type.isInstance(item)) {
+                return type;
+            }
+        }
+        return null;
+    }
+    
+    private static String normalizeQuery(String term) {
+        if (term == null) {
+            throw new IllegalArgumentException("Il termine di ricerca non può essere nulla");
+        }
+        return TextNormalizer.normalize(term).trim();
+    }
+    
+    // Gli stessi campi confrontati da SearchVisitor, già normalizzati
+    private static String[] fieldsOf(LibraryItem item) {
+        if (item instanceof Book) {
+            Book book = (Book) item;
+            return new String[] { book.getTitleKey(), book.getAuthorName().getSearchKey() };
+        }
+        if (item instanceof Magazine) {
+            Magazine magazine = (Magazine) item;
+            return new String[] { magazine.getTitleKey(), magazine.getPublisherName().getSearchKey() };
+        }
+        if (item instanceof DVD) {
+            DVD dvd = (DVD) item;
+            return new String[] { dvd.getTitleKey(), dvd.getDirectorName().getSearchKey() };
+        }
+        return new String[] { item.getTitleKey() };
+    }
+    
+    /**
+      Lista di id ordinata: gli id sono assegnati in ordine crescente, quindi basta accodare
+     **/
+    private static final class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+        
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return; // Stesso termine ripetuto nello stesso elemento
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+        
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+        
+        void addTo(BitSet target) {
+            for (int i = 0; i < size; i++) {
+                target.set(ids[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,655 @@
+// ====================
+//  CatalogJournal.java
+// ====================
+package library;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+  Journal write-ahead del catalogo: ogni addItem/removeItem viene accodato come piccolo
+  record, quindi il costo di un salvataggio dipende dalla modifica e non dalla dimensione
+  del catalogo.
+  
+  File su disco, per un nome base "catalogo":
+    catalogo.N.snap     snapshot nel formato binario; contiene i segmenti con numero < N
+    catalogo.N.journal  segmento di journal con le modifiche successive
+  Il recupero carica lo snapshot più recente e riesegue i segmenti dal suo numero in poi;
+  LibraryStorage.loadFromFile("catalogo") lo usa quando il file unico non esiste.
+  Come nello snapshot, una collezione condivisa è registrata una volta per ogni percorso.
+  
+  Un segmento inizia con JOURNAL_MAGIC e JOURNAL_VERSION (CatalogFormat), seguiti dai record:
+    int lunghezza, int CRC32C, byte operazione, percorso, corpo
+  Nel corpo di un'aggiunta le collezioni hanno il byte dei flag dopo il nome, come nello
+  snapshot; i segmenti senza intestazione (versione 1) non lo hanno. Il rifiuto dei duplicati
+  viene quindi registrato quando la collezione entra nel catalogo e in ogni snapshot: cambiarlo
+  dopo non genera eventi, e sopravvive al recupero solo dalla compattazione successiva.
+  
+  Le modifiche vengono scritte da un thread dedicato a gruppi (group commit): un solo
+  fsync per tutte quelle arrivate nello stesso intervallo. Quando un segmento supera
+  SEGMENT_LIMIT se ne apre uno nuovo e un thread in background ripiega i segmenti chiusi
+  nello snapshot successivo, lavorando solo sui file e mai sull'albero in memoria.
+  Un errore di scrittura ferma il journal: viene registrato nel log e lanciato da sync().
+ **/
+public class CatalogJournal implements CollectionListener, Closeable {
+    private static final Logger logger = Logger.getLogger(CatalogJournal.class.getName());
+    
+    private static final long COMMIT_INTERVAL_MS = 20;
+    private static final int MAX_BATCH = 1024 * 1024;
+    private static final long SEGMENT_LIMIT = 8L * 1024 * 1024;
+    
+    private static final int SEGMENT_HEADER = Integer.BYTES + Short.BYTES;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    
+    private final Collection catalog;
+    private final Path base;
+    
+    // Stato condiviso con il thread di commit, protetto da "lock"
+    private final Object lock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appended;
+    private long durable;
+    private boolean syncRequested;
+    private boolean compactRequested;
+    private boolean closed;
+    private IOException failure;
+    private long lost; // Modifiche arrivate dopo l'errore e non registrate
+    
+    // Usati solo dal thread di commit
+    private FileChannel segment;
+    private int segmentSeq;
+    private long segmentSize;
+    
+    private final Thread committer;
+    private final ExecutorService compactor;
+    
+    private CatalogJournal(Collection catalog, Path base, int segmentSeq) throws IOException {
+        this.catalog = catalog;
+        this.base = base;
+        this.segmentSeq = segmentSeq;
+        this.segment = openSegment(segmentSeq);
+        this.segmentSize = segment.size();
+        this.compactor = Executors.newSingleThreadExecutor(r -> daemon(r, "catalog-journal-compactor"));
+        this.committer = daemon(this::commitLoop, "catalog-journal-committer");
+        committer.start();
+        catalog.addListener(this);
+    }
+    
+    /**
+      Scrive uno snapshot completo del catalogo e inizia a registrarne le modifiche
+     **/
+    public static CatalogJournal create(Collection catalog, Path base) throws IOException {
+        int seq = lastSequence(base) + 1;
+        writeSnapshot(catalog, base, seq);
+        deleteOlderThan(base, seq);
+        return new CatalogJournal(catalog, base, seq);
+    }
+    
+    /**
+      Recupera il catalogo (snapshot + coda del journal) e continua a registrarne le modifiche
+     **/
+    public static CatalogJournal open(Path base) throws IOException {
+        Collection catalog = recover(base);
+        return new CatalogJournal(catalog, base, lastSequence(base) + 1);
+    }
+    
+    public static boolean exists(Path base) throws IOException {
+        return latestSnapshot(base) >= 0;
+    }
+    
+    public static Collection recover(Path base) throws IOException {
+        int snapshot = latestSnapshot(base);
+        if (snapshot < 0) {
+            throw new StreamCorruptedException("Nessuno snapshot trovato per " + base.getFileName());
+        }
+        Collection catalog = readSnapshot(base, snapshot);
+        for (int seq : sequences(base, "journal")) {
+            if (seq >= snapshot) {
+                replay(catalog, fileFor(base, seq, "journal"));
+            }
+        }
+        return catalog;
+    }
+    
+    public Collection getCatalog() {
+        return catalog;
+    }
+    
+    /**
+      Attende che tutte le modifiche registrate finora siano su disco
+     **/
+    public void sync() throws IOException {
+        synchronized (lock) {
+            long target = appended;
+            syncRequested = true;
+            lock.notifyAll();
+            while (durable < target && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Attesa del journal interrotta", e);
+                }
+            }
+            if (failure != null) {
+                throw new IOException("Journal fermo dopo un errore, modifiche non registrate: " + lost, failure);
+            }
+        }
+    }
+    
+    /**
+      Chiude il segmento corrente e ne ripiega il contenuto in un nuovo snapshot
+     **/
+    public void compact() throws IOException {
+        synchronized (lock) {
+            compactRequested = true;
+        }
+        sync();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        catalog.removeListener(this);
+        try {
+            sync();
+        } finally {
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            segment.close();
+        }
+    }
+    
+    // --- Registrazione delle modifiche ---
+    
+    // I listener vengono chiamati a modifica già applicata: qui non si lancia mai, un errore
+    // (anche un Error, come un OutOfMemoryError su un sotto-albero enorme) ferma il journal
+    // (fail) e viene segnalato dalla successiva sync() o close()
+    
+    @Override
+    public void itemAdded(Collection parent, LibraryItem item) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            writeItem(out, item); // Una collezione viene registrata con tutto il suo contenuto
+        } catch (IOException | RuntimeException | Error e) {
+            fail(new IOException("Elemento non registrabile nel journal: " + item.getTitle(), e));
+            return;
+        }
+        record(OP_ADD, parent, body.toByteArray());
+    }
+    
+    @Override
+    public void itemRemoved(Collection parent, LibraryItem item, int index) {
+        record(OP_REMOVE, parent, ByteBuffer.allocate(Integer.BYTES).putInt(index).array());
+    }
+    
+    // Un record per ogni percorso dalla radice a "parent": una collezione condivisa compare
+    // più volte nello snapshot, e ognuna delle sue copie deve ricevere la modifica
+    private void record(byte op, Collection parent, byte[] body) {
+        List<int[]> paths = parent.indexPathsFrom(catalog);
+        if (paths.isEmpty()) {
+            fail(new StreamCorruptedException("La collezione non appartiene al catalogo registrato: " + parent.getTitle()));
+            return;
+        }
+        for (int[] path : paths) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 + Integer.BYTES * (path.length + 1) + body.length);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(op);
+                writePath(out, path);
+                out.write(body);
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // Scrittura in memoria: non può fallire
+            }
+            append(bytes.toByteArray());
+        }
+    }
+    
+    private void fail(IOException e) {
+        logger.log(Level.SEVERE, "Journal del catalogo fermo: le modifiche successive non vengono registrate", e);
+        synchronized (lock) {
+            if (failure == null) {
+                failure = e;
+            }
+            lock.notifyAll();
+        }
+    }
+    
+    private void append(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        synchronized (lock) {
+            if (failure != null) {
+                if (lost++ == 0) {
+                    logger.log(Level.WARNING, "Modifica non registrata: il journal è fermo dopo un errore");
+                }
+                return;
+            }
+            if (closed) {
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+            header.putInt(payload.length).putInt((int) crc.getValue());
+            pending.write(header.array(), 0, header.capacity());
+            pending.write(payload, 0, payload.length);
+            appended += header.capacity() + payload.length;
+            lock.notifyAll();
+        }
+    }
+    
+    // Visita iterativa in pre-ordine, come BinaryCatalogWriter: la profondità delle collezioni
+    // annidate non pesa sullo stack Java
+    private static void writeItem(DataOutputStream out, LibraryItem item) throws IOException {
+        Deque<WriteFrame> stack = new ArrayDeque<>();
+        writeOne(out, item, stack);
+        while (!stack.isEmpty()) {
+            WriteFrame frame = stack.peek();
+            if (frame.next == frame.children.size()) {
+                stack.pop();
+            } else {
+                writeOne(out, frame.children.get(frame.next++), stack);
+            }
+        }
+    }
+    
+    // Scrive un elemento; per una collezione solo l'intestazione, e i figli vengono messi sullo stack
+    private static void writeOne(DataOutputStream out, LibraryItem item, Deque<WriteFrame> stack) throws IOException {
+        if (item instanceof Book) {
+            Book book = (Book) item;
+            out.writeByte(CatalogFormat.TAG_BOOK);
+            writeString(out, book.getTitle());
+            writeString(out, book.getAuthor());
+            out.writeInt(book.getYear());
+            writeString(out, book.getIsbn());
+        } else if (item instanceof Magazine) {
+            Magazine magazine = (Magazine) item;
+            out.writeByte(CatalogFormat.TAG_MAGAZINE);
+            writeString(out, magazine.getTitle());
+            out.writeInt(magazine.getIssue());
+            writeString(out, magazine.getPublisher());
+            out.writeInt(magazine.getYear());
+        } else if (item instanceof DVD) {
+            DVD dvd = (DVD) item;
+            out.writeByte(CatalogFormat.TAG_DVD);
+            writeString(out, dvd.getTitle());
+            writeString(out, dvd.getDirector());
+            out.writeInt(dvd.getDuration());
+            out.writeInt(dvd.getYear());
+        } else if (item instanceof Collection) {
+            List<LibraryItem> children = ((Collection) item).getItems();
+            out.writeByte(CatalogFormat.TAG_COLLECTION);
+            writeString(out, item.getTitle());
+            out.writeByte(((Collection) item).isRejectDuplicates() ? CatalogFormat.FLAG_REJECT_DUPLICATES : 0);
+            out.writeInt(children.size());
+            stack.push(new WriteFrame(children));
+        } else {
+            throw new IllegalArgumentException("Tipo di elemento non supportato: " + item.getClass().getName());
+        }
+    }
+    
+    private static void writePath(DataOutputStream out, int[] path) throws IOException {
+        out.writeInt(path.length);
+        for (int index : path) {
+            out.writeInt(index);
+        }
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    // --- Thread di commit: unico a scrivere sui segmenti ---
+    
+    private void commitLoop() {
+        while (true) {
+            byte[] batch;
+            long target;
+            boolean rotate;
+            synchronized (lock) {
+                try {
+                    while (pending.size() == 0 && !closed && !compactRequested) {
+                        lock.wait();
+                    }
+                    // Group commit: lascia accumulare altre modifiche per un breve intervallo
+                    long deadline = System.currentTimeMillis() + COMMIT_INTERVAL_MS;
+                    long remaining;
+                    while (!closed && !syncRequested && pending.size() < MAX_BATCH
+                            && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                        lock.wait(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    closed = true;
+                }
+                if (closed && pending.size() == 0) {
+                    lock.notifyAll();
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+                target = appended;
+                syncRequested = false;
+                rotate = compactRequested;
+                compactRequested = false;
+            }
+            
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    segmentSize += segment.write(buffer);
+                }
+                segment.force(false);
+                if (rotate || segmentSize > SEGMENT_LIMIT) {
+                    rotateSegment();
+                }
+                synchronized (lock) {
+                    durable = target;
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+        }
+    }
+    
+    private void rotateSegment() throws IOException {
+        int upTo = segmentSeq + 1;
+        segment.close();
+        segment = openSegment(upTo);
+        segmentSeq = upTo;
+        segmentSize = segment.size();
+        compactor.execute(() -> {
+            try {
+                fold(base, upTo);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Compattazione del journal non riuscita", e);
+            }
+        });
+    }
+    
+    private FileChannel openSegment(int seq) throws IOException {
+        FileChannel channel = FileChannel.open(fileFor(base, seq, "journal"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER);
+                header.putInt(CatalogFormat.JOURNAL_MAGIC).putShort(CatalogFormat.JOURNAL_VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            }
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // --- Compattazione e recupero (solo file) ---
+    
+    // Ripiega lo snapshot più recente e i segmenti chiusi (numero < upTo) nello snapshot "upTo"
+    private static void fold(Path base, int upTo) throws IOException {
+        int snapshot = latestSnapshot(base);
+        if (snapshot >= upTo) {
+            return;
+        }
+        Collection state = readSnapshot(base, snapshot);
+        for (int seq : sequences(base, "journal")) {
+            if (seq >= snapshot && seq < upTo) {
+                replay(state, fileFor(base, seq, "journal"));
+            }
+        }
+        writeSnapshot(state, base, upTo);
+        deleteOlderThan(base, upTo);
+        logger.log(Level.INFO, "Journal compattato nello snapshot {0}", upTo);
+    }
+    
+    private static void replay(Collection catalog, Path file) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        // Un segmento della versione 1 inizia subito con la lunghezza del primo record, mai uguale a JOURNAL_MAGIC
+        boolean flags = data.remaining() >= SEGMENT_HEADER && data.getInt(0) == CatalogFormat.JOURNAL_MAGIC;
+        if (flags) {
+            short version = data.getShort(Integer.BYTES);
+            if (version != CatalogFormat.JOURNAL_VERSION) {
+                throw new StreamCorruptedException("Versione del journal " + file.getFileName() + " non supportata: " + version);
+            }
+            data.position(SEGMENT_HEADER);
+        }
+        CRC32C crc = new CRC32C();
+        while (data.remaining() >= 2 * Integer.BYTES) {
+            int start = data.position();
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < 0 || length > data.remaining()) {
+                logger.log(Level.WARNING, "Coda del journal {0} troncata all''offset {1}", new Object[] { file.getFileName(), start });
+                return;
+            }
+            crc.reset();
+            crc.update(data.array(), data.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                logger.log(Level.WARNING, "Record del journal {0} corrotto all''offset {1}", new Object[] { file.getFileName(), start });
+                return; // Scrittura interrotta: quel che segue non è affidabile
+            }
+            ByteBuffer entry = data.slice();
+            entry.limit(length);
+            data.position(data.position() + length);
+            apply(catalog, entry, flags);
+        }
+    }
+    
+    private static void apply(Collection catalog, ByteBuffer entry, boolean flags) throws IOException {
+        try {
+            byte op = entry.get();
+            int[] path = new int[entry.getInt()];
+            for (int i = 0; i < path.length; i++) {
+                path[i] = entry.getInt();
+            }
+            Collection parent = (Collection) resolve(catalog, path);
+            if (op == OP_REMOVE) {
+                parent.removeAt(entry.getInt());
+            } else {
+                parent.addItem(readItem(entry, flags));
+            }
+        } catch (RuntimeException e) {
+            // Percorso inesistente, tipo errato o dati non validi: il journal non corrisponde allo snapshot
+            StreamCorruptedException corrupted = new StreamCorruptedException("Record del journal non applicabile: " + e.getMessage());
+            corrupted.initCause(e);
+            throw corrupted;
+        }
+    }
+    
+    // Decodifica iterativa con uno stack esplicito, come BinaryCatalogReader. Ogni collezione
+    // riceve i suoi elementi in blocco quando è completa, prima di essere agganciata al genitore,
+    // e solo dopo il flag del rifiuto dei duplicati
+    private static LibraryItem readItem(ByteBuffer entry, boolean flags) {
+        Deque<ReadFrame> stack = new ArrayDeque<>();
+        LibraryItem item = readOne(entry, flags, stack);
+        while (!stack.isEmpty()) {
+            ReadFrame frame = stack.peek();
+            if (frame.remaining > 0) {
+                frame.remaining--;
+                LibraryItem child = readOne(entry, flags, stack);
+                if (!(child instanceof Collection)) {
+                    frame.items.add(child);
+                }
+                continue;
+            }
+            stack.pop();
+            frame.collection.addItems(frame.items);
+            frame.collection.setRejectDuplicates(frame.rejectDuplicates);
+            if (!stack.isEmpty()) {
+                stack.peek().items.add(frame.collection);
+            }
+        }
+        return item;
+    }
+    
+    // Legge un elemento; per una collezione solo l'intestazione, e i figli vengono letti dal chiamante
+    private static LibraryItem readOne(ByteBuffer entry, boolean flags, Deque<ReadFrame> stack) {
+        byte tag = entry.get();
+        switch (tag) {
+            case CatalogFormat.TAG_BOOK:
+                return new Book(BinaryCatalogReader.getString(entry), BinaryCatalogReader.getString(entry),
+                        entry.getInt(), BinaryCatalogReader.getString(entry));
+            case CatalogFormat.TAG_MAGAZINE: {
+                String title = BinaryCatalogReader.getString(entry);
+                int issue = entry.getInt();
+                return new Magazine(title, issue, BinaryCatalogReader.getString(entry), entry.getInt());
+            }
+            case CatalogFormat.TAG_DVD:
+                return new DVD(BinaryCatalogReader.getString(entry), BinaryCatalogReader.getString(entry),
+                        entry.getInt(), entry.getInt());
+            case CatalogFormat.TAG_COLLECTION: {
+                Collection collection = new Collection(BinaryCatalogReader.getString(entry));
+                boolean rejectDuplicates = flags && (entry.get() & CatalogFormat.FLAG_REJECT_DUPLICATES) != 0;
+                int children = entry.getInt();
+                if (children < 0) {
+                    throw new IllegalArgumentException("Numero di elementi non valido nella collezione " + collection.getTitle());
+                }
+                stack.push(new ReadFrame(collection, rejectDuplicates, children, Math.min(children, entry.remaining())));
+                return collection;
+            }
+            default:
+                throw new IllegalArgumentException("Tipo di elemento sconosciuto: " + tag);
+        }
+    }
+    
+    private static LibraryItem resolve(Collection catalog, int[] path) {
+        LibraryItem current = catalog;
+        for (int index : path) {
+            current = ((Collection) current).itemAt(index);
+        }
+        return current;
+    }
+    
+    private static void writeSnapshot(Collection catalog, Path base, int seq) throws IOException {
+        Path target = fileFor(base, seq, "snap");
+        Path temp = base.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            new BinaryCatalogWriter(channel).write(catalog);
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static Collection readSnapshot(Path base, int seq) throws IOException {
+        try (FileChannel channel = FileChannel.open(fileFor(base, seq, "snap"), StandardOpenOption.READ)) {
+            return new BinaryCatalogReader(channel).read();
+        }
+    }
+    
+    private static void deleteOlderThan(Path base, int seq) throws IOException {
+        for (String kind : new String[] { "snap", "journal" }) {
+            for (int old : sequences(base, kind)) {
+                if (old < seq) {
+                    Files.deleteIfExists(fileFor(base, old, kind));
+                }
+            }
+        }
+    }
+    
+    private static int latestSnapshot(Path base) throws IOException {
+        List<Integer> snapshots = sequences(base, "snap");
+        return snapshots.isEmpty() ? -1 : snapshots.get(snapshots.size() - 1);
+    }
+    
+    private static int lastSequence(Path base) throws IOException {
+        int last = latestSnapshot(base);
+        for (int seq : sequences(base, "journal")) {
+            last = Math.max(last, seq);
+        }
+        return last;
+    }
+    
+    // Numeri di sequenza presenti su disco per un tipo di file, in ordine crescente
+    private static List<Integer> sequences(Path base, String kind) throws IOException {
+        Path directory = base.toAbsolutePath().getParent();
+        Pattern pattern = Pattern.compile(Pattern.quote(base.getFileName().toString()) + "\\.(\\d+)\\." + kind);
+        List<Integer> result = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    result.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+    
+    private static Path fileFor(Path base, int seq, String kind) {
+        return base.resolveSibling(base.getFileName() + "." + seq + "." + kind);
+    }
+    
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+    
+    // Collezione in scrittura, con la posizione del prossimo figlio da registrare
+    private static final class WriteFrame {
+        final List<LibraryItem> children;
+        int next;
+        
+        WriteFrame(List<LibraryItem> children) {
+            this.children = children;
+        }
+    }
+    
+    // Collezione in lettura, con gli elementi già decodificati e quelli ancora da leggere
+    private static final class ReadFrame {
+        final Collection collection;
+        final boolean rejectDuplicates;
+        final List<LibraryItem> items;
+        int remaining;
+        
+        ReadFrame(Collection collection, boolean rejectDuplicates, int remaining, int capacity) {
+            this.collection = collection;
+            this.rejectDuplicates = rejectDuplicates;
+            this.items = new ArrayList<>(capacity);
+            this.remaining = remaining;
+        }
+    }
+}
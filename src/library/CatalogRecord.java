@@ -0,0 +1,56 @@
+// ====================
+//  CatalogRecord.java
+// ====================
+package library;
+
+/**
+  Singolo record di un catalogo in streaming: le collezioni annidate diventano
+  una coppia di marcatori BEGIN/END, gli altri elementi un record ITEM.
+ **/
+public final class CatalogRecord {
+    public enum Kind { BEGIN_COLLECTION, ITEM, END_COLLECTION }
+    
+    private static final CatalogRecord END = new CatalogRecord(Kind.END_COLLECTION, null, null, false);
+    
+    private final Kind kind;
+    private final String name;
+    private final LibraryItem item;
+    private final boolean rejectDuplicates;
+    
+    private CatalogRecord(Kind kind, String name, LibraryItem item, boolean rejectDuplicates) {
+        this.kind = kind;
+        this.name = name;
+        this.item = item;
+        this.rejectDuplicates = rejectDuplicates;
+    }
+    
+    public static CatalogRecord beginCollection(String name) {
+        return beginCollection(name, false);
+    }
+    
+    /**
+      Inizio di una collezione; rejectDuplicates è Collection.isRejectDuplicates()
+     **/
+    public static CatalogRecord beginCollection(String name, boolean rejectDuplicates) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Il nome della collezione non può essere nullo o vuoto");
+        }
+        return new CatalogRecord(Kind.BEGIN_COLLECTION, name, null, rejectDuplicates);
+    }
+    
+    public static CatalogRecord item(LibraryItem item) {
+        if (item == null || item instanceof Collection) {
+            throw new IllegalArgumentException("Un record ITEM deve contenere un Book, Magazine o DVD");
+        }
+        return new CatalogRecord(Kind.ITEM, null, item, false);
+    }
+    
+    public static CatalogRecord endCollection() {
+        return END;
+    }
+    
+    public Kind getKind() { return kind; }
+    public String getName() { return name; }
+    public LibraryItem getItem() { return item; }
+    public boolean isRejectDuplicates() { return rejectDuplicates; }
+}
@@ -0,0 +1,23 @@
+// ====================
+//  CatalogRecordReader.java
+// ====================
+package library;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+  Cursore sui record di un catalogo in streaming, sullo stile di LibraryIterator.
+  I record non validi vengono saltati e segnalati in getReport(), senza interrompere la lettura.
+ **/
+public interface CatalogRecordReader extends Closeable {
+    boolean hasNext() throws IOException;
+    CatalogRecord next() throws IOException;
+    ImportReport getReport();
+    
+    /**
+      Posizione nel sorgente dell'ultimo record restituito da next(), nella stessa forma usata
+      dal report per i record scartati ("riga N" per NDJSON, "offset N" per il binario)
+     **/
+    String lastPosition();
+}
@@ -0,0 +1,14 @@
+// ====================
+//  CatalogRecordWriter.java
+// ====================
+package library;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+  Scrittura di un catalogo un record alla volta (lato "push" dello streaming)
+ **/
+public interface CatalogRecordWriter extends Closeable {
+    void write(CatalogRecord record) throws IOException;
+}
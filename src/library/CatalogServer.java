@@ -0,0 +1,561 @@
+// ====================
+//  CatalogServer.java
+// ====================
+package library;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+  Modalità server: espone il catalogo con un'API HTTP/JSON locale, sul server HTTP del JDK,
+  così più operatori e totem possono usarlo insieme (vedi Main --server).
+  
+  - GET  /api/search?q=termine&limit=N   ricerca con CatalogIndex e SearchCache (gli stessi risultati
+                                         di SearchVisitor: vedi CatalogIndex.search)
+  - GET  /api/catalog?collection=nome    elementi diretti e statistiche di una collezione
+  - POST /api/items                      {"type":"book","title":...,"collection":...} come nei record NDJSON
+  - POST /api/collections                {"name":...,"parent":...}
+  - POST /api/save, /api/load            {"file":...} tramite LibraryStorage ("compressed":true
+                                         per salvare a blocchi compressi)
+  - GET  /api/metrics                    riepilogo testuale di Metrics (durate per endpoint "server.<nome>")
+  
+  Ogni richiesta gira su un virtual thread se il JDK li supporta (Java 21+, cercati via
+  reflection), altrimenti su un pool limitato. Al più maxConcurrentRequests richieste
+  lavorano sul catalogo insieme; una richiesta che non ottiene il turno (o il lock del
+  catalogo) entro il timeout, contato dall'arrivo, riceve 503. Le letture condividono
+  il lock del catalogo, le modifiche lo prendono in esclusiva.
+  
+  Con molti client keep-alive va alzata la proprietà di sistema MAX_IDLE_CONNECTIONS_PROPERTY
+  (200 connessioni inattive di default): oltre quel numero il server del JDK le chiude senza
+  avvisare e i client che le riusano ricevono un errore di I/O. Il JDK la legge una volta sola,
+  quindi va impostata prima di creare il primo server, da chi avvia la JVM (-D...) o da chi
+  lancia il server, come Main --server con DEFAULT_MAX_IDLE_CONNECTIONS.
+ **/
+public class CatalogServer {
+    private static final Logger logger = Logger.getLogger(CatalogServer.class.getName());
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_CONCURRENT = 64;
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_BODY = 64 * 1024;
+    private static final int BACKLOG = 4096;
+    public static final String MAX_IDLE_CONNECTIONS_PROPERTY = "sun.net.httpserver.maxIdleConnections";
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = BACKLOG;
+    private static final int CACHE_SIZE = 256;
+    // Momento in cui la richiesta è stata affidata all'executor (l'attesa in coda conta nel timeout)
+    private static final ThreadLocal<Long> QUEUED_AT = new ThreadLocal<>();
+    // Durata di ogni endpoint dall'arrivo alla risposta (attesa compresa) e richieste respinte con 503
+    private static final Map<String, LatencyHistogram> LATENCY = new HashMap<>();
+    private static final Counter REJECTED = Metrics.counter("server.rejected");
+    
+    static {
+        for (String endpoint : new String[] { "search", "catalog", "items", "collections", "save", "load", "metrics" }) {
+            LATENCY.put("/api/" + endpoint, Metrics.histogram("server." + endpoint));
+        }
+    }
+    
+    private final MediaFactory factory;
+    private final LibraryStorage storage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Collection catalog; // Sostituito da /api/load, protetto da lock
+    private CatalogIndex index;
+    private SearchCache cache;
+    
+    private int port = DEFAULT_PORT;
+    private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+    private long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MS);
+    private Semaphore permits;
+    private HttpServer server;
+    private ExecutorService executor;
+    private boolean virtualThreads;
+    
+    public CatalogServer(Collection catalog, MediaFactory factory, LibraryStorage storage) {
+        if (catalog == null || factory == null || storage == null) {
+            throw new IllegalArgumentException("Catalogo, factory e storage non possono essere nulli");
+        }
+        this.factory = factory;
+        this.storage = storage;
+        replaceCatalog(catalog);
+    }
+    
+    /**
+      Porta di ascolto (0 = scelta dal sistema, vedi getPort())
+     **/
+    public CatalogServer port(int port) {
+        checkNotStarted();
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Porta non valida: " + port);
+        }
+        this.port = port;
+        return this;
+    }
+    
+    public CatalogServer maxConcurrentRequests(int maxConcurrent) {
+        checkNotStarted();
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("Il numero di richieste concorrenti deve essere positivo");
+        }
+        this.maxConcurrent = maxConcurrent;
+        return this;
+    }
+    
+    /**
+      Tempo massimo di attesa di una richiesta (coda, turno e lock del catalogo) prima del 503
+     **/
+    public CatalogServer requestTimeout(long amount, TimeUnit unit) {
+        checkNotStarted();
+        if (amount <= 0 || unit == null) {
+            throw new IllegalArgumentException("Il timeout deve essere positivo");
+        }
+        this.timeoutNanos = unit.toNanos(amount);
+        return this;
+    }
+    
+    /**
+      Avvia il server su localhost
+     **/
+    public void start() throws LibraryException {
+        checkNotStarted();
+        try {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), BACKLOG);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Errore durante l'avvio del server", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile avviare il server sulla porta " + port, e);
+        }
+        permits = new Semaphore(maxConcurrent);
+        executor = newExecutor();
+        ExecutorService tasks = executor;
+        Executor timed = task -> {
+            long queuedAt = System.nanoTime();
+            tasks.execute(() -> {
+                QUEUED_AT.set(queuedAt);
+                try {
+                    task.run();
+                } finally {
+                    QUEUED_AT.remove();
+                }
+            });
+        };
+        server.setExecutor(timed);
+        server.createContext("/api/", this::handle);
+        server.start();
+        logger.log(Level.INFO, "Server avviato su http://127.0.0.1:{0} ({1})",
+                new Object[] { String.valueOf(getPort()), virtualThreads ? "virtual thread" : "pool di " + maxConcurrent + " thread" });
+    }
+    
+    /**
+      Ferma il server aspettando al più "delaySeconds" le richieste in corso
+     **/
+    public void stop(int delaySeconds) {
+        if (server == null) {
+            return;
+        }
+        server.stop(delaySeconds);
+        executor.shutdown();
+        server = null;
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            index.close();
+        } finally {
+            write.unlock();
+        }
+    }
+    
+    /**
+      Porta effettiva (utile con port(0))
+     **/
+    public int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+    
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+    
+    // Virtual thread per richiesta se disponibili (Java 21+), altrimenti pool limitato
+    private ExecutorService newExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService service = (ExecutorService) method.invoke(null);
+            virtualThreads = true;
+            return service;
+        } catch (ReflectiveOperationException e) {
+            virtualThreads = false;
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory threads = task -> {
+                Thread thread = new Thread(task, "catalog-server-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(maxConcurrent, threads);
+        }
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        Long queuedAt = QUEUED_AT.get();
+        long arrival = queuedAt == null ? System.nanoTime() : queuedAt;
+        try {
+            long deadline = arrival + timeoutNanos;
+            if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                send(exchange, 503, error("Server occupato, riprova più tardi"));
+                return;
+            }
+            try {
+                route(exchange, deadline);
+            } finally {
+                permits.release();
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (LibraryException e) {
+            // Exception Shielding: il messaggio è già pensato per l'utente
+            send(exchange, 500, error(e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, error("Server in chiusura"));
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "ERRORE INASPETTATO nel server", e);
+            send(exchange, 500, error("Errore interno del server"));
+        } finally {
+            exchange.close();
+            LatencyHistogram latency = LATENCY.get(exchange.getRequestURI().getPath());
+            if (latency != null) {
+                latency.record(System.nanoTime() - arrival);
+            }
+            if (exchange.getResponseCode() == 503) {
+                REJECTED.increment();
+            }
+        }
+    }
+    
+    private void route(HttpExchange exchange, long deadline) throws IOException, LibraryException, InterruptedException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        boolean get = "GET".equals(method);
+        boolean post = "POST".equals(method);
+        switch (path) {
+            case "/api/search":
+                if (get) {
+                    search(exchange, deadline);
+                    return;
+                }
+                break;
+            case "/api/catalog":
+                if (get) {
+                    describe(exchange, deadline);
+                    return;
+                }
+                break;
+            case "/api/items":
+                if (post) {
+                    addItem(exchange, deadline);
+                    return;
+                }
+                break;
+            case "/api/collections":
+                if (post) {
+                    addCollection(exchange, deadline);
+                    return;
+                }
+                break;
+            case "/api/save":
+                if (post) {
+                    save(exchange, deadline);
+                    return;
+                }
+                break;
+            case "/api/load":
+                if (post) {
+                    load(exchange, deadline);
+                    return;
+                }
+                break;
+            case "/api/metrics":
+                if (get) {
+                    send(exchange, 200, "text/plain", Metrics.dump());
+                    return;
+                }
+                break;
+            default:
+                send(exchange, 404, error("Risorsa non trovata: " + path));
+                return;
+        }
+        send(exchange, 405, error("Metodo non consentito: " + method));
+    }
+    
+    private void search(HttpExchange exchange, long deadline) throws IOException, InterruptedException {
+        Map<String, String> query = queryOf(exchange);
+        String term = query.get("q");
+        if (term == null) {
+            throw new IllegalArgumentException("Parametro mancante: q");
+        }
+        int limit = query.containsKey("limit") ? parseLimit(query.get("limit")) : DEFAULT_LIMIT;
+        Lock read = lock.readLock();
+        if (!tryLock(read, deadline)) {
+            send(exchange, 503, error("Catalogo occupato, riprova più tardi"));
+            return;
+        }
+        String json;
+        try {
+            List<LibraryItem> results = cache.search(term);
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"query\":").append(Json.quote(term))
+              .append(",\"count\":").append(results.size())
+              .append(",\"items\":[");
+            for (int i = 0; i < Math.min(limit, results.size()); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(toJson(results.get(i)));
+            }
+            json = sb.append("]}").toString();
+        } finally {
+            read.unlock();
+        }
+        send(exchange, 200, json);
+    }
+    
+    private void describe(HttpExchange exchange, long deadline) throws IOException, InterruptedException {
+        String name = queryOf(exchange).get("collection");
+        Lock read = lock.readLock();
+        if (!tryLock(read, deadline)) {
+            send(exchange, 503, error("Catalogo occupato, riprova più tardi"));
+            return;
+        }
+        String json;
+        try {
+            Collection collection = name == null ? catalog : findCollection(name);
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"name\":").append(Json.quote(collection.getTitle()))
+              .append(",\"stats\":").append(toJson(collection.getStats()))
+              .append(",\"items\":[");
+            boolean first = true;
+            for (LibraryItem item : collection.getItems()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append(toJson(item));
+            }
+            json = sb.append("]}").toString();
+        } finally {
+            read.unlock();
+        }
+        send(exchange, 200, json);
+    }
+    
+    private void addItem(HttpExchange exchange, long deadline) throws IOException, InterruptedException {
+        Map<String, Object> body = bodyOf(exchange);
+        String type = NdjsonRecordReader.text(body, "type");
+        LibraryItem item;
+        // Factory Pattern + Input Sanitization, come nel menu di Main
+        switch (type) {
+            case "book":
+                item = factory.createBook(NdjsonRecordReader.text(body, "title"), NdjsonRecordReader.text(body, "author"),
+                        NdjsonRecordReader.number(body, "year"), NdjsonRecordReader.text(body, "isbn"));
+                break;
+            case "magazine":
+                item = factory.createMagazine(NdjsonRecordReader.text(body, "title"), NdjsonRecordReader.number(body, "issue"),
+                        NdjsonRecordReader.text(body, "publisher"), NdjsonRecordReader.number(body, "year"));
+                break;
+            case "dvd":
+                item = factory.createDVD(NdjsonRecordReader.text(body, "title"), NdjsonRecordReader.text(body, "director"),
+                        NdjsonRecordReader.number(body, "duration"), NdjsonRecordReader.number(body, "year"));
+                break;
+            default:
+                throw new IllegalArgumentException("Tipo di elemento sconosciuto: " + type);
+        }
+        addTo(exchange, deadline, optionalText(body, "collection"), item);
+    }
+    
+    private void addCollection(HttpExchange exchange, long deadline) throws IOException, InterruptedException {
+        Map<String, Object> body = bodyOf(exchange);
+        Collection collection = factory.createCollection(NdjsonRecordReader.text(body, "name"));
+        addTo(exchange, deadline, optionalText(body, "parent"), collection);
+    }
+    
+    private void addTo(HttpExchange exchange, long deadline, String parentName, LibraryItem item)
+            throws IOException, InterruptedException {
+        Lock write = lock.writeLock();
+        if (!tryLock(write, deadline)) {
+            send(exchange, 503, error("Catalogo occupato, riprova più tardi"));
+            return;
+        }
+        try {
+            Collection parent = parentName == null ? catalog : findCollection(parentName);
+            parent.addItem(item);
+        } finally {
+            write.unlock();
+        }
+        send(exchange, 201, toJson(item));
+    }
+    
+    private void save(HttpExchange exchange, long deadline) throws IOException, LibraryException, InterruptedException {
+        Map<String, Object> request = bodyOf(exchange);
+        String file = NdjsonRecordReader.text(request, "file");
+        Lock read = lock.readLock(); // Il salvataggio legge soltanto
+        if (!tryLock(read, deadline)) {
+            send(exchange, 503, error("Catalogo occupato, riprova più tardi"));
+            return;
+        }
+        try {
+            if (Boolean.TRUE.equals(request.get("compressed"))) {
+                storage.saveCompressed(catalog, file); // Input sanitization dentro LibraryStorage
+            } else {
+                storage.saveToFile(catalog, file);
+            }
+        } finally {
+            read.unlock();
+        }
+        send(exchange, 200, "{\"saved\":" + Json.quote(file) + "}");
+    }
+    
+    private void load(HttpExchange exchange, long deadline) throws IOException, LibraryException, InterruptedException {
+        String file = NdjsonRecordReader.text(bodyOf(exchange), "file");
+        Collection loaded = storage.loadFromFile(file); // Fuori dal lock: le letture continuano
+        Lock write = lock.writeLock();
+        if (!tryLock(write, deadline)) {
+            send(exchange, 503, error("Catalogo occupato, riprova più tardi"));
+            return;
+        }
+        try {
+            index.close();
+            replaceCatalog(loaded);
+        } finally {
+            write.unlock();
+        }
+        send(exchange, 200, "{\"loaded\":" + Json.quote(file) + ",\"stats\":" + toJson(loaded.getStats()) + "}");
+    }
+    
+    private void replaceCatalog(Collection replacement) {
+        // Statistiche calcolate subito per tutto l'albero: sotto il lock di lettura restano
+        // solo letture, gli aggiornamenti incrementali avvengono sotto quello di scrittura
+        replacement.getStats();
+        catalog = replacement;
+        index = new CatalogIndex(replacement);
+        cache = new SearchCache(replacement, CACHE_SIZE, index::search);
+    }
+    
+    private Collection findCollection(String name) {
+        TreeIterator iterator = new TreeIterator(catalog);
+        while (iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            if (item instanceof Collection && item.getTitle().equals(name.trim())) {
+                return (Collection) item;
+            }
+        }
+        throw new IllegalArgumentException("Collezione non trovata: " + name);
+    }
+    
+    private static boolean tryLock(Lock lock, long deadline) throws InterruptedException {
+        return lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+    
+    private static int parseLimit(String value) {
+        try {
+            int limit = Integer.parseInt(value);
+            if (limit > 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // Gestito sotto
+        }
+        throw new IllegalArgumentException("Parametro limit non valido: " + value);
+    }
+    
+    private static String optionalText(Map<String, Object> json, String key) {
+        return json.get(key) == null ? null : NdjsonRecordReader.text(json, key);
+    }
+    
+    private static Map<String, String> queryOf(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+    
+    private static Map<String, Object> bodyOf(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY + 1);
+            if (body.length > MAX_BODY) {
+                throw new IllegalArgumentException("Corpo della richiesta troppo grande");
+            }
+            return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+    
+    private static String toJson(LibraryItem item) {
+        if (item instanceof Collection) {
+            Collection collection = (Collection) item;
+            return "{\"type\":\"collection\",\"name\":" + Json.quote(collection.getTitle())
+                    + ",\"size\":" + collection.size() + "}";
+        }
+        return NdjsonRecordWriter.toJson(item);
+    }
+    
+    private static String toJson(CatalogStats stats) {
+        return "{\"items\":" + stats.getItemCount()
+                + ",\"books\":" + stats.getBookCount()
+                + ",\"magazines\":" + stats.getMagazineCount()
+                + ",\"dvds\":" + stats.getDVDCount()
+                + ",\"collections\":" + stats.getCollectionCount()
+                + ",\"totalDuration\":" + stats.getTotalDuration()
+                + ",\"minYear\":" + stats.getMinYear()
+                + ",\"maxYear\":" + stats.getMaxYear() + "}";
+    }
+    
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message == null ? "Richiesta non valida" : message) + "}";
+    }
+    
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json", json);
+    }
+    
+    private static void send(HttpExchange exchange, int status, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+    
+    private void checkNotStarted() {
+        if (server != null) {
+            throw new IllegalStateException("Il server è già avviato");
+        }
+    }
+}
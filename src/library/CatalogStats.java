@@ -0,0 +1,147 @@
+// ====================
+//  CatalogStats.java
+// ====================
+package library;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+  Statistiche di un sotto-albero del catalogo: elementi per tipo, numero totale di elementi,
+  durata complessiva dei DVD e istogramma degli anni (con minimo e massimo).
+  
+  Ogni Collection mantiene le proprie statistiche e le aggiorna ad ogni addItem/removeItem,
+  insieme a quelle di tutti gli antenati (vedi Collection.getStats()): le risposte non
+  richiedono una visita dell'albero. Le istanze restituite da getStats() sono copie
+  immutabili; solo Collection modifica quella interna.
+ **/
+public final class CatalogStats {
+    private int books;
+    private int magazines;
+    private int dvds;
+    private int collections; // Sotto-collezioni, a qualsiasi profondità
+    private long totalDuration; // Minuti
+    private final TreeMap<Integer, Integer> years; // Anno -> numero di elementi
+    
+    CatalogStats() {
+        this.years = new TreeMap<>();
+    }
+    
+    private CatalogStats(CatalogStats source) {
+        this.books = source.books;
+        this.magazines = source.magazines;
+        this.dvds = source.dvds;
+        this.collections = source.collections;
+        this.totalDuration = source.totalDuration;
+        this.years = new TreeMap<>(source.years);
+    }
+    
+    /**
+      Numero di elementi nel sotto-albero, sotto-collezioni comprese (esclusa la radice)
+     **/
+    public int getItemCount() {
+        return books + magazines + dvds + collections;
+    }
+    
+    public int getBookCount() {
+        return books;
+    }
+    
+    public int getMagazineCount() {
+        return magazines;
+    }
+    
+    public int getDVDCount() {
+        return dvds;
+    }
+    
+    public int getCollectionCount() {
+        return collections;
+    }
+    
+    /**
+      Durata complessiva dei DVD in minuti
+     **/
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+    
+    /**
+      Anno più vecchio tra libri, riviste e DVD; 0 se il sotto-albero non ne contiene
+     **/
+    public int getMinYear() {
+        return years.isEmpty() ? 0 : years.firstKey();
+    }
+    
+    /**
+      Anno più recente tra libri, riviste e DVD; 0 se il sotto-albero non ne contiene
+     **/
+    public int getMaxYear() {
+        return years.isEmpty() ? 0 : years.lastKey();
+    }
+    
+    /**
+      Numero di elementi per anno, in ordine crescente
+     **/
+    public SortedMap<Integer, Integer> getYearHistogram() {
+        return Collections.unmodifiableSortedMap(years);
+    }
+    
+    CatalogStats copy() {
+        return new CatalogStats(this);
+    }
+    
+    /**
+      Aggiunge (sign = 1) o toglie (sign = -1) un elemento con tutto il suo sotto-albero;
+      "subtree" sono le statistiche della collezione, null per gli altri elementi
+     **/
+    void apply(LibraryItem item, CatalogStats subtree, int sign) {
+        if (item instanceof Book) {
+            books += sign;
+            addYear(((Book) item).getYear(), sign);
+        } else if (item instanceof Magazine) {
+            magazines += sign;
+            addYear(((Magazine) item).getYear(), sign);
+        } else if (item instanceof DVD) {
+            dvds += sign;
+            totalDuration += sign * (long) ((DVD) item).getDuration();
+            addYear(((DVD) item).getYear(), sign);
+        } else if (item instanceof Collection) {
+            collections += sign;
+            if (subtree != null) {
+                books += sign * subtree.books;
+                magazines += sign * subtree.magazines;
+                dvds += sign * subtree.dvds;
+                collections += sign * subtree.collections;
+                totalDuration += sign * subtree.totalDuration;
+                for (Map.Entry<Integer, Integer> entry : subtree.years.entrySet()) {
+                    addYear(entry.getKey(), sign * entry.getValue());
+                }
+            }
+        }
+    }
+    
+    private void addYear(int year, int count) {
+        int updated = years.getOrDefault(year, 0) + count;
+        if (updated == 0) {
+            years.remove(year);
+        } else {
+            years.put(year, updated);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getItemCount()).append(" elementi: ")
+          .append(books).append(" libri, ")
+          .append(magazines).append(" riviste, ")
+          .append(dvds).append(" DVD (").append(totalDuration).append(" min)");
+        if (!years.isEmpty()) {
+            sb.append(", anni ").append(getMinYear()).append('-').append(getMaxYear());
+        }
+        return sb.toString();
+    }
+}
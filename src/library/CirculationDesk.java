@@ -0,0 +1,280 @@
+// ====================
+//  CirculationDesk.java
+// ====================
+package library;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+  Circolazione degli elementi del catalogo: copie disponibili, prestiti con scadenza
+  e coda delle prenotazioni per ogni libro, rivista o DVD (le collezioni non circolano).
+  
+  Pensata per il banco prestiti e i totem self-service che lavorano in contemporanea:
+  
+  - Nessun lock: le copie disponibili di ogni elemento sono un contatore modificato con
+    compare-and-set. Due checkout dell'ultima copia non possono riuscire entrambi
+    (uno solo porta il contatore da 1 a 0) e i checkout di elementi diversi non si
+    contendono nulla, a parte una lettura della ConcurrentHashMap degli elementi.
+  - Prenotazioni: se non ci sono copie, placeHold() mette l'utente in coda (FIFO).
+    Una copia restituita va al primo della coda, che trova il prestito in Hold.getLoan();
+    finché ci sono prenotazioni in attesa, checkout() non assegna copie ad altri.
+ **/
+public class CirculationDesk {
+    public static final Duration DEFAULT_LOAN_PERIOD = Duration.ofDays(30);
+    
+    private final Clock clock;
+    private final Duration loanPeriod;
+    private final ConcurrentHashMap<ItemKey, Copies> items = new ConcurrentHashMap<>();
+    
+    public CirculationDesk() {
+        this(Clock.systemUTC(), DEFAULT_LOAN_PERIOD);
+    }
+    
+    public CirculationDesk(Clock clock, Duration loanPeriod) {
+        if (clock == null) {
+            throw new IllegalArgumentException("L'orologio non può essere nullo");
+        }
+        if (loanPeriod == null || loanPeriod.isNegative() || loanPeriod.isZero()) {
+            throw new IllegalArgumentException("La durata del prestito deve essere positiva");
+        }
+        this.clock = clock;
+        this.loanPeriod = loanPeriod;
+    }
+    
+    /**
+      Mette in circolazione altre copie dell'elemento (la prima chiamata lo registra)
+     **/
+    public void addCopies(LibraryItem item, int count) {
+        if (item == null || item instanceof Collection) {
+            throw new IllegalArgumentException("Solo libri, riviste e DVD possono andare in prestito");
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("Il numero di copie deve essere positivo");
+        }
+        Copies copies = items.computeIfAbsent(ItemKey.of(item), key -> new Copies(item));
+        copies.total.addAndGet(count);
+        copies.available.addAndGet(count);
+        serveHolds(copies);
+    }
+    
+    /**
+      Presta una copia all'utente; null se non ci sono copie libere (o se altri utenti
+      sono già in coda: in quel caso conviene placeHold)
+     **/
+    public Loan checkout(LibraryItem item, String patron) {
+        checkPatron(patron);
+        Copies copies = copiesOf(item);
+        if (!copies.holds.isEmpty() || !copies.tryAcquire()) {
+            return null;
+        }
+        Loan loan = newLoan(copies, patron);
+        copies.loans.add(loan);
+        return loan;
+    }
+    
+    /**
+      Registra la restituzione; la copia passa al primo utente in coda, se c'è.
+      Lancia IllegalArgumentException se il prestito non è attivo (già restituito
+      o di un altro banco).
+     **/
+    public void returnItem(Loan loan) {
+        if (loan == null) {
+            throw new IllegalArgumentException("Il prestito non può essere nullo");
+        }
+        Copies copies = copiesOf(loan.getItem());
+        // La rimozione dall'insieme dei prestiti attivi riesce una volta sola
+        if (!copies.loans.remove(loan)) {
+            throw new IllegalArgumentException("Prestito non attivo: " + loan);
+        }
+        loan.markReturned(clock.instant());
+        copies.available.incrementAndGet();
+        serveHolds(copies);
+    }
+    
+    /**
+      Mette l'utente in coda per l'elemento; se c'è già una copia libera la prenotazione
+      viene servita subito
+     **/
+    public Hold placeHold(LibraryItem item, String patron) {
+        checkPatron(patron);
+        Copies copies = copiesOf(item);
+        Hold hold = new Hold(copies, patron);
+        copies.holds.add(hold);
+        serveHolds(copies);
+        return hold;
+    }
+    
+    public int getCopies(LibraryItem item) {
+        Copies copies = items.get(ItemKey.of(item));
+        return copies == null ? 0 : copies.total.get();
+    }
+    
+    public int getAvailable(LibraryItem item) {
+        Copies copies = items.get(ItemKey.of(item));
+        return copies == null ? 0 : copies.available.get();
+    }
+    
+    /**
+      Prenotazioni in attesa per l'elemento
+     **/
+    public int getHoldCount(LibraryItem item) {
+        Copies copies = items.get(ItemKey.of(item));
+        return copies == null ? 0 : copies.holds.size();
+    }
+    
+    public List<Loan> getActiveLoans(LibraryItem item) {
+        Copies copies = items.get(ItemKey.of(item));
+        return copies == null ? new ArrayList<>() : new ArrayList<>(copies.loans);
+    }
+    
+    /**
+      Prestiti attivi con la scadenza già passata, su tutti gli elementi
+     **/
+    public List<Loan> getOverdueLoans() {
+        Instant now = clock.instant();
+        List<Loan> overdue = new ArrayList<>();
+        for (Copies copies : items.values()) {
+            for (Loan loan : copies.loans) {
+                if (loan.isOverdue(now)) {
+                    overdue.add(loan);
+                }
+            }
+        }
+        return overdue;
+    }
+    
+    // Dopo ogni restituzione, nuova copia o prenotazione: le copie libere vanno ai primi in coda.
+    // Chi libera una copia e chi si mette in coda controllano entrambi dopo la propria modifica,
+    // quindi una copia non resta mai libera con una prenotazione in attesa.
+    private void serveHolds(Copies copies) {
+        while (!copies.holds.isEmpty() && copies.tryAcquire()) {
+            Hold hold = copies.holds.poll();
+            if (hold == null) {
+                // Coda svuotata da un altro thread: la copia torna libera e si ricontrolla la coda,
+                // dove nel frattempo può essere arrivata una prenotazione che ha trovato zero copie
+                copies.available.incrementAndGet();
+                continue;
+            }
+            Loan loan = newLoan(copies, hold.patron);
+            copies.loans.add(loan);
+            if (!hold.fulfil(loan)) {
+                copies.loans.remove(loan); // Annullata: la copia torna libera
+                copies.available.incrementAndGet();
+            }
+        }
+    }
+    
+    private Loan newLoan(Copies copies, String patron) {
+        Instant now = clock.instant();
+        return new Loan(copies.item, patron, now, now.plus(loanPeriod));
+    }
+    
+    private Copies copiesOf(LibraryItem item) {
+        if (item == null) {
+            throw new IllegalArgumentException("L'elemento non può essere nullo");
+        }
+        Copies copies = items.get(ItemKey.of(item));
+        if (copies == null) {
+            throw new IllegalArgumentException("Nessuna copia in circolazione: " + item.getTitle());
+        }
+        return copies;
+    }
+    
+    private static void checkPatron(String patron) {
+        if (patron == null || patron.trim().isEmpty()) {
+            throw new IllegalArgumentException("L'utente non può essere nullo o vuoto");
+        }
+    }
+    
+    /**
+      Stato di circolazione di un elemento: ogni elemento ha i suoi contatori e le sue code,
+      così le operazioni su elementi diversi non si contendono la stessa memoria
+     **/
+    private static final class Copies {
+        final LibraryItem item;
+        final AtomicInteger total = new AtomicInteger();
+        final AtomicInteger available = new AtomicInteger();
+        final Set<Loan> loans = ConcurrentHashMap.newKeySet();
+        final ConcurrentLinkedQueue<Hold> holds = new ConcurrentLinkedQueue<>();
+        
+        Copies(LibraryItem item) {
+            this.item = item;
+        }
+        
+        // Prende una copia libera con un ciclo di compare-and-set, senza mai scendere sotto zero
+        boolean tryAcquire() {
+            while (true) {
+                int current = available.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (available.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+    
+    /**
+      Prenotazione di un utente: diventa pronta quando riceve una copia (getLoan()),
+      oppure può essere annullata finché è in attesa
+     **/
+    public static final class Hold {
+        private static final int WAITING = 0;
+        private static final int READY = 1;
+        private static final int CANCELLED = 2;
+        
+        private final Copies copies;
+        private final String patron;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile Loan loan;
+        
+        Hold(Copies copies, String patron) {
+            this.copies = copies;
+            this.patron = patron;
+        }
+        
+        public String getPatron() {
+            return patron;
+        }
+        
+        public boolean isReady() {
+            return state.get() == READY;
+        }
+        
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+        
+        /**
+          Prestito assegnato alla prenotazione, null finché è in attesa
+         **/
+        public Loan getLoan() {
+            return isReady() ? loan : null;
+        }
+        
+        /**
+          Annulla la prenotazione; falso se nel frattempo ha già ricevuto una copia
+         **/
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            copies.holds.remove(this);
+            return true;
+        }
+        
+        boolean fulfil(Loan assigned) {
+            loan = assigned; // Visibile a chi legge READY (scrittura prima del compare-and-set)
+            return state.compareAndSet(WAITING, READY);
+        }
+    }
+}
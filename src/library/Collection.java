@@ -4,8 +4,19 @@
 // ====================
 package library;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
   Implementazione del Composite pattern per gestire collezioni
@@ -13,29 +24,526 @@ import java.util.List;
 public class Collection implements LibraryItem {
     private static final long serialVersionUID = 1L;
     
+    // Forma serializzata invariata (nome + lista di elementi): i vecchi salvataggi restano leggibili
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("name", String.class),
+        new ObjectStreamField("items", List.class),
+        new ObjectStreamField("rejectDuplicates", boolean.class)
+    };
+    
     private String name;
-    private List<LibraryItem> items;
+    private transient String titleKey; // Nome normalizzato per la ricerca (TextNormalizer)
+    private transient ItemTable items; // Ordine di inserimento + indice per chiave naturale (ItemKey)
+    private boolean rejectDuplicates;
+    
+    // Collezioni che contengono questa, una voce per ogni occorrenza (null per la radice): una
+    // collezione condivisa ne ha più di una, e eventi, versione e statistiche risalgono verso tutte
+    private transient List<Collection> containers;
+    private transient volatile Collection parent; // Primo contenitore (getParent), null per la radice
+    private transient List<CollectionListener> listeners;
+    private transient volatile boolean lazy; // Scritto a false solo dopo aver riempito items (vedi ensureLoaded)
+    private transient volatile long version; // Modifiche di questa collezione e delle sotto-collezioni
+    private transient CatalogStats stats; // Statistiche del sotto-albero, null finché non vengono richieste
+    private transient boolean acyclic; // Sotto-albero già controllato dopo la deserializzazione (vedi rejectCycles)
+    
+    private static final Counter ADDS = Metrics.counter("collection.adds");
+    private static final Counter REMOVES = Metrics.counter("collection.removes");
     
     public Collection(String name) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Il nome della collezione non può essere nullo o vuoto");
         }
         this.name = name.trim();
-        this.items = new ArrayList<>();
+        this.titleKey = TextNormalizer.normalize(this.name);
+        this.items = new ItemTable();
+    }
+    
+    /**
+      Costruttore per le collezioni lazy: gli elementi vengono chiesti a loadItems() solo al primo accesso
+     **/
+    protected Collection(String name, boolean lazy) {
+        this(name);
+        this.lazy = lazy;
     }
     
+    /**
+      Aggiunge un elemento; lancia IllegalArgumentException se l'elemento è questa collezione
+      o un suo antenato (creerebbe un ciclo) e, se il rifiuto dei duplicati è attivo, quando
+      la collezione contiene già un elemento con la stessa chiave naturale
+     **/
     public void addItem(LibraryItem item) {
         if (item != null) {
+            ensureLoaded();
+            if (item instanceof Collection && isWithin((Collection) item)) {
+                throw new IllegalArgumentException("Una collezione non può contenere se stessa o un suo antenato: " + item.getTitle());
+            }
+            if (rejectDuplicates && items.containsKey(ItemKey.of(item))) {
+                throw new IllegalArgumentException("Elemento già presente nella collezione: " + item.getTitle());
+            }
+            items.add(item);
+            attach(item);
+            itemsChanged();
+            Ancestors ancestors = sharedAncestors();
+            updateStats(ancestors, item, 1);
+            fireItemAdded(ancestors, item);
+            bumpVersion(ancestors);
+            ADDS.increment();
+        }
+    }
+    
+    /**
+      Aggiunge gli elementi in blocco (importazioni): stessi controlli di addItem per ciascuno,
+      ma l'istantanea e la versione vengono aggiornate una volta sola per tutto il blocco.
+      Gli elementi rifiutati (duplicati con il rifiuto attivo, cicli) non vengono aggiunti
+      e sono restituiti al chiamante; gli altri vengono aggiunti comunque.
+     **/
+    public List<LibraryItem> addItems(List<? extends LibraryItem> batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Il blocco di elementi non può essere nullo");
+        }
+        ensureLoaded();
+        List<LibraryItem> rejected = new ArrayList<>();
+        List<LibraryItem> added = new ArrayList<>(batch.size());
+        for (LibraryItem item : batch) {
+            if (item == null) {
+                continue;
+            }
+            if ((item instanceof Collection && isWithin((Collection) item))
+                    || (rejectDuplicates && items.containsKey(ItemKey.of(item)))) {
+                rejected.add(item);
+                continue;
+            }
             items.add(item);
+            attach(item);
+            added.add(item);
+        }
+        if (added.isEmpty()) {
+            return rejected;
+        }
+        itemsChanged();
+        Ancestors ancestors = sharedAncestors();
+        for (LibraryItem item : added) {
+            updateStats(ancestors, item, 1);
+            fireItemAdded(ancestors, item);
         }
+        bumpVersion(ancestors);
+        ADDS.add(added.size());
+        return rejected;
     }
     
     public void removeItem(LibraryItem item) {
-        items.remove(item);
+        if (item == null) {
+            return;
+        }
+        ensureLoaded();
+        int index = items.indexOf(ItemKey.of(item));
+        if (index >= 0) {
+            // Rimuove l'istanza effettivamente contenuta (equals può coincidere con un'altra istanza)
+            removeAt(index);
+        }
+    }
+    
+    // Accesso per posizione, usato da CatalogJournal per registrare e rieseguire le modifiche
+    LibraryItem itemAt(int index) {
+        ensureLoaded();
+        return items.get(index);
+    }
+    
+    int indexOf(LibraryItem item) {
+        ensureLoaded();
+        return items.indexOfIdentity(item);
     }
     
+    void removeAt(int index) {
+        ensureLoaded();
+        LibraryItem removed = items.removeAt(index);
+        detach(removed);
+        itemsChanged();
+        Ancestors ancestors = sharedAncestors();
+        updateStats(ancestors, removed, -1);
+        fireItemRemoved(ancestors, removed, index);
+        bumpVersion(ancestors);
+        REMOVES.increment();
+    }
+    
+    /**
+      Istantanea non modificabile degli elementi diretti: non copia nulla e non cambia
+      se la collezione viene modificata in seguito (copy-on-write)
+     **/
     public List<LibraryItem> getItems() {
-        return new ArrayList<>(items); // Copia difensiva
+        ensureLoaded();
+        return items.snapshot();
+    }
+    
+    /**
+      Vista viva e non modificabile degli elementi diretti; iterarla mentre la collezione
+      viene modificata lancia ConcurrentModificationException
+     **/
+    public List<LibraryItem> getItemsView() {
+        ensureLoaded();
+        return items.view();
+    }
+    
+    /**
+      Vero se la collezione contiene un elemento con la stessa chiave naturale (ISBN per i libri,
+      titolo + numero per le riviste, titolo + anno per i DVD, istanza per le collezioni)
+     **/
+    public boolean contains(LibraryItem item) {
+        if (item == null) {
+            return false;
+        }
+        ensureLoaded();
+        return items.containsKey(ItemKey.of(item));
+    }
+    
+    /**
+      Primo elemento diretto con la chiave indicata, null se assente
+     **/
+    public LibraryItem getById(ItemKey key) {
+        if (key == null) {
+            throw new IllegalArgumentException("La chiave non può essere nulla");
+        }
+        ensureLoaded();
+        return items.get(key);
+    }
+    
+    public int size() {
+        ensureLoaded();
+        return items.size();
+    }
+    
+    /**
+      Attiva o disattiva il rifiuto dei duplicati in addItem (disattivo per default,
+      come nelle versioni precedenti). Non rimuove i duplicati già presenti.
+     **/
+    public void setRejectDuplicates(boolean rejectDuplicates) {
+        this.rejectDuplicates = rejectDuplicates;
+    }
+    
+    public boolean isRejectDuplicates() {
+        return rejectDuplicates;
+    }
+    
+    /**
+      Collezione che contiene questa (null per la radice); per una collezione condivisa,
+      il primo dei suoi contenitori ancora presenti
+     **/
+    public Collection getParent() {
+        return parent;
+    }
+    
+    /**
+      Contatore delle modifiche: aumenta ad ogni addItem/removeItem su questa collezione
+      o su una qualsiasi sotto-collezione, anche condivisa con altre collezioni. Se non è
+      cambiato, il contenuto del sotto-albero è lo stesso (vedi SearchCache).
+     **/
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+      Statistiche dell'intero sotto-albero (copia immutabile). La prima richiesta le calcola
+      con una visita; da quel momento addItem/removeItem le aggiornano in modo incrementale,
+      qui e in tutti gli antenati, e le richieste successive non visitano l'albero.
+     **/
+    public CatalogStats getStats() {
+        if (stats == null) {
+            computeStats();
+        }
+        return stats.copy();
+    }
+    
+    public void addListener(CollectionListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Il listener non può essere nullo");
+        }
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+        }
+        listeners.add(listener);
+    }
+    
+    public void removeListener(CollectionListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+    
+    private void attach(LibraryItem item) {
+        if (item instanceof Collection) {
+            Collection child = (Collection) item;
+            if (child.containers == null) {
+                child.containers = new ArrayList<>(1);
+            }
+            child.containers.add(this);
+            if (child.parent == null) {
+                child.parent = this;
+            }
+        }
+    }
+    
+    // Toglie una sola occorrenza: la collezione può essere ancora contenuta qui o altrove
+    private void detach(LibraryItem item) {
+        if (item instanceof Collection) {
+            Collection child = (Collection) item;
+            for (int i = 0; i < child.containers.size(); i++) {
+                if (child.containers.get(i) == this) {
+                    child.containers.remove(i);
+                    break;
+                }
+            }
+            child.parent = child.containers.isEmpty() ? null : child.containers.get(0);
+        }
+    }
+    
+    // Vero se questa collezione e i suoi antenati sono contenuti al più in un'altra collezione
+    private boolean onlyChain() {
+        for (Collection c = this; c != null; c = c.parent) {
+            if (c.containers != null && c.containers.size() > 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+      Antenati di questa collezione (lei compresa), ciascuno con il numero di percorsi che
+      da lì scendono fin qui, in ordine topologico: ogni collezione prima dei suoi contenitori.
+      null se la catena dei genitori basta (nessuna collezione condivisa): è il caso comune,
+      e le modifiche non allocano nulla.
+     **/
+    private Ancestors sharedAncestors() {
+        if (onlyChain()) {
+            return null;
+        }
+        // Per ogni antenato, le occorrenze nei contenitori da attraversare prima di lui
+        List<Collection> all = new ArrayList<>();
+        Map<Collection, Integer> remaining = new IdentityHashMap<>();
+        all.add(this);
+        remaining.put(this, 0);
+        for (int i = 0; i < all.size(); i++) {
+            for (Collection container : all.get(i).containersOrNone()) {
+                if (remaining.merge(container, 1, Integer::sum) == 1) {
+                    all.add(container);
+                }
+            }
+        }
+        Ancestors ancestors = new Ancestors();
+        Deque<Collection> ready = new ArrayDeque<>();
+        ready.add(this);
+        ancestors.paths.put(this, 1);
+        while (!ready.isEmpty()) {
+            Collection c = ready.poll();
+            ancestors.order.add(c);
+            int paths = ancestors.paths.get(c);
+            for (Collection container : c.containersOrNone()) {
+                ancestors.paths.merge(container, paths, Integer::sum);
+                if (remaining.merge(container, -1, Integer::sum) == 0) {
+                    ready.add(container);
+                }
+            }
+        }
+        return ancestors;
+    }
+    
+    private List<Collection> containersOrNone() {
+        return containers == null ? List.of() : containers;
+    }
+    
+    /**
+      Numero di percorsi da "ancestor" a questa collezione (0 se non ne è un antenato):
+      quante volte la visita di ancestor incontra questa collezione (vedi CatalogIndex)
+     **/
+    int pathsFrom(Collection ancestor) {
+        Ancestors ancestors = sharedAncestors();
+        if (ancestors != null) {
+            return ancestors.paths.getOrDefault(ancestor, 0);
+        }
+        for (Collection c = this; c != null; c = c.parent) {
+            if (c == ancestor) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+      Percorsi di indici da "ancestor" a questa collezione, uno per ogni occorrenza incontrata
+      dalla visita di ancestor (tanti quanti pathsFrom); nessuno se ancestor non ne è un antenato.
+      Usato da CatalogJournal, che registra ogni modifica in tutte le copie dello snapshot.
+     **/
+    List<int[]> indexPathsFrom(Collection ancestor) {
+        List<int[]> result = new ArrayList<>();
+        if (this == ancestor) {
+            result.add(new int[0]);
+            return result;
+        }
+        Map<Collection, Boolean> seen = new IdentityHashMap<>();
+        for (Collection container : containersOrNone()) {
+            if (seen.put(container, Boolean.TRUE) != null) {
+                continue; // Stesso contenitore più volte: le sue occorrenze sono già state considerate
+            }
+            List<int[]> prefixes = container.indexPathsFrom(ancestor);
+            if (prefixes.isEmpty()) {
+                continue;
+            }
+            for (int index : container.items.indexesOfIdentity(this)) {
+                for (int[] prefix : prefixes) {
+                    int[] path = Arrays.copyOf(prefix, prefix.length + 1);
+                    path[prefix.length] = index;
+                    result.add(path);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+      Vero se "collection" è questa collezione o un suo antenato. Se ogni collezione della
+      catena dei genitori è contenuta al più in un'altra, la catena basta; altrimenti
+      (collezioni condivise) si cerca questa collezione nel sotto-albero di "collection".
+     **/
+    private boolean isWithin(Collection collection) {
+        for (Collection c = this; c != null; c = c.parent) {
+            if (c == collection) {
+                return true;
+            }
+        }
+        if (onlyChain()) {
+            return false;
+        }
+        TreeIterator iterator = new TreeIterator(collection);
+        while (iterator.hasNext()) {
+            if (iterator.next() == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Se questa collezione ha le statistiche le hanno anche tutte le sotto-collezioni:
+    // lungo la catena dei genitori le statistiche presenti formano un prefisso.
+    // Un antenato raggiunto da più percorsi conta l'elemento una volta per percorso, come computeStats
+    private void updateStats(Ancestors ancestors, LibraryItem item, int sign) {
+        if (stats == null) {
+            return;
+        }
+        CatalogStats subtree = null;
+        if (item instanceof Collection) {
+            Collection child = (Collection) item;
+            if (child.stats == null) {
+                child.computeStats();
+            }
+            subtree = child.stats;
+        }
+        if (ancestors == null) {
+            for (Collection c = this; c != null && c.stats != null; c = c.parent) {
+                c.stats.apply(item, subtree, sign);
+            }
+            return;
+        }
+        for (Collection c : ancestors.order) {
+            if (c.stats != null) {
+                c.stats.apply(item, subtree, sign * ancestors.paths.get(c));
+            }
+        }
+    }
+    
+    // Visita iterativa in post-ordine: una collezione viene calcolata solo quando tutte le sue
+    // sotto-collezioni hanno le statistiche, anche se una di esse è condivisa da più rami
+    private void computeStats() {
+        Map<Collection, Boolean> seen = new IdentityHashMap<>(); // Ogni collezione una volta (anche con cicli)
+        Deque<StatsFrame> stack = new ArrayDeque<>();
+        stack.push(new StatsFrame(this));
+        seen.put(this, Boolean.TRUE);
+        while (!stack.isEmpty()) {
+            StatsFrame frame = stack.peek();
+            Collection next = null;
+            while (next == null && frame.next < frame.children.size()) {
+                LibraryItem item = frame.children.get(frame.next++);
+                if (item instanceof Collection && ((Collection) item).stats == null
+                        && seen.put((Collection) item, Boolean.TRUE) == null) {
+                    next = (Collection) item;
+                }
+            }
+            if (next != null) {
+                stack.push(new StatsFrame(next)); // Il genitore resta sullo stack finché il figlio non è pronto
+                continue;
+            }
+            stack.pop();
+            CatalogStats computed = new CatalogStats();
+            for (LibraryItem item : frame.children) {
+                computed.apply(item, item instanceof Collection ? ((Collection) item).stats : null, 1);
+            }
+            frame.collection.stats = computed;
+        }
+    }
+    
+    // Collezione in attesa delle statistiche dei figli, con la posizione del prossimo figlio da esaminare
+    private static final class StatsFrame {
+        final Collection collection;
+        final List<LibraryItem> children;
+        int next;
+        
+        StatsFrame(Collection collection) {
+            this.collection = collection;
+            this.children = collection.getItems();
+        }
+    }
+    
+    // Dopo i listener: chi legge la nuova versione trova anche gli indici già aggiornati.
+    // Le scritture sono serializzate (un solo thread, o il lock dell'albero per ConcurrentCollection)
+    private void bumpVersion(Ancestors ancestors) {
+        if (ancestors == null) {
+            for (Collection c = this; c != null; c = c.parent) {
+                c.version++;
+            }
+            return;
+        }
+        for (Collection c : ancestors.order) {
+            c.version++;
+        }
+    }
+    
+    // Ogni antenato notifica i suoi listener una volta sola, anche se raggiunto da più percorsi
+    private void fireItemAdded(Ancestors ancestors, LibraryItem item) {
+        if (ancestors == null) {
+            for (Collection c = this; c != null; c = c.parent) {
+                c.notifyAdded(this, item);
+            }
+        } else {
+            for (Collection c : ancestors.order) {
+                c.notifyAdded(this, item);
+            }
+        }
+    }
+    
+    private void fireItemRemoved(Ancestors ancestors, LibraryItem item, int index) {
+        if (ancestors == null) {
+            for (Collection c = this; c != null; c = c.parent) {
+                c.notifyRemoved(this, item, index);
+            }
+        } else {
+            for (Collection c : ancestors.order) {
+                c.notifyRemoved(this, item, index);
+            }
+        }
+    }
+    
+    private void notifyAdded(Collection source, LibraryItem item) {
+        if (listeners != null) {
+            for (CollectionListener listener : listeners) {
+                listener.itemAdded(source, item);
+            }
+        }
+    }
+    
+    private void notifyRemoved(Collection source, LibraryItem item, int index) {
+        if (listeners != null) {
+            for (CollectionListener listener : listeners) {
+                listener.itemRemoved(source, item, index);
+            }
+        }
     }
     
     @Override
@@ -43,29 +551,181 @@ public class Collection implements LibraryItem {
         return name;
     }
     
+    @Override
+    public String getTitleKey() {
+        return titleKey;
+    }
+    
     @Override
     public String getDescription() {
-        return "Collezione: " + name + " (" + items.size() + " titoli)";
+        return "Collezione: " + name + " (" + size() + " titoli)";
     }
     
     @Override
     public void display() {
-        System.out.println(getDescription());
-        for (LibraryItem item : items) {
-            item.display();
+        TreeIterator iterator = new TreeIterator(this);
+        while (iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            if (item instanceof Collection) {
+                Collection collection = (Collection) item;
+                System.out.println(collection.getDescription() + " - " + collection.getStats());
+            } else {
+                item.display();
+            }
         }
     }
     
+    /**
+      Iteratore sui soli elementi diretti
+     **/
     public LibraryIterator createIterator() {
         return new CollectionIterator(this);
     }
     
+    /**
+      Iteratore sull'intero sotto-albero, questa collezione compresa (vedi TreeIterator)
+     **/
+    public TreeIterator createTreeIterator(TreeIterator.Order order) {
+        return new TreeIterator(this, order);
+    }
+    
     @Override
     public void accept(LibraryVisitor visitor) {
-        visitor.visit(this);
-        // Visita ricorsiva degli elementi
-        for (LibraryItem item : items) {
-            item.accept(visitor);
+        accept(visitor, TreeIterator.Order.DEPTH_FIRST);
+    }
+    
+    /**
+      Visita il sotto-albero nell'ordine indicato, senza ricorsione; ogni collezione viene
+      letta su un'istantanea presa dopo averla visitata, quindi il visitor può modificarla.
+      Con le metriche attive registra durata ed elementi visitati per tipo di visitor
+      ("visit.SearchVisitor" e "visit.SearchVisitor.items").
+     **/
+    public void accept(LibraryVisitor visitor, TreeIterator.Order order) {
+        if (visitor == null) {
+            throw new IllegalArgumentException("Il visitor non può essere nullo");
+        }
+        long start = Metrics.start();
+        long visited = 0;
+        TreeIterator iterator = new TreeIterator(this, order);
+        while (iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            if (item instanceof Collection) {
+                visitor.visit((Collection) item);
+            } else {
+                item.accept(visitor);
+            }
+            visited++;
+        }
+        if (start != 0) {
+            String name = "visit." + visitor.getClass().getSimpleName();
+            Metrics.histogram(name).recordSince(start);
+            Metrics.counter(name + ".items").add(visited);
+        }
+    }
+    
+    /**
+      Come accept(), ma visita l'albero in parallelo sul ForkJoinPool comune (vedi ParallelTraversal);
+      l'ordine dei risultati e le metriche registrate sono quelli della visita sequenziale
+     **/
+    public <V extends MergeableVisitor<V>> void acceptParallel(V visitor) {
+        new ParallelTraversal().traverse(this, visitor);
+    }
+    
+    /**
+      Punto di estensione per le collezioni lazy (vedi MappedCatalog): al primo accesso
+      restituisce gli elementi da agganciare, senza generare eventi per i listener
+     **/
+    protected List<LibraryItem> loadItems() {
+        return new ArrayList<>();
+    }
+    
+    // Chiamato dopo ogni modifica degli elementi, prima di notificare i listener (vedi ConcurrentCollection)
+    void itemsChanged() {
+    }
+    
+    // Più thread possono leggere per la prima volta la stessa collezione lazy (vedi MappedCatalog):
+    // uno solo carica gli elementi, e gli altri li vedono solo dopo la scrittura volatile di lazy
+    private void ensureLoaded() {
+        if (lazy) {
+            load();
+        }
+    }
+    
+    private synchronized void load() {
+        if (!lazy) {
+            return;
+        }
+        for (LibraryItem item : loadItems()) {
+            items.add(item);
+            attach(item);
+        }
+        lazy = false;
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ensureLoaded(); // Gli elementi lazy vanno materializzati prima di serializzarli
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("name", name);
+        fields.put("items", new ArrayList<>(getItems()));
+        fields.put("rejectDuplicates", rejectDuplicates);
+        out.writeFields();
+    }
+    
+    private static final class Ancestors {
+        final List<Collection> order = new ArrayList<>();
+        final Map<Collection, Integer> paths = new IdentityHashMap<>();
+    }
+    
+    // Il riferimento al genitore e l'indice sono transient: li ricostruiamo dopo la deserializzazione
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = (String) fields.get("name", null);
+        titleKey = name == null ? null : TextNormalizer.normalize(name);
+        rejectDuplicates = fields.get("rejectDuplicates", false);
+        items = new ItemTable();
+        List<LibraryItem> saved = (List<LibraryItem>) fields.get("items", null);
+        if (saved != null) {
+            for (LibraryItem item : saved) {
+                items.add(item);
+                attach(item);
+            }
+        }
+        // I vecchi salvataggi possono contenere cicli (addItem non li rifiutava): il controllo
+        // avviene quando l'intero grafo è stato letto
+        in.registerValidation(this::rejectCycles, 0);
+    }
+    
+    // Visita in profondità senza ricorsione: una collezione già sul percorso corrente chiude un ciclo.
+    // I sotto-alberi già controllati (da questa o da un'altra validazione) non vengono ripercorsi
+    private void rejectCycles() throws InvalidObjectException {
+        if (acyclic) {
+            return;
+        }
+        Map<Collection, Boolean> path = new IdentityHashMap<>();
+        Deque<Collection> owners = new ArrayDeque<>();
+        Deque<Iterator<LibraryItem>> children = new ArrayDeque<>();
+        path.put(this, Boolean.TRUE);
+        owners.push(this);
+        children.push(items.snapshot().iterator());
+        while (!owners.isEmpty()) {
+            Iterator<LibraryItem> iterator = children.peek();
+            if (!iterator.hasNext()) {
+                Collection done = owners.pop();
+                children.pop();
+                path.remove(done);
+                done.acyclic = true;
+                continue;
+            }
+            LibraryItem item = iterator.next();
+            if (item instanceof Collection && !((Collection) item).acyclic) {
+                Collection child = (Collection) item;
+                if (path.put(child, Boolean.TRUE) != null) {
+                    throw new InvalidObjectException("La collezione " + child.getTitle() + " contiene se stessa");
+                }
+                owners.push(child);
+                children.push(child.items.snapshot().iterator());
+            }
         }
     }
 }
@@ -4,30 +4,28 @@
 // ====================
 package library;
 
-import java.util.List;
+import java.util.Iterator;
 
 /**
  * Implementazione concreta dell'Iterator pattern
  */
 public class CollectionIterator implements LibraryIterator {
-    private List<LibraryItem> items;
-    private int position = 0;
+    private Iterator<LibraryItem> items;
     
     public CollectionIterator(Collection collection) {
-        this.items = collection.getItems();
+        // L'istantanea non copia gli elementi e non risente delle modifiche successive
+        this.items = collection.getItems().iterator();
     }
     
     @Override
     public boolean hasNext() {
-        return position < items.size();
+        return items.hasNext();
     }
     
     @Override
     public LibraryItem next() {
         if (hasNext()) {
-            LibraryItem item = items.get(position);
-            position++;
-            return item;
+            return items.next();
         }
         return null;
     }
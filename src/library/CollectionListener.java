@@ -0,0 +1,17 @@
+// ====================
+//  CollectionListener.java
+// ====================
+package library;
+
+/**
+  Osservatore delle modifiche di una Collection.
+  Gli eventi risalgono verso tutti i contenitori: un listener registrato sulla
+  radice riceve anche le aggiunte/rimozioni fatte nelle sotto-collezioni, comprese
+  quelle condivise con altre collezioni (una volta per evento, anche se la
+  sotto-collezione compare in più punti del suo albero: vedi CatalogIndex).
+  In itemRemoved, index è la posizione che l'elemento occupava in parent.
+ **/
+public interface CollectionListener {
+    void itemAdded(Collection parent, LibraryItem item);
+    void itemRemoved(Collection parent, LibraryItem item, int index);
+}
@@ -0,0 +1,789 @@
+// ====================
+//  ColumnarCatalog.java
+// ====================
+package library;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.StreamCorruptedException;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+  Catalogo in sola lettura memorizzato per colonne: ogni Book, Magazine e DVD è una riga
+  di array primitivi (tipo, anno, numero, durata) e di identificativi nei dizionari
+  dei titoli e dei nomi, invece di un oggetto sullo heap.
+  
+  Le collezioni sono Collection vere, i loro elementi sono viste create al momento
+  (flyweight: due campi, i valori restano nelle colonne), quindi LibraryVisitor,
+  LibraryIterator e ParallelTraversal funzionano senza modifiche. I filtri di scan()
+  invece non creano viste: scorrono direttamente le colonne.
+  
+  Per modificare il catalogo si lavora su una copia normale (toCollection()).
+ **/
+public final class ColumnarCatalog {
+    
+    /**
+      Tipo di una riga, memorizzato nella colonna dei tipi come ordinal()
+     **/
+    public enum ItemType { BOOK, MAGAZINE, DVD }
+    
+    private static final ItemType[] TYPES = ItemType.values();
+    private static final int ALL_TYPES = (1 << TYPES.length) - 1;
+    
+    private final int rows;
+    private final byte[] types;
+    private final int[] years;
+    private final int[] issues; // Solo Magazine, 0 per le altre righe
+    private final int[] durations; // Solo DVD, 0 per le altre righe
+    private final int[] titles; // Identificativi in titleDictionary
+    private final int[] names; // Autore, editore o regista, identificativi in nameDictionary
+    private final String[] isbns; // Solo Book
+    private final String[] titleDictionary;
+    private final String[] titleKeys; // Chiavi di ricerca dei titoli, calcolate al caricamento
+    private final Name[] nameDictionary;
+    private final String[] collectionNames;
+    private final int[][] collectionEntries; // Figli di ogni collezione: riga se >= 0, ~indice collezione se < 0
+    private final CollectionView[] collections;
+    
+    private ColumnarCatalog(Builder builder) {
+        rows = builder.rows;
+        types = Arrays.copyOf(builder.types, rows);
+        years = Arrays.copyOf(builder.years, rows);
+        issues = Arrays.copyOf(builder.issues, rows);
+        durations = Arrays.copyOf(builder.durations, rows);
+        titles = Arrays.copyOf(builder.titles, rows);
+        names = Arrays.copyOf(builder.names, rows);
+        isbns = Arrays.copyOf(builder.isbns, rows);
+        titleDictionary = builder.titleDictionary.toArray(new String[0]);
+        titleKeys = new String[titleDictionary.length];
+        for (int id = 0; id < titleKeys.length; id++) {
+            titleKeys[id] = TextNormalizer.normalize(titleDictionary[id]);
+        }
+        nameDictionary = builder.nameDictionary.toArray(new Name[0]);
+        collectionNames = builder.collectionNames.toArray(new String[0]);
+        collectionEntries = builder.collectionEntries.toArray(new int[0][]);
+        
+        // Le collezioni sono poche: le viste vengono create subito, con il riferimento al genitore
+        collections = new CollectionView[collectionNames.length];
+        for (int c = 0; c < collections.length; c++) {
+            if (collections[c] == null) {
+                collections[c] = new CollectionView(this, c, null);
+            }
+            for (int entry : collectionEntries[c]) {
+                if (entry < 0) {
+                    collections[~entry] = new CollectionView(this, ~entry, collections[c]);
+                }
+            }
+        }
+    }
+    
+    /**
+      Copia per colonne di un catalogo esistente (anche mappato, vedi MappedCatalog)
+     **/
+    public static ColumnarCatalog from(Collection root) {
+        if (root == null) {
+            throw new IllegalArgumentException("La collezione non può essere nulla");
+        }
+        Builder builder = new Builder();
+        TreeIterator iterator = new TreeIterator(root);
+        int open = 0; // Collezioni aperte: un elemento a profondità d sta nella d-esima
+        while (iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            for (; open > iterator.getDepth(); open--) {
+                builder.endCollection();
+            }
+            if (item instanceof Collection) {
+                builder.beginCollection(item.getTitle());
+                open++;
+            } else {
+                builder.addItem(item);
+            }
+        }
+        for (; open > 0; open--) {
+            builder.endCollection();
+        }
+        return new ColumnarCatalog(builder);
+    }
+    
+    /**
+      Costruisce il catalogo da un dump in streaming senza creare l'albero di oggetti.
+      Il primo record deve aprire la collezione radice; i marcatori in eccesso vengono
+      saltati e riportati nell'ImportReport del reader.
+     **/
+    public static ColumnarCatalog from(CatalogRecordReader reader) throws IOException {
+        Builder builder = new Builder();
+        int depth = 0;
+        while (reader.hasNext()) {
+            CatalogRecord record = reader.next();
+            if (builder.collectionNames.isEmpty() && record.getKind() != CatalogRecord.Kind.BEGIN_COLLECTION) {
+                throw new StreamCorruptedException("Il dump deve iniziare con la collezione radice");
+            }
+            if (depth == 0 && !builder.collectionNames.isEmpty()) {
+                reader.getReport().recordSkipped("fine collezione", "record dopo la chiusura della radice");
+                continue;
+            }
+            switch (record.getKind()) {
+                case BEGIN_COLLECTION:
+                    builder.beginCollection(record.getName());
+                    depth++;
+                    break;
+                case END_COLLECTION:
+                    builder.endCollection();
+                    depth--;
+                    break;
+                default:
+                    builder.addItem(record.getItem());
+            }
+        }
+        if (builder.collectionNames.isEmpty()) {
+            throw new StreamCorruptedException("Il dump non contiene collezioni");
+        }
+        if (depth > 0) {
+            reader.getReport().recordSkipped("fine file", depth + " collezioni non chiuse");
+            while (depth-- > 0) {
+                builder.endCollection();
+            }
+        }
+        return new ColumnarCatalog(builder);
+    }
+    
+    public Collection getRoot() {
+        return collections[0];
+    }
+    
+    /**
+      Numero di righe (elementi foglia) del catalogo
+     **/
+    public int size() {
+        return rows;
+    }
+    
+    /**
+      Vista dell'elemento nella riga indicata
+     **/
+    public LibraryItem get(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Riga inesistente: " + row);
+        }
+        switch (TYPES[types[row]]) {
+            case BOOK:
+                return new BookView(this, row);
+            case MAGAZINE:
+                return new MagazineView(this, row);
+            default:
+                return new DVDView(this, row);
+        }
+    }
+    
+    public ItemType typeOf(int row) {
+        return TYPES[types[row]];
+    }
+    
+    public Scan scan() {
+        return new Scan();
+    }
+    
+    /**
+      Copia modificabile del catalogo, con oggetti Book, Magazine e DVD normali
+     **/
+    public Collection toCollection() {
+        return materialize(0);
+    }
+    
+    private Collection materialize(int collection) {
+        Collection copy = new Collection(collectionNames[collection]);
+        Deque<Collection> copies = new ArrayDeque<>();
+        Deque<int[]> stack = new ArrayDeque<>(); // {collezione, prossimo figlio}
+        copies.push(copy);
+        stack.push(new int[] { collection, 0 });
+        while (!stack.isEmpty()) {
+            int[] frame = stack.peek();
+            int[] entries = collectionEntries[frame[0]];
+            if (frame[1] == entries.length) {
+                stack.pop();
+                copies.pop();
+                continue;
+            }
+            int entry = entries[frame[1]++];
+            if (entry < 0) {
+                Collection child = new Collection(collectionNames[~entry]);
+                copies.peek().addItem(child);
+                copies.push(child);
+                stack.push(new int[] { ~entry, 0 });
+            } else {
+                copies.peek().addItem(copyOf(entry));
+            }
+        }
+        return copy;
+    }
+    
+    private LibraryItem copyOf(int row) {
+        String title = titleDictionary[titles[row]];
+        String name = nameDictionary[names[row]].getValue();
+        switch (TYPES[types[row]]) {
+            case BOOK:
+                return new Book(title, name, years[row], isbns[row]);
+            case MAGAZINE:
+                return new Magazine(title, issues[row], name, years[row]);
+            default:
+                return new DVD(title, name, durations[row], years[row]);
+        }
+    }
+    
+    /**
+      Filtro sulle colonne: le condizioni sono in AND e vengono valutate riga per riga
+      in un unico ciclo, senza creare viste. Le condizioni sul testo sono valutate una volta
+      per voce del dizionario, non per riga. L'ordine delle chiamate non conta: i tipi scelti
+      con type() vengono intersecati con quelli imposti da issueBetween (riviste) e durationBetween (DVD).
+      
+      Esempio: catalog.scan().type(ItemType.DVD).durationAbove(120).yearAfter(2000).items()
+     **/
+    public final class Scan {
+        private int chosenTypes; // Unione delle chiamate a type(), 0 = tutti i tipi
+        private int requiredTypes = ALL_TYPES; // Tipi ammessi dalle condizioni su numero e durata
+        private int minYear = Integer.MIN_VALUE;
+        private int maxYear = Integer.MAX_VALUE;
+        private int minIssue = Integer.MIN_VALUE;
+        private int maxIssue = Integer.MAX_VALUE;
+        private int minDuration = Integer.MIN_VALUE;
+        private int maxDuration = Integer.MAX_VALUE;
+        private String titleText;
+        private String nameText;
+        
+        private Scan() {
+        }
+        
+        /**
+          Limita la scansione al tipo indicato; più chiamate si sommano (BOOK o DVD...)
+         **/
+        public Scan type(ItemType type) {
+            if (type == null) {
+                throw new IllegalArgumentException("Il tipo non può essere nullo");
+            }
+            chosenTypes |= 1 << type.ordinal();
+            return this;
+        }
+        
+        public Scan yearBetween(int min, int max) {
+            minYear = Math.max(minYear, min);
+            maxYear = Math.min(maxYear, max);
+            return this;
+        }
+        
+        // Anno strettamente successivo; dopo MAX_VALUE nessun anno (intervallo vuoto, non overflow)
+        public Scan yearAfter(int year) {
+            if (year == Integer.MAX_VALUE) {
+                return yearBetween(Integer.MAX_VALUE, Integer.MIN_VALUE);
+            }
+            return yearBetween(year + 1, Integer.MAX_VALUE);
+        }
+        
+        // Anno strettamente precedente; prima di MIN_VALUE nessun anno
+        public Scan yearBefore(int year) {
+            if (year == Integer.MIN_VALUE) {
+                return yearBetween(Integer.MAX_VALUE, Integer.MIN_VALUE);
+            }
+            return yearBetween(Integer.MIN_VALUE, year - 1);
+        }
+        
+        // Solo riviste
+        public Scan issueBetween(int min, int max) {
+            requiredTypes &= 1 << ItemType.MAGAZINE.ordinal();
+            minIssue = Math.max(minIssue, min);
+            maxIssue = Math.min(maxIssue, max);
+            return this;
+        }
+        
+        // Solo DVD
+        public Scan durationBetween(int min, int max) {
+            requiredTypes &= 1 << ItemType.DVD.ordinal();
+            minDuration = Math.max(minDuration, min);
+            maxDuration = Math.min(maxDuration, max);
+            return this;
+        }
+        
+        // Solo DVD, durata strettamente maggiore
+        public Scan durationAbove(int minutes) {
+            if (minutes == Integer.MAX_VALUE) {
+                return durationBetween(Integer.MAX_VALUE, Integer.MIN_VALUE);
+            }
+            return durationBetween(minutes + 1, Integer.MAX_VALUE);
+        }
+        
+        /**
+          Titolo che contiene il testo, confrontando le chiavi normalizzate (come SearchVisitor)
+         **/
+        public Scan titleContains(String text) {
+            titleText = checkedText(text);
+            return this;
+        }
+        
+        /**
+          Autore, editore o regista che contiene il testo, confrontando le chiavi normalizzate
+         **/
+        public Scan nameContains(String text) {
+            nameText = checkedText(text);
+            return this;
+        }
+        
+        public int count() {
+            return run(null);
+        }
+        
+        /**
+          Righe che soddisfano il filtro, in ordine crescente (vedi ColumnarCatalog.get)
+         **/
+        public int[] rows() {
+            int[][] out = { new int[16] };
+            int found = run(out);
+            return Arrays.copyOf(out[0], found);
+        }
+        
+        /**
+          Viste degli elementi trovati, create solo quando vengono lette
+         **/
+        public List<LibraryItem> items() {
+            return new RowList(ColumnarCatalog.this, rows());
+        }
+        
+        // Ciclo sulle colonne; se "out" non è null vi raccoglie le righe (ingrandendo l'array)
+        private int run(int[][] out) {
+            boolean[] titleHits = titleText == null ? null : matchTitles(titleText);
+            boolean[] nameHits = nameText == null ? null : matchNames(nameText);
+            byte[] types = ColumnarCatalog.this.types;
+            int[] years = ColumnarCatalog.this.years;
+            int[] issues = ColumnarCatalog.this.issues;
+            int[] durations = ColumnarCatalog.this.durations;
+            int[] titles = ColumnarCatalog.this.titles;
+            int[] names = ColumnarCatalog.this.names;
+            int typeMask = (chosenTypes == 0 ? ALL_TYPES : chosenTypes) & requiredTypes;
+            int minYear = this.minYear;
+            int maxYear = this.maxYear;
+            int minIssue = this.minIssue;
+            int maxIssue = this.maxIssue;
+            int minDuration = this.minDuration;
+            int maxDuration = this.maxDuration;
+            
+            int found = 0;
+            if (typeMask == 0 || minYear > maxYear) {
+                return 0;
+            }
+            for (int row = 0; row < rows; row++) {
+                if ((typeMask >>> types[row] & 1) == 0) {
+                    continue;
+                }
+                int year = years[row];
+                if (year < minYear || year > maxYear) {
+                    continue;
+                }
+                int issue = issues[row];
+                int duration = durations[row];
+                if (issue < minIssue || issue > maxIssue || duration < minDuration || duration > maxDuration) {
+                    continue;
+                }
+                if ((titleHits != null && !titleHits[titles[row]]) || (nameHits != null && !nameHits[names[row]])) {
+                    continue;
+                }
+                if (out != null) {
+                    if (found == out[0].length) {
+                        out[0] = Arrays.copyOf(out[0], found + (found >> 1));
+                    }
+                    out[0][found] = row;
+                }
+                found++;
+            }
+            return found;
+        }
+        
+        private String checkedText(String text) {
+            if (text == null) {
+                throw new IllegalArgumentException("Il testo da cercare non può essere nullo");
+            }
+            return TextNormalizer.normalize(text).trim();
+        }
+    }
+    
+    // Riga di una vista di questo catalogo, -1 per gli altri elementi
+    private int rowOf(LibraryItem item) {
+        if (item instanceof BookView && ((BookView) item).catalog == this) {
+            return ((BookView) item).row;
+        }
+        if (item instanceof MagazineView && ((MagazineView) item).catalog == this) {
+            return ((MagazineView) item).row;
+        }
+        if (item instanceof DVDView && ((DVDView) item).catalog == this) {
+            return ((DVDView) item).row;
+        }
+        return -1;
+    }
+    
+    private boolean[] matchTitles(String key) {
+        boolean[] hits = new boolean[titleDictionary.length];
+        for (int id = 0; id < hits.length; id++) {
+            hits[id] = titleKeys[id].contains(key);
+        }
+        return hits;
+    }
+    
+    private boolean[] matchNames(String key) {
+        boolean[] hits = new boolean[nameDictionary.length];
+        for (int id = 0; id < hits.length; id++) {
+            hits[id] = nameDictionary[id].getSearchKey().contains(key);
+        }
+        return hits;
+    }
+    
+    /**
+      Raccoglie le righe durante la costruzione; i dizionari vengono riempiti in ordine di arrivo
+     **/
+    private static final class Builder {
+        private int rows;
+        private byte[] types = new byte[16];
+        private int[] years = new int[16];
+        private int[] issues = new int[16];
+        private int[] durations = new int[16];
+        private int[] titles = new int[16];
+        private int[] names = new int[16];
+        private String[] isbns = new String[16];
+        private final List<String> titleDictionary = new ArrayList<>();
+        private final Map<String, Integer> titleIds = new HashMap<>();
+        private final List<Name> nameDictionary = new ArrayList<>();
+        private final Map<Name, Integer> nameIds = new HashMap<>();
+        private final List<String> collectionNames = new ArrayList<>();
+        private final List<int[]> collectionEntries = new ArrayList<>();
+        private final Deque<Integer> open = new ArrayDeque<>(); // Collezioni aperte
+        private final Deque<int[]> openEntries = new ArrayDeque<>(); // {numero di figli, figli...}
+        
+        void beginCollection(String name) {
+            int index = collectionNames.size();
+            if (!open.isEmpty()) {
+                addEntry(~index);
+            }
+            collectionNames.add(name);
+            collectionEntries.add(null); // Completata da endCollection
+            open.push(index);
+            openEntries.push(new int[9]);
+        }
+        
+        void endCollection() {
+            int index = open.pop();
+            int[] entries = openEntries.pop();
+            collectionEntries.set(index, Arrays.copyOfRange(entries, 1, 1 + entries[0]));
+        }
+        
+        void addItem(LibraryItem item) {
+            if (rows == types.length) {
+                grow();
+            }
+            int row = rows;
+            if (item instanceof Book) {
+                Book book = (Book) item;
+                set(row, ItemType.BOOK, book.getTitle(), book.getAuthorName(), book.getYear());
+                isbns[row] = book.getIsbn();
+            } else if (item instanceof Magazine) {
+                Magazine magazine = (Magazine) item;
+                set(row, ItemType.MAGAZINE, magazine.getTitle(), magazine.getPublisherName(), magazine.getYear());
+                issues[row] = magazine.getIssue();
+            } else if (item instanceof DVD) {
+                DVD dvd = (DVD) item;
+                set(row, ItemType.DVD, dvd.getTitle(), dvd.getDirectorName(), dvd.getYear());
+                durations[row] = dvd.getDuration();
+            } else {
+                throw new IllegalArgumentException("Tipo di elemento non supportato: " + item);
+            }
+            rows++;
+            addEntry(row);
+        }
+        
+        private void set(int row, ItemType type, String title, Name name, int year) {
+            types[row] = (byte) type.ordinal();
+            years[row] = year;
+            Integer titleId = titleIds.get(title);
+            if (titleId == null) {
+                titleId = titleDictionary.size();
+                titleDictionary.add(title);
+                titleIds.put(title, titleId);
+            }
+            titles[row] = titleId;
+            Integer nameId = nameIds.get(name);
+            if (nameId == null) {
+                nameId = nameDictionary.size();
+                nameDictionary.add(name);
+                nameIds.put(name, nameId);
+            }
+            names[row] = nameId;
+        }
+        
+        private void addEntry(int entry) {
+            int[] entries = openEntries.peek();
+            int count = entries[0];
+            if (count + 1 == entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+                openEntries.pop();
+                openEntries.push(entries);
+            }
+            entries[count + 1] = entry;
+            entries[0] = count + 1;
+        }
+        
+        private void grow() {
+            int capacity = rows + (rows >> 1);
+            types = Arrays.copyOf(types, capacity);
+            years = Arrays.copyOf(years, capacity);
+            issues = Arrays.copyOf(issues, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            names = Arrays.copyOf(names, capacity);
+            isbns = Arrays.copyOf(isbns, capacity);
+        }
+    }
+    
+    /**
+      Righe come lista di viste, create ad ogni get()
+     **/
+    private static final class RowList extends AbstractList<LibraryItem> implements RandomAccess {
+        private final ColumnarCatalog catalog;
+        private final int[] rows;
+        
+        RowList(ColumnarCatalog catalog, int[] rows) {
+            this.catalog = catalog;
+            this.rows = rows;
+        }
+        
+        @Override
+        public LibraryItem get(int index) {
+            return catalog.get(rows[index]);
+        }
+        
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+    
+    /**
+      Vista di un Book: i valori sono letti dalle colonne ad ogni chiamata dei getter
+     **/
+    private static final class BookView extends Book {
+        private static final long serialVersionUID = 1L;
+        private final transient ColumnarCatalog catalog;
+        private final int row;
+        
+        BookView(ColumnarCatalog catalog, int row) {
+            this.catalog = catalog;
+            this.row = row;
+        }
+        
+        @Override
+        public String getTitle() { return catalog.titleDictionary[catalog.titles[row]]; }
+        @Override
+        public String getTitleKey() { return catalog.titleKeys[catalog.titles[row]]; }
+        @Override
+        public String getAuthor() { return getAuthorName().getValue(); }
+        @Override
+        public Name getAuthorName() { return catalog.nameDictionary[catalog.names[row]]; }
+        @Override
+        public int getYear() { return catalog.years[row]; }
+        @Override
+        public String getIsbn() { return catalog.isbns[row]; }
+        
+        // Serializzata come Book normale: le colonne non vengono serializzate
+        private Object writeReplace() throws ObjectStreamException {
+            return catalog.copyOf(row);
+        }
+    }
+    
+    /**
+      Vista di un Magazine
+     **/
+    private static final class MagazineView extends Magazine {
+        private static final long serialVersionUID = 1L;
+        private final transient ColumnarCatalog catalog;
+        private final int row;
+        
+        MagazineView(ColumnarCatalog catalog, int row) {
+            this.catalog = catalog;
+            this.row = row;
+        }
+        
+        @Override
+        public String getTitle() { return catalog.titleDictionary[catalog.titles[row]]; }
+        @Override
+        public String getTitleKey() { return catalog.titleKeys[catalog.titles[row]]; }
+        @Override
+        public int getIssue() { return catalog.issues[row]; }
+        @Override
+        public String getPublisher() { return getPublisherName().getValue(); }
+        @Override
+        public Name getPublisherName() { return catalog.nameDictionary[catalog.names[row]]; }
+        @Override
+        public int getYear() { return catalog.years[row]; }
+        
+        private Object writeReplace() throws ObjectStreamException {
+            return catalog.copyOf(row);
+        }
+    }
+    
+    /**
+      Vista di un DVD
+     **/
+    private static final class DVDView extends DVD {
+        private static final long serialVersionUID = 1L;
+        private final transient ColumnarCatalog catalog;
+        private final int row;
+        
+        DVDView(ColumnarCatalog catalog, int row) {
+            this.catalog = catalog;
+            this.row = row;
+        }
+        
+        @Override
+        public String getTitle() { return catalog.titleDictionary[catalog.titles[row]]; }
+        @Override
+        public String getTitleKey() { return catalog.titleKeys[catalog.titles[row]]; }
+        @Override
+        public String getDirector() { return getDirectorName().getValue(); }
+        @Override
+        public Name getDirectorName() { return catalog.nameDictionary[catalog.names[row]]; }
+        @Override
+        public int getDuration() { return catalog.durations[row]; }
+        @Override
+        public int getYear() { return catalog.years[row]; }
+        
+        private Object writeReplace() throws ObjectStreamException {
+            return catalog.copyOf(row);
+        }
+    }
+    
+    /**
+      Collezione del catalogo colonnare: i figli sono letti dalla tabella della collezione,
+      le modifiche non sono ammesse
+     **/
+    private static final class CollectionView extends Collection {
+        private static final long serialVersionUID = 1L;
+        private final transient ColumnarCatalog catalog;
+        private final int index;
+        private final transient Collection parent;
+        
+        CollectionView(ColumnarCatalog catalog, int index, Collection parent) {
+            super(catalog.collectionNames[index]);
+            this.catalog = catalog;
+            this.index = index;
+            this.parent = parent;
+        }
+        
+        @Override
+        public List<LibraryItem> getItems() {
+            return new ChildList(catalog, catalog.collectionEntries[index]);
+        }
+        
+        @Override
+        public List<LibraryItem> getItemsView() {
+            return getItems(); // Il contenuto non cambia mai
+        }
+        
+        @Override
+        public int size() {
+            return catalog.collectionEntries[index].length;
+        }
+        
+        @Override
+        public boolean contains(LibraryItem item) {
+            return item != null && getById(ItemKey.of(item)) != null;
+        }
+        
+        @Override
+        public LibraryItem getById(ItemKey key) {
+            if (key == null) {
+                throw new IllegalArgumentException("La chiave non può essere nulla");
+            }
+            for (LibraryItem item : getItems()) {
+                if (ItemKey.of(item).equals(key)) {
+                    return item;
+                }
+            }
+            return null;
+        }
+        
+        @Override
+        public Collection getParent() {
+            return parent;
+        }
+        
+        @Override
+        public void addItem(LibraryItem item) {
+            throw new UnsupportedOperationException("Il catalogo colonnare è in sola lettura");
+        }
+        
+        @Override
+        public List<LibraryItem> addItems(List<? extends LibraryItem> batch) {
+            throw new UnsupportedOperationException("Il catalogo colonnare è in sola lettura");
+        }
+        
+        @Override
+        public void removeItem(LibraryItem item) {
+            throw new UnsupportedOperationException("Il catalogo colonnare è in sola lettura");
+        }
+        
+        @Override
+        LibraryItem itemAt(int position) {
+            return getItems().get(position);
+        }
+        
+        @Override
+        int indexOf(LibraryItem item) {
+            int[] entries = catalog.collectionEntries[index];
+            // Le viste delle righe sono create ad ogni accesso: si confronta la riga, non l'istanza
+            int row = catalog.rowOf(item);
+            for (int i = 0; i < entries.length; i++) {
+                int entry = entries[i];
+                if (entry < 0 ? catalog.collections[~entry] == item : entry == row) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        @Override
+        void removeAt(int position) {
+            throw new UnsupportedOperationException("Il catalogo colonnare è in sola lettura");
+        }
+        
+        // Serializzata come copia normale del sotto-albero
+        private Object writeReplace() throws ObjectStreamException {
+            return catalog.materialize(index);
+        }
+    }
+    
+    /**
+      Figli di una collezione: righe (viste nuove ad ogni get) e collezioni (viste condivise)
+     **/
+    private static final class ChildList extends AbstractList<LibraryItem> implements RandomAccess {
+        private final ColumnarCatalog catalog;
+        private final int[] entries;
+        
+        ChildList(ColumnarCatalog catalog, int[] entries) {
+            this.catalog = catalog;
+            this.entries = entries;
+        }
+        
+        @Override
+        public LibraryItem get(int index) {
+            int entry = entries[index];
+            return entry < 0 ? catalog.collections[~entry] : catalog.get(entry);
+        }
+        
+        @Override
+        public int size() {
+            return entries.length;
+        }
+    }
+}
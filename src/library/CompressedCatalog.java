@@ -0,0 +1,448 @@
+// ====================
+//  CompressedCatalog.java
+// ====================
+package library;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+  Catalogo a blocchi compressi e verificati (variante a blocchi di CatalogFormat).
+  
+  I record sono quelli del dump in streaming (le collezioni diventano marcatori BEGIN/END),
+  raggruppati in blocchi di circa blockSize byte che vengono compressi con Deflate uno
+  indipendentemente dall'altro, ciascuno con il suo CRC32C; l'indice in fondo al file
+  riporta offset, lunghezze e CRC di tutti i blocchi.
+  
+  In scrittura i blocchi pieni vengono compressi dai thread del pool mentre la visita
+  prosegue, e scritti nell'ordine originale. In lettura ogni blocco viene letto, verificato,
+  decompresso e decodificato da un task separato; resta sequenziale solo l'aggiunta degli
+  elementi alle collezioni. I blocchi corrotti vengono segnalati tutti, con il loro offset.
+ **/
+public class CompressedCatalog {
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+    private static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+    // Un blocco si chiude dopo aver superato blockSize: può contenere un record in più
+    private static final int MAX_RAW_LENGTH = MAX_BLOCK_SIZE + CatalogFormat.MAX_STREAM_RECORD;
+    private static final int HEADER = Integer.BYTES + Short.BYTES;
+    private static final int RECORD_HEADER = 1 + Integer.BYTES;
+    private static final int INDEX_ENTRY = Long.BYTES + 4 * Integer.BYTES;
+    private static final int TRAILER = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    
+    /**
+      Pool che comprime e decomprime i blocchi (predefinito: il common pool)
+     **/
+    public CompressedCatalog pool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Il pool non può essere nullo");
+        }
+        this.pool = pool;
+        return this;
+    }
+    
+    /**
+      Dimensione dei blocchi prima della compressione: blocchi piccoli danno più parallelismo
+      in lettura, blocchi grandi una compressione migliore
+     **/
+    public CompressedCatalog blockSize(int blockSize) {
+        if (blockSize < 1024 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("I blocchi devono essere tra 1 KiB e 16 MiB");
+        }
+        this.blockSize = blockSize;
+        return this;
+    }
+    
+    /**
+      Livello di compressione di Deflate, da 0 (nessuna) a 9 (massima)
+     **/
+    public CompressedCatalog level(int level) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Il livello di compressione deve essere tra 0 e 9");
+        }
+        this.level = level;
+        return this;
+    }
+    
+    /**
+      Scrittore di record sul canale; close() completa i blocchi, scrive l'indice e chiude il canale
+     **/
+    public CatalogRecordWriter openWriter(WritableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Il canale non può essere nullo");
+        }
+        return new Writer(channel);
+    }
+    
+    /**
+      Legge l'intero catalogo; se ci sono blocchi corrotti lancia StreamCorruptedException
+      con l'offset e il motivo di ciascuno
+     **/
+    public Collection read(FileChannel channel) throws IOException {
+        List<Block> blocks = readIndex(channel);
+        List<ForkJoinTask<Block>> tasks = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            tasks.add(pool.submit(() -> decode(channel, block)));
+        }
+        
+        // I blocchi vengono collegati all'albero nell'ordine del file, man mano che sono pronti;
+        // dopo il primo errore si attendono comunque tutti i task per segnalare ogni blocco corrotto
+        Assembler assembler = new Assembler();
+        List<String> corrupted = new ArrayList<>();
+        IOException failure = null;
+        for (ForkJoinTask<Block> task : tasks) {
+            Block block = task.join();
+            if (block.failure instanceof StreamCorruptedException) {
+                corrupted.add(block.failure.getMessage());
+            } else if (block.failure != null) {
+                failure = failure == null ? block.failure : failure;
+            } else if (corrupted.isEmpty() && failure == null) {
+                try {
+                    assembler.add(block);
+                } catch (StreamCorruptedException e) {
+                    corrupted.add(e.getMessage());
+                }
+            }
+            block.records = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (!corrupted.isEmpty()) {
+            throw new StreamCorruptedException("Catalogo compresso danneggiato: " + String.join("; ", corrupted));
+        }
+        return assembler.finish();
+    }
+    
+    private static List<Block> readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER + TRAILER) {
+            throw new StreamCorruptedException("Catalogo compresso troncato");
+        }
+        ByteBuffer header = readFully(channel, 0, HEADER);
+        if (header.getInt() != CatalogFormat.BLOCK_MAGIC) {
+            throw new StreamCorruptedException("Il file non è un catalogo compresso");
+        }
+        short version = header.getShort();
+        if (version != CatalogFormat.BLOCK_VERSION && version != CatalogFormat.VERSION_WITHOUT_FLAGS) {
+            throw new StreamCorruptedException("Versione del catalogo compresso non supportata: " + version);
+        }
+        
+        ByteBuffer trailer = readFully(channel, size - TRAILER, TRAILER);
+        int count = trailer.getInt();
+        long indexOffset = trailer.getLong();
+        int indexCrc = trailer.getInt();
+        if (trailer.getInt() != CatalogFormat.BLOCK_MAGIC) {
+            throw new StreamCorruptedException("Indice dei blocchi mancante: il file è troncato");
+        }
+        if (count < 0 || indexOffset < HEADER || indexOffset + (long) count * INDEX_ENTRY != size - TRAILER) {
+            throw new StreamCorruptedException("Indice dei blocchi non valido all'offset " + (size - TRAILER));
+        }
+        ByteBuffer index = readFully(channel, indexOffset, count * INDEX_ENTRY);
+        if (crc(index.array(), 0, index.limit()) != indexCrc) {
+            throw new StreamCorruptedException("Indice dei blocchi corrotto all'offset " + indexOffset);
+        }
+        
+        // I blocchi sono contigui: ogni voce deve iniziare dove finisce la precedente
+        List<Block> blocks = new ArrayList<>(count);
+        long expected = HEADER;
+        for (int i = 0; i < count; i++) {
+            Block block = new Block(index.getLong(), index.getInt(), index.getInt(), index.getInt(), index.getInt());
+            if (block.offset != expected || block.compressedLength <= 0 || block.rawLength <= 0
+                    || block.rawLength > MAX_RAW_LENGTH || block.recordCount <= 0) {
+                throw new StreamCorruptedException("Voce " + i + " dell'indice non valida (blocco all'offset " + block.offset + ")");
+            }
+            expected += block.compressedLength;
+            blocks.add(block);
+        }
+        if (expected != indexOffset) {
+            throw new StreamCorruptedException("L'indice non copre tutti i blocchi fino all'offset " + indexOffset);
+        }
+        return blocks;
+    }
+    
+    // Eseguito nel pool: le letture posizionali su FileChannel possono procedere in parallelo
+    private static Block decode(FileChannel channel, Block block) {
+        try {
+            byte[] compressed = readFully(channel, block.offset, block.compressedLength).array();
+            if (crc(compressed, 0, compressed.length) != block.crc) {
+                throw block.corrupted("CRC non valido");
+            }
+            ByteBuffer raw = ByteBuffer.wrap(inflate(block, compressed), 0, block.rawLength);
+            List<CatalogRecord> records = new ArrayList<>(block.recordCount);
+            while (raw.hasRemaining()) {
+                byte tag = raw.get();
+                int length = raw.getInt();
+                if (length < 0 || length > raw.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                ByteBuffer body = raw.slice();
+                body.limit(length);
+                raw.position(raw.position() + length);
+                records.add(BinaryRecordReader.decode(tag, body));
+            }
+            if (records.size() != block.recordCount) {
+                throw block.corrupted(records.size() + " record invece dei " + block.recordCount + " dell'indice");
+            }
+            block.records = records;
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            block.failure = block.corrupted("record non valido: " + e.getMessage());
+        } catch (IOException e) {
+            block.failure = e;
+        }
+        return block;
+    }
+    
+    private static byte[] inflate(Block block, byte[] compressed) throws StreamCorruptedException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            // Un byte in più: se i dati decompressi superano la lunghezza dell'indice ce ne accorgiamo
+            byte[] raw = new byte[block.rawLength + 1];
+            int length = 0;
+            while (!inflater.finished() && length < raw.length) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (!inflater.finished() || length != block.rawLength) {
+                throw block.corrupted("lunghezza dei dati decompressi diversa dall'indice");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw block.corrupted("dati compressi non validi (" + e.getMessage() + ")");
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new StreamCorruptedException("Fine inattesa del catalogo compresso all'offset " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+    
+    /**
+      Raccoglie i record in blocchi e li passa al pool per la compressione. Al più
+      due blocchi per thread del pool sono in compressione: oltre, la visita attende
+      che il più vecchio sia scritto, così la memoria resta limitata.
+     **/
+    private final class Writer implements CatalogRecordWriter {
+        private final WritableByteChannel channel;
+        private final int maxPending = 2 * pool.getParallelism();
+        private final Deque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+        private final List<Block> written = new ArrayList<>();
+        private final BinaryRecordWriter.Encoder encoder = new BinaryRecordWriter.Encoder(blockSize + 1024);
+        private int records;
+        private long position;
+        
+        Writer(WritableByteChannel channel) throws IOException {
+            this.channel = channel;
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(CatalogFormat.BLOCK_MAGIC);
+            header.putShort(CatalogFormat.BLOCK_VERSION);
+            header.flip();
+            writeFully(header);
+        }
+        
+        @Override
+        public void write(CatalogRecord record) throws IOException {
+            int start = encoder.buffer().position();
+            encoder.reserve(RECORD_HEADER);
+            encoder.buffer().position(start + RECORD_HEADER); // Tag e lunghezza vengono scritti alla fine
+            byte tag = encoder.encode(record);
+            ByteBuffer raw = encoder.buffer();
+            int length = raw.position() - start - RECORD_HEADER;
+            if (length > CatalogFormat.MAX_STREAM_RECORD) {
+                raw.position(start);
+                throw new IOException("Record troppo grande per il catalogo compresso: " + length + " byte");
+            }
+            raw.put(start, tag);
+            raw.putInt(start + 1, length);
+            records++;
+            if (raw.position() >= blockSize) {
+                submitBlock();
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                if (records > 0) {
+                    submitBlock();
+                }
+                while (!pending.isEmpty()) {
+                    writeBlock(pending.poll().join());
+                }
+                ByteBuffer index = ByteBuffer.allocate(written.size() * INDEX_ENTRY);
+                for (Block block : written) {
+                    index.putLong(block.offset);
+                    index.putInt(block.compressedLength);
+                    index.putInt(block.rawLength);
+                    index.putInt(block.recordCount);
+                    index.putInt(block.crc);
+                }
+                ByteBuffer trailer = ByteBuffer.allocate(TRAILER);
+                trailer.putInt(written.size());
+                trailer.putLong(position);
+                trailer.putInt(crc(index.array(), 0, index.position()));
+                trailer.putInt(CatalogFormat.BLOCK_MAGIC);
+                index.flip();
+                trailer.flip();
+                writeFully(index);
+                writeFully(trailer);
+            } finally {
+                channel.close();
+            }
+        }
+        
+        private void submitBlock() throws IOException {
+            ByteBuffer raw = encoder.buffer();
+            byte[] data = Arrays.copyOf(raw.array(), raw.position());
+            int count = records;
+            int compression = level;
+            raw.clear();
+            records = 0;
+            pending.add(pool.submit(() -> compress(data, count, compression)));
+            while (pending.size() > maxPending) {
+                writeBlock(pending.poll().join());
+            }
+        }
+        
+        private void writeBlock(Block block) throws IOException {
+            block.offset = position;
+            writeFully(ByteBuffer.wrap(block.compressed, 0, block.compressedLength));
+            block.compressed = null;
+            written.add(block);
+        }
+        
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+    }
+    
+    private static Block compress(byte[] data, int records, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] compressed = new byte[data.length / 2 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            Block block = new Block(0, length, data.length, records, crc(compressed, 0, length));
+            block.compressed = compressed;
+            return block;
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    /**
+      Ricostruisce l'albero dai marcatori BEGIN/END: il primo record è la radice.
+      Il rifiuto dei duplicati viene attivato alla fine di ogni collezione, dopo i suoi elementi.
+     **/
+    private static final class Assembler {
+        private final Deque<Collection> stack = new ArrayDeque<>();
+        private final Deque<Boolean> rejectDuplicates = new ArrayDeque<>();
+        private Collection root;
+        
+        void add(Block block) throws StreamCorruptedException {
+            for (CatalogRecord record : block.records) {
+                switch (record.getKind()) {
+                    case BEGIN_COLLECTION:
+                        Collection collection = new Collection(record.getName());
+                        if (stack.isEmpty()) {
+                            if (root != null) {
+                                throw block.corrupted("record dopo la fine della collezione radice");
+                            }
+                            root = collection;
+                        } else {
+                            stack.peek().addItem(collection);
+                        }
+                        stack.push(collection);
+                        rejectDuplicates.push(record.isRejectDuplicates());
+                        break;
+                    case END_COLLECTION:
+                        if (stack.isEmpty()) {
+                            throw block.corrupted("fine collezione senza inizio");
+                        }
+                        stack.pop().setRejectDuplicates(rejectDuplicates.pop());
+                        break;
+                    default:
+                        if (stack.isEmpty()) {
+                            throw block.corrupted("elemento fuori dalla collezione radice");
+                        }
+                        stack.peek().addItem(record.getItem());
+                }
+            }
+        }
+        
+        Collection finish() throws StreamCorruptedException {
+            if (root == null || !stack.isEmpty()) {
+                throw new StreamCorruptedException("Catalogo compresso incompleto: la collezione radice non è chiusa");
+            }
+            return root;
+        }
+    }
+    
+    private static final class Block {
+        long offset;
+        final int compressedLength;
+        final int rawLength;
+        final int recordCount;
+        final int crc;
+        byte[] compressed; // In scrittura, finché il blocco non è sul canale
+        List<CatalogRecord> records; // In lettura, finché il blocco non è nell'albero
+        IOException failure;
+        
+        Block(long offset, int compressedLength, int rawLength, int recordCount, int crc) {
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.rawLength = rawLength;
+            this.recordCount = recordCount;
+            this.crc = crc;
+        }
+        
+        StreamCorruptedException corrupted(String reason) {
+            return new StreamCorruptedException("blocco all'offset " + offset + ": " + reason);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+// ====================
+//  ConcurrentCollection.java
+// ====================
+package library;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+  Collection thread-safe per servire letture concorrenti mentre il catalogo viene modificato.
+  
+  - Letture senza lock: getItems(), size(), getDescription(), display(), accept() e gli
+    iteratori lavorano sull'istantanea immutabile pubblicata dopo l'ultima modifica
+    (campo volatile), quindi vedono sempre uno stato completo della collezione.
+  - Scritture serializzate: addItem/removeItem prendono il lock dell'albero, cioè quello
+    della ConcurrentCollection più in alto tra gli antenati. Ogni modifica è atomica
+    (linearizzabile) e i listener vengono notificati da un solo thread alla volta.
+  
+  Le sotto-collezioni devono essere a loro volta concorrenti: copyOf() converte un
+  catalogo esistente (ad esempio appena caricato da file).
+ **/
+public class ConcurrentCollection extends Collection {
+    private static final long serialVersionUID = 1L;
+    
+    private transient Object lock;
+    private transient volatile List<LibraryItem> published;
+    
+    public ConcurrentCollection(String name) {
+        super(name);
+        lock = new Object();
+        published = super.getItems();
+    }
+    
+    /**
+      Copia profonda di un catalogo in collezioni concorrenti (gli elementi foglia sono condivisi)
+     **/
+    public static ConcurrentCollection copyOf(Collection source) {
+        if (source == null) {
+            throw new IllegalArgumentException("La collezione da copiare non può essere nulla");
+        }
+        ConcurrentCollection root = new ConcurrentCollection(source.getTitle());
+        Deque<Collection[]> stack = new ArrayDeque<>(); // Coppie {originale, copia}
+        stack.push(new Collection[] { source, root });
+        while (!stack.isEmpty()) {
+            Collection[] pair = stack.pop();
+            pair[1].setRejectDuplicates(pair[0].isRejectDuplicates());
+            for (LibraryItem item : pair[0].getItems()) {
+                if (item instanceof Collection) {
+                    ConcurrentCollection copy = new ConcurrentCollection(item.getTitle());
+                    pair[1].addItem(copy);
+                    stack.push(new Collection[] { (Collection) item, copy });
+                } else {
+                    pair[1].addItem(item);
+                }
+            }
+        }
+        return root;
+    }
+    
+    @Override
+    public void addItem(LibraryItem item) {
+        if (item == null) {
+            return;
+        }
+        ConcurrentCollection child = null;
+        if (item instanceof Collection) {
+            if (!(item instanceof ConcurrentCollection)) {
+                throw new IllegalArgumentException("Una collezione concorrente può contenere solo collezioni concorrenti (vedi copyOf)");
+            }
+            child = (ConcurrentCollection) item;
+        }
+        while (true) {
+            Object treeLock = treeLock();
+            synchronized (treeLock) {
+                if (treeLock() != treeLock) {
+                    continue; // Nel frattempo l'albero è stato agganciato a un altro: si riprova
+                }
+                if (child == null) {
+                    super.addItem(item);
+                    return;
+                }
+                if (child.getParent() != null) {
+                    throw new IllegalArgumentException("La collezione appartiene già a un'altra collezione");
+                }
+                // Nessuna scrittura nel sotto-albero mentre viene agganciato (il suo lock smette di valere)
+                synchronized (child.lock) {
+                    super.addItem(child);
+                }
+                return;
+            }
+        }
+    }
+    
+    /**
+      Un solo lock per tutto il blocco; se il blocco contiene collezioni gli elementi vengono
+      aggiunti uno alla volta con addItem, e quelli che addItem rifiuta vengono restituiti
+     **/
+    @Override
+    public List<LibraryItem> addItems(List<? extends LibraryItem> batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Il blocco di elementi non può essere nullo");
+        }
+        for (LibraryItem item : batch) {
+            if (item instanceof Collection) {
+                List<LibraryItem> rejected = new ArrayList<>();
+                for (LibraryItem element : batch) {
+                    try {
+                        addItem(element);
+                    } catch (IllegalArgumentException e) {
+                        rejected.add(element);
+                    }
+                }
+                return rejected;
+            }
+        }
+        while (true) {
+            Object treeLock = treeLock();
+            synchronized (treeLock) {
+                if (treeLock() == treeLock) {
+                    return super.addItems(batch);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void removeItem(LibraryItem item) {
+        while (true) {
+            Object treeLock = treeLock();
+            synchronized (treeLock) {
+                if (treeLock() == treeLock) {
+                    super.removeItem(item);
+                    return;
+                }
+            }
+        }
+    }
+    
+    @Override
+    void removeAt(int index) {
+        while (true) {
+            Object treeLock = treeLock();
+            synchronized (treeLock) {
+                if (treeLock() != treeLock) {
+                    continue;
+                }
+                LibraryItem item = itemAt(index);
+                if (!(item instanceof ConcurrentCollection)) {
+                    super.removeAt(index);
+                    return;
+                }
+                // Come in addItem: una volta sganciato il sotto-albero torna al suo lock, e nessuno
+                // deve modificarlo prima che le sue statistiche siano tolte da quelle degli antenati
+                synchronized (((ConcurrentCollection) item).lock) {
+                    super.removeAt(index);
+                }
+                return;
+            }
+        }
+    }
+    
+    @Override
+    public List<LibraryItem> getItems() {
+        return published;
+    }
+    
+    /**
+      Per le collezioni concorrenti la vista coincide con l'ultima istantanea pubblicata
+     **/
+    @Override
+    public List<LibraryItem> getItemsView() {
+        return published;
+    }
+    
+    @Override
+    public int size() {
+        return published.size();
+    }
+    
+    // Le statistiche vengono aggiornate dagli scrittori: lettura (ed eventuale calcolo) sotto lock
+    @Override
+    public CatalogStats getStats() {
+        while (true) {
+            Object treeLock = treeLock();
+            synchronized (treeLock) {
+                if (treeLock() == treeLock) {
+                    return super.getStats();
+                }
+            }
+        }
+    }
+    
+    // contains e getById usano l'indice per chiave, che non è thread-safe: lettura sotto lock
+    @Override
+    public boolean contains(LibraryItem item) {
+        while (true) {
+            Object treeLock = treeLock();
+            synchronized (treeLock) {
+                if (treeLock() == treeLock) {
+                    return super.contains(item);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public LibraryItem getById(ItemKey key) {
+        while (true) {
+            Object treeLock = treeLock();
+            synchronized (treeLock) {
+                if (treeLock() == treeLock) {
+                    return super.getById(key);
+                }
+            }
+        }
+    }
+    
+    // Chiamato con il lock dell'albero: pubblica la nuova istantanea prima di notificare i listener
+    @Override
+    void itemsChanged() {
+        published = super.getItems();
+    }
+    
+    // Lock della ConcurrentCollection più in alto: cambia solo mentre è tenuto da chi aggancia o sgancia
+    private Object treeLock() {
+        ConcurrentCollection top = this;
+        for (Collection c = getParent(); c instanceof ConcurrentCollection; c = c.getParent()) {
+            top = (ConcurrentCollection) c;
+        }
+        return top.lock;
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new Object();
+        published = super.getItems();
+    }
+}
@@ -0,0 +1,317 @@
+// ====================
+//  Condition.java
+// ====================
+package library;
+
+import java.util.BitSet;
+
+/**
+  Condizione di una Query sui campi degli elementi (vedi ItemField).
+  I confronti tra stringhe usano le chiavi normalizzate, come SearchVisitor (vedi TextNormalizer).
+  
+  Oltre a test(), ogni condizione sa dire quali elementi di un CatalogIndex possono
+  soddisfarla usando gli indici secondari (tipo e anno): il planner di Query parte
+  da quei candidati invece di scorrere tutto il catalogo.
+ **/
+public abstract class Condition {
+    
+    Condition() {
+    }
+    
+    public abstract boolean test(LibraryItem item);
+    
+    /**
+      Sovrainsieme degli id che soddisfano la condizione, ricavato dagli indici;
+      null se la condizione non è indicizzata (servono tutti gli elementi)
+     **/
+    abstract BitSet candidates(CatalogIndex index);
+    
+    // --- Costruttori ---
+    
+    /**
+      Elementi del tipo indicato (Book.class, Magazine.class, DVD.class, Collection.class...)
+     **/
+    public static Condition type(Class<? extends LibraryItem> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Il tipo non può essere nullo");
+        }
+        return new TypeCondition(type);
+    }
+    
+    public static Condition equalTo(ItemField field, Object value) {
+        checkField(field);
+        if (value == null) {
+            throw new IllegalArgumentException("Il valore non può essere nullo");
+        }
+        if (field.isNumeric() != (value instanceof Integer)) {
+            throw new IllegalArgumentException("Valore non compatibile con il campo " + field + ": " + value);
+        }
+        if (field.isNumeric()) {
+            int number = (Integer) value;
+            return new RangeCondition(field, number, number);
+        }
+        return new TextCondition(field, value.toString(), false);
+    }
+    
+    /**
+      Campo numerico compreso tra min e max (estremi inclusi)
+     **/
+    public static Condition between(ItemField field, int min, int max) {
+        checkField(field);
+        if (!field.isNumeric()) {
+            throw new IllegalArgumentException("Il campo " + field + " non è numerico");
+        }
+        return new RangeCondition(field, min, max);
+    }
+    
+    public static Condition atLeast(ItemField field, int min) {
+        return between(field, min, Integer.MAX_VALUE);
+    }
+    
+    public static Condition atMost(ItemField field, int max) {
+        return between(field, Integer.MIN_VALUE, max);
+    }
+    
+    /**
+      Campo di testo che contiene "text"
+     **/
+    public static Condition contains(ItemField field, String text) {
+        checkField(field);
+        if (field.isNumeric()) {
+            throw new IllegalArgumentException("Il campo " + field + " non è di testo");
+        }
+        if (text == null) {
+            throw new IllegalArgumentException("Il testo da cercare non può essere nullo");
+        }
+        return new TextCondition(field, text, true);
+    }
+    
+    public static Condition and(Condition... conditions) {
+        return new AndCondition(checkAll(conditions));
+    }
+    
+    public static Condition or(Condition... conditions) {
+        return new OrCondition(checkAll(conditions));
+    }
+    
+    public static Condition not(Condition condition) {
+        if (condition == null) {
+            throw new IllegalArgumentException("La condizione non può essere nulla");
+        }
+        return new NotCondition(condition);
+    }
+    
+    private static void checkField(ItemField field) {
+        if (field == null) {
+            throw new IllegalArgumentException("Il campo non può essere nullo");
+        }
+    }
+    
+    private static Condition[] checkAll(Condition[] conditions) {
+        if (conditions == null || conditions.length == 0) {
+            throw new IllegalArgumentException("Serve almeno una condizione");
+        }
+        for (Condition condition : conditions) {
+            if (condition == null) {
+                throw new IllegalArgumentException("La condizione non può essere nulla");
+            }
+        }
+        return conditions.clone();
+    }
+    
+    // --- Implementazioni ---
+    
+    private static final class TypeCondition extends Condition {
+        private final Class<? extends LibraryItem> type;
+        
+        TypeCondition(Class<? extends LibraryItem> type) {
+            this.type = type;
+        }
+        
+        @Override
+        public boolean test(LibraryItem item) {
+            return type.isInstance(item);
+        }
+        
+        @Override
+        BitSet candidates(CatalogIndex index) {
+            return index.ofType(type);
+        }
+        
+        @Override
+        public String toString() {
+            return "type = " + type.getSimpleName();
+        }
+    }
+    
+    private static final class RangeCondition extends Condition {
+        private final ItemField field;
+        private final int min;
+        private final int max;
+        
+        RangeCondition(ItemField field, int min, int max) {
+            this.field = field;
+            this.min = min;
+            this.max = max;
+        }
+        
+        @Override
+        public boolean test(LibraryItem item) {
+            Integer value = (Integer) field.valueOf(item);
+            return value != null && value >= min && value <= max;
+        }
+        
+        @Override
+        BitSet candidates(CatalogIndex index) {
+            return field == ItemField.YEAR ? index.yearBetween(min, max) : null;
+        }
+        
+        @Override
+        public String toString() {
+            return field + " in [" + min + ", " + max + "]";
+        }
+    }
+    
+    private static final class TextCondition extends Condition {
+        private final ItemField field;
+        private final String text;
+        private final boolean substring;
+        
+        TextCondition(ItemField field, String text, boolean substring) {
+            this.field = field;
+            this.text = TextNormalizer.normalize(text).trim();
+            this.substring = substring;
+        }
+        
+        @Override
+        public boolean test(LibraryItem item) {
+            String key = field.keyOf(item);
+            if (key == null) {
+                return false;
+            }
+            return substring ? key.contains(text) : key.equals(text);
+        }
+        
+        @Override
+        BitSet candidates(CatalogIndex index) {
+            return null;
+        }
+        
+        @Override
+        public String toString() {
+            return field + (substring ? " contains \"" : " = \"") + text + "\"";
+        }
+    }
+    
+    private static final class AndCondition extends Condition {
+        private final Condition[] conditions;
+        
+        AndCondition(Condition[] conditions) {
+            this.conditions = conditions;
+        }
+        
+        @Override
+        public boolean test(LibraryItem item) {
+            for (Condition condition : conditions) {
+                if (!condition.test(item)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        // Intersezione dei candidati delle condizioni indicizzate
+        @Override
+        BitSet candidates(CatalogIndex index) {
+            BitSet result = null;
+            for (Condition condition : conditions) {
+                BitSet candidates = condition.candidates(index);
+                if (candidates == null) {
+                    continue;
+                }
+                if (result == null) {
+                    result = candidates;
+                } else {
+                    result.and(candidates);
+                }
+            }
+            return result;
+        }
+        
+        @Override
+        public String toString() {
+            return join(conditions, " and ");
+        }
+    }
+    
+    private static final class OrCondition extends Condition {
+        private final Condition[] conditions;
+        
+        OrCondition(Condition[] conditions) {
+            this.conditions = conditions;
+        }
+        
+        @Override
+        public boolean test(LibraryItem item) {
+            for (Condition condition : conditions) {
+                if (condition.test(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        // Unione, possibile solo se tutte le alternative sono indicizzate
+        @Override
+        BitSet candidates(CatalogIndex index) {
+            BitSet result = new BitSet();
+            for (Condition condition : conditions) {
+                BitSet candidates = condition.candidates(index);
+                if (candidates == null) {
+                    return null;
+                }
+                result.or(candidates);
+            }
+            return result;
+        }
+        
+        @Override
+        public String toString() {
+            return join(conditions, " or ");
+        }
+    }
+    
+    private static final class NotCondition extends Condition {
+        private final Condition condition;
+        
+        NotCondition(Condition condition) {
+            this.condition = condition;
+        }
+        
+        @Override
+        public boolean test(LibraryItem item) {
+            return !condition.test(item);
+        }
+        
+        @Override
+        BitSet candidates(CatalogIndex index) {
+            return null; // I candidati sono un sovrainsieme: il complemento non lo è
+        }
+        
+        @Override
+        public String toString() {
+            return "not (" + condition + ")";
+        }
+    }
+    
+    private static String join(Condition[] conditions, String separator) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < conditions.length; i++) {
+            if (i > 0) {
+                sb.append(separator);
+            }
+            sb.append(conditions[i]);
+        }
+        return sb.append(')').toString();
+    }
+}
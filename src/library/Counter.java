@@ -0,0 +1,68 @@
+// ====================
+//  Counter.java
+// ====================
+package library;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+  Contatore di Metrics: un LongAdder, quindi i thread che lo incrementano insieme
+  non si contendono la stessa variabile. Se è legato a un LatencyHistogram
+  (per esempio i byte scritti e la durata dei salvataggi) fornisce anche la velocità.
+ **/
+public final class Counter implements CounterMBean {
+    private final String name;
+    private final LongAdder value = new LongAdder();
+    private final LatencyHistogram timing; // Può essere null
+    
+    Counter(String name, LatencyHistogram timing) {
+        this.name = name;
+        this.timing = timing;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+      Incrementa di uno (ignorato se le metriche sono disattivate)
+     **/
+    public void increment() {
+        if (Metrics.isEnabled()) {
+            value.increment();
+        }
+    }
+    
+    public void add(long amount) {
+        if (Metrics.isEnabled()) {
+            value.add(amount);
+        }
+    }
+    
+    @Override
+    public long getCount() {
+        return value.sum();
+    }
+    
+    /**
+      Unità al secondo sul tempo totale dell'istogramma associato (0 se non c'è)
+     **/
+    @Override
+    public double getRatePerSecond() {
+        long nanos = timing == null ? 0 : timing.getTotalNanos();
+        return nanos == 0 ? 0 : value.sum() * 1e9 / nanos;
+    }
+    
+    @Override
+    public void reset() {
+        value.reset();
+    }
+    
+    @Override
+    public String toString() {
+        if (timing == null) {
+            return name + ": " + getCount();
+        }
+        return String.format("%s: %d (%.1f/s)", name, getCount(), getRatePerSecond());
+    }
+}
@@ -0,0 +1,15 @@
+// ====================
+//  CounterMBean.java
+// ====================
+package library;
+
+/**
+  Vista JMX di un Counter
+ **/
+public interface CounterMBean {
+    long getCount();
+    
+    double getRatePerSecond();
+    
+    void reset();
+}
@@ -4,14 +4,27 @@
 // ====================
 package library;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+
 /**
  * Rappresenta un DVD nella biblioteca
  */
 public class DVD implements LibraryItem {
     private static final long serialVersionUID = 1L;
+    // Campi del flusso serializzato: il regista resta una stringa, come nei file già salvati
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("title", String.class),
+        new ObjectStreamField("director", String.class),
+        new ObjectStreamField("duration", int.class),
+        new ObjectStreamField("year", int.class)
+    };
     
     private String title;
-    private String director;
+    private transient String titleKey; // Titolo normalizzato per la ricerca (TextNormalizer)
+    private transient Name directorName; // Dal NamePool condiviso, con la forma in minuscolo; serializzato come stringa
     private int duration;
     private int year;
     
@@ -31,19 +44,36 @@ public class DVD implements LibraryItem {
         }
         
         this.title = title.trim();
-        this.director = director.trim();
+        this.titleKey = TextNormalizer.normalize(this.title);
+        this.directorName = NamePool.shared().intern(director.trim());
         this.duration = duration;
         this.year = year;
     }
     
+    /**
+     * Costruttore per le viste lazy (vedi MappedCatalog)
+     */
+    protected DVD() {
+    }
+    
     public String getTitle() { return title; }
-    public String getDirector() { return director; }
+    public String getDirector() { return directorName.getValue(); }
     public int getDuration() { return duration; }
     public int getYear() { return year; }
+    public Name getDirectorName() { return directorName; }
+    
+    /**
+      Titolo normalizzato, calcolato una volta alla creazione o al caricamento
+      (per le viste lazy ad ogni chiamata)
+     **/
+    @Override
+    public String getTitleKey() {
+        return titleKey != null ? titleKey : TextNormalizer.normalize(getTitle());
+    }
     
     @Override
     public String getDescription() {
-        return "DVD: " + title + " diretto da " + director + " (" + year + ")";
+        return "DVD: " + getTitle() + " diretto da " + getDirector() + " (" + getYear() + ")";
     }
     
     @Override
@@ -55,4 +85,45 @@ public class DVD implements LibraryItem {
     public void accept(LibraryVisitor visitor) {
         visitor.visit(this);
     }
+    
+    /**
+     * Chiave naturale: stesso titolo e stesso anno (anche per le viste lazy)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof DVD)) return false;
+        DVD dvd = (DVD) obj;
+        return getYear() == dvd.getYear() && getTitle().equals(dvd.getTitle());
+    }
+    
+    @Override
+    public int hashCode() {
+        return getTitle().hashCode() * 31 + getYear();
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("title", title);
+        fields.put("director", directorName != null ? directorName.getValue() : null);
+        fields.put("duration", duration);
+        fields.put("year", year);
+        out.writeFields();
+    }
+    
+    // Il regista torna nel pool condiviso anche per i DVD caricati da file serializzati;
+    // la chiave del titolo viene ricalcolata
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        title = (String) fields.get("title", null);
+        String director = (String) fields.get("director", null);
+        duration = fields.get("duration", 0);
+        year = fields.get("year", 0);
+        if (title != null) {
+            titleKey = TextNormalizer.normalize(title);
+        }
+        if (director != null) {
+            directorName = NamePool.shared().intern(director);
+        }
+    }
 }
@@ -0,0 +1,70 @@
+// ====================
+//  EditDistance.java
+// ====================
+package library;
+
+/**
+  Distanze di modifica tra parole per la ricerca tollerante agli errori di battitura.
+  Le versioni con "max" si fermano appena la distanza supera il limite e restituiscono max + 1.
+ **/
+final class EditDistance {
+    
+    private EditDistance() {
+    }
+    
+    /**
+      Distanza di Levenshtein (inserimento, cancellazione, sostituzione): è una metrica,
+      quindi può essere usata da BKTree
+     **/
+    static int levenshtein(String a, String b) {
+        return levenshtein(a, b, Integer.MAX_VALUE - 1);
+    }
+    
+    static int levenshtein(String a, String b, int max) {
+        return distance(a, b, max, false);
+    }
+    
+    /**
+      Come Levenshtein, ma lo scambio di due lettere adiacenti ("Tolkein" / "Tolkien") costa 1
+      (optimal string alignment). Non è una metrica: non va usata per costruire un BKTree.
+     **/
+    static int withTranspositions(String a, String b, int max) {
+        return distance(a, b, max, true);
+    }
+    
+    private static int distance(String a, String b, int max, boolean transpositions) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        // Tre righe della matrice: precedente alla precedente (per gli scambi), precedente, corrente
+        int[] before = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                char cb = b.charAt(j - 1);
+                int cost = ca == cb ? 0 : 1;
+                int value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (transpositions && i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    value = Math.min(value, before[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1; // Nessun allineamento può rientrare nel limite
+            }
+            int[] recycled = before;
+            before = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+}
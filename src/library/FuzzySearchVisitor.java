@@ -0,0 +1,103 @@
+// ====================
+//  FuzzySearchVisitor.java
+// ====================
+package library;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+  Ricerca tollerante agli errori di battitura con il Visitor pattern: un elemento corrisponde
+  se ogni parola cercata dista al più maxDistance modifiche (inserimenti, cancellazioni,
+  sostituzioni, scambi di lettere adiacenti) da una parola del titolo o di autore/editore/regista.
+  Così "Tolkein" trova "J.R.R. Tolkien" con maxDistance = 1.
+  
+  Confronta le parole di ogni elemento visitato; sui cataloghi grandi CatalogIndex.searchFuzzy
+  dà gli stessi risultati cercando le parole vicine nel vocabolario indicizzato.
+ **/
+public class FuzzySearchVisitor implements MergeableVisitor<FuzzySearchVisitor> {
+    private final String searchTerm;
+    private final List<String> words;
+    private final int maxDistance;
+    private final List<LibraryItem> results = new ArrayList<>();
+    private final List<LibraryItem> resultsView = Collections.unmodifiableList(results);
+    
+    public FuzzySearchVisitor(String searchTerm, int maxDistance) {
+        if (searchTerm == null) {
+            throw new IllegalArgumentException("Il termine di ricerca non può essere nulla");
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("La distanza massima non può essere negativa");
+        }
+        this.searchTerm = TextNormalizer.normalize(searchTerm).trim();
+        this.words = CatalogIndex.words(this.searchTerm);
+        this.maxDistance = maxDistance;
+    }
+    
+    @Override
+    public void visit(Book book) {
+        if (matches(book.getTitleKey(), book.getAuthorName().getSearchKey())) {
+            results.add(book);
+        }
+    }
+    
+    @Override
+    public void visit(Magazine magazine) {
+        if (matches(magazine.getTitleKey(), magazine.getPublisherName().getSearchKey())) {
+            results.add(magazine);
+        }
+    }
+    
+    @Override
+    public void visit(DVD dvd) {
+        if (matches(dvd.getTitleKey(), dvd.getDirectorName().getSearchKey())) {
+            results.add(dvd);
+        }
+    }
+    
+    @Override
+    public void visit(Collection collection) {
+        if (matches(collection.getTitleKey(), "")) {
+            results.add(collection);
+        }
+    }
+    
+    @Override
+    public FuzzySearchVisitor createPartial() {
+        return new FuzzySearchVisitor(searchTerm, maxDistance);
+    }
+    
+    @Override
+    public void merge(FuzzySearchVisitor partial) {
+        results.addAll(partial.results);
+    }
+    
+    // Vista non modificabile dei risultati, senza copia
+    public List<LibraryItem> getResults() {
+        return resultsView;
+    }
+    
+    private boolean matches(String title, String name) {
+        if (words.isEmpty()) {
+            return false;
+        }
+        List<String> candidates = CatalogIndex.words(title);
+        candidates.addAll(CatalogIndex.words(name));
+        for (String word : words) {
+            if (!matchesAny(word, candidates)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean matchesAny(String word, List<String> candidates) {
+        for (String candidate : candidates) {
+            if (EditDistance.withTranspositions(word, candidate, maxDistance) <= maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
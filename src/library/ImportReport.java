@@ -0,0 +1,67 @@
+// ====================
+//  ImportReport.java
+// ====================
+package library;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+  Esito di una importazione in streaming: record letti, record scartati e i primi
+  messaggi di errore (limitati, così la memoria resta costante anche su dump enormi)
+ **/
+public class ImportReport {
+    private static final int MAX_MESSAGES = 100;
+    
+    private long records;
+    private long skipped;
+    private final List<String> errors = new ArrayList<>();
+    private Path errorFile;
+    
+    public void recordRead() {
+        records++;
+    }
+    
+    public void recordRead(long count) {
+        records += count;
+    }
+    
+    /**
+      Record letto ma poi scartato da chi lo importa (per esempio un duplicato rifiutato dalla collezione)
+     **/
+    public void recordRejected(String position, String reason) {
+        records--;
+        recordSkipped(position, reason);
+    }
+    
+    public void recordSkipped(String position, String reason) {
+        skipped++;
+        if (errors.size() < MAX_MESSAGES) {
+            errors.add(position + ": " + reason);
+        }
+    }
+    
+    public long getRecords() { return records; }
+    public long getSkipped() { return skipped; }
+    
+    public List<String> getErrors() {
+        return new ArrayList<>(errors); // Copia difensiva
+    }
+    
+    /**
+      File in cui sono state scritte le righe scartate (vedi BulkImporter.errorFile), null se nessuno
+     **/
+    public Path getErrorFile() {
+        return errorFile;
+    }
+    
+    void setErrorFile(Path errorFile) {
+        this.errorFile = errorFile;
+    }
+    
+    @Override
+    public String toString() {
+        return "Importati " + records + " record, scartati " + skipped;
+    }
+}
@@ -0,0 +1,91 @@
+// ====================
+//  ItemField.java
+// ====================
+package library;
+
+/**
+  Campi degli elementi interrogabili con Query. Un campo che non esiste per un tipo
+  (ad esempio DURATION per un Book) vale null: le condizioni su di esso sono false
+  e nell'ordinamento l'elemento va in fondo.
+ **/
+public enum ItemField {
+    TITLE(false),
+    AUTHOR(false),    // Book
+    PUBLISHER(false), // Magazine
+    DIRECTOR(false),  // DVD
+    ISBN(false),      // Book
+    YEAR(true),       // Book, Magazine, DVD
+    ISSUE(true),      // Magazine
+    DURATION(true),   // DVD
+    SIZE(true);       // Collection: numero di elementi diretti
+    
+    private final boolean numeric;
+    
+    ItemField(boolean numeric) {
+        this.numeric = numeric;
+    }
+    
+    public boolean isNumeric() {
+        return numeric;
+    }
+    
+    /**
+      Valore del campo per l'elemento: String, Integer oppure null se il campo non esiste
+     **/
+    public Object valueOf(LibraryItem item) {
+        switch (this) {
+            case TITLE:
+                return item.getTitle();
+            case AUTHOR:
+                return item instanceof Book ? ((Book) item).getAuthor() : null;
+            case PUBLISHER:
+                return item instanceof Magazine ? ((Magazine) item).getPublisher() : null;
+            case DIRECTOR:
+                return item instanceof DVD ? ((DVD) item).getDirector() : null;
+            case ISBN:
+                return item instanceof Book ? ((Book) item).getIsbn() : null;
+            case YEAR:
+                return yearOf(item);
+            case ISSUE:
+                return item instanceof Magazine ? (Integer) ((Magazine) item).getIssue() : null;
+            case DURATION:
+                return item instanceof DVD ? (Integer) ((DVD) item).getDuration() : null;
+            default:
+                return item instanceof Collection ? (Integer) ((Collection) item).size() : null;
+        }
+    }
+    
+    /**
+      Chiave di ricerca di un campo di testo (vedi TextNormalizer), null se il campo non esiste.
+      Titoli e nomi usano le chiavi già calcolate.
+     **/
+    public String keyOf(LibraryItem item) {
+        switch (this) {
+            case TITLE:
+                return item.getTitleKey();
+            case AUTHOR:
+                return item instanceof Book ? ((Book) item).getAuthorName().getSearchKey() : null;
+            case PUBLISHER:
+                return item instanceof Magazine ? ((Magazine) item).getPublisherName().getSearchKey() : null;
+            case DIRECTOR:
+                return item instanceof DVD ? ((DVD) item).getDirectorName().getSearchKey() : null;
+            case ISBN:
+                return item instanceof Book ? TextNormalizer.normalize(((Book) item).getIsbn()) : null;
+            default:
+                throw new IllegalStateException("Il campo " + this + " non è di testo");
+        }
+    }
+    
+    static Integer yearOf(LibraryItem item) {
+        if (item instanceof Book) {
+            return ((Book) item).getYear();
+        }
+        if (item instanceof Magazine) {
+            return ((Magazine) item).getYear();
+        }
+        if (item instanceof DVD) {
+            return ((DVD) item).getYear();
+        }
+        return null;
+    }
+}
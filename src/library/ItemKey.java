@@ -0,0 +1,83 @@
+// ====================
+//  ItemKey.java
+// ====================
+package library;
+
+/**
+  Chiave naturale di un elemento, usata da Collection per l'indice hash:
+  ISBN per i libri, titolo + numero per le riviste, titolo + anno per i DVD.
+  Le collezioni non hanno una chiave naturale e vengono identificate per istanza.
+ **/
+public final class ItemKey {
+    private final char type;
+    private final String text;
+    private final int number;
+    private final Object identity;
+    
+    private ItemKey(char type, String text, int number, Object identity) {
+        this.type = type;
+        this.text = text;
+        this.number = number;
+        this.identity = identity;
+    }
+    
+    public static ItemKey book(String isbn) {
+        if (isbn == null) {
+            throw new IllegalArgumentException("ISBN non può essere nullo");
+        }
+        return new ItemKey('B', isbn.trim(), 0, null);
+    }
+    
+    public static ItemKey magazine(String title, int issue) {
+        if (title == null) {
+            throw new IllegalArgumentException("Il titolo non può essere nullo");
+        }
+        return new ItemKey('M', title.trim(), issue, null);
+    }
+    
+    public static ItemKey dvd(String title, int year) {
+        if (title == null) {
+            throw new IllegalArgumentException("Il titolo non può essere nullo");
+        }
+        return new ItemKey('D', title.trim(), year, null);
+    }
+    
+    public static ItemKey of(LibraryItem item) {
+        if (item instanceof Book) {
+            return book(((Book) item).getIsbn());
+        }
+        if (item instanceof Magazine) {
+            Magazine magazine = (Magazine) item;
+            return magazine(magazine.getTitle(), magazine.getIssue());
+        }
+        if (item instanceof DVD) {
+            DVD dvd = (DVD) item;
+            return dvd(dvd.getTitle(), dvd.getYear());
+        }
+        return new ItemKey('C', null, 0, item);
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof ItemKey)) return false;
+        ItemKey other = (ItemKey) obj;
+        if (identity != null || other.identity != null) {
+            return identity == other.identity;
+        }
+        return type == other.type && number == other.number && text.equals(other.text);
+    }
+    
+    @Override
+    public int hashCode() {
+        if (identity != null) {
+            return System.identityHashCode(identity);
+        }
+        return (type * 31 + text.hashCode()) * 31 + number;
+    }
+    
+    @Override
+    public String toString() {
+        return identity != null ? "Collezione@" + System.identityHashCode(identity) : type + ":" + text + "#" + number;
+    }
+}
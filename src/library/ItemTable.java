@@ -0,0 +1,383 @@
+// ====================
+//  ItemTable.java
+// ====================
+package library;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+  Contenitore degli elementi di una Collection: mantiene l'ordine di inserimento
+  e un indice hash sulla chiave naturale (ItemKey) di ogni elemento.
+  
+  Gli elementi stanno in un array di slot; una rimozione lascia uno slot vuoto invece
+  di spostare gli elementi successivi, e l'array viene compattato quando gli slot vuoti
+  superano quelli occupati. Un Fenwick tree sugli slot occupati converte posizione
+  visibile e slot in O(log n), così anche l'accesso per indice resta veloce.
+  Gli elementi con la stessa chiave (duplicati) sono collegati in una catena di slot.
+  
+  Per la lettura senza copie ci sono due liste non modificabili:
+  - view(): vista viva, i cui iteratori falliscono con ConcurrentModificationException
+    se la tabella cambia durante l'iterazione;
+  - snapshot(): istantanea immutabile in O(1) che condivide l'array degli slot
+    (copy-on-write: l'array viene copiato solo alla prima rimozione successiva).
+ **/
+final class ItemTable implements Iterable<LibraryItem> {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int MIN_COMPACT = 32;
+    
+    private LibraryItem[] slots = new LibraryItem[INITIAL_CAPACITY];
+    private int[] nextSame = new int[INITIAL_CAPACITY]; // Slot successivo con la stessa chiave, -1 se nessuno
+    private int[] tree = new int[INITIAL_CAPACITY + 1]; // Fenwick tree (1-based) degli slot occupati
+    private final Map<ItemKey, Integer> firstSlot = new HashMap<>();
+    private int used;
+    private int size;
+    private int modCount;
+    private List<LibraryItem> view;
+    private Snapshot snapshot; // Ultima istantanea, valida finché modCount non cambia
+    private int snapshotModCount;
+    private boolean shared; // L'array degli slot è condiviso con un'istantanea
+    
+    int size() {
+        return size;
+    }
+    
+    void add(LibraryItem item) {
+        if (used == slots.length) {
+            grow();
+        }
+        int slot = used++;
+        slots[slot] = item;
+        nextSame[slot] = -1;
+        treeAdd(slot, 1);
+        size++;
+        link(ItemKey.of(item), slot);
+        modCount++;
+    }
+    
+    boolean containsKey(ItemKey key) {
+        return firstSlot.containsKey(key);
+    }
+    
+    LibraryItem get(ItemKey key) {
+        Integer slot = firstSlot.get(key);
+        return slot == null ? null : slots[slot];
+    }
+    
+    LibraryItem get(int index) {
+        checkIndex(index);
+        return slots[select(index)];
+    }
+    
+    // Posizione del primo elemento con questa chiave, -1 se assente
+    int indexOf(ItemKey key) {
+        Integer slot = firstSlot.get(key);
+        return slot == null ? -1 : rank(slot);
+    }
+    
+    // Posizione di questa precisa istanza, -1 se assente
+    int indexOfIdentity(LibraryItem item) {
+        Integer head = firstSlot.get(ItemKey.of(item));
+        for (int slot = head == null ? -1 : head; slot >= 0; slot = nextSame[slot]) {
+            if (slots[slot] == item) {
+                return rank(slot);
+            }
+        }
+        return -1;
+    }
+    
+    // Posizioni di tutte le occorrenze di questa precisa istanza, in ordine crescente
+    int[] indexesOfIdentity(LibraryItem item) {
+        int[] found = new int[0];
+        Integer head = firstSlot.get(ItemKey.of(item));
+        for (int slot = head == null ? -1 : head; slot >= 0; slot = nextSame[slot]) {
+            if (slots[slot] == item) {
+                found = Arrays.copyOf(found, found.length + 1);
+                found[found.length - 1] = rank(slot);
+            }
+        }
+        Arrays.sort(found);
+        return found;
+    }
+    
+    LibraryItem removeAt(int index) {
+        checkIndex(index);
+        int slot = select(index);
+        LibraryItem item = slots[slot];
+        unlink(ItemKey.of(item), slot);
+        if (shared) {
+            // Le aggiunte scrivono oltre la parte visibile alle istantanee, le rimozioni no
+            slots = slots.clone();
+            shared = false;
+        }
+        slots[slot] = null;
+        treeAdd(slot, -1);
+        size--;
+        modCount++;
+        int empty = used - size;
+        if (empty > MIN_COMPACT && empty > size) {
+            compact();
+        }
+        return item;
+    }
+    
+    List<LibraryItem> view() {
+        if (view == null) {
+            view = new View();
+        }
+        return view;
+    }
+    
+    List<LibraryItem> snapshot() {
+        if (snapshot == null || snapshotModCount != modCount) {
+            snapshot = new Snapshot(slots, used, size);
+            snapshotModCount = modCount;
+            shared = true;
+        }
+        return snapshot;
+    }
+    
+    @Override
+    public Iterator<LibraryItem> iterator() {
+        return new Iterator<LibraryItem>() {
+            private final int expectedModCount = modCount;
+            private int slot = advance(0);
+            
+            private int advance(int from) {
+                while (from < used && slots[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return slot < used;
+            }
+            
+            @Override
+            public LibraryItem next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (slot >= used) {
+                    throw new NoSuchElementException();
+                }
+                LibraryItem item = slots[slot];
+                slot = advance(slot + 1);
+                return item;
+            }
+        };
+    }
+    
+    private void link(ItemKey key, int slot) {
+        Integer head = firstSlot.putIfAbsent(key, slot);
+        if (head != null) {
+            int last = head;
+            while (nextSame[last] >= 0) {
+                last = nextSame[last];
+            }
+            nextSame[last] = slot;
+        }
+    }
+    
+    private void unlink(ItemKey key, int slot) {
+        int head = firstSlot.get(key);
+        if (head == slot) {
+            if (nextSame[slot] < 0) {
+                firstSlot.remove(key);
+            } else {
+                firstSlot.put(key, nextSame[slot]);
+            }
+            return;
+        }
+        int previous = head;
+        while (nextSame[previous] != slot) {
+            previous = nextSame[previous];
+        }
+        nextSame[previous] = nextSame[slot];
+    }
+    
+    private void grow() {
+        if (used - size > size / 2) {
+            compact(); // Molti slot vuoti: basta compattare
+            if (used < slots.length) {
+                return;
+            }
+        }
+        int capacity = slots.length * 2;
+        slots = Arrays.copyOf(slots, capacity);
+        nextSame = Arrays.copyOf(nextSame, capacity);
+        shared = false;
+        rebuildTree();
+    }
+    
+    // Elimina gli slot vuoti mantenendo l'ordine; ricostruisce catene e Fenwick tree
+    private void compact() {
+        LibraryItem[] live = new LibraryItem[Math.max(INITIAL_CAPACITY, size * 2)];
+        int count = 0;
+        for (int slot = 0; slot < used; slot++) {
+            if (slots[slot] != null) {
+                live[count++] = slots[slot];
+            }
+        }
+        slots = live;
+        nextSame = new int[live.length];
+        shared = false;
+        used = count;
+        firstSlot.clear();
+        for (int slot = 0; slot < used; slot++) {
+            nextSame[slot] = -1;
+            link(ItemKey.of(slots[slot]), slot);
+        }
+        rebuildTree();
+    }
+    
+    private void rebuildTree() {
+        tree = new int[slots.length + 1];
+        for (int slot = 0; slot < used; slot++) {
+            if (slots[slot] != null) {
+                tree[slot + 1] = 1;
+            }
+        }
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+    
+    private void treeAdd(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+    
+    // Numero di slot occupati prima di "slot", cioè la sua posizione visibile
+    private int rank(int slot) {
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+    
+    // Slot dell'elemento in posizione visibile "index"
+    private int select(int index) {
+        int position = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < tree.length && tree[next] < remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position; // Fenwick 1-based: position + 1 - 1
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Posizione " + index + " non valida (elementi: " + size + ")");
+        }
+    }
+    
+    /**
+      Vista viva e non modificabile della tabella
+     **/
+    private final class View extends AbstractList<LibraryItem> {
+        @Override
+        public LibraryItem get(int index) {
+            return ItemTable.this.get(index);
+        }
+        
+        @Override
+        public int size() {
+            return size;
+        }
+        
+        @Override
+        public Iterator<LibraryItem> iterator() {
+            return ItemTable.this.iterator();
+        }
+    }
+    
+    /**
+      Istantanea immutabile: i primi "used" slot dell'array condiviso, saltando quelli vuoti
+     **/
+    private static final class Snapshot extends AbstractList<LibraryItem> implements RandomAccess {
+        private final LibraryItem[] slots;
+        private final int used;
+        private final int size;
+        private volatile LibraryItem[] dense; // Creato al primo accesso per indice, solo se ci sono slot vuoti
+        
+        Snapshot(LibraryItem[] slots, int used, int size) {
+            this.slots = slots;
+            this.used = used;
+            this.size = size;
+        }
+        
+        @Override
+        public LibraryItem get(int index) {
+            Objects.checkIndex(index, size);
+            if (used == size) {
+                return slots[index];
+            }
+            LibraryItem[] items = dense;
+            if (items == null) {
+                items = new LibraryItem[size];
+                int count = 0;
+                for (int slot = 0; slot < used; slot++) {
+                    if (slots[slot] != null) {
+                        items[count++] = slots[slot];
+                    }
+                }
+                dense = items;
+            }
+            return items[index];
+        }
+        
+        @Override
+        public int size() {
+            return size;
+        }
+        
+        @Override
+        public Iterator<LibraryItem> iterator() {
+            return new Iterator<LibraryItem>() {
+                private int slot = advance(0);
+                
+                private int advance(int from) {
+                    while (from < used && slots[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+                
+                @Override
+                public boolean hasNext() {
+                    return slot < used;
+                }
+                
+                @Override
+                public LibraryItem next() {
+                    if (slot >= used) {
+                        throw new NoSuchElementException();
+                    }
+                    LibraryItem item = slots[slot];
+                    slot = advance(slot + 1);
+                    return item;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,199 @@
+// ====================
+//  Json.java
+// ====================
+package library;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+  Supporto JSON minimo, senza dipendenze esterne: quoting delle stringhe e parsing
+  di oggetti "piatti" (valori stringa, numeri interi, booleani e null).
+  È sufficiente per i record NDJSON del catalogo.
+ **/
+public final class Json {
+    
+    private Json() {
+    }
+    
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+    
+    /**
+      Interpreta un oggetto JSON piatto; lancia IllegalArgumentException se il testo non è valido
+     **/
+    public static Map<String, Object> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, Object> result = parser.object();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw parser.error("contenuto inatteso dopo l'oggetto");
+        }
+        return result;
+    }
+    
+    private static final class Parser {
+        private final String text;
+        private int pos;
+        
+        Parser(String text) {
+            if (text == null) {
+                throw new IllegalArgumentException("JSON non valido: testo nullo");
+            }
+            this.text = text;
+        }
+        
+        Map<String, Object> object() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return result;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                result.put(key, value());
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return result;
+                }
+                if (c != ',') {
+                    throw error("atteso ',' o '}'");
+                }
+            }
+        }
+        
+        private Object value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                return number();
+            }
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            throw error("valore non supportato");
+        }
+        
+        private Long number() {
+            int start = pos;
+            if (peek() == '-') {
+                pos++;
+            }
+            while (!atEnd() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+            try {
+                return Long.valueOf(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("numero non valido");
+            }
+        }
+        
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escape = next();
+                switch (escape) {
+                    case '"': case '\\': case '/': sb.append(escape); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("sequenza \\u incompleta");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("sequenza \\u non valida");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("escape non valido");
+                }
+            }
+        }
+        
+        void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+        
+        boolean atEnd() {
+            return pos >= text.length();
+        }
+        
+        private char peek() {
+            if (atEnd()) {
+                throw error("fine inattesa");
+            }
+            return text.charAt(pos);
+        }
+        
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+        
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("atteso '" + expected + "'");
+            }
+        }
+        
+        IllegalArgumentException error(String reason) {
+            return new IllegalArgumentException("JSON non valido alla posizione " + pos + ": " + reason);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+// ====================
+//  LatencyHistogramMBean.java
+// ====================
+package library;
+
+/**
+  Vista JMX di un LatencyHistogram (durate in millisecondi)
+ **/
+public interface LatencyHistogramMBean {
+    long getCount();
+    
+    double getMeanMillis();
+    
+    double getP50Millis();
+    
+    double getP90Millis();
+    
+    double getP99Millis();
+    
+    double getP999Millis();
+    
+    double getMaxMillis();
+    
+    void reset();
+}
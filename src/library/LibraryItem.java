@@ -10,6 +10,15 @@ import java.io.Serializable;
  **/
 public interface LibraryItem extends Serializable {
     String getTitle();
+    
+    /**
+      Titolo normalizzato per la ricerca (vedi TextNormalizer); le classi della biblioteca
+      lo calcolano una volta sola, alla creazione o al caricamento
+     **/
+    default String getTitleKey() {
+        return TextNormalizer.normalize(getTitle());
+    }
+    
     String getDescription();
     void display();
     void accept(LibraryVisitor visitor);
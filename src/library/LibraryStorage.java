@@ -5,45 +5,489 @@
 package library;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
-  Gestisce il salvataggio e caricamento con Exception Shielding
+  Gestisce il salvataggio e caricamento con Exception Shielding.
+  Il catalogo viene salvato nel formato binario di CatalogFormat (oppure a blocchi
+  compressi con saveCompressed); in caricamento il formato viene riconosciuto dai primi
+  byte, così i vecchi file scritti con ObjectOutputStream restano leggibili.
  **/
 public class LibraryStorage {
     private static final Logger logger = Logger.getLogger(LibraryStorage.class.getName());
     
+    // Metriche di saveToFile/loadFromFile: durata, byte (con velocità) ed errori
+    private static final LatencyHistogram SAVE_TIME = Metrics.histogram("storage.save");
+    private static final Counter SAVE_BYTES = Metrics.counter("storage.save.bytes", SAVE_TIME);
+    private static final Counter SAVE_ERRORS = Metrics.counter("storage.save.errors");
+    private static final LatencyHistogram LOAD_TIME = Metrics.histogram("storage.load");
+    private static final Counter LOAD_BYTES = Metrics.counter("storage.load.bytes", LOAD_TIME);
+    private static final Counter LOAD_ERRORS = Metrics.counter("storage.load.errors");
+    
+    /**
+      Formati per l'esportazione in streaming, record per record
+     **/
+    public enum StreamFormat { NDJSON, BINARY }
+    
     public void saveToFile(Collection collection, String filename) throws LibraryException {
         // Input sanitization per sicurezza
         String sanitizedFilename = sanitizeFilename(filename);
         
-        try (ObjectOutputStream out = new ObjectOutputStream(
-                new FileOutputStream(sanitizedFilename))) {
-            out.writeObject(collection);
+        // Scrive su un file temporaneo e lo rinomina: il file precedente non viene mai troncato
+        // (potrebbe essere mappato in memoria da openMapped)
+        Path target = Paths.get(sanitizedFilename);
+        Path temp = tempFileFor(sanitizedFilename);
+        long start = Metrics.start();
+        boolean moved = false;
+        try {
+            long bytes;
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                new BinaryCatalogWriter(channel).write(collection);
+                bytes = channel.size();
+                channel.force(true); // Su disco prima della rinomina: dopo un crash mai un file rinominato ma vuoto
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+            SAVE_TIME.recordSince(start);
+            SAVE_BYTES.add(bytes);
             logger.log(Level.INFO, "Collezioni salvata su file: {0}", sanitizedFilename);
         } catch (IOException e) {
+            SAVE_ERRORS.increment();
             logger.log(Level.SEVERE, "Errore durante il salvataggio della raccolta su file", e);
             // Exception Shielding: nasconde dettagli interni
             throw new LibraryException("Impossibile salvare la raccolta su file", e);
+        } finally {
+            if (!moved) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+    
+    /**
+      Salva il catalogo a blocchi compressi con CRC (vedi CompressedCatalog): file più piccoli,
+      caricati in parallelo da loadFromFile, e i blocchi danneggiati vengono segnalati con il loro offset
+     **/
+    public void saveCompressed(Collection collection, String filename) throws LibraryException {
+        String sanitizedFilename = sanitizeFilename(filename);
+        
+        // Come saveToFile: file temporaneo e rinomina atomica
+        Path target = Paths.get(sanitizedFilename);
+        Path temp = tempFileFor(sanitizedFilename);
+        long start = Metrics.start();
+        boolean moved = false;
+        try {
+            // Il canale ha il suo try: resta chiuso anche se il costruttore dello scrittore fallisce
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                CatalogRecordWriter writer = new CompressedCatalog().openWriter(channel);
+                try (writer) {
+                    exportTo(collection, writer);
+                }
+            }
+            forceToDisk(temp); // Lo scrittore chiude il canale dopo l'indice finale
+            long bytes = Files.size(temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+            SAVE_TIME.recordSince(start);
+            SAVE_BYTES.add(bytes);
+            logger.log(Level.INFO, "Collezione salvata compressa su file: {0}", sanitizedFilename);
+        } catch (IOException | IllegalArgumentException e) { // Elemento non supportato: come in saveToFile
+            SAVE_ERRORS.increment();
+            logger.log(Level.SEVERE, "Errore durante il salvataggio compresso della raccolta su file", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile salvare la raccolta su file", e);
+        } finally {
+            if (!moved) {
+                deleteQuietly(temp);
+            }
         }
     }
     
+    /**
+      Carica un catalogo salvato con saveToFile o saveCompressed; se il file non esiste ma il
+      catalogo è stato salvato con un journal (createJournal), lo recupera da snapshot e journal
+     **/
     public Collection loadFromFile(String filename) throws LibraryException {
         String sanitizedFilename = sanitizeFilename(filename);
+        Path path = Paths.get(sanitizedFilename);
         
-        try (ObjectInputStream in = new ObjectInputStream(
-                new FileInputStream(sanitizedFilename))) {
-            Collection collection = (Collection) in.readObject();
-            logger.log(Level.INFO, "Collezione caricata da file: {0}", sanitizedFilename);
-            return collection;
+        long start = Metrics.start();
+        try {
+            if (!Files.exists(path) && CatalogJournal.exists(path)) {
+                Collection collection = CatalogJournal.recover(path);
+                LOAD_TIME.recordSince(start);
+                logger.log(Level.INFO, "Collezione recuperata dal journal: {0}", sanitizedFilename);
+                return collection;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                Collection collection = readCatalog(channel);
+                LOAD_TIME.recordSince(start);
+                LOAD_BYTES.add(channel.size());
+                logger.log(Level.INFO, "Collezione caricata da file: {0}", sanitizedFilename);
+                return collection;
+            }
         } catch (IOException | ClassNotFoundException e) {
+            LOAD_ERRORS.increment();
             logger.log(Level.SEVERE, "Errore durante il caricamento della raccolta da file", e);
             // Exception Shielding
             throw new LibraryException("Impossibile caricare la raccolta da file", e);
         }
     }
     
+    /**
+      Apre un catalogo binario mappandolo in memoria: restituisce subito la radice,
+      gli elementi vengono decodificati dal file solo quando servono
+     **/
+    public Collection openMapped(String filename) throws LibraryException {
+        String sanitizedFilename = sanitizeFilename(filename);
+        
+        try {
+            Collection collection = MappedCatalog.open(Paths.get(sanitizedFilename)).getRoot();
+            logger.log(Level.INFO, "Collezione mappata da file: {0}", sanitizedFilename);
+            return collection;
+        } catch (IOException | IllegalStateException e) {
+            logger.log(Level.SEVERE, "Errore durante la mappatura della raccolta da file", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile aprire la raccolta dal file", e);
+        }
+    }
+    
+    /**
+      Carica il catalogo nel formato per colonne (ColumnarCatalog). I dump in streaming vengono
+      convertiti record per record; i cataloghi salvati con saveToFile vengono letti e poi copiati.
+     **/
+    public ColumnarCatalog loadColumnar(String filename) throws LibraryException {
+        String sanitizedFilename = sanitizeFilename(filename);
+        
+        try {
+            ColumnarCatalog catalog;
+            try (FileChannel channel = FileChannel.open(Paths.get(sanitizedFilename), StandardOpenOption.READ)) {
+                catalog = isStreamDump(readHeader(channel)) ? null : ColumnarCatalog.from(readCatalog(channel));
+            }
+            if (catalog == null) {
+                try (CatalogRecordReader reader = openStream(sanitizedFilename)) {
+                    catalog = ColumnarCatalog.from(reader);
+                    logReport(sanitizedFilename, reader.getReport());
+                }
+            }
+            logger.log(Level.INFO, "Catalogo colonnare caricato da file: {0}", sanitizedFilename);
+            return catalog;
+        } catch (IOException | ClassNotFoundException | IllegalArgumentException e) {
+            logger.log(Level.SEVERE, "Errore durante il caricamento del catalogo colonnare", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile caricare il catalogo colonnare", e);
+        }
+    }
+    
+    /**
+      Attiva il journal per il catalogo: scrive uno snapshot completo, poi registra solo le modifiche.
+      Sostituisce un eventuale file unico con lo stesso nome, che altrimenti avrebbe la precedenza
+      in loadFromFile.
+     **/
+    public CatalogJournal createJournal(Collection collection, String filename) throws LibraryException {
+        String sanitizedFilename = sanitizeFilename(filename);
+        
+        try {
+            Path path = Paths.get(sanitizedFilename);
+            CatalogJournal journal = CatalogJournal.create(collection, path);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                journal.close(); // Il vecchio file resterebbe quello caricato: il journal non serve
+                throw e;
+            }
+            logger.log(Level.INFO, "Journal creato per: {0}", sanitizedFilename);
+            return journal;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Errore durante la creazione del journal", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile salvare la raccolta su file", e);
+        }
+    }
+    
+    /**
+      Recupera un catalogo dallo snapshot più recente e dalla coda del journal
+     **/
+    public CatalogJournal openJournal(String filename) throws LibraryException {
+        String sanitizedFilename = sanitizeFilename(filename);
+        
+        try {
+            CatalogJournal journal = CatalogJournal.open(Paths.get(sanitizedFilename));
+            logger.log(Level.INFO, "Collezione recuperata dal journal: {0}", sanitizedFilename);
+            return journal;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Errore durante il recupero dal journal", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile caricare la raccolta da file", e);
+        }
+    }
+    
+    /**
+      Vero se il catalogo è salvato con un journal e non come file unico (vedi loadFromFile)
+     **/
+    public boolean hasJournal(String filename) {
+        try {
+            Path path = Paths.get(sanitizeFilename(filename));
+            return !Files.exists(path) && CatalogJournal.exists(path);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Impossibile verificare la presenza del journal", e);
+            return false;
+        }
+    }
+    
+    /**
+      Salvataggio incrementale: attende che le modifiche registrate siano su disco
+     **/
+    public void syncJournal(CatalogJournal journal) throws LibraryException {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Errore durante la scrittura del journal", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile salvare la raccolta su file", e);
+        }
+    }
+    
+    public void closeJournal(CatalogJournal journal) throws LibraryException {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Errore durante la chiusura del journal", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile chiudere il journal del catalogo", e);
+        }
+    }
+    
+    /**
+      Esporta il catalogo record per record: la memoria usata non dipende dalla dimensione del catalogo
+     **/
+    public void exportStream(Collection collection, String filename, StreamFormat format) throws LibraryException {
+        String sanitizedFilename = sanitizeFilename(filename);
+        
+        try (CatalogRecordWriter writer = openWriter(Paths.get(sanitizedFilename), format)) {
+            exportTo(collection, writer);
+            logger.log(Level.INFO, "Collezione esportata su file: {0}", sanitizedFilename);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Errore durante l'esportazione della raccolta su file", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile esportare la raccolta su file", e);
+        }
+    }
+    
+    /**
+      Visita iterativa del catalogo: ogni collezione diventa una coppia di marcatori BEGIN/END
+     **/
+    public void exportTo(Collection collection, CatalogRecordWriter writer) throws IOException {
+        TreeIterator iterator = new TreeIterator(collection);
+        int open = 0; // Collezioni aperte: un elemento a profondità d sta nella d-esima
+        while (iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            for (; open > iterator.getDepth(); open--) {
+                writer.write(CatalogRecord.endCollection());
+            }
+            if (item instanceof Collection) {
+                writer.write(CatalogRecord.beginCollection(item.getTitle(), ((Collection) item).isRejectDuplicates()));
+                open++;
+            } else {
+                writer.write(CatalogRecord.item(item));
+            }
+        }
+        for (; open > 0; open--) {
+            writer.write(CatalogRecord.endCollection());
+        }
+    }
+    
+    /**
+      Apre un dump in streaming (NDJSON o binario, riconosciuto dai primi byte) come cursore di record.
+      Il chiamante deve chiuderlo.
+     **/
+    public CatalogRecordReader openStream(String filename) throws LibraryException {
+        String sanitizedFilename = sanitizeFilename(filename);
+        
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(Paths.get(sanitizedFilename), StandardOpenOption.READ);
+            ByteBuffer header = readHeader(channel);
+            if (header.position() == Integer.BYTES && header.getInt(0) == CatalogFormat.STREAM_MAGIC) {
+                return new BinaryRecordReader(channel);
+            }
+            return new NdjsonRecordReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            closeQuietly(channel);
+            logger.log(Level.SEVERE, "Errore durante l'apertura del dump", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile aprire il dump del catalogo", e);
+        }
+    }
+    
+    /**
+      Importa un dump in streaming dentro "target". I record non validi (e le collezioni scartate
+      con tutto il loro contenuto) vengono saltati e riportati nell'ImportReport, così come gli
+      elementi rifiutati dalla collezione (duplicati), senza interrompere l'importazione.
+      Le collezioni importate riprendono il rifiuto dei duplicati salvato nel dump, attivato
+      alla loro fine come nel caricamento: i duplicati già presenti nel dump restano.
+     **/
+    public ImportReport importStream(String filename, Collection target) throws LibraryException {
+        try (CatalogRecordReader reader = openStream(filename)) {
+            Deque<Collection> stack = new ArrayDeque<>();
+            Deque<Boolean> rejectDuplicates = new ArrayDeque<>(); // Una voce per collezione importata aperta
+            stack.push(target);
+            while (reader.hasNext()) {
+                CatalogRecord record = reader.next();
+                switch (record.getKind()) {
+                    case BEGIN_COLLECTION:
+                        Collection collection = new Collection(record.getName());
+                        stack.peek().addItem(collection);
+                        stack.push(collection);
+                        rejectDuplicates.push(record.isRejectDuplicates());
+                        break;
+                    case END_COLLECTION:
+                        if (stack.size() > 1) {
+                            stack.pop().setRejectDuplicates(rejectDuplicates.pop());
+                        } else {
+                            reader.getReport().recordSkipped(reader.lastPosition(), "fine collezione senza collezione aperta");
+                        }
+                        break;
+                    default:
+                        try {
+                            stack.peek().addItem(record.getItem());
+                        } catch (IllegalArgumentException e) {
+                            reader.getReport().recordRejected(reader.lastPosition(), e.getMessage());
+                        }
+                }
+            }
+            ImportReport report = reader.getReport();
+            if (stack.size() > 1) {
+                report.recordSkipped("fine file", (stack.size() - 1) + " collezioni non chiuse");
+                while (stack.size() > 1) {
+                    stack.pop().setRejectDuplicates(rejectDuplicates.pop());
+                }
+            }
+            logReport(filename, report);
+            return report;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Errore durante l'importazione del dump", e);
+            // Exception Shielding
+            throw new LibraryException("Impossibile importare il dump del catalogo", e);
+        }
+    }
+    
+    /**
+      Importa in parallelo un file CSV o TSV (vedi BulkImporter) dentro "target";
+      le righe scartate vengono scritte in "filename.errors"
+     **/
+    public ImportReport importDelimited(String filename, Collection target, MediaFactory factory) throws LibraryException {
+        String sanitizedFilename = sanitizeFilename(filename);
+        
+        ImportReport report = new BulkImporter(factory)
+                .errorFile(Paths.get(sanitizedFilename + ".errors"))
+                .importFile(Paths.get(sanitizedFilename), target);
+        logReport(sanitizedFilename, report);
+        return report;
+    }
+    
+    private void logReport(String filename, ImportReport report) {
+        logger.log(Level.INFO, "Importazione da {0}: {1}", new Object[] { filename, report });
+        List<String> errors = report.getErrors();
+        for (String error : errors) {
+            logger.log(Level.WARNING, "Record scartato - {0}", error);
+        }
+    }
+    
+    private CatalogRecordWriter openWriter(Path path, StreamFormat format) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (format == StreamFormat.BINARY) {
+            return new BinaryRecordWriter(channel);
+        }
+        return new NdjsonRecordWriter(new BufferedWriter(
+                new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), 64 * 1024));
+    }
+    
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                break; // File più corto dell'intestazione
+            }
+        }
+        channel.position(0);
+        return header;
+    }
+    
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Chiusura non riuscita", e);
+            }
+        }
+    }
+    
+    // Il file temporaneo di un salvataggio non riuscito non deve restare accanto al catalogo
+    // Un file temporaneo diverso per ogni salvataggio: due salvataggi concorrenti dello stesso
+    // file non scrivono sullo stesso temporaneo e non possono cancellarsi a vicenda il proprio
+    private static Path tempFileFor(String filename) {
+        return Paths.get(filename + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+    }
+    
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "File temporaneo non rimosso: " + file, e);
+        }
+    }
+    
+    // Porta su disco il contenuto del file prima della rinomina
+    private static void forceToDisk(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+    
+    // Tutto ciò che non è un catalogo binario o serializzato viene letto come dump (vedi openStream)
+    private static boolean isStreamDump(ByteBuffer header) {
+        boolean catalog = header.position() == Integer.BYTES
+                && (header.getInt(0) == CatalogFormat.MAGIC || header.getInt(0) == CatalogFormat.BLOCK_MAGIC);
+        boolean serialized = header.position() >= Short.BYTES
+                && header.getShort(0) == CatalogFormat.JAVA_SERIALIZATION_MAGIC;
+        return !catalog && !serialized;
+    }
+    
+    // Riconosce il formato dai primi byte del file
+    private Collection readCatalog(FileChannel channel) throws IOException, ClassNotFoundException {
+        ByteBuffer header = readHeader(channel);
+        if (header.position() == Integer.BYTES && header.getInt(0) == CatalogFormat.MAGIC) {
+            return new BinaryCatalogReader(channel).read();
+        }
+        if (header.position() == Integer.BYTES && header.getInt(0) == CatalogFormat.BLOCK_MAGIC) {
+            return new CompressedCatalog().read(channel);
+        }
+        if (header.position() >= Short.BYTES && header.getShort(0) == CatalogFormat.JAVA_SERIALIZATION_MAGIC) {
+            // Vecchio formato: serializzazione Java dell'intero grafo
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            return (Collection) in.readObject();
+        }
+        throw new StreamCorruptedException("Formato del file non riconosciuto");
+    }
+    
     /**
       Input sanitization per prevenire path traversal attacks
      **/
@@ -0,0 +1,68 @@
+// ====================
+//  Loan.java
+// ====================
+package library;
+
+import java.time.Instant;
+
+/**
+  Prestito di una copia di un elemento a un utente, creato da CirculationDesk
+  (con checkout o servendo una prenotazione)
+ **/
+public final class Loan {
+    private final LibraryItem item;
+    private final String patron;
+    private final Instant checkoutTime;
+    private final Instant dueDate;
+    private volatile Instant returnTime; // null finché il prestito è attivo
+    
+    Loan(LibraryItem item, String patron, Instant checkoutTime, Instant dueDate) {
+        this.item = item;
+        this.patron = patron;
+        this.checkoutTime = checkoutTime;
+        this.dueDate = dueDate;
+    }
+    
+    public LibraryItem getItem() {
+        return item;
+    }
+    
+    public String getPatron() {
+        return patron;
+    }
+    
+    public Instant getCheckoutTime() {
+        return checkoutTime;
+    }
+    
+    public Instant getDueDate() {
+        return dueDate;
+    }
+    
+    /**
+      Momento della restituzione, null se il prestito è ancora attivo
+     **/
+    public Instant getReturnTime() {
+        return returnTime;
+    }
+    
+    public boolean isReturned() {
+        return returnTime != null;
+    }
+    
+    /**
+      Vero se il prestito è attivo e la scadenza è passata
+     **/
+    public boolean isOverdue(Instant now) {
+        return returnTime == null && now.isAfter(dueDate);
+    }
+    
+    void markReturned(Instant time) {
+        returnTime = time;
+    }
+    
+    @Override
+    public String toString() {
+        return item.getTitle() + " a " + patron + " (scadenza " + dueDate + ")";
+    }
+}
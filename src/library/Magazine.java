@@ -4,15 +4,28 @@
 // ====================
 package library;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+
 /**
  * Rappresenta una rivista nella biblioteca
  */
 public class Magazine implements LibraryItem {
     private static final long serialVersionUID = 1L;
+    // Campi del flusso serializzato: l'editore resta una stringa, come nei file già salvati
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("title", String.class),
+        new ObjectStreamField("issue", int.class),
+        new ObjectStreamField("publisher", String.class),
+        new ObjectStreamField("year", int.class)
+    };
     
     private String title;
+    private transient String titleKey; // Titolo normalizzato per la ricerca (TextNormalizer)
     private int issue;
-    private String publisher;
+    private transient Name publisherName; // Dal NamePool condiviso, con la forma in minuscolo; serializzato come stringa
     private int year;
     
     public Magazine(String title, int issue, String publisher, int year) {
@@ -31,19 +44,36 @@ public class Magazine implements LibraryItem {
         }
         
         this.title = title.trim();
+        this.titleKey = TextNormalizer.normalize(this.title);
         this.issue = issue;
-        this.publisher = publisher.trim();
+        this.publisherName = NamePool.shared().intern(publisher.trim());
         this.year = year;
     }
     
+    /**
+     * Costruttore per le viste lazy (vedi MappedCatalog)
+     */
+    protected Magazine() {
+    }
+    
     public String getTitle() { return title; }
     public int getIssue() { return issue; }
-    public String getPublisher() { return publisher; }
+    public String getPublisher() { return publisherName.getValue(); }
     public int getYear() { return year; }
+    public Name getPublisherName() { return publisherName; }
+    
+    /**
+      Titolo normalizzato, calcolato una volta alla creazione o al caricamento
+      (per le viste lazy ad ogni chiamata)
+     **/
+    @Override
+    public String getTitleKey() {
+        return titleKey != null ? titleKey : TextNormalizer.normalize(getTitle());
+    }
     
     @Override
     public String getDescription() {
-        return "Magazine: " + title + " #" + issue + " da " + publisher + " (" + year + ")";
+        return "Magazine: " + getTitle() + " #" + getIssue() + " da " + getPublisher() + " (" + getYear() + ")";
     }
     
     @Override
@@ -55,4 +85,45 @@ public class Magazine implements LibraryItem {
     public void accept(LibraryVisitor visitor) {
         visitor.visit(this);
     }
+    
+    /**
+     * Chiave naturale: stesso titolo e stesso numero (anche per le viste lazy)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Magazine)) return false;
+        Magazine magazine = (Magazine) obj;
+        return getIssue() == magazine.getIssue() && getTitle().equals(magazine.getTitle());
+    }
+    
+    @Override
+    public int hashCode() {
+        return getTitle().hashCode() * 31 + getIssue();
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("title", title);
+        fields.put("issue", issue);
+        fields.put("publisher", publisherName != null ? publisherName.getValue() : null);
+        fields.put("year", year);
+        out.writeFields();
+    }
+    
+    // L'editore torna nel pool condiviso anche per le riviste caricate da file serializzati;
+    // la chiave del titolo viene ricalcolata
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        title = (String) fields.get("title", null);
+        issue = fields.get("issue", 0);
+        String publisher = (String) fields.get("publisher", null);
+        year = fields.get("year", 0);
+        if (title != null) {
+            titleKey = TextNormalizer.normalize(title);
+        }
+        if (publisher != null) {
+            publisherName = NamePool.shared().intern(publisher);
+        }
+    }
 }
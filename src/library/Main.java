@@ -14,14 +14,26 @@ public class Main {
     private static MediaFactory factory = new MediaFactory();
     private static Collection mainCatalog = factory.createCollection("Main Catalog");
     private static LibraryStorage storage = new LibraryStorage();
+    private static CatalogIndex catalogIndex = new CatalogIndex(mainCatalog); //Indice invertito per la ricerca
+    private static SearchCache searchCache = new SearchCache(mainCatalog, 256, catalogIndex::search); //Termini cercati di recente
+    private static CatalogJournal journal; //Journal attivo dopo il primo salvataggio
+    private static String journalName;
     private static Scanner scanner = new Scanner(System.in); //Necessario per input utente 
     
     public static void main(String[] args) {
+        AsyncLogHandler.install(); //Log asincrono: la scrittura su console non rallenta le operazioni
         logger.info("Starting Library Management System");
+        Metrics.setEnabled(true); //Contatori e istogrammi delle operazioni (menu 10 e JMX)
+        Metrics.registerMBeans();
         
         // Aggiunge elementi demo
         addDemoItems();
         
+        if (args.length > 0 && "--server".equals(args[0])) {
+            runServer(args); //Modalità server: API HTTP/JSON al posto del menu
+            return;
+        }
+        
         boolean running = true;
         while (running) {
             printMenu();
@@ -39,8 +51,11 @@ public class Main {
                     case 7: saveCatalog(); break;
                     case 8: loadCatalog(); break;
                     case 9: demonstrateIterator(); break;
+                    case 10: System.out.print(Metrics.dump()); break;
+                    case 11: importFeed(); break;
                     case 0: 
                         running = false;
+                        closeJournal(); //Le ultime modifiche vanno su disco prima di uscire
                         logger.info("Esci dall'applicazione");
                         break;
                     default:
@@ -67,10 +82,39 @@ public class Main {
         System.out.println("7. Salva il Catalogo (Java I/O + Exception Shielding)");
         System.out.println("8. Carica il Catalogo (Java I/O + Exception Shielding)");
         System.out.println("9. Dimostra Iterator Pattern");
+        System.out.println("10. Mostra le metriche delle operazioni");
+        System.out.println("11. Importa un file CSV/TSV (in parallelo)");
         System.out.println("0. Esci");
         System.out.print("Seleziona un opzione: ");
     }
     
+    /**
+      Avvia CatalogServer (porta opzionale dopo --server) e lo ferma quando si preme INVIO
+     **/
+    private static void runServer(String[] args) {
+        try {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : CatalogServer.DEFAULT_PORT;
+            catalogIndex.close(); //Il server mantiene il proprio indice e la propria cache
+            // Connessioni keep-alive inattive tenute dal server del JDK, se non scelte con -D all'avvio
+            if (System.getProperty(CatalogServer.MAX_IDLE_CONNECTIONS_PROPERTY) == null) {
+                System.setProperty(CatalogServer.MAX_IDLE_CONNECTIONS_PROPERTY,
+                        String.valueOf(CatalogServer.DEFAULT_MAX_IDLE_CONNECTIONS));
+            }
+            CatalogServer server = new CatalogServer(mainCatalog, factory, storage).port(port);
+            server.start();
+            System.out.println("Server attivo su http://127.0.0.1:" + server.getPort() + "/api/ - premi INVIO per fermarlo");
+            scanner.nextLine();
+            server.stop(1);
+        } catch (NumberFormatException e) {
+            System.out.println("Attenzione! porta non valida: " + args[1]);
+        } catch (LibraryException e) {
+            // Exception Shielding
+            System.out.println("Errore durante l'avvio del server: " + e.getMessage());
+        } finally {
+            scanner.close();
+        }
+    }
+    
     /**
       Dimostra Factory Pattern e Logging
      **/
@@ -125,10 +169,9 @@ public class Main {
         System.out.print("Cerca un termine: ");
         String searchTerm = scanner.nextLine();
         
-        SearchVisitor visitor = new SearchVisitor(searchTerm);
-        mainCatalog.accept(visitor); // Visitor Pattern
-        
-        List<LibraryItem> results = visitor.getResults();
+        // Stessi risultati di SearchVisitor, senza visitare tutto l'albero (e dalla cache se il termine è già stato cercato)
+        List<LibraryItem> results = searchCache.search(searchTerm);
+        logger.fine(searchCache::toString);
         
         System.out.println("\n===== RISULTATI DELLA RICERCA =====");
         if (results.isEmpty()) {
@@ -165,7 +208,21 @@ public class Main {
             String filename = scanner.nextLine();
             
             // Input sanitization è gestita dentro LibraryStorage
-            storage.saveToFile(mainCatalog, filename);
+            if (journal != null && filename.equals(journalName)) {
+                try {
+                    storage.syncJournal(journal); // Salvataggio incrementale: solo le modifiche
+                } catch (LibraryException e) {
+                    // Journal fermo dopo un errore: uno snapshot completo riparte dal catalogo in memoria
+                    logger.log(Level.WARNING, "Journal non più utilizzabile, nuovo snapshot", e);
+                    discardJournal();
+                    journal = storage.createJournal(mainCatalog, filename);
+                    journalName = filename;
+                }
+            } else {
+                closeJournal();
+                journal = storage.createJournal(mainCatalog, filename);
+                journalName = filename;
+            }
             
             System.out.println("Catalogo salvato con successo!");
         } catch (LibraryException e) {
@@ -175,6 +232,26 @@ public class Main {
         }
     }
     
+    /**
+      Importazione in blocco di un feed CSV/TSV nel catalogo principale (BulkImporter)
+     **/
+    private static void importFeed() {
+        try {
+            System.out.print("Inserisci il nome del file CSV/TSV da importare: ");
+            String filename = scanner.nextLine();
+            
+            ImportReport report = storage.importDelimited(filename, mainCatalog, factory);
+            System.out.println(report);
+            if (report.getSkipped() > 0 && report.getErrorFile() != null) {
+                System.out.println("Righe scartate in: " + report.getErrorFile());
+            }
+        } catch (LibraryException e) {
+            // Exception Shielding
+            System.out.println("Errore durante l'importazione: " + e.getMessage());
+            logger.log(Level.SEVERE, "Errore durante l'importazione", e);
+        }
+    }
+    
     /**
       Dimostra Exception Shielding e Java I/O (caricamento catalogo da file)
      **/
@@ -183,7 +260,18 @@ public class Main {
             System.out.print("Inserisci il nome del file da caricare: ");
             String filename = scanner.nextLine();
             
-            mainCatalog = storage.loadFromFile(filename);
+            closeJournal();
+            if (storage.hasJournal(filename)) {
+                // Snapshot + coda del journal; le modifiche successive continuano a essere registrate
+                journal = storage.openJournal(filename);
+                journalName = filename;
+                mainCatalog = journal.getCatalog();
+            } else {
+                mainCatalog = storage.loadFromFile(filename);
+            }
+            catalogIndex.close();
+            catalogIndex = new CatalogIndex(mainCatalog);
+            searchCache = new SearchCache(mainCatalog, searchCache.getCapacity(), catalogIndex::search);
             
             System.out.println("Catalogo caricato con successo!");
         } catch (LibraryException e) {
@@ -193,6 +281,24 @@ public class Main {
         }
     }
     
+    // Chiude un journal fermo: l'errore è già stato segnalato da syncJournal
+    private static void discardJournal() {
+        try {
+            closeJournal();
+        } catch (LibraryException e) {
+            journal = null;
+            journalName = null;
+        }
+    }
+    
+    private static void closeJournal() throws LibraryException {
+        if (journal != null) {
+            storage.closeJournal(journal);
+            journal = null;
+            journalName = null;
+        }
+    }
+    
     private static void addNewBook() {
         try {
             System.out.println("\n=== AGGIUNGI UN NUOVO LIBRO ===");
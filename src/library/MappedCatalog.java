@@ -0,0 +1,365 @@
+// ====================
+//  MappedCatalog.java
+// ====================
+package library;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+  Catalogo binario (CatalogFormat) mappato in memoria e materializzato in modo lazy.
+  L'apertura legge solo l'intestazione: Book, Magazine e DVD sono viste che decodificano
+  i campi dal file ad ogni chiamata dei getter, e le collezioni creano le viste dei figli
+  solo quando vengono visitate o iterate. Il file viene mappato a segmenti, quindi
+  anche cataloghi di più GB occupano poco heap.
+ **/
+public class MappedCatalog {
+    public static final int MAX_SEGMENT_SIZE = 1 << 30; // Segmenti da 1 GB (limite int di MappedByteBuffer)
+    
+    private final int segmentBits;
+    private final long segmentSize;
+    private final long segmentMask;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+    private final int flagBytes; // 1 se le collezioni hanno il byte dei flag (dalla versione 2)
+    private final long[] nameOffsets;
+    private final Name[] names; // Decodificati al primo uso, dal NamePool condiviso
+    private final Collection root;
+    
+    private MappedCatalog(FileChannel channel, int segmentSize) throws IOException {
+        this.segmentBits = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentSize = segmentSize;
+        this.segmentMask = segmentSize - 1;
+        size = channel.size();
+        segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) >>> segmentBits)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << segmentBits;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+        }
+        
+        if (size < Integer.BYTES + Short.BYTES + Integer.BYTES || getInt(0) != CatalogFormat.MAGIC) {
+            throw new StreamCorruptedException("Il file non è un catalogo binario");
+        }
+        short version = (short) ((getByte(4) & 0xFF) << 8 | (getByte(5) & 0xFF));
+        if (version != CatalogFormat.VERSION && version != CatalogFormat.VERSION_WITHOUT_FLAGS) {
+            throw new StreamCorruptedException("Versione del catalogo non supportata: " + version);
+        }
+        flagBytes = version == CatalogFormat.VERSION_WITHOUT_FLAGS ? 0 : 1;
+        int count = getInt(6);
+        if (count < 0) {
+            throw new StreamCorruptedException("Tabella dei nomi non valida");
+        }
+        nameOffsets = new long[count];
+        names = new Name[count];
+        long position = 10;
+        for (int i = 0; i < count; i++) {
+            nameOffsets[i] = position;
+            position += Integer.BYTES + checkedLength(position);
+        }
+        if (getByte(position) != CatalogFormat.TAG_COLLECTION) {
+            throw new StreamCorruptedException("Il record radice deve essere una collezione");
+        }
+        root = new CollectionView(this, position);
+    }
+    
+    /**
+      Mappa il file: il canale può essere chiuso subito dopo, la mappatura resta valida
+     **/
+    public static MappedCatalog open(Path path) throws IOException {
+        return open(path, MAX_SEGMENT_SIZE);
+    }
+    
+    /**
+      Come open(path), con segmenti più piccoli (potenza di 2): meno spazio di indirizzamento
+      riservato per volta, e letture a cavallo di due segmenti anche con file piccoli
+     **/
+    public static MappedCatalog open(Path path, int segmentSize) throws IOException {
+        if (segmentSize < Long.BYTES || segmentSize > MAX_SEGMENT_SIZE || Integer.bitCount(segmentSize) != 1) {
+            throw new IllegalArgumentException("La dimensione dei segmenti deve essere una potenza di 2 fino a 1 GB");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedCatalog(channel, segmentSize);
+        }
+    }
+    
+    public Collection getRoot() {
+        return root;
+    }
+    
+    // --- Accesso al file per posizione assoluta (le letture possono attraversare due segmenti) ---
+    
+    byte getByte(long position) {
+        checkBounds(position, 1);
+        return segments[(int) (position >>> segmentBits)].get((int) (position & segmentMask));
+    }
+    
+    int getInt(long position) {
+        checkBounds(position, Integer.BYTES);
+        int offset = (int) (position & segmentMask);
+        if (offset + Integer.BYTES <= segmentSize) {
+            return segments[(int) (position >>> segmentBits)].getInt(offset);
+        }
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = value << 8 | (getByte(position + i) & 0xFF);
+        }
+        return value;
+    }
+    
+    long getLong(long position) {
+        return (long) getInt(position) << 32 | (getInt(position + Integer.BYTES) & 0xFFFFFFFFL);
+    }
+    
+    String getString(long position) {
+        int length = checkedLength(position);
+        byte[] bytes = new byte[length];
+        long start = position + Integer.BYTES;
+        int copied = 0;
+        while (copied < length) {
+            long current = start + copied;
+            ByteBuffer segment = segments[(int) (current >>> segmentBits)].duplicate();
+            segment.position((int) (current & segmentMask));
+            int chunk = Math.min(length - copied, segment.remaining());
+            segment.get(bytes, copied, chunk);
+            copied += chunk;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // Posizione subito dopo la stringa che inizia in "position"
+    long skipString(long position) {
+        return position + Integer.BYTES + checkedLength(position);
+    }
+    
+    Name name(int ref) {
+        if (ref < 0 || ref >= names.length) {
+            throw new IllegalStateException("Riferimento a nome inesistente: " + ref);
+        }
+        // Senza sincronizzazione di proposito: due thread possono decodificare lo stesso nome
+        // insieme, ma ottengono Name uguali (immutabili, con campi final, quindi pubblicati in
+        // modo sicuro anche da una scrittura non volatile) e la scrittura del riferimento è atomica
+        Name name = names[ref];
+        if (name == null) {
+            name = NamePool.shared().intern(getString(nameOffsets[ref]));
+            names[ref] = name;
+        }
+        return name;
+    }
+    
+    private int checkedLength(long position) {
+        int length = getInt(position);
+        if (length < 0) {
+            throw new IllegalStateException("Lunghezza della stringa non valida alla posizione " + position);
+        }
+        checkBounds(position + Integer.BYTES, length);
+        return length;
+    }
+    
+    private void checkBounds(long position, int length) {
+        if (position < 0 || position + length > size) {
+            throw new IllegalStateException("Lettura oltre la fine del catalogo alla posizione " + position);
+        }
+    }
+    
+    // Crea la vista del record che inizia in "position" e restituisce anche dove finisce
+    private LibraryItem viewAt(long position, long[] next) {
+        byte tag = getByte(position);
+        if (tag == CatalogFormat.TAG_COLLECTION) {
+            next[0] = position + 1 + Long.BYTES + getLong(position + 1);
+            return new CollectionView(this, position);
+        }
+        long body = position + 1 + Integer.BYTES;
+        next[0] = body + getInt(position + 1);
+        switch (tag) {
+            case CatalogFormat.TAG_BOOK:
+                return new BookView(this, body);
+            case CatalogFormat.TAG_MAGAZINE:
+                return new MagazineView(this, body);
+            case CatalogFormat.TAG_DVD:
+                return new DVDView(this, body);
+            default:
+                return null; // Tipo sconosciuto: saltato come in BinaryCatalogReader
+        }
+    }
+    
+    // Flag della collezione che inizia in "record" (0 nei file della versione 1)
+    private byte collectionFlags(long record) {
+        return flagBytes == 0 ? 0 : getByte(skipString(record + 1 + Long.BYTES));
+    }
+    
+    // Posizione del numero di figli della collezione che inizia in "record"
+    private long childCountPosition(long record) {
+        return skipString(record + 1 + Long.BYTES) + flagBytes;
+    }
+    
+    // Come viewAt, ma senza creare la vista: dice solo se il record ha un tipo noto
+    private boolean skipAt(long position, long[] next) {
+        byte tag = getByte(position);
+        if (tag == CatalogFormat.TAG_COLLECTION) {
+            next[0] = position + 1 + Long.BYTES + getLong(position + 1);
+            return true;
+        }
+        next[0] = position + 1 + Integer.BYTES + getInt(position + 1);
+        return tag == CatalogFormat.TAG_BOOK || tag == CatalogFormat.TAG_MAGAZINE || tag == CatalogFormat.TAG_DVD;
+    }
+    
+    /**
+      Vista di un Book: titolo, autore (riferimento), anno, isbn
+     **/
+    private static final class BookView extends Book {
+        private static final long serialVersionUID = 1L;
+        private final transient MappedCatalog catalog;
+        private final long body;
+        
+        BookView(MappedCatalog catalog, long body) {
+            this.catalog = catalog;
+            this.body = body;
+        }
+        
+        @Override
+        public String getTitle() { return catalog.getString(body); }
+        @Override
+        public String getAuthor() { return getAuthorName().getValue(); }
+        @Override
+        public Name getAuthorName() { return catalog.name(catalog.getInt(catalog.skipString(body))); }
+        @Override
+        public int getYear() { return catalog.getInt(catalog.skipString(body) + 4); }
+        @Override
+        public String getIsbn() { return catalog.getString(catalog.skipString(body) + 8); }
+        
+        // Serializzata come Book normale: la mappatura non è serializzabile
+        private Object writeReplace() throws ObjectStreamException {
+            return new Book(getTitle(), getAuthor(), getYear(), getIsbn());
+        }
+    }
+    
+    /**
+      Vista di un Magazine: titolo, numero, editore (riferimento), anno
+     **/
+    private static final class MagazineView extends Magazine {
+        private static final long serialVersionUID = 1L;
+        private final transient MappedCatalog catalog;
+        private final long body;
+        
+        MagazineView(MappedCatalog catalog, long body) {
+            this.catalog = catalog;
+            this.body = body;
+        }
+        
+        @Override
+        public String getTitle() { return catalog.getString(body); }
+        @Override
+        public int getIssue() { return catalog.getInt(catalog.skipString(body)); }
+        @Override
+        public String getPublisher() { return getPublisherName().getValue(); }
+        @Override
+        public Name getPublisherName() { return catalog.name(catalog.getInt(catalog.skipString(body) + 4)); }
+        @Override
+        public int getYear() { return catalog.getInt(catalog.skipString(body) + 8); }
+        
+        private Object writeReplace() throws ObjectStreamException {
+            return new Magazine(getTitle(), getIssue(), getPublisher(), getYear());
+        }
+    }
+    
+    /**
+      Vista di un DVD: titolo, regista (riferimento), durata, anno
+     **/
+    private static final class DVDView extends DVD {
+        private static final long serialVersionUID = 1L;
+        private final transient MappedCatalog catalog;
+        private final long body;
+        
+        DVDView(MappedCatalog catalog, long body) {
+            this.catalog = catalog;
+            this.body = body;
+        }
+        
+        @Override
+        public String getTitle() { return catalog.getString(body); }
+        @Override
+        public String getDirector() { return getDirectorName().getValue(); }
+        @Override
+        public Name getDirectorName() { return catalog.name(catalog.getInt(catalog.skipString(body))); }
+        @Override
+        public int getDuration() { return catalog.getInt(catalog.skipString(body) + 4); }
+        @Override
+        public int getYear() { return catalog.getInt(catalog.skipString(body) + 8); }
+        
+        private Object writeReplace() throws ObjectStreamException {
+            return new DVD(getTitle(), getDirector(), getDuration(), getYear());
+        }
+    }
+    
+    /**
+      Collezione lazy: il nome viene letto subito, i figli al primo accesso.
+      Dopo il caricamento si comporta come una Collection normale (anche in scrittura).
+     **/
+    private static final class CollectionView extends Collection {
+        private static final long serialVersionUID = 1L;
+        private final transient MappedCatalog catalog;
+        private final transient long record;
+        private final int childCount;
+        private boolean materialized;
+        private int knownChildCount = -1; // Figli di tipo noto, contati alla prima descrizione
+        
+        CollectionView(MappedCatalog catalog, long record) {
+            super(catalog.getString(record + 1 + Long.BYTES), true);
+            this.catalog = catalog;
+            this.record = record;
+            this.childCount = catalog.getInt(catalog.childCountPosition(record));
+            // I figli vengono caricati senza passare da addItem: il flag può essere impostato subito
+            setRejectDuplicates((catalog.collectionFlags(record) & CatalogFormat.FLAG_REJECT_DUPLICATES) != 0);
+        }
+        
+        @Override
+        protected List<LibraryItem> loadItems() {
+            materialized = true;
+            List<LibraryItem> children = new ArrayList<>(childCount);
+            long[] next = { catalog.childCountPosition(record) + Integer.BYTES };
+            for (int i = 0; i < childCount; i++) {
+                LibraryItem child = catalog.viewAt(next[0], next);
+                if (child != null) {
+                    children.add(child);
+                }
+            }
+            return children;
+        }
+        
+        @Override
+        public String getDescription() {
+            if (!materialized) {
+                // Solo i figli che loadItems tiene: l'intestazione conta anche i record di tipo
+                // sconosciuto, e la descrizione cambierebbe dopo il primo accesso
+                return "Collezione: " + getTitle() + " (" + knownChildCount() + " titoli)";
+            }
+            return super.getDescription();
+        }
+        
+        // Scorre solo tag e lunghezze, senza creare le viste. Senza sincronizzazione come in
+        // name(): due thread possono contare insieme, ma ottengono lo stesso valore
+        private int knownChildCount() {
+            int count = knownChildCount;
+            if (count < 0) {
+                count = 0;
+                long[] next = { catalog.childCountPosition(record) + Integer.BYTES };
+                for (int i = 0; i < childCount; i++) {
+                    if (catalog.skipAt(next[0], next)) {
+                        count++;
+                    }
+                }
+                knownChildCount = count;
+            }
+            return count;
+        }
+    }
+}
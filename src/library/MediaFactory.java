@@ -4,6 +4,8 @@
 // ====================
 package library;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -13,12 +15,21 @@ import java.util.logging.Level;
 public class MediaFactory {
     private static final Logger logger = Logger.getLogger(MediaFactory.class.getName());
     
+    // Metriche: elementi creati per tipo e validazioni fallite (anche nei Batch)
+    private static final Counter BOOKS = Metrics.counter("factory.books");
+    private static final Counter MAGAZINES = Metrics.counter("factory.magazines");
+    private static final Counter DVDS = Metrics.counter("factory.dvds");
+    private static final Counter COLLECTIONS = Metrics.counter("factory.collections");
+    private static final Counter FAILURES = Metrics.counter("factory.failures");
+    
     public Book createBook(String title, String author, int year, String isbn) {
         try {
             Book book = new Book(title, author, year, isbn);
+            BOOKS.increment();
             logger.log(Level.INFO, "Creato libro: {0}", title);
             return book;
         } catch (IllegalArgumentException e) {
+            FAILURES.increment();
             logger.log(Level.WARNING, "Creazione libro non riuscito: {0}", e.getMessage());
             throw e;
         }
@@ -27,9 +38,11 @@ public class MediaFactory {
     public Magazine createMagazine(String title, int issue, String publisher, int year) {
         try {
             Magazine magazine = new Magazine(title, issue, publisher, year);
+            MAGAZINES.increment();
             logger.log(Level.INFO, "Creato magazine: {0}", title);
             return magazine;
         } catch (IllegalArgumentException e) {
+            FAILURES.increment();
             logger.log(Level.WARNING, "Creazione del magazine non riuscito: {0}", e.getMessage());
             throw e;
         }
@@ -38,9 +51,11 @@ public class MediaFactory {
     public DVD createDVD(String title, String director, int duration, int year) {
         try {
             DVD dvd = new DVD(title, director, duration, year);
+            DVDS.increment();
             logger.log(Level.INFO, "Creato DVD: {0}", title);
             return dvd;
         } catch (IllegalArgumentException e) {
+            FAILURES.increment();
             logger.log(Level.WARNING, "Creazione del DVD non riuscita: {0}", e.getMessage());
             throw e;
         }
@@ -49,11 +64,129 @@ public class MediaFactory {
     public Collection createCollection(String name) {
         try {
             Collection collection = new Collection(name);
+            COLLECTIONS.increment();
             logger.log(Level.INFO, "Collezione creata: {0}", name);
             return collection;
         } catch (IllegalArgumentException e) {
+            FAILURES.increment();
             logger.log(Level.WARNING, "Creazione della Collezione non riuscita: {0}", e.getMessage());
             throw e;
         }
     }
+    
+    /**
+      Inizia una creazione in blocco (importazioni, caricamenti): gli elementi creati
+      con il Batch non vengono registrati uno per uno, e alla chiusura viene emesso
+      un solo evento di riepilogo con i conteggi e il primo errore
+     **/
+    public Batch startBatch(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Il nome del blocco non può essere nullo o vuoto");
+        }
+        return new Batch(name.trim());
+    }
+    
+    /**
+      Creazione in blocco senza log per elemento; va chiuso (try-with-resources) per emettere il riepilogo
+     **/
+    public static final class Batch implements AutoCloseable {
+        private final String name;
+        private final long start = System.nanoTime();
+        private int books;
+        private int magazines;
+        private int dvds;
+        private int collections;
+        private int failures;
+        private String firstFailure;
+        private boolean closed;
+        
+        private Batch(String name) {
+            this.name = name;
+        }
+        
+        public Book createBook(String title, String author, int year, String isbn) {
+            try {
+                Book book = new Book(title, author, year, isbn);
+                books++;
+                return book;
+            } catch (IllegalArgumentException e) {
+                throw failed(e);
+            }
+        }
+        
+        public Magazine createMagazine(String title, int issue, String publisher, int year) {
+            try {
+                Magazine magazine = new Magazine(title, issue, publisher, year);
+                magazines++;
+                return magazine;
+            } catch (IllegalArgumentException e) {
+                throw failed(e);
+            }
+        }
+        
+        public DVD createDVD(String title, String director, int duration, int year) {
+            try {
+                DVD dvd = new DVD(title, director, duration, year);
+                dvds++;
+                return dvd;
+            } catch (IllegalArgumentException e) {
+                throw failed(e);
+            }
+        }
+        
+        public Collection createCollection(String name) {
+            try {
+                Collection collection = new Collection(name);
+                collections++;
+                return collection;
+            } catch (IllegalArgumentException e) {
+                throw failed(e);
+            }
+        }
+        
+        public int getCreated() {
+            return books + magazines + dvds + collections;
+        }
+        
+        public int getFailures() {
+            return failures;
+        }
+        
+        /**
+          Emette l'evento di riepilogo (INFO, oppure WARNING se ci sono stati errori)
+         **/
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            BOOKS.add(books); // Una sola volta per blocco, non per elemento
+            MAGAZINES.add(magazines);
+            DVDS.add(dvds);
+            COLLECTIONS.add(collections);
+            FAILURES.add(failures);
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("batch", name);
+            fields.put("books", books);
+            fields.put("magazines", magazines);
+            fields.put("dvds", dvds);
+            fields.put("collections", collections);
+            fields.put("failures", failures);
+            fields.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+            if (firstFailure != null) {
+                fields.put("firstFailure", firstFailure);
+            }
+            logger.log(failures == 0 ? Level.INFO : Level.WARNING,
+                "Creazione in blocco \"{0}\": {1} elementi creati, {2} non validi",
+                new Object[] { name, getCreated(), failures, fields });
+        }
+        
+        private IllegalArgumentException failed(IllegalArgumentException e) {
+            if (failures++ == 0) {
+                firstFailure = e.getMessage();
+            }
+            return e;
+        }
+    }
 }
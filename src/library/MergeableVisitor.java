@@ -0,0 +1,22 @@
+// ====================
+//  MergeableVisitor.java
+// ====================
+package library;
+
+/**
+  Visitor che può essere eseguito in parallelo da ParallelTraversal: ogni task visita
+  una parte dell'albero con un visitor parziale, e i risultati parziali vengono poi
+  uniti nell'ordine della visita sequenziale
+ **/
+public interface MergeableVisitor<V extends MergeableVisitor<V>> extends LibraryVisitor {
+    
+    /**
+      Nuovo visitor vuoto con gli stessi parametri (ad esempio lo stesso termine di ricerca)
+     **/
+    V createPartial();
+    
+    /**
+      Accoda i risultati di un visitor parziale che ha visitato gli elementi successivi
+     **/
+    void merge(V partial);
+}
@@ -0,0 +1,148 @@
+// ====================
+//  Metrics.java
+// ====================
+package library;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+  Registro delle metriche delle operazioni: contatori (Counter) e istogrammi delle
+  durate (LatencyHistogram), identificati da un nome con punti ("storage.save").
+  
+  - Le classi strumentate tengono le proprie metriche in campi statici e le aggiornano
+    sempre. Le metriche sono disattivate finché non si chiama setEnabled(true) (o si avvia
+    con -Dlibrary.metrics=true): fino ad allora ogni aggiornamento si ferma alla lettura
+    di un flag e Metrics.start() non legge l'orologio.
+  - dump() restituisce un riepilogo testuale; registerMBeans() pubblica ogni metrica
+    sul server JMX della piattaforma (library.metrics:type=...,name=...), comprese
+    quelle create in seguito.
+ **/
+public final class Metrics {
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+    private static final String DOMAIN = "library.metrics";
+    
+    private static volatile boolean enabled = Boolean.getBoolean("library.metrics");
+    private static volatile boolean jmx;
+    private static final Map<String, Object> metrics = new ConcurrentSkipListMap<>(); // In ordine di nome
+    
+    private Metrics() {
+    }
+    
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+    
+    /**
+      Inizio di una misura: System.nanoTime(), oppure 0 se le metriche sono disattivate
+      (LatencyHistogram.recordSince ignora le misure mai partite)
+     **/
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+    
+    public static Counter counter(String name) {
+        return counter(name, null);
+    }
+    
+    /**
+      Contatore la cui velocità viene calcolata sul tempo totale di "timing"
+     **/
+    public static Counter counter(String name, LatencyHistogram timing) {
+        return lookup(name, Counter.class, () -> new Counter(name, timing));
+    }
+    
+    public static LatencyHistogram histogram(String name) {
+        return lookup(name, LatencyHistogram.class, () -> new LatencyHistogram(name));
+    }
+    
+    /**
+      Azzera tutte le metriche (restano registrate)
+     **/
+    public static void reset() {
+        for (Object metric : metrics.values()) {
+            if (metric instanceof Counter) {
+                ((Counter) metric).reset();
+            } else {
+                ((LatencyHistogram) metric).reset();
+            }
+        }
+    }
+    
+    /**
+      Riepilogo testuale, una riga per metrica in ordine di nome (solo quelle con dati)
+     **/
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Metriche ").append(enabled ? "attive" : "disattivate").append('\n');
+        for (Object metric : metrics.values()) {
+            boolean empty = metric instanceof Counter
+                ? ((Counter) metric).getCount() == 0
+                : ((LatencyHistogram) metric).getCount() == 0;
+            if (!empty) {
+                sb.append("  ").append(metric).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+    
+    /**
+      Pubblica le metriche come MBean sul server JMX della piattaforma (jconsole, VisualVM)
+     **/
+    public static synchronized void registerMBeans() {
+        jmx = true;
+        for (Object metric : metrics.values()) {
+            register(metric);
+        }
+    }
+    
+    private static <T> T lookup(String name, Class<T> type, Supplier<T> create) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Il nome della metrica non può essere nullo o vuoto");
+        }
+        Object metric = metrics.get(name);
+        if (metric == null) {
+            synchronized (Metrics.class) {
+                metric = metrics.get(name);
+                if (metric == null) {
+                    metric = create.get();
+                    metrics.put(name, metric);
+                    if (jmx) {
+                        register(metric);
+                    }
+                }
+            }
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("La metrica " + name + " esiste già con un altro tipo");
+        }
+        return type.cast(metric);
+    }
+    
+    private static void register(Object metric) {
+        boolean counter = metric instanceof Counter;
+        String name = counter ? ((Counter) metric).getName() : ((LatencyHistogram) metric).getName();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + (counter ? "Counter" : "LatencyHistogram")
+                + ",name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metric, objectName);
+            }
+        } catch (JMException e) {
+            // Le metriche non devono mai interrompere l'applicazione
+            logger.log(Level.WARNING, "Impossibile registrare la metrica " + name + " su JMX", e);
+        }
+    }
+}
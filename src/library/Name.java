@@ -0,0 +1,46 @@
+// ====================
+//  Name.java
+// ====================
+package library;
+
+/**
+  Nome canonico (autore, editore, regista) ottenuto da NamePool: ogni nome distinto
+  esiste una sola volta in memoria, insieme alla sua chiave di ricerca già calcolata
+ **/
+public final class Name {
+    private final String value;
+    private final String searchKey;
+    
+    Name(String value) {
+        this.value = value;
+        this.searchKey = TextNormalizer.normalize(value);
+    }
+    
+    public String getValue() {
+        return value;
+    }
+    
+    /**
+      Forma normalizzata per la ricerca: minuscolo, senza accenti (vedi TextNormalizer)
+     **/
+    public String getSearchKey() {
+        return searchKey;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Name)) return false;
+        return value.equals(((Name) obj).value);
+    }
+    
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return value;
+    }
+}
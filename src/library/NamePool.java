@@ -0,0 +1,85 @@
+// ====================
+//  NamePool.java
+// ====================
+package library;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+  Pool dei nomi ripetuti nel catalogo (autori, editori, registi). Un catalogo reale
+  ripete poche migliaia di nomi su milioni di elementi: con il pool ogni elemento
+  punta allo stesso Name invece di tenere una propria copia della stringa, e le
+  ricerche usano la forma in minuscolo già calcolata invece di crearne una ad ogni query.
+  
+  Book, Magazine e DVD usano il pool condiviso nei costruttori e dopo la
+  deserializzazione, quindi ci passano sia MediaFactory sia i caricamenti da file.
+  
+  Il pool tiene i nomi con riferimenti deboli: sono gli elementi a tenerli in vita.
+  Quando nessun elemento usa più un nome (cataloghi scartati, elementi rimossi)
+  il garbage collector lo libera e la voce viene tolta alla prossima intern().
+ **/
+public final class NamePool {
+    private static final NamePool SHARED = new NamePool();
+    
+    private final ConcurrentHashMap<String, Entry> names = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Name> collected = new ReferenceQueue<>();
+    
+    public static NamePool shared() {
+        return SHARED;
+    }
+    
+    /**
+      Restituisce il Name canonico per "value" (già ripulito dagli spazi dal chiamante)
+     **/
+    public Name intern(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Il nome non può essere nullo");
+        }
+        expunge();
+        Entry entry = names.get(value); // Caso comune: nome già presente, senza lock
+        Name name = entry != null ? entry.get() : null;
+        if (name != null) {
+            return name;
+        }
+        Name[] result = new Name[1];
+        names.compute(value, (key, current) -> {
+            Name existing = current != null ? current.get() : null;
+            if (existing != null) {
+                result[0] = existing;
+                return current;
+            }
+            result[0] = new Name(key);
+            return new Entry(result[0], collected);
+        });
+        return result[0];
+    }
+    
+    /**
+      Nomi nel pool; quelli liberati ma non ancora segnalati dal garbage collector sono ancora contati
+     **/
+    public int size() {
+        expunge();
+        return names.size();
+    }
+    
+    // Toglie le voci dei nomi liberati, solo se nel frattempo non sono state sostituite
+    private void expunge() {
+        Reference<? extends Name> reference;
+        while ((reference = collected.poll()) != null) {
+            Entry entry = (Entry) reference;
+            names.remove(entry.key, entry);
+        }
+    }
+    
+    private static final class Entry extends WeakReference<Name> {
+        final String key;
+        
+        Entry(Name name, ReferenceQueue<Name> queue) {
+            super(name, queue);
+            this.key = name.getValue();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+// ====================
+//  NdjsonRecordReader.java
+// ====================
+package library;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+/**
+  Legge record NDJSON una riga alla volta. Una riga non valida viene scartata e
+  segnalata con il suo numero; le righe troppo lunghe vengono saltate senza
+  caricarle in memoria, così il buffer resta limitato.
+ **/
+public class NdjsonRecordReader extends AbstractRecordReader {
+    private static final int MAX_LINE = 1 << 20;
+    
+    private final BufferedReader in;
+    private final StringBuilder line = new StringBuilder();
+    private long lineNumber;
+    private boolean eof;
+    
+    public NdjsonRecordReader(Reader in) {
+        this.in = new BufferedReader(in, 64 * 1024);
+    }
+    
+    @Override
+    public boolean hasNext() throws IOException {
+        while (!hasPending() && !eof) {
+            boolean complete = readLine();
+            if (line.length() == 0 && complete) {
+                continue; // Riga vuota
+            }
+            if (!complete) {
+                getReport().recordSkipped("riga " + lineNumber, "riga più lunga di " + MAX_LINE + " caratteri");
+                continue;
+            }
+            Map<String, Object> json = null;
+            try {
+                json = Json.parseObject(line.toString());
+                offer(parse(json), "riga " + lineNumber);
+            } catch (IllegalArgumentException e) {
+                reject("riga " + lineNumber, e.getMessage(), json != null && "begin".equals(json.get("type")));
+            }
+        }
+        return hasPending();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+    
+    // Legge la riga successiva in "line"; restituisce false se supera MAX_LINE
+    private boolean readLine() throws IOException {
+        line.setLength(0);
+        lineNumber++;
+        boolean tooLong = false;
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            if (line.length() < MAX_LINE) {
+                line.append((char) c);
+            } else {
+                tooLong = true;
+            }
+        }
+        if (c < 0) {
+            eof = true;
+        }
+        if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+            line.setLength(line.length() - 1);
+        }
+        if (tooLong) {
+            line.setLength(0);
+        }
+        return !tooLong;
+    }
+    
+    static CatalogRecord parse(Map<String, Object> json) {
+        String type = text(json, "type");
+        switch (type) {
+            case "begin":
+                return CatalogRecord.beginCollection(text(json, "name"), Boolean.TRUE.equals(json.get("rejectDuplicates")));
+            case "end":
+                return CatalogRecord.endCollection();
+            case "book":
+                return CatalogRecord.item(new Book(text(json, "title"), text(json, "author"),
+                        number(json, "year"), text(json, "isbn")));
+            case "magazine":
+                return CatalogRecord.item(new Magazine(text(json, "title"), number(json, "issue"),
+                        text(json, "publisher"), number(json, "year")));
+            case "dvd":
+                return CatalogRecord.item(new DVD(text(json, "title"), text(json, "director"),
+                        number(json, "duration"), number(json, "year")));
+            default:
+                throw new IllegalArgumentException("Tipo di record sconosciuto: " + type);
+        }
+    }
+    
+    static String text(Map<String, Object> json, String key) {
+        Object value = json.get(key);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Campo testuale mancante: " + key);
+        }
+        return (String) value;
+    }
+    
+    static int number(Map<String, Object> json, String key) {
+        Object value = json.get(key);
+        if (!(value instanceof Long) || (Long) value != ((Long) value).intValue()) {
+            throw new IllegalArgumentException("Campo numerico mancante o non valido: " + key);
+        }
+        return ((Long) value).intValue();
+    }
+}
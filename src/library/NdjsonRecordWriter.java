@@ -0,0 +1,65 @@
+// ====================
+//  NdjsonRecordWriter.java
+// ====================
+package library;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+  Scrive i record del catalogo in NDJSON: un oggetto JSON per riga
+ **/
+public class NdjsonRecordWriter implements CatalogRecordWriter {
+    private final Writer out;
+    
+    public NdjsonRecordWriter(Writer out) {
+        this.out = out;
+    }
+    
+    @Override
+    public void write(CatalogRecord record) throws IOException {
+        switch (record.getKind()) {
+            case BEGIN_COLLECTION:
+                // Il flag viene scritto solo se attivo: le righe restano quelle di prima
+                out.write("{\"type\":\"begin\",\"name\":" + Json.quote(record.getName())
+                        + (record.isRejectDuplicates() ? ",\"rejectDuplicates\":true}" : "}"));
+                break;
+            case END_COLLECTION:
+                out.write("{\"type\":\"end\"}");
+                break;
+            default:
+                out.write(toJson(record.getItem()));
+        }
+        out.write('\n');
+    }
+    
+    static String toJson(LibraryItem item) {
+        if (item instanceof Book) {
+            Book book = (Book) item;
+            return "{\"type\":\"book\",\"title\":" + Json.quote(book.getTitle())
+                    + ",\"author\":" + Json.quote(book.getAuthor())
+                    + ",\"year\":" + book.getYear()
+                    + ",\"isbn\":" + Json.quote(book.getIsbn()) + "}";
+        }
+        if (item instanceof Magazine) {
+            Magazine magazine = (Magazine) item;
+            return "{\"type\":\"magazine\",\"title\":" + Json.quote(magazine.getTitle())
+                    + ",\"issue\":" + magazine.getIssue()
+                    + ",\"publisher\":" + Json.quote(magazine.getPublisher())
+                    + ",\"year\":" + magazine.getYear() + "}";
+        }
+        if (item instanceof DVD) {
+            DVD dvd = (DVD) item;
+            return "{\"type\":\"dvd\",\"title\":" + Json.quote(dvd.getTitle())
+                    + ",\"director\":" + Json.quote(dvd.getDirector())
+                    + ",\"duration\":" + dvd.getDuration()
+                    + ",\"year\":" + dvd.getYear() + "}";
+        }
+        throw new IllegalArgumentException("Tipo di elemento non supportato: " + item.getClass().getSimpleName());
+    }
+    
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
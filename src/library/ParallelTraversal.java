@@ -0,0 +1,205 @@
+// ====================
+//  ParallelTraversal.java
+// ====================
+package library;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+  Visita parallela di un albero di Collection con il framework fork/join.
+  
+  Ogni task visita in profondità la sua parte di albero con un proprio visitor parziale:
+  le collezioni con più di "threshold" elementi diretti vengono divise a metà, e le
+  sotto-collezioni diventano task separati finché ci sono pochi task in coda
+  (altrimenti vengono visitate nello stesso task, senza costi di fork). Oltre MAX_FORK_DEPTH
+  task annidati le sotto-collezioni vengono visitate nello stesso task, così anche gli
+  alberi molto profondi non esauriscono lo stack.
+  I risultati parziali vengono uniti con MergeableVisitor.merge nell'ordine della
+  visita sequenziale (Collection.accept), quindi il risultato è identico: anche qui
+  una collezione già presente sul percorso dalla radice (un ciclo) viene saltata.
+  Registra anche le stesse metriche di accept ("visit.<Visitor>" e "visit.<Visitor>.items").
+ **/
+public class ParallelTraversal {
+    public static final int DEFAULT_THRESHOLD = 1024;
+    private static final int MAX_SURPLUS_TASKS = 3;
+    private static final int MAX_FORK_DEPTH = 32; // Task annidati: ogni join può eseguirne uno sullo stack
+    
+    private final ForkJoinPool pool;
+    private final int threshold;
+    
+    public ParallelTraversal() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+    
+    public ParallelTraversal(ForkJoinPool pool, int threshold) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Il pool non può essere nullo");
+        }
+        if (threshold < 1) {
+            throw new IllegalArgumentException("La soglia deve essere positiva");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+    
+    /**
+      Visita root e tutto il suo sotto-albero; al termine "visitor" contiene gli stessi
+      risultati che avrebbe ottenuto con root.accept(visitor)
+     **/
+    public <V extends MergeableVisitor<V>> void traverse(Collection root, V visitor) {
+        if (root == null || visitor == null) {
+            throw new IllegalArgumentException("Radice e visitor non possono essere nulli");
+        }
+        long start = Metrics.start();
+        LongAdder visited = start != 0 ? new LongAdder() : null; // Contati solo con le metriche attive
+        List<LibraryItem> items = root.getItems();
+        visitor.merge(pool.invoke(new VisitTask<>(visitor, root, items, 0, items.size(), new Path(root, null), 0, visited)));
+        if (start != 0) {
+            String name = "visit." + visitor.getClass().getSimpleName();
+            Metrics.histogram(name).recordSince(start);
+            Metrics.counter(name + ".items").add(visited.sum());
+        }
+    }
+    
+    /**
+      Visita gli elementi [from, to) di "items" (figli di "owner"); se from == 0 visita anche owner
+     **/
+    private final class VisitTask<V extends MergeableVisitor<V>> extends RecursiveTask<V> {
+        private static final long serialVersionUID = 1L;
+        private final V prototype;
+        private final Collection owner;
+        private final List<LibraryItem> items;
+        private final int from;
+        private final int to;
+        private final Path path; // Da owner fino alla radice
+        private final int forks; // Task che hanno generato questo, per limitare l'annidamento
+        private final LongAdder visited; // null senza metriche
+        
+        VisitTask(V prototype, Collection owner, List<LibraryItem> items, int from, int to, Path path, int forks,
+                LongAdder visited) {
+            this.prototype = prototype;
+            this.owner = owner;
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.path = path;
+            this.forks = forks;
+            this.visited = visited;
+        }
+        
+        @Override
+        protected V compute() {
+            if (to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                VisitTask<V> right = new VisitTask<>(prototype, owner, items, middle, to, path, forks, visited);
+                right.fork();
+                V result = new VisitTask<>(prototype, owner, items, from, middle, path, forks, visited).compute();
+                result.merge(right.join());
+                return result;
+            }
+            
+            // Parti del risultato in ordine di visita: visitor parziali e task ancora in corso
+            List<Object> parts = new ArrayList<>();
+            V current = prototype.createPartial();
+            long count = 0;
+            if (from == 0) {
+                current.visit(owner);
+                count++;
+            }
+            Deque<Range> stack = new ArrayDeque<>();
+            Set<Collection> opened = Collections.newSetFromMap(new IdentityHashMap<>()); // Aperte da questo task
+            stack.push(new Range(items, from, to, path));
+            while (!stack.isEmpty()) {
+                Range range = stack.peek();
+                if (range.next == range.end) {
+                    stack.pop();
+                    opened.remove(range.path.collection);
+                    continue;
+                }
+                LibraryItem item = range.items.get(range.next++);
+                if (!(item instanceof Collection)) {
+                    item.accept(current);
+                    count++;
+                    continue;
+                }
+                Collection child = (Collection) item;
+                if (opened.contains(child) || path.contains(child)) {
+                    continue; // Ciclo, saltato come in TreeIterator
+                }
+                List<LibraryItem> children = child.getItems();
+                Path childPath = new Path(child, range.path);
+                if (forks < MAX_FORK_DEPTH
+                        && (children.size() > threshold || getSurplusQueuedTaskCount() <= MAX_SURPLUS_TASKS)) {
+                    parts.add(current);
+                    parts.add(new VisitTask<>(prototype, child, children, 0, children.size(), childPath, forks + 1, visited).fork());
+                    current = prototype.createPartial();
+                } else {
+                    current.visit(child); // Come child.accept(), ma senza ricorsione
+                    count++;
+                    opened.add(child);
+                    stack.push(new Range(children, 0, children.size(), childPath));
+                }
+            }
+            parts.add(current);
+            if (visited != null) {
+                visited.add(count);
+            }
+            
+            @SuppressWarnings("unchecked")
+            V result = (V) parts.get(0);
+            for (int i = 1; i < parts.size(); i++) {
+                Object part = parts.get(i);
+                @SuppressWarnings("unchecked")
+                V partial = part instanceof ForkJoinTask ? ((ForkJoinTask<V>) part).join() : (V) part;
+                result.merge(partial);
+            }
+            return result;
+        }
+    }
+    
+    private static final class Range {
+        final List<LibraryItem> items;
+        final int end;
+        final Path path;
+        int next;
+        
+        Range(List<LibraryItem> items, int from, int end, Path path) {
+            this.items = items;
+            this.next = from;
+            this.end = end;
+            this.path = path;
+        }
+    }
+    
+    /**
+      Percorso immutabile dalla collezione alla radice, condiviso tra i task
+     **/
+    private static final class Path {
+        final Collection collection;
+        final Path parent;
+        
+        Path(Collection collection, Path parent) {
+            this.collection = collection;
+            this.parent = parent;
+        }
+        
+        boolean contains(Collection target) {
+            for (Path p = this; p != null; p = p.parent) {
+                if (p.collection == target) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
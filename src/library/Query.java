@@ -0,0 +1,224 @@
+// ====================
+//  Query.java
+// ====================
+package library;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+  Interrogazione strutturata del catalogo: condizioni sui campi (Condition, in AND tra loro),
+  ordinamento, offset e limit. Ad esempio "libri di Eco tra il 1990 e il 2010, per anno, pagina 3":
+    
+    new Query()
+        .where(Condition.type(Book.class))
+        .where(Condition.equalTo(ItemField.AUTHOR, "Umberto Eco"))
+        .where(Condition.between(ItemField.YEAR, 1990, 2010))
+        .orderBy(ItemField.YEAR)
+        .offset(20).limit(10)
+  
+  execute(Collection) visita l'albero come accept(); execute(CatalogIndex) parte dai candidati
+  degli indici secondari (tipo e anno) e controlla solo quelli. In entrambi i casi, con un limit
+  i risultati ordinati passano da un heap di offset + limit elementi (top-K) invece di
+  ordinare l'intera lista, e senza ordinamento la ricerca si ferma appena la pagina è piena.
+  A parità di chiave di ordinamento vale l'ordine di visita (o di indicizzazione).
+ **/
+public class Query {
+    private final List<Condition> conditions = new ArrayList<>();
+    private Comparator<LibraryItem> order; // null: ordine di visita
+    private int offset;
+    private int limit = -1; // Nessun limite
+    
+    public Query where(Condition condition) {
+        if (condition == null) {
+            throw new IllegalArgumentException("La condizione non può essere nulla");
+        }
+        conditions.add(condition);
+        return this;
+    }
+    
+    /**
+      Ordina per il campo indicato, in modo crescente; chiamate successive aggiungono chiavi secondarie
+     **/
+    public Query orderBy(ItemField field) {
+        return orderBy(field, false);
+    }
+    
+    public Query orderByDescending(ItemField field) {
+        return orderBy(field, true);
+    }
+    
+    public Query offset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("L'offset non può essere negativo");
+        }
+        this.offset = offset;
+        return this;
+    }
+    
+    public Query limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Il limite non può essere negativo");
+        }
+        this.limit = limit;
+        return this;
+    }
+    
+    /**
+      Esegue la query visitando l'albero (radice compresa) nello stesso ordine di accept()
+     **/
+    public List<LibraryItem> execute(Collection root) {
+        if (root == null) {
+            throw new IllegalArgumentException("La collezione non può essere nulla");
+        }
+        Condition condition = combined();
+        Results results = new Results();
+        TreeIterator iterator = new TreeIterator(root);
+        while (iterator.hasNext()) {
+            if (!offer(results, condition, iterator.next())) {
+                break; // Pagina completa
+            }
+        }
+        return results.toList();
+    }
+    
+    /**
+      Esegue la query sugli elementi indicizzati, partendo dai candidati degli indici
+      su tipo e anno quando le condizioni li usano
+     **/
+    public List<LibraryItem> execute(CatalogIndex index) {
+        if (index == null) {
+            throw new IllegalArgumentException("L'indice non può essere nullo");
+        }
+        Condition condition = combined();
+        BitSet candidates = condition == null ? null : condition.candidates(index);
+        BitSet live = index.liveIds();
+        if (candidates == null) {
+            candidates = live;
+        } else {
+            candidates.and(live);
+        }
+        Results results = new Results();
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            if (!offer(results, condition, index.itemAt(id))) {
+                break;
+            }
+        }
+        return results.toList();
+    }
+    
+    /**
+      Descrizione del piano: condizioni e indici usati
+     **/
+    public String explain(CatalogIndex index) {
+        Condition condition = combined();
+        BitSet candidates = condition == null || index == null ? null : condition.candidates(index);
+        return "where " + (condition == null ? "-" : condition)
+                + (candidates == null ? ", scansione completa" : ", " + candidates.cardinality() + " candidati dagli indici")
+                + (order == null ? "" : ", ordinamento" + (limit >= 0 ? " top-" + ((long) offset + limit) : " completo"))
+                + (limit >= 0 ? ", limit " + limit : "") + (offset > 0 ? ", offset " + offset : "");
+    }
+    
+    private Query orderBy(ItemField field, boolean descending) {
+        if (field == null) {
+            throw new IllegalArgumentException("Il campo non può essere nullo");
+        }
+        Comparator<LibraryItem> key = Comparator.comparing(field::valueOf,
+                Comparator.nullsLast(descending ? VALUE_ORDER.reversed() : VALUE_ORDER));
+        order = order == null ? key : order.thenComparing(key);
+        return this;
+    }
+    
+    // Stringhe senza distinguere maiuscole e minuscole, numeri in ordine naturale
+    private static final Comparator<Object> VALUE_ORDER = (a, b) -> {
+        if (a instanceof Integer && b instanceof Integer) {
+            return Integer.compare((Integer) a, (Integer) b);
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(a.toString(), b.toString());
+    };
+    
+    private Condition combined() {
+        if (conditions.isEmpty()) {
+            return null;
+        }
+        return conditions.size() == 1 ? conditions.get(0) : Condition.and(conditions.toArray(new Condition[0]));
+    }
+    
+    // Falso quando non servono altri elementi
+    private static boolean offer(Results results, Condition condition, LibraryItem item) {
+        if (condition == null || condition.test(item)) {
+            return results.add(item);
+        }
+        return true;
+    }
+    
+    /**
+      Raccoglie i risultati: senza ordinamento tiene solo la pagina richiesta, con ordinamento
+      e limit un heap dei migliori offset + limit (il peggiore in cima), altrimenti tutto
+     **/
+    private final class Results {
+        private final long keep = limit < 0 ? Long.MAX_VALUE : (long) offset + limit;
+        private final List<LibraryItem> page = new ArrayList<>();
+        private final PriorityQueue<Ranked> heap;
+        private final List<Ranked> all;
+        private final Comparator<Ranked> rankedOrder;
+        private long seen; // Elementi trovati finora (anche quelli saltati dall'offset)
+        
+        Results() {
+            boolean topK = order != null && limit >= 0;
+            rankedOrder = order == null ? null
+                    : Comparator.<Ranked, LibraryItem>comparing(r -> r.item, order).thenComparingLong(r -> r.position);
+            heap = topK ? new PriorityQueue<>(rankedOrder.reversed()) : null;
+            all = order != null && !topK ? new ArrayList<>() : null;
+        }
+        
+        boolean add(LibraryItem item) {
+            if (keep == 0) {
+                return false;
+            }
+            long position = seen++;
+            if (order == null) {
+                if (position >= offset && position < keep) {
+                    page.add(item);
+                }
+                return seen < keep;
+            }
+            Ranked ranked = new Ranked(item, position);
+            if (heap == null) {
+                all.add(ranked);
+            } else if (heap.size() < keep) {
+                heap.add(ranked);
+            } else if (rankedOrder.compare(ranked, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(ranked);
+            }
+            return true;
+        }
+        
+        List<LibraryItem> toList() {
+            if (order == null) {
+                return page;
+            }
+            List<Ranked> sorted = heap == null ? all : new ArrayList<>(heap);
+            sorted.sort(rankedOrder);
+            List<LibraryItem> result = new ArrayList<>();
+            for (int i = offset; i < sorted.size() && i < keep; i++) {
+                result.add(sorted.get(i).item);
+            }
+            return result;
+        }
+    }
+    
+    private static final class Ranked {
+        final LibraryItem item;
+        final long position;
+        
+        Ranked(LibraryItem item, long position) {
+            this.item = item;
+            this.position = position;
+        }
+    }
+}
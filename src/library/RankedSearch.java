@@ -0,0 +1,253 @@
+// ====================
+//  RankedSearch.java
+// ====================
+package library;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+  Ricerca con punteggio per la casella di ricerca: restituisce solo i K risultati migliori.
+  Stessi campi e stessa corrispondenza di SearchVisitor (sottostringa sulle chiavi
+  normalizzate), ma ogni risultato riceve un punteggio:
+  
+  - titolo: uguale al termine > inizia con il termine > lo contiene
+  - autore/editore/regista: stessi tre livelli, ma pesano meno di qualsiasi livello del titolo
+  
+  I punteggi formano tre fasce che non si sovrappongono: titolo uguale al termine,
+  titolo che inizia con il termine, tutto il resto. Con un CatalogIndex le fasce vengono
+  esaminate una dopo l'altra (le prime due dall'indice dei titoli, senza toccare gli altri
+  elementi) e la ricerca si ferma appena l'heap dei K migliori non può più migliorare.
+  La visita dell'albero invece esamina tutti gli elementi: si ferma prima solo se l'heap
+  è pieno di risultati con il punteggio massimo, quindi per un catalogo grande conviene l'indice.
+  A parità di punteggio vale l'ordine di visita (l'ordine di indicizzazione per l'indice).
+  
+  Una ricerca può essere interrotta con cancel() (da un altro thread), con un timeout
+  o interrompendo il thread: restituisce i risultati trovati fino a quel momento
+  e isComplete() diventa falso. Ogni istanza esegue una sola ricerca.
+ **/
+public class RankedSearch {
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int SUBSTRING = 1;
+    private static final int TITLE_WEIGHT = 4; // Un livello del titolo vale più di ogni livello del nome
+    public static final int MAX_SCORE = EXACT * TITLE_WEIGHT + EXACT;
+    private static final int MAX_PREFIX_SCORE = PREFIX * TITLE_WEIGHT + EXACT; // Fascia "inizia con"
+    private static final int MAX_OTHER_SCORE = SUBSTRING * TITLE_WEIGHT + EXACT; // Ultima fascia
+    private static final int CHECK_INTERVAL = 256; // Elementi tra due controlli di timeout e cancellazione
+    
+    private final String searchTerm;
+    private final int limit;
+    private long timeoutNanos; // 0 = nessun timeout
+    private long deadline; // System.nanoTime() oltre il quale fermarsi
+    private volatile boolean cancelled;
+    private boolean complete = true;
+    private boolean started;
+    
+    public RankedSearch(String searchTerm, int limit) {
+        if (searchTerm == null) {
+            throw new IllegalArgumentException("Il termine di ricerca non può essere nulla");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Il numero di risultati deve essere positivo");
+        }
+        this.searchTerm = TextNormalizer.normalize(searchTerm).trim();
+        this.limit = limit;
+    }
+    
+    /**
+      Tempo massimo della ricerca, misurato dall'inizio di search()
+     **/
+    public RankedSearch timeout(long amount, TimeUnit unit) {
+        if (amount <= 0 || unit == null) {
+            throw new IllegalArgumentException("Il timeout deve essere positivo");
+        }
+        timeoutNanos = unit.toNanos(amount);
+        return this;
+    }
+    
+    /**
+      Chiede l'interruzione della ricerca in corso (o di quella che sta per iniziare)
+     **/
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    /**
+      Falso se l'ultima ricerca è stata interrotta prima di esaminare tutti gli elementi
+     **/
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    /**
+      Visita l'albero (radice compresa) nello stesso ordine di accept(), con TreeIterator
+     **/
+    public List<Hit> search(Collection root) {
+        if (root == null) {
+            throw new IllegalArgumentException("La collezione non può essere nulla");
+        }
+        start();
+        TopK top = new TopK();
+        TreeIterator iterator = new TreeIterator(root);
+        while (iterator.hasNext() && !top.isFull(MAX_SCORE - 1)) {
+            if (top.seen % CHECK_INTERVAL == 0 && shouldStop()) {
+                complete = false;
+                break;
+            }
+            top.offer(iterator.next(), top.seen);
+        }
+        return top.toList();
+    }
+    
+    /**
+      Stessi risultati di CatalogIndex.search(), classificati per fasce: titoli uguali al
+      termine, poi titoli che iniziano con il termine, poi gli altri candidati dei trigrammi.
+      Ci si ferma dopo una fascia se i K risultati trovati battono tutti quelli della successiva.
+     **/
+    public List<Hit> search(CatalogIndex index) {
+        if (index == null) {
+            throw new IllegalArgumentException("L'indice non può essere nullo");
+        }
+        start();
+        TopK top = new TopK();
+        BitSet offered = new BitSet(); // Un elemento compare anche nelle fasce successive
+        if (offerAll(index, index.titleMatches(searchTerm, true), offered, top) && !top.isFull(MAX_PREFIX_SCORE)
+                && offerAll(index, index.titleMatches(searchTerm, false), offered, top) && !top.isFull(MAX_OTHER_SCORE)) {
+            offerAll(index, index.candidates(searchTerm), offered, top);
+        }
+        return top.toList();
+    }
+    
+    // Falso se la ricerca è stata interrotta
+    private boolean offerAll(CatalogIndex index, BitSet ids, BitSet offered, TopK top) {
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            if (offered.get(id)) {
+                continue;
+            }
+            if (top.seen % CHECK_INTERVAL == 0 && shouldStop()) {
+                complete = false;
+                return false;
+            }
+            offered.set(id);
+            top.offer(index.itemAt(id), id);
+        }
+        return true;
+    }
+    
+    /**
+      Punteggio dell'elemento per il termine cercato, 0 se non corrisponde
+     **/
+    public int score(LibraryItem item) {
+        int title = level(item.getTitleKey());
+        Name name = nameOf(item);
+        int other = name == null ? 0 : level(name.getSearchKey());
+        return title * TITLE_WEIGHT + other;
+    }
+    
+    private void start() {
+        if (started) {
+            throw new IllegalStateException("La ricerca è già stata eseguita");
+        }
+        started = true;
+        deadline = System.nanoTime() + timeoutNanos;
+    }
+    
+    private boolean shouldStop() {
+        return cancelled || Thread.currentThread().isInterrupted()
+                || (timeoutNanos != 0 && System.nanoTime() - deadline >= 0);
+    }
+    
+    private int level(String field) {
+        if (!field.contains(searchTerm)) {
+            return 0;
+        }
+        if (field.length() == searchTerm.length()) {
+            return EXACT;
+        }
+        return field.startsWith(searchTerm) ? PREFIX : SUBSTRING;
+    }
+    
+    private static Name nameOf(LibraryItem item) {
+        if (item instanceof Book) {
+            return ((Book) item).getAuthorName();
+        }
+        if (item instanceof Magazine) {
+            return ((Magazine) item).getPublisherName();
+        }
+        if (item instanceof DVD) {
+            return ((DVD) item).getDirectorName();
+        }
+        return null; // Collezioni: solo il titolo, come SearchVisitor
+    }
+    
+    /**
+      Heap dei K migliori risultati con il peggiore in cima
+     **/
+    private final class TopK {
+        private final PriorityQueue<Hit> heap = new PriorityQueue<>(WORST_FIRST);
+        private long seen; // Elementi esaminati
+        
+        // position: ordine di visita (o id nell'indice), decide a parità di punteggio
+        void offer(LibraryItem item, long position) {
+            seen++;
+            int score = score(item);
+            if (score == 0) {
+                return;
+            }
+            if (heap.size() < limit) {
+                heap.add(new Hit(item, score, position));
+            } else if (score > heap.peek().score) {
+                // A parità di punteggio resta il risultato visitato prima
+                heap.poll();
+                heap.add(new Hit(item, score, position));
+            }
+        }
+        
+        // Heap pieno di risultati che battono qualsiasi elemento con punteggio al più "bound"
+        boolean isFull(int bound) {
+            return heap.size() == limit && heap.peek().score > bound;
+        }
+        
+        List<Hit> toList() {
+            List<Hit> hits = new ArrayList<>(heap);
+            hits.sort(WORST_FIRST.reversed());
+            return hits;
+        }
+    }
+    
+    private static final Comparator<Hit> WORST_FIRST =
+            Comparator.comparingInt((Hit hit) -> hit.score).thenComparingLong(hit -> -hit.position);
+    
+    /**
+      Risultato con il suo punteggio (più alto = più pertinente)
+     **/
+    public static final class Hit {
+        private final LibraryItem item;
+        private final int score;
+        private final long position;
+        
+        Hit(LibraryItem item, int score, long position) {
+            this.item = item;
+            this.score = score;
+            this.position = position;
+        }
+        
+        public LibraryItem getItem() {
+            return item;
+        }
+        
+        public int getScore() {
+            return score;
+        }
+        
+        @Override
+        public String toString() {
+            return score + " " + item.getTitle();
+        }
+    }
+}
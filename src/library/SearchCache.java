@@ -0,0 +1,160 @@
+// ====================
+//  SearchCache.java
+// ====================
+package library;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+  Cache dei risultati di ricerca per i termini cercati più spesso: una ricerca ripetuta
+  costa una lettura da una HashMap invece di una nuova ricerca sul catalogo.
+  
+  - Chiave: il termine normalizzato (TextNormalizer + trim), quindi "Città " e "citta"
+    condividono lo stesso risultato, come per SearchVisitor e CatalogIndex.
+  - Invalidazione: ogni risultato ricorda la versione della collezione osservata
+    (Collection.getVersion()), che aumenta ad ogni addItem/removeItem nel suo sotto-albero.
+    Un risultato calcolato prima dell'ultima modifica non viene mai restituito.
+  - Capienza limitata, con politica LRU: quando è piena viene scartato il termine
+    usato meno di recente.
+  
+  I metodi sono thread-safe; la ricerca vera e propria avviene fuori dal lock.
+ **/
+public class SearchCache {
+    private final Collection root;
+    private final Function<String, List<LibraryItem>> search;
+    private final int capacity;
+    private final Map<String, CachedResult> entries;
+    
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    
+    /**
+      "search" calcola i risultati di un termine già normalizzato sul sotto-albero di "root"
+      (ad esempio catalogIndex::search)
+     **/
+    public SearchCache(Collection root, int capacity, Function<String, List<LibraryItem>> search) {
+        if (root == null) {
+            throw new IllegalArgumentException("La collezione non può essere nulla");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capienza della cache deve essere positiva");
+        }
+        if (search == null) {
+            throw new IllegalArgumentException("La funzione di ricerca non può essere nulla");
+        }
+        this.root = root;
+        this.capacity = capacity;
+        this.search = search;
+        // Ordine di accesso: il primo elemento è quello usato meno di recente
+        this.entries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                if (size() > SearchCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+      Risultati (non modificabili) del termine, dalla cache se il catalogo non è cambiato
+     **/
+    public List<LibraryItem> search(String searchTerm) {
+        if (searchTerm == null) {
+            throw new IllegalArgumentException("Il termine di ricerca non può essere nulla");
+        }
+        String key = TextNormalizer.normalize(searchTerm).trim();
+        // Versione letta prima della ricerca: se il catalogo cambia nel frattempo il risultato
+        // resta in cache con la versione vecchia e verrà ricalcolato alla prossima richiesta
+        long version = root.getVersion();
+        synchronized (this) {
+            CachedResult entry = entries.get(key);
+            if (entry != null) {
+                if (entry.version == version) {
+                    hits++;
+                    return entry.results;
+                }
+                entries.remove(key);
+                invalidations++;
+            }
+            misses++;
+        }
+        List<LibraryItem> results = Collections.unmodifiableList(new ArrayList<>(search.apply(key)));
+        synchronized (this) {
+            CachedResult current = entries.get(key);
+            if (current == null || current.version < version) {
+                entries.put(key, new CachedResult(version, results));
+            }
+        }
+        return results;
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+      Termini scartati per fare posto (politica LRU)
+     **/
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    /**
+      Risultati scartati perché il catalogo è stato modificato dopo il loro calcolo
+     **/
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+    
+    /**
+      Frazione delle ricerche servite dalla cache (0 se non ci sono state ricerche)
+     **/
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "SearchCache[" + entries.size() + "/" + capacity + ", hit=" + hits + ", miss=" + misses
+                + ", evict=" + evictions + ", invalid=" + invalidations + "]";
+    }
+    
+    private static final class CachedResult {
+        final long version;
+        final List<LibraryItem> results;
+        
+        CachedResult(long version, List<LibraryItem> results) {
+            this.version = version;
+            this.results = results;
+        }
+    }
+}
@@ -5,55 +5,79 @@
 package library;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
-  Implementazione del Visitor pattern per la ricerca
+  Implementazione del Visitor pattern per la ricerca.
+  Confronta il termine normalizzato con le chiavi già calcolate di titoli e nomi
+  (vedi TextNormalizer): "citta" trova "Città".
+  È anche un MergeableVisitor: può essere eseguito in parallelo con ParallelTraversal.
  **/
-public class SearchVisitor implements LibraryVisitor {
+public class SearchVisitor implements MergeableVisitor<SearchVisitor> {
+    private static final Counter MATCHES = Metrics.counter("search.matches");
+    
     private String searchTerm;
     private List<LibraryItem> results;
+    private List<LibraryItem> resultsView;
     
     public SearchVisitor(String searchTerm) {
         if (searchTerm == null) {
             throw new IllegalArgumentException("Il termine di ricerca non può essere nulla");
         }
-        this.searchTerm = searchTerm.toLowerCase().trim();
+        this.searchTerm = TextNormalizer.normalize(searchTerm).trim();
         this.results = new ArrayList<>();
+        this.resultsView = Collections.unmodifiableList(results);
     }
     
     @Override
     public void visit(Book book) {
-        if (book.getTitle().toLowerCase().contains(searchTerm) || 
-            book.getAuthor().toLowerCase().contains(searchTerm)) {
-            results.add(book);
+        if (book.getTitleKey().contains(searchTerm) || 
+            book.getAuthorName().getSearchKey().contains(searchTerm)) {
+            match(book);
         }
     }
     
     @Override
     public void visit(Magazine magazine) {
-        if (magazine.getTitle().toLowerCase().contains(searchTerm) || 
-            magazine.getPublisher().toLowerCase().contains(searchTerm)) {
-            results.add(magazine);
+        if (magazine.getTitleKey().contains(searchTerm) || 
+            magazine.getPublisherName().getSearchKey().contains(searchTerm)) {
+            match(magazine);
         }
     }
     
     @Override
     public void visit(DVD dvd) {
-        if (dvd.getTitle().toLowerCase().contains(searchTerm) || 
-            dvd.getDirector().toLowerCase().contains(searchTerm)) {
-            results.add(dvd);
+        if (dvd.getTitleKey().contains(searchTerm) || 
+            dvd.getDirectorName().getSearchKey().contains(searchTerm)) {
+            match(dvd);
         }
     }
     
     @Override
     public void visit(Collection collection) {
-        if (collection.getTitle().toLowerCase().contains(searchTerm)) {
-            results.add(collection);
+        if (collection.getTitleKey().contains(searchTerm)) {
+            match(collection);
         }
     }
     
+    @Override
+    public SearchVisitor createPartial() {
+        return new SearchVisitor(searchTerm);
+    }
+    
+    @Override
+    public void merge(SearchVisitor partial) {
+        results.addAll(partial.results);
+    }
+    
+    private void match(LibraryItem item) {
+        results.add(item);
+        MATCHES.increment();
+    }
+    
+    // Vista non modificabile dei risultati, senza copia
     public List<LibraryItem> getResults() {
-        return new ArrayList<>(results); // Copia difensiva
+        return resultsView;
     }
 }
@@ -0,0 +1,54 @@
+// ====================
+//  StructuredFormatter.java
+// ====================
+package library;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+  Formatter che scrive ogni evento come una riga JSON con campi fissi
+  (time, level, logger, thread, message) più i campi strutturati dell'evento:
+  se tra i parametri del record c'è una Map, le sue voci diventano campi JSON
+  (vedi il riepilogo di MediaFactory.Batch).
+ **/
+public class StructuredFormatter extends Formatter {
+    
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder sb = new StringBuilder(160);
+        sb.append("{\"time\":").append(Json.quote(Instant.ofEpochMilli(record.getMillis()).toString()));
+        sb.append(",\"level\":").append(Json.quote(record.getLevel().getName()));
+        sb.append(",\"logger\":").append(Json.quote(String.valueOf(record.getLoggerName())));
+        sb.append(",\"thread\":").append(record.getThreadID());
+        sb.append(",\"message\":").append(Json.quote(formatMessage(record)));
+        Object[] parameters = record.getParameters();
+        if (parameters != null) {
+            for (Object parameter : parameters) {
+                if (parameter instanceof Map) {
+                    for (Map.Entry<?, ?> field : ((Map<?, ?>) parameter).entrySet()) {
+                        sb.append(',').append(Json.quote(String.valueOf(field.getKey()))).append(':');
+                        appendValue(sb, field.getValue());
+                    }
+                }
+            }
+        }
+        if (record.getThrown() != null) {
+            sb.append(",\"error\":").append(Json.quote(String.valueOf(record.getThrown())));
+        }
+        return sb.append('}').append(System.lineSeparator()).toString();
+    }
+    
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Boolean
+                || (value instanceof Number && Double.isFinite(((Number) value).doubleValue()))) {
+            sb.append(value);
+        } else {
+            sb.append(Json.quote(value.toString()));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+// ====================
+//  TextNormalizer.java
+// ====================
+package library;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+  Normalizzazione dei testi per la ricerca: scomposizione Unicode NFKD, rimozione degli
+  accenti e minuscolo con un locale fisso (Locale.ROOT, indipendente dalla configurazione
+  della JVM). Così "citta" trova "Città" e "CAFÉ" trova "cafe".
+  
+  Le chiavi dei titoli e dei nomi vengono calcolate una sola volta, quando l'elemento viene
+  creato o caricato (vedi LibraryItem.getTitleKey() e Name.getSearchKey()); a ogni ricerca
+  si normalizza solo il termine cercato.
+ **/
+public final class TextNormalizer {
+    
+    private TextNormalizer() {
+    }
+    
+    /**
+      Chiave di ricerca del testo; restituisce la stessa istanza se il testo è già normalizzato
+     **/
+    public static String normalize(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Il testo da normalizzare non può essere nullo");
+        }
+        // Caso comune: solo ASCII, basta il minuscolo (nessun accento da togliere)
+        boolean upperCase = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                return fold(text);
+            }
+            upperCase |= c >= 'A' && c <= 'Z';
+        }
+        return upperCase ? text.toLowerCase(Locale.ROOT) : text;
+    }
+    
+    private static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(c);
+            }
+        }
+        String folded = sb.toString().toLowerCase(Locale.ROOT);
+        return folded.equals(text) ? text : folded;
+    }
+}
@@ -0,0 +1,155 @@
+// ====================
+//  TreeIterator.java
+// ====================
+package library;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+  Visita iterativa di un albero di Collection, radice compresa: usa una pila (o una coda)
+  sullo heap invece della ricorsione, quindi lo stack Java resta costante anche con
+  annidamenti molto profondi. È il motore usato da accept(), display() e dalle altre visite.
+  
+  - DEPTH_FIRST: stesso ordine della visita ricorsiva (ogni collezione prima dei suoi elementi).
+    Una collezione già presente sul percorso dalla radice (un ciclo) viene saltata; quella
+    presente in più punti dell'albero viene visitata ogni volta.
+  - BREADTH_FIRST: per livelli; ogni collezione viene restituita ed espansa una sola volta,
+    anche se presente in più punti dell'albero.
+  
+  Gli elementi di una collezione vengono letti (con getItems(), cioè un'istantanea) solo dopo
+  averla restituita, come nella visita ricorsiva: un visitor può modificarla senza errori.
+  addItem rifiuta già i cicli; i salti proteggono dai dati caricati da fonti esterne.
+ **/
+public class TreeIterator implements Iterator<LibraryItem>, LibraryIterator {
+    
+    public enum Order {
+        DEPTH_FIRST,
+        BREADTH_FIRST
+    }
+    
+    private final Order order;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    // In profondità: collezioni sul percorso corrente; in ampiezza: collezioni già restituite
+    private final Set<Collection> guard = Collections.newSetFromMap(new IdentityHashMap<>());
+    private LibraryItem next;
+    private int nextDepth;
+    private Collection pending; // Ultima collezione restituita, da espandere
+    private int depth;
+    private int skipped;
+    
+    public TreeIterator(Collection root) {
+        this(root, Order.DEPTH_FIRST);
+    }
+    
+    public TreeIterator(Collection root, Order order) {
+        if (root == null) {
+            throw new IllegalArgumentException("La collezione non può essere nulla");
+        }
+        if (order == null) {
+            throw new IllegalArgumentException("L'ordine di visita non può essere nullo");
+        }
+        this.order = order;
+        this.next = root;
+        if (order == Order.BREADTH_FIRST) {
+            guard.add(root);
+        }
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        expandPending();
+        while (!frames.isEmpty()) {
+            Frame frame = frames.peekFirst();
+            if (!frame.items.hasNext()) {
+                frames.pollFirst();
+                if (order == Order.DEPTH_FIRST) {
+                    guard.remove(frame.owner);
+                }
+                continue;
+            }
+            LibraryItem item = frame.items.next();
+            if (item instanceof Collection && !admit((Collection) item)) {
+                skipped++;
+                continue;
+            }
+            next = item;
+            nextDepth = frame.depth + 1;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+      Elemento successivo; a differenza di CollectionIterator lancia NoSuchElementException
+      quando la visita è finita
+     **/
+    @Override
+    public LibraryItem next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        LibraryItem item = next;
+        next = null;
+        depth = nextDepth;
+        pending = item instanceof Collection ? (Collection) item : null;
+        return item;
+    }
+    
+    /**
+      Profondità dell'ultimo elemento restituito (0 per la radice)
+     **/
+    public int getDepth() {
+        return depth;
+    }
+    
+    /**
+      Collezioni saltate finora: in profondità quelle che avrebbero chiuso un ciclo,
+      in ampiezza anche quelle già visitate in un altro punto dell'albero
+     **/
+    public int getSkipped() {
+        return skipped;
+    }
+    
+    private void expandPending() {
+        Collection collection = pending;
+        if (collection == null) {
+            return;
+        }
+        pending = null;
+        Frame frame = new Frame(collection, depth);
+        if (order == Order.DEPTH_FIRST) {
+            guard.add(collection); // Entra nel percorso corrente
+            frames.addFirst(frame);
+        } else {
+            frames.addLast(frame);
+        }
+    }
+    
+    private boolean admit(Collection collection) {
+        if (order == Order.DEPTH_FIRST) {
+            return !guard.contains(collection); // Già sul percorso: ciclo
+        }
+        return guard.add(collection);
+    }
+    
+    private static final class Frame {
+        final Collection owner;
+        final Iterator<LibraryItem> items;
+        final int depth;
+        
+        Frame(Collection owner, int depth) {
+            this.owner = owner;
+            this.items = owner.getItems().iterator();
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+// File: src/library/test/AsyncLogHandlerTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import library.AsyncLogHandler;
+
+/**
+  Log asincrono: ordine degli eventi, segnalazione degli scarti a buffer pieno,
+  flush e close che scrivono tutto, thread fermo senza timeout quando non c'è nulla da fare.
+ **/
+public class AsyncLogHandlerTest {
+    
+    @Test
+    public void testRecordsKeepTheirOrder() {
+        Collecting target = new Collecting(null);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 64);
+        for (int i = 0; i < 10_000; i++) {
+            handler.publish(new LogRecord(Level.WARNING, "evento " + i)); // WARNING: mai scartati
+        }
+        handler.flush();
+        
+        List<String> messages = target.messages();
+        assertEquals(10_000, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals("evento " + i, messages.get(i));
+        }
+        assertTrue(target.flushes > 0);
+        handler.close();
+    }
+    
+    @Test
+    public void testOverflowIsReported() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Collecting target = new Collecting(release);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 4);
+        
+        // Il thread dedicato resta bloccato sul primo evento: il buffer si riempie
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, "evento " + i));
+        }
+        long dropped = handler.getDropped();
+        assertTrue(dropped > 0);
+        release.countDown();
+        handler.flush();
+        handler.close();
+        
+        List<String> messages = target.messages();
+        assertEquals(100 - dropped, messages.size());
+        LogRecord warning = target.records.get(target.records.size() - 1);
+        assertEquals(Level.WARNING, warning.getLevel());
+        assertEquals("Log sovraccarico: {0} eventi scartati", warning.getMessage());
+        assertEquals(dropped, ((Number) warning.getParameters()[0]).longValue());
+    }
+    
+    @Test
+    public void testCloseWritesPendingRecords() {
+        Collecting target = new Collecting(null);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 1024);
+        for (int i = 0; i < 500; i++) {
+            handler.publish(new LogRecord(Level.INFO, "evento " + i));
+        }
+        handler.close();
+        
+        assertEquals(500, target.messages().size());
+        assertTrue(target.closed);
+        handler.publish(new LogRecord(Level.SEVERE, "dopo la chiusura"));
+        assertEquals(500, target.messages().size());
+        handler.close(); // Seconda chiamata: nessun effetto
+    }
+    
+    @Test
+    public void testIdleWorkerParksUntilPublish() throws Exception {
+        Collecting target = new Collecting(null);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 16);
+        handler.publish(new LogRecord(Level.INFO, "primo"));
+        handler.flush();
+        
+        Thread worker = findWorker();
+        awaitState(worker, Thread.State.WAITING); // park() senza timeout, non TIMED_WAITING
+        
+        handler.publish(new LogRecord(Level.INFO, "secondo"));
+        handler.flush();
+        assertEquals(List.of("primo", "secondo"), target.messages());
+        handler.close();
+        worker.join(5000);
+        assertFalse(worker.isAlive());
+    }
+    
+    private static Thread findWorker() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("library-log") && thread.isAlive()) {
+                return thread;
+            }
+        }
+        throw new AssertionError("Thread del log non trovato");
+    }
+    
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        for (int i = 0; i < 500 && thread.getState() != state; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, thread.getState());
+    }
+    
+    // Handler di destinazione che conserva gli eventi; con "gate" il primo evento resta in attesa
+    private static final class Collecting extends Handler {
+        final List<LogRecord> records = new ArrayList<>();
+        final CountDownLatch gate;
+        volatile int flushes;
+        volatile boolean closed;
+        
+        Collecting(CountDownLatch gate) {
+            this.gate = gate;
+        }
+        
+        @Override
+        public void publish(LogRecord record) {
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (records) {
+                records.add(record);
+            }
+        }
+        
+        @Override
+        public void flush() {
+            flushes++;
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+        
+        List<String> messages() {
+            List<String> messages = new ArrayList<>();
+            synchronized (records) {
+                for (LogRecord record : records) {
+                    if (record.getLevel() != Level.WARNING || record.getParameters() == null) {
+                        messages.add(record.getMessage());
+                    }
+                }
+            }
+            return messages;
+        }
+    }
+}
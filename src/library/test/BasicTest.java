@@ -4,7 +4,25 @@ package library.test;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 import library.Book;
+import library.CatalogIndex;
+import library.CatalogStats;
+import library.Collection;
+import library.Condition;
+import library.FuzzySearchVisitor;
+import library.ItemField;
+import library.ItemKey;
+import library.LatencyHistogram;
+import library.LibraryItem;
 import library.MediaFactory;
+import library.Metrics;
+import library.Query;
+import library.SearchCache;
+import library.SearchVisitor;
+import library.TreeIterator;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 public class BasicTest {
     
@@ -30,7 +48,261 @@ public class BasicTest {
         
         // Test che anno invalido lanci eccezione  
         assertThrows(IllegalArgumentException.class, () -> {
-            factory.createBook("Titolo", "Autore", 1800, "123456789");
+            factory.createBook("Titolo", "Autore", 800, "123456789");
         });
     }
+    
+    @Test
+    public void testCatalogIndexMatchesSearchVisitor() {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        CatalogIndex index = new CatalogIndex(catalog);
+        
+        Collection fantasy = factory.createCollection("Fantasy");
+        catalog.addItem(fantasy);
+        Book tolkien = factory.createBook("The Lord of the Rings", "J.R.R. Tolkien", 1954, "978-0618640157");
+        fantasy.addItem(tolkien); // Aggiunta in una sotto-collezione: l'indice deve aggiornarsi
+        catalog.addItem(factory.createDVD("Inception", "Christopher Nolan", 148, 2010));
+        
+        SearchVisitor visitor = new SearchVisitor("lord of");
+        catalog.accept(visitor);
+        assertEquals(visitor.getResults(), index.search("LORD OF"));
+        assertEquals(1, index.searchPrefix("tolk").size());
+        
+        // Aggiunta dopo l'Inception ma in una collezione precedente: stesso ordine della visita
+        fantasy.addItem(factory.createBook("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227"));
+        catalog.addItem(factory.createDVD("Interstellar", "Christopher Nolan", 169, 2014));
+        SearchVisitor inOrder = new SearchVisitor("n");
+        catalog.accept(inOrder);
+        assertEquals(inOrder.getResults(), index.search("n"));
+        
+        fantasy.removeItem(tolkien);
+        assertTrue(index.search("lord").isEmpty());
+    }
+    
+    @Test
+    public void testSearchIgnoresAccentsAndCase() {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        catalog.addItem(factory.createBook("La città e le stelle", "Arthur C. Clarke", 1956, "978-8804668237"));
+        CatalogIndex index = new CatalogIndex(catalog);
+        
+        SearchVisitor visitor = new SearchVisitor("CITTA");
+        catalog.accept(visitor);
+        assertEquals(1, visitor.getResults().size());
+        assertEquals(visitor.getResults(), index.search("città"));
+    }
+    
+    @Test
+    public void testFuzzySearchToleratesTypos() {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        catalog.addItem(factory.createBook("The Lord of the Rings", "J.R.R. Tolkien", 1954, "978-0618640157"));
+        catalog.addItem(factory.createBook("Il nome della rosa", "Umberto Eco", 1980, "978-8845278655"));
+        CatalogIndex index = new CatalogIndex(catalog);
+        
+        FuzzySearchVisitor visitor = new FuzzySearchVisitor("Tolkein", 1);
+        catalog.accept(visitor);
+        assertEquals(1, visitor.getResults().size());
+        assertEquals(visitor.getResults(), index.searchFuzzy("Tolkein", 1));
+        assertTrue(index.searchFuzzy("Tolkein", 0).isEmpty());
+        
+        // Libro aggiunto a una sotto-collezione che la visita incontra prima: stesso ordine del visitor
+        Collection fantasy = factory.createCollection("Fantasy");
+        catalog.addItem(fantasy);
+        Collection ragazzi = factory.createCollection("Ragazzi");
+        ragazzi.addItem(factory.createBook("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227"));
+        catalog.addItem(ragazzi);
+        Book silmarillion = factory.createBook("The Silmarillion", "J.R.R. Tolkien", 1977, "978-0544338012");
+        fantasy.addItem(silmarillion);
+        assertSame(silmarillion, fuzzySearch(catalog, "Tolkein").get(1));
+        assertEquals(fuzzySearch(catalog, "Tolkein"), index.searchFuzzy("Tolkein", 1));
+        
+        // Sotto-collezione condivisa: i suoi elementi si ripetono per ogni percorso, come nel visitor
+        Collection scaffale = factory.createCollection("Scaffale");
+        scaffale.addItem(fantasy);
+        catalog.addItem(scaffale);
+        assertEquals(4, fuzzySearch(catalog, "Tolkein").size());
+        assertEquals(fuzzySearch(catalog, "Tolkein"), index.searchFuzzy("Tolkein", 1));
+    }
+
+    
+    @Test
+    public void testSearchCacheNeverReturnsStaleResults() {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        Collection fantasy = factory.createCollection("Fantasy");
+        catalog.addItem(fantasy);
+        fantasy.addItem(factory.createBook("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227"));
+        CatalogIndex index = new CatalogIndex(catalog);
+        SearchCache cache = new SearchCache(catalog, 2, index::search);
+        
+        List<LibraryItem> first = cache.search("hobbit");
+        assertSame(first, cache.search(" HOBBIT"));
+        assertEquals(1, cache.getHits());
+        
+        // Una modifica in una sotto-collezione invalida il risultato salvato
+        fantasy.addItem(factory.createBook("The Hobbit (illustrato)", "J.R.R. Tolkien", 2013, "978-0544174221"));
+        assertEquals(2, cache.search("hobbit").size());
+        assertEquals(1, cache.getInvalidations());
+        
+        cache.search("tolkien");
+        cache.search("fantasy");
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+    }
+    
+    @Test
+    public void testStatsFollowNestedChanges() {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        Collection films = factory.createCollection("Film");
+        catalog.addItem(factory.createBook("Il nome della rosa", "Umberto Eco", 1980, "978-8845278655"));
+        catalog.addItem(films);
+        assertEquals(2, catalog.getStats().getItemCount());
+        
+        // Le modifiche nella sotto-collezione arrivano anche alla radice
+        films.addItem(factory.createDVD("Inception", "Christopher Nolan", 148, 2010));
+        films.addItem(factory.createDVD("Memento", "Christopher Nolan", 113, 2000));
+        CatalogStats stats = catalog.getStats();
+        assertEquals(2, stats.getDVDCount());
+        assertEquals(261, stats.getTotalDuration());
+        assertEquals(1980, stats.getMinYear());
+        assertEquals(2010, stats.getMaxYear());
+        
+        catalog.removeItem(films);
+        stats = catalog.getStats();
+        assertEquals(1, stats.getItemCount());
+        assertEquals(0, stats.getTotalDuration());
+        assertEquals(1980, stats.getMaxYear());
+    }
+    
+    @Test
+    public void testTraversalRejectsCyclesAndAvoidsRecursion() {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        Collection fantasy = factory.createCollection("Fantasy");
+        catalog.addItem(fantasy);
+        catalog.addItem(factory.createDVD("Inception", "Christopher Nolan", 148, 2010));
+        fantasy.addItem(factory.createBook("The Hobbit", "J.R.R. Tolkien", 1937, "978-0547928227"));
+        
+        assertThrows(IllegalArgumentException.class, () -> fantasy.addItem(catalog));
+        assertThrows(IllegalArgumentException.class, () -> fantasy.addItem(fantasy));
+        
+        // In ampiezza il DVD (livello 1) viene prima del libro (livello 2)
+        TreeIterator iterator = catalog.createTreeIterator(TreeIterator.Order.BREADTH_FIRST);
+        StringBuilder order = new StringBuilder();
+        while (iterator.hasNext()) {
+            order.append(iterator.next().getTitle()).append('@').append(iterator.getDepth()).append(' ');
+        }
+        assertEquals("Catalogo@0 Fantasy@1 Inception@1 The Hobbit@2 ", order.toString());
+        
+        // Annidamento profondo: nessuna ricorsione sullo stack Java
+        Collection deep = fantasy;
+        for (int i = 0; i < 100000; i++) {
+            Collection wrapper = new Collection("Livello " + i);
+            wrapper.addItem(deep);
+            deep = wrapper;
+        }
+        SearchVisitor visitor = new SearchVisitor("hobbit");
+        deep.accept(visitor);
+        assertEquals(1, visitor.getResults().size());
+    }
+    
+    @Test
+    public void testCollectionNaturalKeys() {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        catalog.addItem(factory.createMagazine("Focus", 12, "Mondadori", 2021));
+        catalog.addItem(factory.createDVD("Inception", "Christopher Nolan", 148, 2010));
+        
+        // Riviste e DVD sono identificati da titolo + numero / titolo + anno
+        assertTrue(catalog.contains(factory.createMagazine("Focus", 12, "Altro editore", 2022)));
+        assertNotNull(catalog.getById(ItemKey.dvd("Inception", 2010)));
+        
+        catalog.setRejectDuplicates(true);
+        assertThrows(IllegalArgumentException.class, () -> {
+            catalog.addItem(factory.createDVD("Inception", "Altro regista", 120, 2010));
+        });
+        
+        catalog.removeItem(factory.createMagazine("Focus", 12, "Mondadori", 2021));
+        assertEquals(1, catalog.size());
+    }
+    
+    @Test
+    public void testQueryWithIndexMatchesTraversal() {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        for (int year = 1980; year < 2020; year++) {
+            catalog.addItem(factory.createBook("Libro " + year, year % 2 == 0 ? "Eco" : "Calvino", year, "isbn-" + year));
+            catalog.addItem(factory.createDVD("Film " + year, "Nolan", 100, year));
+        }
+        CatalogIndex index = new CatalogIndex(catalog);
+        
+        // Libri di Eco tra il 1990 e il 2010, dal più recente, seconda pagina da 3
+        Query query = new Query()
+            .where(Condition.type(Book.class))
+            .where(Condition.equalTo(ItemField.AUTHOR, "eco"))
+            .where(Condition.between(ItemField.YEAR, 1990, 2010))
+            .orderByDescending(ItemField.YEAR)
+            .offset(3).limit(3);
+        List<LibraryItem> page = query.execute(catalog);
+        
+        assertEquals(3, page.size());
+        assertEquals("Libro 2004", page.get(0).getTitle());
+        assertEquals("Libro 2000", page.get(2).getTitle());
+        assertEquals(page, query.execute(index));
+    }
+    
+    @Test
+    public void testMetricsRecordOperations() throws Exception {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        Metrics.setEnabled(true);
+        try {
+            Metrics.reset();
+            for (int i = 0; i < 100; i++) {
+                catalog.addItem(factory.createBook("Libro " + i, i % 4 == 0 ? "Eco" : "Calvino", 2000, "isbn-" + i));
+            }
+            assertThrows(IllegalArgumentException.class, () -> factory.createBook("", "Eco", 2000, "x"));
+            SearchVisitor visitor = new SearchVisitor("eco");
+            catalog.accept(visitor);
+            
+            assertEquals(100, Metrics.counter("factory.books").getCount());
+            assertEquals(1, Metrics.counter("factory.failures").getCount());
+            assertEquals(100, Metrics.counter("collection.adds").getCount());
+            assertEquals(25, Metrics.counter("search.matches").getCount());
+            assertEquals(101, Metrics.counter("visit.SearchVisitor.items").getCount());
+            assertEquals(1, Metrics.histogram("visit.SearchVisitor").getCount());
+            assertTrue(Metrics.dump().contains("factory.books: 100"));
+            
+            // Percentili entro la precisione dei bucket (1/64) anche su valori grandi
+            LatencyHistogram histogram = Metrics.histogram("test.latency");
+            for (long value = 1; value <= 10_000; value++) {
+                histogram.record(value * 1_000);
+            }
+            assertEquals(5_000_000, histogram.getPercentile(50), 5_000_000 / 64);
+            assertEquals(9_900_000, histogram.getPercentile(99), 9_900_000 / 64);
+            assertEquals(10_000_000, histogram.getPercentile(100));
+            
+            // Esposte anche via JMX
+            Metrics.registerMBeans();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("library.metrics:type=Counter,name=\"factory.books\"");
+            assertEquals(100L, server.getAttribute(name, "Count"));
+            
+            // Disattivate: nessun aggiornamento
+            Metrics.setEnabled(false);
+            factory.createBook("Altro", "Eco", 2000, "isbn-x");
+            assertEquals(100, Metrics.counter("factory.books").getCount());
+        } finally {
+            Metrics.setEnabled(false);
+        }
+    }
+    
+    private static List<LibraryItem> fuzzySearch(Collection root, String text) {
+        FuzzySearchVisitor visitor = new FuzzySearchVisitor(text, 1);
+        root.accept(visitor);
+        return visitor.getResults();
+    }
 }
@@ -0,0 +1,240 @@
+// File: src/library/test/BinaryCatalogTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static library.test.CatalogFixtures.assertRejectsDuplicates;
+import static library.test.CatalogFixtures.describe;
+import static library.test.CatalogFixtures.rejectingDuplicates;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.EOFException;
+import java.io.InvalidObjectException;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import library.BinaryCatalogReader;
+import library.BinaryCatalogWriter;
+import library.Book;
+import library.CatalogFormat;
+import library.Collection;
+import library.DVD;
+import library.LibraryException;
+import library.LibraryStorage;
+import library.Magazine;
+
+/**
+  Formato binario del catalogo: andata e ritorno con collezioni annidate e nomi condivisi,
+  rifiuto dei duplicati, file della versione 1 e vecchi file serializzati con
+  ObjectOutputStream, intestazioni corrotte.
+ **/
+public class BinaryCatalogTest {
+    private static final int NAME_COUNT_OFFSET = Integer.BYTES + Short.BYTES;
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    public void testRoundTripWithNestedCollectionsAndSharedNames() throws Exception {
+        Collection root = largeCatalog();
+        Path file = write(root);
+        
+        assertEquals(describe(root), describe(read(file)));
+        // Autori, editori e registi ripetuti compaiono una sola volta nella tabella dei nomi
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(NAME_COUNT_OFFSET + Integer.BYTES);
+            channel.read(header, 0);
+            assertEquals(5, header.getInt(NAME_COUNT_OFFSET));
+        }
+    }
+    
+    @Test
+    public void testRejectDuplicatesSurvivesSaveAndLoad() throws Exception {
+        // LibraryStorage accetta solo nomi nella cartella corrente
+        String name = "flags-test-" + System.nanoTime() + ".libc";
+        LibraryStorage storage = new LibraryStorage();
+        try {
+            storage.saveToFile(rejectingDuplicates(), name);
+            Collection loaded = storage.loadFromFile(name);
+            assertEquals(describe(rejectingDuplicates()), describe(loaded));
+            assertRejectsDuplicates(loaded);
+        } finally {
+            Files.deleteIfExists(Paths.get(name));
+        }
+    }
+    
+    @Test
+    public void testVersion1FileIsLoaded() throws Exception {
+        Collection root = new Collection("Catalogo");
+        root.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        root.setRejectDuplicates(true);
+        byte[] current = Files.readAllBytes(write(root));
+        
+        // Stesso file senza il byte dei flag dopo il nome della radice: lunghezza del record ridotta di uno
+        int flag = indexOf(current, "Catalogo".getBytes(StandardCharsets.UTF_8)) + "Catalogo".length();
+        int length = flag - "Catalogo".length() - Integer.BYTES - Long.BYTES;
+        byte[] legacy = new byte[current.length - 1];
+        System.arraycopy(current, 0, legacy, 0, flag);
+        System.arraycopy(current, flag + 1, legacy, flag, current.length - flag - 1);
+        ByteBuffer.wrap(legacy).putShort(Integer.BYTES, CatalogFormat.VERSION_WITHOUT_FLAGS)
+                .putLong(length, ByteBuffer.wrap(current).getLong(length) - 1);
+        Path file = dir.resolve("versione1.libc");
+        Files.write(file, legacy);
+        
+        Collection loaded = read(file);
+        assertEquals(describe(root), describe(loaded));
+        assertFalse(loaded.isRejectDuplicates());
+    }
+    
+    @Test
+    public void testLegacySerializedFileIsLoaded() throws Exception {
+        // LibraryStorage accetta solo nomi nella cartella corrente
+        String name = "legacy-test-" + System.nanoTime() + ".ser";
+        Collection root = largeCatalog();
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(Paths.get(name)))) {
+                out.writeObject(root);
+            }
+            Collection loaded = new LibraryStorage().loadFromFile(name);
+            assertEquals(describe(root), describe(loaded));
+            assertEquals(root.getStats().getItemCount(), loaded.getStats().getItemCount());
+        } finally {
+            Files.deleteIfExists(Paths.get(name));
+        }
+    }
+    
+    @Test
+    public void testLegacyCyclicFileIsRejected() throws Exception {
+        String name = "legacy-cycle-test-" + System.nanoTime() + ".ser";
+        Collection root = new Collection("Catalogo");
+        Collection fantasy = new Collection("Fantasy");
+        Collection placeholder = new Collection("Segnaposto");
+        fantasy.addItem(placeholder);
+        root.addItem(fantasy);
+        try {
+            // Come un salvataggio delle versioni che accettavano cicli: il segnaposto diventa la radice
+            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(Paths.get(name))) {
+                {
+                    enableReplaceObject(true);
+                }
+                
+                @Override
+                protected Object replaceObject(Object obj) {
+                    return obj == placeholder ? root : obj;
+                }
+            }) {
+                out.writeObject(root);
+            }
+            LibraryException e = assertThrows(LibraryException.class, () -> new LibraryStorage().loadFromFile(name));
+            assertTrue(e.getCause() instanceof InvalidObjectException, String.valueOf(e.getCause()));
+        } finally {
+            Files.deleteIfExists(Paths.get(name));
+        }
+    }
+    
+    @Test
+    public void testCorruptHeaderIsRejected() throws Exception {
+        Path file = write(largeCatalog());
+        byte[] original = Files.readAllBytes(file);
+        
+        byte[] data = original.clone();
+        data[0] ^= 0x01;
+        assertTrue(readError(data) instanceof StreamCorruptedException);
+        
+        data = original.clone();
+        ByteBuffer.wrap(data).putShort(Integer.BYTES, (short) 99);
+        Exception e = readError(data);
+        assertTrue(e instanceof StreamCorruptedException && e.getMessage().contains("99"), e.toString());
+        
+        data = original.clone();
+        ByteBuffer.wrap(data).putInt(NAME_COUNT_OFFSET, -1);
+        assertTrue(readError(data) instanceof StreamCorruptedException);
+        
+        // Conteggio enorme: senza allocare la tabella intera, il file finisce prima
+        // o i byte dell'albero letti come nomi danno una lunghezza fuori limite
+        data = original.clone();
+        ByteBuffer.wrap(data).putInt(NAME_COUNT_OFFSET, Integer.MAX_VALUE);
+        e = readError(data);
+        assertTrue(e instanceof EOFException || e instanceof StreamCorruptedException, e.toString());
+        
+        // Lunghezza enorme del primo nome: rifiutata senza allocare il buffer
+        data = original.clone();
+        ByteBuffer.wrap(data).putInt(NAME_COUNT_OFFSET + Integer.BYTES, Integer.MAX_VALUE - 1);
+        e = readError(data);
+        assertTrue(e instanceof StreamCorruptedException, e.toString());
+        
+        // Nome di collezione vuoto: un errore di formato, non un IllegalArgumentException
+        data = original.clone();
+        int title = indexOf(data, "Cinema".getBytes(StandardCharsets.UTF_8));
+        Arrays.fill(data, title, title + "Cinema".length(), (byte) ' ');
+        e = readError(data);
+        assertTrue(e instanceof StreamCorruptedException, e.toString());
+        
+        // Un file non riconosciuto viene segnalato da LibraryStorage con la sua eccezione
+        String name = "corrupt-test-" + System.nanoTime();
+        try {
+            Files.write(Paths.get(name), new byte[] { 'X', 'Y', 'Z', 'W', 0, 1 });
+            assertThrows(LibraryException.class, () -> new LibraryStorage().loadFromFile(name));
+        } finally {
+            Files.deleteIfExists(Paths.get(name));
+        }
+    }
+    
+    private static int indexOf(byte[] data, byte[] target) {
+        for (int i = 0; i + target.length <= data.length; i++) {
+            if (Arrays.equals(data, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Sequenza non trovata");
+    }
+    
+    private Exception readError(byte[] data) throws Exception {
+        Path file = dir.resolve("corrotto.libc");
+        Files.write(file, data);
+        return assertThrows(Exception.class, () -> read(file));
+    }
+    
+    private Path write(Collection root) throws Exception {
+        Path file = dir.resolve("catalogo.libc");
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            new BinaryCatalogWriter(channel).write(root);
+        }
+        return file;
+    }
+    
+    private static Collection read(Path file) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new BinaryCatalogReader(channel).read();
+        }
+    }
+    
+    // Tre livelli di collezioni, abbastanza elementi da superare il buffer dello scrittore
+    private static Collection largeCatalog() {
+        Collection root = new Collection("Catalogo");
+        root.addItem(new Book("Il nome della rosa", "Umberto Eco", 1980, "978-8845292613"));
+        Collection narrativa = new Collection("Narrativa");
+        Collection italiana = new Collection("Italiana");
+        for (int i = 0; i < 3000; i++) {
+            italiana.addItem(new Book("Romanzo " + i, i % 2 == 0 ? "Umberto Eco" : "Italo Calvino", 1950 + i % 70, "isbn-" + i));
+        }
+        narrativa.addItem(italiana);
+        narrativa.addItem(new Collection("Vuota"));
+        root.addItem(narrativa);
+        Collection cinema = new Collection("Cinema");
+        cinema.addItem(new DVD("Alien", "Ridley Scott", 117, 1979));
+        cinema.addItem(new DVD("Blade Runner", "Ridley Scott", 117, 1982));
+        cinema.addItem(new DVD("Lawrence d'Arabia", "David Lean", 222, 1962));
+        root.addItem(cinema);
+        root.addItem(new Magazine("Le Scienze", 600, "Le Scienze Spa", 2018));
+        root.addItem(new Magazine("Le Scienze", 601, "Le Scienze Spa", 2018));
+        return root;
+    }
+}
@@ -0,0 +1,102 @@
+// File: src/library/test/BulkImporterTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import library.Book;
+import library.BulkImporter;
+import library.Collection;
+import library.DVD;
+import library.ImportReport;
+import library.LibraryItem;
+import library.MediaFactory;
+
+/**
+  Importazione in blocco: ordine delle righe, CSV con virgolette, righe scartate nel file
+  degli errori con il loro numero, e throughput su un feed TSV di grandi dimensioni.
+ **/
+public class BulkImporterTest {
+    private static final int ROWS = 500_000;
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    public void testImportKeepsOrderAndReportsRejectedRows() throws Exception {
+        Path feed = dir.resolve("feed.csv");
+        Files.write(feed, List.of(
+            "\uFEFFtype,title,author,year,isbn,director,duration,note",
+            "book,\"Il nome della rosa, edizione speciale\",Umberto Eco,1980,isbn-1,,,",
+            "book,Senza anno,Italo Calvino,,isbn-2,,,",
+            "",
+            "dvd,Inception,,2010,,Christopher Nolan,148,\"una \"\"nota\"\"\"",
+            "fumetto,Topolino,Disney,1990,x,,,",
+            "book,\"Virgolette aperte,Eco,1990,isbn-3,,,",
+            "book,Il nome della rosa,Umberto Eco,1980,isbn-1,,,",
+            "book,Lezioni americane,Italo Calvino,1988,isbn-4,,,\r",
+            "book," + "Titolo troppo lungo ".repeat(10) + ",Eco,1990,isbn-5,,,"), StandardCharsets.UTF_8);
+        Collection target = new Collection("Catalogo");
+        target.setRejectDuplicates(true);
+        Path errors = dir.resolve("feed.errors");
+        
+        // Blocchi minuscoli: ogni blocco contiene una o due righe, analizzate da thread diversi
+        ImportReport report = new BulkImporter(new MediaFactory())
+            .threads(4).chunkBytes(96).queueCapacity(2).errorFile(errors)
+            .importFile(feed, target);
+        
+        List<LibraryItem> items = target.getItems();
+        assertEquals(3, report.getRecords());
+        assertEquals(5, report.getSkipped());
+        assertEquals(errors, report.getErrorFile());
+        assertEquals("Il nome della rosa, edizione speciale", items.get(0).getTitle());
+        assertEquals("Christopher Nolan", ((DVD) items.get(1)).getDirector());
+        assertEquals("Lezioni americane", ((Book) items.get(2)).getTitle());
+        
+        List<String> lines = Files.readAllLines(errors, StandardCharsets.UTF_8);
+        assertEquals(6, lines.size());
+        assertTrue(lines.get(0).startsWith("line,error,type,title"));
+        assertTrue(lines.get(1).startsWith("3,Campo numerico mancante o non valido: year,book,Senza anno"), lines.get(1));
+        assertTrue(lines.get(2).startsWith("6,Tipo di elemento sconosciuto: fumetto,"), lines.get(2));
+        assertTrue(lines.get(3).startsWith("7,virgolette non chiuse,"), lines.get(3));
+        assertTrue(lines.get(4).startsWith("8,elemento già presente nella collezione: Il nome della rosa,"), lines.get(4));
+        assertEquals("10,riga più lunga di 96 byte,", lines.get(5));
+    }
+    
+    @Test
+    public void testLargeFeedThroughput() throws Exception {
+        Path feed = dir.resolve("feed.tsv");
+        try (BufferedWriter out = Files.newBufferedWriter(feed, StandardCharsets.UTF_8)) {
+            out.write("type\ttitle\tauthor\tyear\tisbn\tissue\tpublisher\tdirector\tduration\n");
+            for (int i = 0; i < ROWS; i++) {
+                switch (i % 3) {
+                    case 0:
+                        out.write("book\tLibro " + i + "\tAutore " + (i % 5000) + "\t" + (1950 + i % 70) + "\tisbn-" + i + "\t\t\t\t\n");
+                        break;
+                    case 1:
+                        out.write("magazine\tRivista " + i + "\t\t" + (1950 + i % 70) + "\t\t" + i + "\tEditore " + (i % 300) + "\t\t\n");
+                        break;
+                    default:
+                        out.write("dvd\tFilm " + i + "\t\t" + (1950 + i % 70) + "\t\t\t\tRegista " + (i % 1000) + "\t" + (60 + i % 120) + "\n");
+                }
+            }
+        }
+        Collection target = new Collection("Catalogo");
+        long start = System.nanoTime();
+        ImportReport report = new BulkImporter(new MediaFactory()).importFile(feed, target);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d righe importate in %.2f s (%.0f righe/s, %d core)%n",
+            report.getRecords(), seconds, report.getRecords() / seconds, Runtime.getRuntime().availableProcessors());
+        
+        assertEquals(ROWS, report.getRecords());
+        assertEquals(0, report.getSkipped());
+        assertEquals(ROWS, target.size());
+        assertEquals("Libro 0", target.getItems().get(0).getTitle());
+        assertEquals("Rivista " + (ROWS - 1), target.getItems().get(ROWS - 1).getTitle());
+    }
+}
@@ -0,0 +1,113 @@
+// File: src/library/test/CatalogFixtures.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import library.Book;
+import library.Collection;
+import library.DVD;
+import library.LibraryItem;
+import library.LibraryVisitor;
+import library.Magazine;
+import library.TreeIterator;
+
+/**
+  Dati e confronti condivisi dai test dei formati del catalogo (binario, mappato,
+  compresso, per colonne e journal).
+ **/
+final class CatalogFixtures {
+    
+    private CatalogFixtures() {
+    }
+    
+    // Titoli in ordine di visita, con la profondità
+    static List<String> describe(Collection root) {
+        List<String> result = new ArrayList<>();
+        TreeIterator iterator = new TreeIterator(root);
+        while (iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            result.add(iterator.getDepth() + " " + item.getDescription());
+        }
+        return result;
+    }
+    
+    // File temporanei lasciati nella cartella corrente da un salvataggio di "name" (name.<casuale>.tmp)
+    static List<Path> tempFiles(String name) throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get("."))) {
+            return files.filter(f -> f.getFileName().toString().startsWith(name + ".")
+                    && f.getFileName().toString().endsWith(".tmp")).collect(Collectors.toList());
+        }
+    }
+    
+    // Un libro, una collezione di tre DVD e una rivista
+    static Collection catalog() {
+        Collection root = new Collection("Catalogo");
+        root.addItem(new Book("Il nome della rosa", "Umberto Eco", 1980, "978-8845292613"));
+        Collection cinema = new Collection("Cinema");
+        cinema.addItem(new DVD("Alien", "Ridley Scott", 117, 1979));
+        cinema.addItem(new DVD("Blade Runner", "Ridley Scott", 117, 1982));
+        cinema.addItem(new DVD("Lawrence d'Arabia", "David Lean", 222, 1962));
+        root.addItem(cinema);
+        root.addItem(new Magazine("Le Scienze", 600, "Le Scienze Spa", 2018));
+        return root;
+    }
+    
+    // Rifiuto dei duplicati attivo nella radice e in "Saggi", che però contiene già un duplicato
+    static Collection rejectingDuplicates() {
+        Collection root = new Collection("Catalogo");
+        Collection saggi = new Collection("Saggi");
+        saggi.addItem(new Book("Lezioni americane", "Italo Calvino", 1988, "978-8804668237"));
+        saggi.addItem(new Book("Lezioni americane", "Italo Calvino", 1988, "978-8804668237"));
+        saggi.setRejectDuplicates(true);
+        root.addItem(saggi);
+        root.addItem(new Collection("Varie"));
+        root.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        root.setRejectDuplicates(true);
+        return root;
+    }
+    
+    // Il catalogo ricaricato ha gli stessi flag di rejectingDuplicates() e li applica
+    static void assertRejectsDuplicates(Collection loaded) {
+        assertTrue(loaded.isRejectDuplicates());
+        Collection saggi = (Collection) loaded.getItems().get(0);
+        assertTrue(saggi.isRejectDuplicates());
+        assertEquals(2, saggi.size()); // I duplicati salvati restano
+        assertFalse(((Collection) loaded.getItems().get(1)).isRejectDuplicates());
+        int size = loaded.size();
+        assertThrows(IllegalArgumentException.class,
+                () -> loaded.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593")));
+        assertEquals(size, loaded.size());
+    }
+    
+    /**
+      Tipo di elemento che nessun formato binario né il journal sanno scrivere
+     **/
+    static final class Unknown implements LibraryItem {
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        public String getTitle() {
+            return "Sconosciuto";
+        }
+        
+        @Override
+        public String getDescription() {
+            return getTitle();
+        }
+        
+        @Override
+        public void display() {
+        }
+        
+        @Override
+        public void accept(LibraryVisitor visitor) {
+        }
+    }
+}
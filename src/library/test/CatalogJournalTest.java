@@ -0,0 +1,253 @@
+// File: src/library/test/CatalogJournalTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static library.test.CatalogFixtures.assertRejectsDuplicates;
+import static library.test.CatalogFixtures.catalog;
+import static library.test.CatalogFixtures.describe;
+import static library.test.CatalogFixtures.rejectingDuplicates;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import library.Book;
+import library.CatalogFormat;
+import library.CatalogJournal;
+import library.Collection;
+import library.DVD;
+import library.LibraryStorage;
+import library.Magazine;
+import library.test.CatalogFixtures.Unknown;
+
+/**
+  Journal del catalogo: recupero da snapshot e journal, coda troncata da una scrittura
+  interrotta, compattazione, collezioni condivise, rifiuto dei duplicati, segmenti della
+  versione 1 ed errori segnalati da sync().
+ **/
+public class CatalogJournalTest {
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    public void testRecoverFromSnapshotAndJournal() throws Exception {
+        Path base = dir.resolve("catalogo");
+        Collection catalog = catalog();
+        try (CatalogJournal journal = CatalogJournal.create(catalog, base)) {
+            Collection cinema = (Collection) catalog.getItems().get(1);
+            cinema.addItem(new DVD("Stalker", "Andrej Tarkovskij", 162, 1979));
+            Collection saggi = new Collection("Saggi");
+            saggi.addItem(new Book("Lezioni americane", "Italo Calvino", 1988, "978-8804668237"));
+            saggi.addItem(new Collection("Vuota"));
+            catalog.addItem(saggi);
+            catalog.removeItem(catalog.getItems().get(0));
+            saggi.addItem(new Magazine("Le Scienze", 600, "Le Scienze Spa", 2018));
+            journal.sync();
+            
+            // Recupero mentre il journal è ancora attivo: basta quello che è già su disco
+            assertEquals(describe(catalog), describe(CatalogJournal.recover(base)));
+        }
+        assertEquals(describe(catalog), describe(CatalogJournal.recover(base)));
+        
+        // Le modifiche dopo la riapertura finiscono in un nuovo segmento
+        try (CatalogJournal journal = CatalogJournal.open(base)) {
+            journal.getCatalog().addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+            catalog.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        }
+        assertEquals(describe(catalog), describe(CatalogJournal.recover(base)));
+    }
+    
+    @Test
+    public void testTornTailIsDropped() throws Exception {
+        Path base = dir.resolve("catalogo");
+        Collection catalog = catalog();
+        try (CatalogJournal journal = CatalogJournal.create(catalog, base)) {
+            catalog.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+            journal.sync();
+        }
+        List<String> expected = describe(catalog);
+        Path segment = files(base, "journal").get(0);
+        long size = Files.size(segment);
+        
+        // Scrittura interrotta: intestazione di un record di cui è arrivata solo una parte
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(2 * Integer.BYTES + 3).putInt(100).putInt(0).flip());
+        }
+        assertEquals(expected, describe(CatalogJournal.recover(base)));
+        
+        // Record completo ma con il CRC sbagliato: scartato anche lui
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+            channel.position(size).write(ByteBuffer.allocate(2 * Integer.BYTES + 4).putInt(4).putInt(0).flip());
+        }
+        assertEquals(expected, describe(CatalogJournal.recover(base)));
+        
+        // Dopo la riapertura le nuove modifiche seguono la coda scartata, in un altro segmento
+        try (CatalogJournal journal = CatalogJournal.open(base)) {
+            journal.getCatalog().removeItem(journal.getCatalog().getItems().get(0));
+        }
+        catalog.removeItem(catalog.getItems().get(0));
+        assertEquals(describe(catalog), describe(CatalogJournal.recover(base)));
+    }
+    
+    @Test
+    public void testCompactionFoldsSegmentsIntoSnapshot() throws Exception {
+        Path base = dir.resolve("catalogo");
+        Collection catalog = catalog();
+        try (CatalogJournal journal = CatalogJournal.create(catalog, base)) {
+            for (int i = 0; i < 100; i++) {
+                catalog.addItem(new Book("Titolo " + i, "Autore", 2000, "isbn-" + i));
+            }
+            journal.compact();
+            catalog.removeItem(catalog.getItems().get(0));
+        } // close() attende la fine della compattazione
+        
+        assertEquals(List.of("catalogo.1.snap"), names(files(base, "snap")));
+        assertEquals(List.of("catalogo.1.journal"), names(files(base, "journal")));
+        assertEquals(describe(catalog), describe(CatalogJournal.recover(base)));
+    }
+    
+    @Test
+    public void testSharedCollectionIsRecordedForEveryPath() throws Exception {
+        Path base = dir.resolve("catalogo");
+        Collection catalog = new Collection("Catalogo");
+        Collection shared = new Collection("Fantascienza");
+        Collection scaffale = new Collection("Scaffale");
+        catalog.addItem(shared);
+        scaffale.addItem(shared);
+        catalog.addItem(scaffale);
+        try (CatalogJournal journal = CatalogJournal.create(catalog, base)) {
+            shared.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+            // Già presente nel catalogo: la nuova occorrenza è registrata con il suo contenuto
+            catalog.addItem(shared);
+            shared.removeItem(shared.getItems().get(0));
+            shared.addItem(new Book("Solaris", "Stanisław Lem", 1961, "978-0156027601"));
+            journal.sync();
+        }
+        Collection recovered = CatalogJournal.recover(base);
+        assertEquals(describe(catalog), describe(recovered));
+        assertEquals(3, recovered.getStats().getBookCount());
+    }
+    
+    @Test
+    public void testDeepCollectionIsRecordedWithoutRecursion() throws Exception {
+        Path base = dir.resolve("catalogo");
+        Collection catalog = catalog();
+        // Costruita dal fondo: ogni addItem aggancia una collezione ancora senza genitori
+        Collection top = new Collection("Livello 20000");
+        top.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        for (int i = 19_999; i >= 0; i--) {
+            Collection next = new Collection("Livello " + i);
+            next.addItem(top);
+            top = next;
+        }
+        try (CatalogJournal journal = CatalogJournal.create(catalog, base)) {
+            catalog.addItem(top);
+            journal.sync();
+        }
+        Collection recovered = CatalogJournal.recover(base);
+        assertEquals(describe(catalog), describe(recovered));
+        assertEquals(2, recovered.getStats().getBookCount());
+    }
+    
+    @Test
+    public void testRejectDuplicatesIsRecorded() throws Exception {
+        Path base = dir.resolve("catalogo");
+        Collection catalog = rejectingDuplicates();
+        Collection riviste = new Collection("Riviste");
+        riviste.addItem(new Magazine("Le Scienze", 600, "Le Scienze Spa", 2018));
+        riviste.addItem(new Magazine("Le Scienze", 600, "Le Scienze Spa", 2018));
+        riviste.setRejectDuplicates(true);
+        try (CatalogJournal journal = CatalogJournal.create(catalog, base)) {
+            catalog.addItem(riviste); // Nel journal, con il flag e il duplicato che contiene
+            journal.sync();
+        }
+        Collection recovered = CatalogJournal.recover(base);
+        assertEquals(describe(catalog), describe(recovered));
+        assertRejectsDuplicates(recovered);
+        Collection recoveredRiviste = (Collection) recovered.getItems().get(3);
+        assertTrue(recoveredRiviste.isRejectDuplicates());
+        assertEquals(2, recoveredRiviste.size());
+        
+        // Dopo la compattazione il flag arriva dallo snapshot
+        try (CatalogJournal journal = CatalogJournal.open(base)) {
+            journal.compact();
+        }
+        assertRejectsDuplicates(CatalogJournal.recover(base));
+    }
+    
+    @Test
+    public void testVersion1SegmentIsReplayed() throws Exception {
+        Path base = dir.resolve("catalogo");
+        Collection catalog = catalog();
+        try (CatalogJournal journal = CatalogJournal.create(catalog, base)) {
+            catalog.removeItem(catalog.getItems().get(0));
+            journal.sync();
+        }
+        // I segmenti della versione 1 non hanno l'intestazione e iniziano con il primo record
+        Path segment = files(base, "journal").get(0);
+        byte[] data = Files.readAllBytes(segment);
+        assertEquals(CatalogFormat.JOURNAL_MAGIC, ByteBuffer.wrap(data).getInt());
+        Files.write(segment, Arrays.copyOfRange(data, Integer.BYTES + Short.BYTES, data.length));
+        assertEquals(describe(catalog), describe(CatalogJournal.recover(base)));
+    }
+    
+    @Test
+    public void testFailureIsReportedBySync() throws Exception {
+        Path base = dir.resolve("catalogo");
+        Collection catalog = catalog();
+        CatalogJournal journal = CatalogJournal.create(catalog, base);
+        
+        // La modifica in memoria riesce comunque; il journal si ferma e lo dice alla sync()
+        catalog.addItem(new Unknown());
+        catalog.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        assertEquals(5, catalog.size());
+        IOException e = assertThrows(IOException.class, journal::sync);
+        assertTrue(e.getMessage().contains("non registrate: 1"), e.getMessage());
+        assertThrows(IOException.class, journal::close);
+    }
+    
+    @Test
+    public void testLoadFromFileReadsJournal() throws Exception {
+        // LibraryStorage accetta solo nomi nella cartella corrente
+        String name = "journal-test-" + System.nanoTime();
+        LibraryStorage storage = new LibraryStorage();
+        Collection catalog = catalog();
+        try {
+            Files.write(Paths.get(name), new byte[] { 1, 2, 3 }); // Vecchio file unico, sostituito dal journal
+            CatalogJournal journal = storage.createJournal(catalog, name);
+            catalog.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+            storage.syncJournal(journal);
+            
+            assertFalse(Files.exists(Paths.get(name)));
+            assertTrue(storage.hasJournal(name));
+            assertEquals(describe(catalog), describe(storage.loadFromFile(name)));
+            storage.closeJournal(journal);
+        } finally {
+            try (Stream<Path> files = Files.list(Paths.get("."))) {
+                for (Path file : files.filter(f -> f.getFileName().toString().startsWith(name)).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+    
+    private List<Path> files(Path base, String kind) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith("." + kind)).sorted().collect(Collectors.toList());
+        }
+    }
+    
+    private static List<String> names(List<Path> files) {
+        return files.stream().map(f -> f.getFileName().toString()).collect(Collectors.toList());
+    }
+}
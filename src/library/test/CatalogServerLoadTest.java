@@ -0,0 +1,154 @@
+// File: src/library/test/CatalogServerLoadTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import library.Book;
+import library.CatalogServer;
+import library.Collection;
+import library.LibraryStorage;
+import library.MediaFactory;
+
+/**
+  Generatore di carico locale per CatalogServer: migliaia di client concorrenti fanno
+  ricerche su un catalogo di 10.000 libri mentre altri aggiungono elementi. Stampa
+  throughput e latenze p50/p99; ogni richiesta deve riuscire (200/201) o essere
+  respinta in modo ordinato con 503, mai restare appesa o fallire.
+ **/
+public class CatalogServerLoadTest {
+    private static final int BOOKS = 10_000;
+    private static final int CLIENTS = 2_000;
+    private static final int REQUESTS_PER_CLIENT = 5;
+    
+    private CatalogServer server;
+    private HttpClient client;
+    private String base;
+    
+    @BeforeAll
+    public static void configureHttpServer() {
+        // Come Main --server: con migliaia di client keep-alive il limite di default (200)
+        // farebbe chiudere connessioni ancora in uso; va impostato prima del primo server
+        if (System.getProperty(CatalogServer.MAX_IDLE_CONNECTIONS_PROPERTY) == null) {
+            System.setProperty(CatalogServer.MAX_IDLE_CONNECTIONS_PROPERTY,
+                    String.valueOf(CatalogServer.DEFAULT_MAX_IDLE_CONNECTIONS));
+        }
+    }
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        MediaFactory factory = new MediaFactory();
+        Collection catalog = factory.createCollection("Catalogo");
+        Collection archive = factory.createCollection("Archivio");
+        for (int i = 0; i < BOOKS; i++) {
+            archive.addItem(new Book("Libro " + i + (i % 10 == 0 ? " Fantasy" : ""), "Autore " + (i % 100), 1950 + i % 70, "isbn-" + i));
+        }
+        catalog.addItem(archive);
+        server = new CatalogServer(catalog, factory, new LibraryStorage())
+                .port(0)
+                .maxConcurrentRequests(64)
+                .requestTimeout(10, TimeUnit.SECONDS);
+        server.start();
+        base = "http://127.0.0.1:" + server.getPort() + "/api/";
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+    
+    @Test
+    public void testEndpointsAndErrors() throws Exception {
+        assertEquals(201, post("items", "{\"type\":\"book\",\"title\":\"Il nome della rosa\",\"author\":\"Umberto Eco\",\"year\":1980,\"isbn\":\"x-1\",\"collection\":\"Archivio\"}").statusCode());
+        assertEquals(201, post("collections", "{\"name\":\"Novità\"}").statusCode());
+        HttpResponse<String> found = get("search?q=ROSA");
+        assertEquals(200, found.statusCode());
+        assertTrue(found.body().contains("\"count\":1"), found.body());
+        assertTrue(get("catalog").body().contains("\"books\":" + (BOOKS + 1)));
+        assertEquals(400, post("items", "{\"type\":\"book\",\"title\":\"\"}").statusCode());
+        assertEquals(400, post("collections", "{\"name\":\"Sotto\",\"parent\":\"Inesistente\"}").statusCode());
+        assertEquals(404, get("nulla").statusCode());
+        assertEquals(405, get("items").statusCode());
+    }
+    
+    @Test
+    public void testThousandsOfConcurrentClients() throws Exception {
+        get("search?q=fantasy"); // Riscaldamento
+        long[] latencies = new long[CLIENTS * REQUESTS_PER_CLIENT];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<String> firstFailure = new AtomicReference<>();
+        List<CompletableFuture<Void>> clients = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < CLIENTS; c++) {
+            clients.add(runClient(c, 0, latencies, completed, rejected, failed, firstFailure));
+        }
+        CompletableFuture.allOf(clients.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+        
+        int ok = completed.get();
+        long[] sorted = Arrays.copyOf(latencies, ok);
+        Arrays.sort(sorted);
+        System.out.printf("%d client, %d richieste: %d ok, %d respinte (503), %.0f richieste/s, p50 %.1f ms, p99 %.1f ms%n",
+            CLIENTS, latencies.length, ok, rejected.get(), latencies.length / (elapsed / 1e9),
+            sorted[ok / 2] / 1e6, sorted[Math.min(ok - 1, ok * 99 / 100)] / 1e6);
+        assertEquals(0, failed.get(), firstFailure.get());
+        assertEquals(latencies.length, ok + rejected.get());
+        assertTrue(ok > 0);
+    }
+    
+    // Ogni client fa le sue richieste una dopo l'altra; un client su dieci aggiunge libri
+    private CompletableFuture<Void> runClient(int c, int n, long[] latencies, AtomicInteger completed,
+            AtomicInteger rejected, AtomicInteger failed, AtomicReference<String> firstFailure) {
+        if (n == REQUESTS_PER_CLIENT) {
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest request = c % 10 == 0
+            ? HttpRequest.newBuilder(URI.create(base + "items"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"type\":\"book\",\"title\":\"Nuovo " + c + "-" + n
+                    + "\",\"author\":\"Carico\",\"year\":2020,\"isbn\":\"n-" + c + "-" + n + "\"}"))
+                .build()
+            : HttpRequest.newBuilder(URI.create(base + "search?q=" + (c % 2 == 0 ? "fantasy" : "autore+" + (c % 100)) + "&limit=20")).build();
+        long sent = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .handle((response, error) -> {
+                if (error == null && (response.statusCode() == 200 || response.statusCode() == 201)) {
+                    latencies[completed.getAndIncrement()] = System.nanoTime() - sent;
+                } else if (error == null && response.statusCode() == 503) {
+                    rejected.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                    firstFailure.compareAndSet(null, error != null ? error.toString() : response.statusCode() + " " + response.body());
+                }
+                return null;
+            })
+            .thenCompose(ignored -> runClient(c, n + 1, latencies, completed, rejected, failed, firstFailure));
+    }
+    
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(base + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+    
+    private HttpResponse<String> post(String path, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+            .POST(HttpRequest.BodyPublishers.ofString(json))
+            .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
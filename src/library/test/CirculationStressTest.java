@@ -0,0 +1,190 @@
+// File: src/library/test/CirculationStressTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import library.Book;
+import library.CirculationDesk;
+import library.Loan;
+
+/**
+  Stress test di CirculationDesk: N thread prendono e restituiscono copie di pochi libri
+  con poche copie ciascuno (o si mettono in coda quando non ce ne sono). In nessun
+  momento un libro può avere più prestiti attivi che copie, e alla fine tutte le copie
+  devono essere di nuovo disponibili. Il throughput viene stampato per 1, 2, 4 e 8 thread.
+ **/
+public class CirculationStressTest {
+    private static final int ITEMS = 64;
+    private static final int COPIES = 2;
+    private static final long DURATION_MS = 500;
+    
+    @Test
+    public void testLastCopyIsLentOnlyOnce() throws Exception {
+        CirculationDesk desk = new CirculationDesk();
+        Book book = new Book("Ultima copia", "Autore", 2000, "last-1");
+        desk.addCopies(book, 1);
+        int threads = 8;
+        AtomicInteger winners = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> contenders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int patron = t;
+            contenders.add(new Thread(() -> {
+                await(start);
+                if (desk.checkout(book, "utente-" + patron) != null) {
+                    winners.incrementAndGet();
+                }
+            }));
+        }
+        contenders.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : contenders) {
+            thread.join();
+        }
+        assertEquals(1, winners.get());
+        assertEquals(0, desk.getAvailable(book));
+    }
+    
+    @Test
+    public void testConcurrentCirculationKeepsCopiesConsistent() throws Exception {
+        long single = 0;
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            long[] result = run(threads);
+            assertEquals(0, result[1], "Più prestiti che copie con " + threads + " thread");
+            long perSecond = result[0] * 1000 / DURATION_MS;
+            if (threads == 1) {
+                single = perSecond;
+            }
+            System.out.printf("%d thread: %d operazioni/s (x%.2f)%n",
+                threads, perSecond, single == 0 ? 0.0 : (double) perSecond / single);
+        }
+    }
+    
+    @Test
+    public void testNoFreeCopyWithWaitingHold() throws Exception {
+        CirculationDesk desk = new CirculationDesk();
+        Book book = new Book("Conteso", "Autore", 2000, "hold-1");
+        desk.addCopies(book, 1);
+        int threads = 8;
+        int rounds = 5000;
+        AtomicLong violations = new AtomicLong();
+        // Alla fine di ogni giro tutti i thread sono fermi: una copia libera con una prenotazione
+        // in attesa vorrebbe dire che una restituzione o un annullamento non ha servito la coda
+        CyclicBarrier barrier = new CyclicBarrier(threads, () -> {
+            if (desk.getAvailable(book) > 0 && desk.getHoldCount(book) > 0) {
+                violations.incrementAndGet();
+            }
+        });
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String patron = "utente-" + t;
+            workers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<CirculationDesk.Hold> holds = new ArrayList<>();
+                try {
+                    for (int round = 0; round < rounds; round++) {
+                        for (int i = holds.size() - 1; i >= 0; i--) {
+                            CirculationDesk.Hold hold = holds.get(i);
+                            if (hold.isReady() && random.nextBoolean()) {
+                                desk.returnItem(hold.getLoan());
+                                holds.remove(i);
+                            } else if (!hold.isReady() && random.nextInt(3) == 0 && hold.cancel()) {
+                                holds.remove(i);
+                            }
+                        }
+                        holds.add(desk.placeHold(book, patron));
+                        barrier.await();
+                    }
+                    for (CirculationDesk.Hold hold : holds) {
+                        if (!hold.cancel()) {
+                            desk.returnItem(hold.getLoan());
+                        }
+                    }
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        assertEquals(0, violations.get(), "Copie libere con prenotazioni in attesa");
+        assertEquals(1, desk.getAvailable(book));
+        assertEquals(0, desk.getHoldCount(book));
+    }
+    
+    // Restituisce {operazioni completate, violazioni}
+    private long[] run(int threads) throws InterruptedException {
+        CirculationDesk desk = new CirculationDesk();
+        Book[] books = new Book[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            books[i] = new Book("Libro " + i, "Autore", 2000, "isbn-" + i);
+            desk.addCopies(books[i], COPIES);
+        }
+        AtomicIntegerArray lent = new AtomicIntegerArray(ITEMS); // Prestiti in mano ai thread
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong operations = new AtomicLong();
+        AtomicLong violations = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String patron = "utente-" + t;
+            workers.add(new Thread(() -> {
+                await(start);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while (running.get()) {
+                    int i = random.nextInt(ITEMS);
+                    Loan loan = desk.checkout(books[i], patron);
+                    if (loan == null) {
+                        CirculationDesk.Hold hold = desk.placeHold(books[i], patron);
+                        if (!hold.cancel()) {
+                            loan = hold.getLoan(); // Servita prima dell'annullamento
+                        }
+                    }
+                    if (loan != null) {
+                        if (lent.incrementAndGet(i) > COPIES) {
+                            violations.incrementAndGet();
+                        }
+                        lent.decrementAndGet(i);
+                        desk.returnItem(loan);
+                    }
+                    done++;
+                }
+                operations.addAndGet(done);
+            }));
+        }
+        workers.forEach(Thread::start);
+        start.countDown();
+        Thread.sleep(DURATION_MS);
+        running.set(false);
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        for (Book book : books) {
+            if (desk.getAvailable(book) != COPIES || desk.getHoldCount(book) != 0) {
+                violations.incrementAndGet();
+            }
+        }
+        return new long[] { operations.get(), violations.get() };
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// File: src/library/test/CollectionItemsTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import library.Book;
+import library.Collection;
+import library.LibraryItem;
+import library.LibraryIterator;
+
+/**
+  Elementi diretti di una collezione: l'istantanea di getItems() e CollectionIterator
+  non risentono di aggiunte e rimozioni successive, la vista viva di getItemsView() sì.
+ **/
+public class CollectionItemsTest {
+    
+    @Test
+    public void testSnapshotIgnoresLaterChanges() {
+        Collection collection = collection(10);
+        List<LibraryItem> before = collection.getItems();
+        List<LibraryItem> expected = new ArrayList<>(before);
+        
+        Book added = book(100);
+        collection.addItem(added);
+        assertEquals(expected, before);
+        List<LibraryItem> afterAdd = collection.getItems();
+        assertEquals(11, afterAdd.size());
+        assertSame(added, afterAdd.get(10));
+        
+        // La prima rimozione dopo un'istantanea copia gli slot: le istantanee restano intatte
+        LibraryItem removed = before.get(3);
+        collection.removeItem(removed);
+        assertEquals(expected, before);
+        assertSame(removed, before.get(3));
+        assertEquals(11, afterAdd.size());
+        assertSame(removed, afterAdd.get(3));
+        assertFalse(collection.getItems().contains(removed));
+        assertEquals(10, collection.getItems().size());
+        
+        // Senza modifiche l'istantanea è la stessa
+        assertSame(collection.getItems(), collection.getItems());
+        assertThrows(UnsupportedOperationException.class, () -> before.add(book(200)));
+    }
+    
+    @Test
+    public void testSnapshotSurvivesCompaction() {
+        Collection collection = collection(200);
+        List<LibraryItem> before = collection.getItems();
+        List<LibraryItem> expected = new ArrayList<>(before);
+        
+        // Rimuovendo più di metà degli elementi la tabella compatta l'array degli slot
+        for (int i = 0; i < 150; i++) {
+            collection.removeItem(expected.get(i));
+        }
+        collection.addItem(book(1000));
+        
+        assertEquals(expected, before);
+        List<LibraryItem> after = collection.getItems();
+        assertEquals(51, after.size());
+        assertEquals(expected.subList(150, 200), after.subList(0, 50));
+        assertEquals(expected.get(199), collection.getItemsView().get(49));
+    }
+    
+    @Test
+    public void testLiveViewReflectsChanges() {
+        Collection collection = collection(5);
+        List<LibraryItem> view = collection.getItemsView();
+        LibraryItem first = view.get(0);
+        
+        Book added = book(100);
+        collection.addItem(added);
+        assertEquals(6, view.size());
+        assertSame(added, view.get(5));
+        collection.removeItem(first);
+        assertEquals(5, view.size());
+        assertFalse(view.contains(first));
+        assertEquals(collection.getItems(), view);
+        
+        // Modifica durante l'iterazione della vista viva
+        Iterator<LibraryItem> iterator = view.iterator();
+        iterator.next();
+        collection.addItem(book(101));
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+        assertThrows(UnsupportedOperationException.class, () -> view.remove(0));
+    }
+    
+    @Test
+    public void testIteratorWalksSnapshot() {
+        Collection collection = collection(5);
+        List<LibraryItem> expected = new ArrayList<>(collection.getItems());
+        LibraryIterator iterator = collection.createIterator();
+        
+        collection.removeItem(expected.get(0));
+        collection.addItem(book(100));
+        
+        List<LibraryItem> visited = new ArrayList<>();
+        while (iterator.hasNext()) {
+            visited.add(iterator.next());
+        }
+        assertEquals(expected, visited);
+        assertNull(iterator.next());
+    }
+    
+    private static Collection collection(int size) {
+        Collection collection = new Collection("Scaffale");
+        for (int i = 0; i < size; i++) {
+            collection.addItem(book(i));
+        }
+        return collection;
+    }
+    
+    private static Book book(int i) {
+        return new Book("Titolo " + i, "Autore " + i % 7, 2000, "isbn-" + i);
+    }
+}
@@ -0,0 +1,107 @@
+// File: src/library/test/ColumnarCatalogTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static library.test.CatalogFixtures.catalog;
+import static library.test.CatalogFixtures.describe;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import library.Book;
+import library.Collection;
+import library.ColumnarCatalog;
+import library.ColumnarCatalog.ItemType;
+import library.DVD;
+import library.LibraryItem;
+import library.Magazine;
+
+/**
+  Catalogo per colonne: costruzione delle colonne, viste in sola lettura sulle righe
+  e filtri di Scan che si combinano in AND in qualsiasi ordine.
+ **/
+public class ColumnarCatalogTest {
+    
+    @Test
+    public void testColumnsFollowVisitOrder() {
+        Collection source = catalog();
+        ColumnarCatalog columnar = ColumnarCatalog.from(source);
+        
+        // Una riga per ogni foglia, nell'ordine di accept()
+        assertEquals(5, columnar.size());
+        assertEquals(List.of(ItemType.BOOK, ItemType.DVD, ItemType.DVD, ItemType.DVD, ItemType.MAGAZINE),
+                List.of(columnar.typeOf(0), columnar.typeOf(1), columnar.typeOf(2), columnar.typeOf(3), columnar.typeOf(4)));
+        DVD dvd = (DVD) columnar.get(3);
+        assertEquals("Lawrence d'Arabia", dvd.getTitle());
+        assertEquals("David Lean", dvd.getDirector());
+        assertEquals(222, dvd.getDuration());
+        assertEquals(1962, dvd.getYear());
+        Magazine magazine = (Magazine) columnar.get(4);
+        assertEquals(600, magazine.getIssue());
+        assertEquals("Le Scienze Spa", magazine.getPublisher());
+        assertThrows(IndexOutOfBoundsException.class, () -> columnar.get(5));
+        
+        // La copia è fatta di oggetti normali, con la stessa struttura dell'originale
+        Collection copy = columnar.toCollection();
+        assertEquals(describe(source), describe(copy));
+        assertSame(Book.class, copy.getItems().get(0).getClass());
+        assertEquals(source.getStats().getDVDCount(), copy.getStats().getDVDCount());
+    }
+    
+    @Test
+    public void testFlyweightViews() {
+        Collection source = catalog();
+        ColumnarCatalog columnar = ColumnarCatalog.from(source);
+        Collection root = columnar.getRoot();
+        
+        assertEquals(describe(source), describe(root));
+        Collection cinema = (Collection) root.getItems().get(1);
+        assertEquals("Cinema", cinema.getTitle());
+        DVD alien = (DVD) cinema.getItems().get(0);
+        assertNotSame(DVD.class, alien.getClass());
+        // Viste diverse sulla stessa riga: stessi valori, letti dalle colonne
+        assertEquals(alien.getDescription(), columnar.get(1).getDescription());
+        assertEquals(alien.getDirectorName(), ((DVD) cinema.getItems().get(1)).getDirectorName());
+    }
+    
+    @Test
+    public void testScanFiltersComposeInAnyOrder() {
+        ColumnarCatalog columnar = ColumnarCatalog.from(catalog());
+        
+        assertEquals(3, columnar.scan().type(ItemType.DVD).count());
+        assertEquals(4, columnar.scan().type(ItemType.DVD).type(ItemType.BOOK).count());
+        assertEquals(2, columnar.scan().durationBetween(100, 120).count());
+        
+        // type() dopo durationBetween() non deve cancellare la restrizione ai DVD
+        assertEquals(0, columnar.scan().durationBetween(100, 120).type(ItemType.BOOK).count());
+        assertEquals(0, columnar.scan().type(ItemType.BOOK).durationBetween(100, 120).count());
+        assertEquals(2, columnar.scan().durationBetween(100, 120).type(ItemType.DVD).count());
+        assertEquals(2, columnar.scan().type(ItemType.DVD).type(ItemType.BOOK).durationBetween(100, 120).count());
+        assertEquals(0, columnar.scan().issueBetween(1, 1000).durationAbove(0).count());
+        
+        assertArrayEquals(new int[] { 1, 2 }, columnar.scan().yearBefore(1990).durationBetween(100, 120).rows());
+        assertArrayEquals(new int[] { 2 }, columnar.scan().nameContains("ridley").yearAfter(1980).rows());
+        // Ai limiti di int: nessun elemento, non tutti
+        assertEquals(0, columnar.scan().yearAfter(Integer.MAX_VALUE).count());
+        assertEquals(0, columnar.scan().yearBefore(Integer.MIN_VALUE).count());
+        assertEquals(0, columnar.scan().durationAbove(Integer.MAX_VALUE).count());
+        assertEquals(columnar.scan().count(), columnar.scan().yearAfter(Integer.MIN_VALUE).count()
+                + columnar.scan().yearBetween(Integer.MIN_VALUE, Integer.MIN_VALUE).count());
+        assertArrayEquals(new int[] { 0, 1, 3 },
+                columnar.scan().titleContains("a").type(ItemType.BOOK).yearBefore(1981).type(ItemType.DVD).rows());
+        List<LibraryItem> items = columnar.scan().type(ItemType.MAGAZINE).items();
+        assertEquals(1, items.size());
+        assertEquals("Le Scienze", items.get(0).getTitle());
+    }
+    
+    @Test
+    public void testViewsAreReadOnly() {
+        ColumnarCatalog columnar = ColumnarCatalog.from(catalog());
+        Collection root = columnar.getRoot();
+        Book book = new Book("Dune", "Frank Herbert", 1965, "978-0441013593");
+        
+        assertThrows(UnsupportedOperationException.class, () -> root.addItem(book));
+        assertThrows(UnsupportedOperationException.class, () -> root.addItems(List.of(book)));
+        assertThrows(UnsupportedOperationException.class, () -> root.removeItem(root.getItems().get(0)));
+        assertEquals(3, root.size());
+        assertEquals(0, root.getVersion());
+    }
+}
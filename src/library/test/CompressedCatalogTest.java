@@ -0,0 +1,196 @@
+// File: src/library/test/CompressedCatalogTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static library.test.CatalogFixtures.assertRejectsDuplicates;
+import static library.test.CatalogFixtures.describe;
+import static library.test.CatalogFixtures.rejectingDuplicates;
+import static library.test.CatalogFixtures.tempFiles;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import library.Book;
+import library.CatalogRecordWriter;
+import library.Collection;
+import library.CompressedCatalog;
+import library.DVD;
+import library.LibraryException;
+import library.LibraryItem;
+import library.LibraryStorage;
+import library.Magazine;
+import library.test.CatalogFixtures.Unknown;
+
+/**
+  Catalogo a blocchi compressi: lettura in parallelo di molti blocchi con lo stesso
+  albero di partenza, e blocco danneggiato segnalato con il suo offset.
+ **/
+public class CompressedCatalogTest {
+    private static final int HEADER = Integer.BYTES + Short.BYTES; // Il primo blocco inizia qui
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    public void testRoundTripAcrossManyBlocks() throws Exception {
+        Collection root = catalog(20_000);
+        Path file = write(root);
+        
+        Collection loaded;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            loaded = new CompressedCatalog().pool(pool).read(channel);
+        } finally {
+            pool.shutdown();
+        }
+        
+        assertEquals(root.getTitle(), loaded.getTitle());
+        assertEquals(root.size(), loaded.size());
+        assertEquals(root.getStats().getItemCount(), loaded.getStats().getItemCount());
+        assertEquals(root.getStats().getDVDCount(), loaded.getStats().getDVDCount());
+        assertEquals(root.getStats().getYearHistogram(), loaded.getStats().getYearHistogram());
+        Collection section = (Collection) loaded.getItems().get(19);
+        assertEquals("Sezione 19", section.getTitle());
+        LibraryItem last = section.getItems().get(section.size() - 1);
+        assertEquals("Titolo 19999", last.getTitle());
+        assertTrue(Files.size(file) < 20_000 * 40, "Il catalogo non è stato compresso: " + Files.size(file) + " byte");
+    }
+    
+    @Test
+    public void testRejectDuplicatesIsRestored() throws Exception {
+        Path file = write(rejectingDuplicates());
+        Collection loaded;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            loaded = new CompressedCatalog().read(channel);
+        }
+        assertEquals(describe(rejectingDuplicates()), describe(loaded));
+        assertRejectsDuplicates(loaded);
+    }
+    
+    @Test
+    public void testCorruptedBlockIsReportedByOffset() throws Exception {
+        Path file = write(catalog(5_000));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x55, 0x55, 0x55, 0x55 }), HEADER + 10);
+        }
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            StreamCorruptedException e = assertThrows(StreamCorruptedException.class,
+                () -> new CompressedCatalog().read(channel));
+            assertTrue(e.getMessage().contains("blocco all'offset " + HEADER + ": CRC non valido"), e.getMessage());
+        }
+        
+        // Un file troncato perde l'indice: nessun blocco viene letto
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThrows(StreamCorruptedException.class, () -> new CompressedCatalog().read(channel));
+        }
+    }
+    
+    @Test
+    public void testFailedSaveLeavesNoTempFile() throws Exception {
+        // LibraryStorage accetta solo nomi nella cartella corrente
+        String name = "failed-save-" + System.nanoTime();
+        LibraryStorage storage = new LibraryStorage();
+        Collection broken = catalog(10);
+        broken.addItem(new Unknown());
+        try {
+            storage.saveToFile(catalog(10), name);
+            byte[] saved = Files.readAllBytes(Paths.get(name));
+            
+            assertThrows(LibraryException.class, () -> storage.saveCompressed(broken, name));
+            assertEquals(List.of(), tempFiles(name));
+            assertThrows(LibraryException.class, () -> storage.saveToFile(broken, name));
+            assertEquals(List.of(), tempFiles(name));
+            // Il catalogo salvato prima resta intatto
+            assertArrayEquals(saved, Files.readAllBytes(Paths.get(name)));
+            
+            storage.saveCompressed(catalog(10), name);
+            assertEquals(catalog(10).size(), storage.loadFromFile(name).size());
+            assertEquals(List.of(), tempFiles(name));
+        } finally {
+            Files.deleteIfExists(Paths.get(name));
+            for (Path temp : tempFiles(name)) {
+                Files.delete(temp);
+            }
+        }
+    }
+    
+    @Test
+    public void testConcurrentSavesOfSameFile() throws Exception {
+        String name = "concurrent-save-" + System.nanoTime();
+        LibraryStorage storage = new LibraryStorage();
+        Collection catalog = catalog(5000);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 10; round++) {
+                // Ogni salvataggio ha il suo file temporaneo: nessuno dei due perde il proprio
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<?> plain = pool.submit(() -> {
+                    start.await();
+                    storage.saveToFile(catalog, name);
+                    return null;
+                });
+                Future<?> compressed = pool.submit(() -> {
+                    start.await();
+                    storage.saveCompressed(catalog, name);
+                    return null;
+                });
+                plain.get();
+                compressed.get();
+                assertEquals(catalog.getStats().getItemCount(), storage.loadFromFile(name).getStats().getItemCount());
+                assertEquals(List.of(), tempFiles(name));
+            }
+        } finally {
+            pool.shutdown();
+            Files.deleteIfExists(Paths.get(name));
+            for (Path temp : tempFiles(name)) {
+                Files.delete(temp);
+            }
+        }
+    }
+    
+    private Path write(Collection root) throws Exception {
+        Path file = dir.resolve("catalogo.libz");
+        try (CatalogRecordWriter writer = new CompressedCatalog().blockSize(4096)
+                .openWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE))) {
+            new LibraryStorage().exportTo(root, writer);
+        }
+        return file;
+    }
+    
+    private static Collection catalog(int items) {
+        Collection root = new Collection("Catalogo");
+        Collection section = null;
+        for (int i = 0; i < items; i++) {
+            if (i % 1000 == 0) {
+                section = new Collection("Sezione " + (i / 1000));
+                root.addItem(section);
+            }
+            switch (i % 3) {
+                case 0:
+                    section.addItem(new Book("Titolo " + i, "Autore " + (i % 50), 1950 + i % 70, "isbn-" + i));
+                    break;
+                case 1:
+                    section.addItem(new Magazine("Titolo " + i, i, "Editore " + (i % 20), 1950 + i % 70));
+                    break;
+                default:
+                    section.addItem(new DVD("Titolo " + i, "Regista " + (i % 30), 60 + i % 120, 1950 + i % 70));
+            }
+        }
+        return root;
+    }
+}
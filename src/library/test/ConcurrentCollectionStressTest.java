@@ -0,0 +1,146 @@
+// File: src/library/test/ConcurrentCollectionStressTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import library.Book;
+import library.ConcurrentCollection;
+import library.LibraryItem;
+
+/**
+  Stress test di ConcurrentCollection: un writer aggancia e sgancia continuamente
+  sotto-collezioni ("unità" di UNIT_SIZE libri) mentre N lettori attraversano l'albero.
+  Un lettore non deve mai vedere un'unità incompleta o con libri di un'altra unità;
+  il throughput delle letture viene stampato per 1, 2 e 4 lettori.
+ **/
+public class ConcurrentCollectionStressTest {
+    private static final int UNITS = 200;
+    private static final int UNIT_SIZE = 20;
+    private static final long DURATION_MS = 500;
+    
+    @Test
+    public void testReadersNeverSeeTornTree() throws Exception {
+        long single = 0;
+        for (int readers = 1; readers <= 4; readers *= 2) {
+            long[] result = run(readers);
+            assertEquals(0, result[1], "Letture incoerenti con " + readers + " lettori");
+            long perSecond = result[0] * 1000 / DURATION_MS;
+            if (readers == 1) {
+                single = perSecond;
+            }
+            System.out.printf("%d lettori: %d attraversamenti/s (x%.2f)%n",
+                readers, perSecond, single == 0 ? 0.0 : (double) perSecond / single);
+        }
+    }
+    
+    @Test
+    public void testStatsIgnoreWritesToDetachedChild() throws Exception {
+        ConcurrentCollection root = new ConcurrentCollection("Radice");
+        root.getStats(); // Da qui in poi aggiornate in modo incrementale
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<ConcurrentCollection> current = new AtomicReference<>(unit(0));
+        Thread writer = new Thread(() -> {
+            int next = 0;
+            while (running.get()) {
+                current.get().addItem(new Book("Extra", "Autore", 2000, "extra-" + next++));
+            }
+        });
+        writer.start();
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+        for (int id = 1; System.currentTimeMillis() < deadline; id++) {
+            ConcurrentCollection child = current.get();
+            root.addItem(child);
+            root.removeItem(child); // Il writer può scrivere nel figlio mentre viene sganciato
+            current.set(unit(id));
+        }
+        running.set(false);
+        writer.join();
+        
+        assertEquals(0, root.getStats().getItemCount(), root.getStats().toString());
+        assertEquals(0, root.getStats().getBookCount(), root.getStats().toString());
+    }
+    
+    // Restituisce {attraversamenti completati, letture incoerenti}
+    private long[] run(int readers) throws InterruptedException {
+        ConcurrentCollection root = new ConcurrentCollection("Radice");
+        for (int i = 0; i < UNITS; i++) {
+            root.addItem(unit(i));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong traversals = new AtomicLong();
+        AtomicLong torn = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        
+        threads.add(new Thread(() -> {
+            await(start);
+            int next = UNITS;
+            while (running.get()) {
+                root.addItem(unit(next++));
+                root.removeItem(root.getItems().get(0)); // Sgancia l'unità più vecchia
+            }
+        }));
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (running.get()) {
+                    List<LibraryItem> units = root.getItems();
+                    if (units.size() < UNITS || units.size() > UNITS + 1) {
+                        torn.incrementAndGet();
+                    }
+                    for (LibraryItem item : units) {
+                        if (!isComplete((ConcurrentCollection) item)) {
+                            torn.incrementAndGet();
+                        }
+                    }
+                    traversals.incrementAndGet();
+                }
+            }));
+        }
+        
+        threads.forEach(Thread::start);
+        start.countDown();
+        Thread.sleep(DURATION_MS);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new long[] { traversals.get(), torn.get() };
+    }
+    
+    private static ConcurrentCollection unit(int id) {
+        ConcurrentCollection unit = new ConcurrentCollection("Unità " + id);
+        for (int k = 0; k < UNIT_SIZE; k++) {
+            unit.addItem(new Book("Libro " + k, "Autore", 2000, id + "-" + k));
+        }
+        return unit;
+    }
+    
+    private static boolean isComplete(ConcurrentCollection unit) {
+        List<LibraryItem> books = unit.getItems();
+        if (books.size() != UNIT_SIZE) {
+            return false;
+        }
+        String prefix = unit.getTitle().substring("Unità ".length()) + "-";
+        for (LibraryItem book : books) {
+            if (!((Book) book).getIsbn().startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+// File: src/library/test/MappedCatalogTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static library.test.CatalogFixtures.tempFiles;
+import static library.test.CatalogFixtures.catalog;
+import static library.test.CatalogFixtures.assertRejectsDuplicates;
+import static library.test.CatalogFixtures.describe;
+import static library.test.CatalogFixtures.rejectingDuplicates;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import library.BinaryCatalogReader;
+import library.BinaryCatalogWriter;
+import library.Book;
+import library.CatalogFormat;
+import library.Collection;
+import library.DVD;
+import library.LibraryItem;
+import library.LibraryStorage;
+import library.Magazine;
+import library.MappedCatalog;
+import library.TreeIterator;
+
+/**
+  Catalogo mappato in memoria: viste lazy, serializzazione come elementi normali,
+  letture a cavallo dei segmenti e salvataggio che non tocca il file già mappato.
+ **/
+public class MappedCatalogTest {
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    public void testViewsAreLazy() throws Exception {
+        Collection root = MappedCatalog.open(write(catalog())).getRoot();
+        
+        // La descrizione conta i figli scorrendo i record, senza creare le viste
+        assertEquals("Collezione: Catalogo (3 titoli)", root.getDescription());
+        List<LibraryItem> items = root.getItems();
+        Book book = (Book) items.get(0);
+        assertNotSame(Book.class, book.getClass());
+        assertEquals("Il nome della rosa", book.getTitle());
+        assertEquals("Umberto Eco", book.getAuthor());
+        assertEquals(1980, book.getYear());
+        Collection cinema = (Collection) items.get(1);
+        assertEquals("Collezione: Cinema (3 titoli)", cinema.getDescription());
+        assertEquals(222, ((DVD) cinema.getItems().get(2)).getDuration());
+        
+        // Una volta caricata la collezione si comporta come una normale
+        cinema.addItem(new DVD("Solaris", "Andrej Tarkovskij", 167, 1972));
+        assertEquals(4, cinema.size());
+        assertEquals(describe(catalog()).size() + 1, describe(root).size());
+    }
+    
+    @Test
+    public void testDescriptionSkipsUnknownRecords() throws Exception {
+        Collection catalog = new Collection("Catalogo");
+        catalog.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        catalog.addItem(new Book("Solaris", "Stanisław Lem", 1961, "978-0156027601"));
+        Path file = write(catalog);
+        
+        // Il record di Dune diventa di un tipo sconosciuto: tag, int len, int lunghezza del titolo, titolo
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] title = "Dune".getBytes(StandardCharsets.UTF_8);
+        int position = indexOf(bytes, title) - 2 * Integer.BYTES - 1;
+        assertEquals(CatalogFormat.TAG_BOOK, bytes[position]);
+        bytes[position] = 99;
+        Files.write(file, bytes);
+        
+        // Stessa descrizione prima e dopo il caricamento dei figli
+        Collection root = MappedCatalog.open(file).getRoot();
+        assertEquals("Collezione: Catalogo (1 titoli)", root.getDescription());
+        assertEquals(1, root.getItems().size());
+        assertEquals("Collezione: Catalogo (1 titoli)", root.getDescription());
+    }
+    
+    @Test
+    public void testRejectDuplicatesIsRestored() throws Exception {
+        Collection root = MappedCatalog.open(write(rejectingDuplicates())).getRoot();
+        assertEquals(describe(rejectingDuplicates()), describe(root));
+        assertRejectsDuplicates(root);
+    }
+    
+    @Test
+    public void testSerializationWritesPlainItems() throws Exception {
+        Collection root = MappedCatalog.open(write(catalog())).getRoot();
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(root);
+        }
+        Collection copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (Collection) in.readObject();
+        }
+        
+        assertEquals(describe(catalog()), describe(copy));
+        TreeIterator iterator = new TreeIterator(copy);
+        while (iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            if (!(item instanceof Collection)) {
+                assertTrue(item.getClass() == Book.class || item.getClass() == Magazine.class
+                        || item.getClass() == DVD.class, item.getClass().getName());
+            }
+        }
+    }
+    
+    @Test
+    public void testReadsAcrossSegmentBoundaries() throws Exception {
+        Path file = write(catalog());
+        List<String> expected;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            expected = describe(new BinaryCatalogReader(channel).read());
+        }
+        // Segmenti minuscoli: interi, stringhe e nomi finiscono spezzati tra due segmenti
+        for (int segmentSize : new int[] { 8, 16, 64, MappedCatalog.MAX_SEGMENT_SIZE }) {
+            assertEquals(expected, describe(MappedCatalog.open(file, segmentSize).getRoot()), "segmenti da " + segmentSize);
+        }
+        assertThrows(IllegalArgumentException.class, () -> MappedCatalog.open(file, 100));
+    }
+    
+    @Test
+    public void testConcurrentFirstReadsSeeAllItems() throws Exception {
+        Collection catalog = new Collection("Catalogo");
+        Collection archive = new Collection("Archivio");
+        for (int i = 0; i < 2000; i++) {
+            archive.addItem(new Book("Libro " + i, "Autore " + i % 50, 2000, "isbn-" + i));
+        }
+        catalog.addItem(archive);
+        Path file = write(catalog);
+        List<String> expected = describe(catalog);
+        
+        int threads = 4;
+        for (int round = 0; round < 50; round++) {
+            Collection root = MappedCatalog.open(file).getRoot();
+            CountDownLatch start = new CountDownLatch(1);
+            List<List<String>> seen = new ArrayList<>(Collections.nCopies(threads, null));
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> readers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int reader = t;
+                readers.add(new Thread(() -> {
+                    try {
+                        start.await();
+                        // Primo accesso insieme: nessuno deve vedere la collezione vuota o a metà
+                        Collection loaded = (Collection) root.getItems().get(0);
+                        assertEquals(2000, loaded.getItems().size());
+                        seen.set(reader, describe(root)); // Letto dopo join()
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            readers.forEach(Thread::start);
+            start.countDown();
+            for (Thread thread : readers) {
+                thread.join();
+            }
+            assertNull(failure.get(), () -> "giro " + failure.get());
+            for (List<String> result : seen) {
+                assertEquals(expected, result);
+            }
+        }
+    }
+    
+    @Test
+    public void testSaveDoesNotTouchMappedFile() throws Exception {
+        // LibraryStorage accetta solo nomi nella cartella corrente
+        String name = "mapped-test-" + System.nanoTime() + ".libc";
+        LibraryStorage storage = new LibraryStorage();
+        try {
+            storage.saveToFile(catalog(), name);
+            Collection mapped = storage.openMapped(name);
+            
+            Collection changed = new Collection("Nuovo catalogo");
+            changed.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+            storage.saveToFile(changed, name);
+            
+            // Il file mappato è stato sostituito per rinomina, non sovrascritto: la mappatura resta valida
+            assertEquals(describe(catalog()), describe(mapped));
+            assertEquals(describe(changed), describe(storage.loadFromFile(name)));
+            assertEquals(List.of(), tempFiles(name));
+        } finally {
+            Files.deleteIfExists(Paths.get(name));
+            for (Path temp : tempFiles(name)) {
+                Files.delete(temp);
+            }
+        }
+    }
+    
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + pattern.length, pattern, 0, pattern.length)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Sequenza non trovata nel file");
+    }
+    
+    private Path write(Collection root) throws Exception {
+        Path file = dir.resolve("catalogo.libc");
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            new BinaryCatalogWriter(channel).write(root);
+        }
+        return file;
+    }
+}
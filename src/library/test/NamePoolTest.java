@@ -0,0 +1,88 @@
+// File: src/library/test/NamePoolTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import library.Book;
+import library.DVD;
+import library.Magazine;
+import library.Name;
+import library.NamePool;
+
+/**
+  Pool dei nomi: un solo Name per nome tra elementi creati e deserializzati,
+  e nomi non più usati da nessun elemento liberati dal garbage collector.
+ **/
+public class NamePoolTest {
+    
+    @Test
+    public void testItemsShareTheSameName() throws Exception {
+        Book book = new Book("Il nome della rosa", "  Umberto Eco ", 1980, "978-8845292613");
+        Book other = new Book("Il pendolo di Foucault", "Umberto Eco", 1988, "978-8845292614");
+        DVD dvd = new DVD("Alien", "Ridley Scott", 117, 1979);
+        Magazine magazine = new Magazine("Le Scienze", 600, "Le Scienze Spa", 2018);
+        
+        assertSame(book.getAuthorName(), other.getAuthorName());
+        assertSame(book.getAuthorName(), NamePool.shared().intern("Umberto Eco"));
+        assertEquals("Umberto Eco", book.getAuthor());
+        assertEquals("umberto eco", book.getAuthorName().getSearchKey());
+        
+        // Nel flusso serializzato il nome resta una stringa; al caricamento torna nel pool
+        Book copy = roundTrip(book);
+        assertEquals("Umberto Eco", copy.getAuthor());
+        assertSame(book.getAuthorName(), copy.getAuthorName());
+        assertEquals(book.getYear(), copy.getYear());
+        assertEquals(book.getIsbn(), copy.getIsbn());
+        assertEquals(book.getTitleKey(), copy.getTitleKey());
+        
+        DVD dvdCopy = roundTrip(dvd);
+        assertSame(dvd.getDirectorName(), dvdCopy.getDirectorName());
+        assertEquals(dvd.getDuration(), dvdCopy.getDuration());
+        Magazine magazineCopy = roundTrip(magazine);
+        assertSame(magazine.getPublisherName(), magazineCopy.getPublisherName());
+        assertEquals(magazine.getIssue(), magazineCopy.getIssue());
+    }
+    
+    @Test
+    public void testUnusedNamesAreReleased() throws Exception {
+        NamePool pool = NamePool.shared();
+        Book kept = new Book("Dune", "Frank Herbert", 1965, "978-0441013593");
+        int before = pool.size();
+        
+        List<Book> books = new ArrayList<>();
+        String prefix = "Autore temporaneo " + System.nanoTime() + " ";
+        for (int i = 0; i < 1000; i++) {
+            books.add(new Book("Titolo " + i, prefix + i, 2000, "isbn-" + i));
+        }
+        assertTrue(pool.size() >= before + 1000);
+        
+        // Scartati gli elementi, i loro nomi non hanno altri riferimenti
+        books = null;
+        for (int i = 0; i < 50 && pool.size() > before; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertTrue(pool.size() <= before, "nomi rimasti: " + pool.size() + ", prima: " + before);
+        
+        // Il nome ancora usato resta quello canonico
+        Name herbert = pool.intern("Frank Herbert");
+        assertSame(kept.getAuthorName(), herbert);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T item) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(item);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+// File: src/library/test/ParallelTraversalTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import library.Book;
+import library.Collection;
+import library.DVD;
+import library.FuzzySearchVisitor;
+import library.LibraryItem;
+import library.Magazine;
+import library.Metrics;
+import library.ParallelTraversal;
+import library.SearchVisitor;
+
+/**
+  Visita parallela: stessi risultati, nello stesso ordine, della visita sequenziale
+  su un albero annidato e condiviso, e stesse metriche registrate da accept().
+ **/
+public class ParallelTraversalTest {
+    
+    @Test
+    public void testParallelMatchesSequential() {
+        Collection root = catalog();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Soglia bassa: intervalli divisi e sottocollezioni assegnate ad altri task
+            ParallelTraversal traversal = new ParallelTraversal(pool, 8);
+            for (String term : new String[] { "romanzo 1", "eco", "alien", "scienze", "catalogo", "nessuno" }) {
+                SearchVisitor sequential = new SearchVisitor(term);
+                root.accept(sequential);
+                SearchVisitor parallel = new SearchVisitor(term);
+                traversal.traverse(root, parallel);
+                assertSameItems(sequential.getResults(), parallel.getResults());
+                
+                SearchVisitor common = new SearchVisitor(term);
+                root.acceptParallel(common);
+                assertSameItems(sequential.getResults(), common.getResults());
+            }
+            
+            FuzzySearchVisitor sequential = new FuzzySearchVisitor("romanzo", 2);
+            root.accept(sequential);
+            FuzzySearchVisitor parallel = new FuzzySearchVisitor("romanzo", 2);
+            traversal.traverse(root, parallel);
+            assertFalse(sequential.getResults().isEmpty());
+            assertSameItems(sequential.getResults(), parallel.getResults());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testParallelRecordsVisitMetrics() {
+        Collection root = catalog();
+        Metrics.setEnabled(true);
+        try {
+            Metrics.reset();
+            root.accept(new SearchVisitor("eco"));
+            long items = Metrics.counter("visit.SearchVisitor.items").getCount();
+            assertTrue(items > 0);
+            assertEquals(1, Metrics.histogram("visit.SearchVisitor").getCount());
+            
+            Metrics.reset();
+            root.acceptParallel(new SearchVisitor("eco"));
+            assertEquals(items, Metrics.counter("visit.SearchVisitor.items").getCount());
+            assertEquals(1, Metrics.histogram("visit.SearchVisitor").getCount());
+            
+            Metrics.reset();
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                new ParallelTraversal(pool, 8).traverse(root, new SearchVisitor("eco"));
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(items, Metrics.counter("visit.SearchVisitor.items").getCount());
+        } finally {
+            Metrics.setEnabled(false);
+            Metrics.reset();
+        }
+    }
+    
+    // Stessi elementi (per identità) nello stesso ordine
+    private static void assertSameItems(List<LibraryItem> expected, List<LibraryItem> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i), "posizione " + i);
+        }
+    }
+    
+    // Quattro livelli, collezioni grandi e piccole, una collezione condivisa
+    private static Collection catalog() {
+        Collection root = new Collection("Catalogo");
+        root.addItem(new Book("Il nome della rosa", "Umberto Eco", 1980, "978-8845292613"));
+        Collection narrativa = new Collection("Narrativa");
+        for (int g = 0; g < 5; g++) {
+            Collection genere = new Collection("Genere " + g);
+            for (int i = 0; i < 40; i++) {
+                genere.addItem(new Book("Romanzo " + g + "-" + i, i % 3 == 0 ? "Umberto Eco" : "Autore " + i, 1950 + i, "isbn-" + g + "-" + i));
+                if (i % 10 == 0) {
+                    Collection serie = new Collection("Serie " + g + "-" + i);
+                    for (int j = 0; j < 12; j++) {
+                        serie.addItem(new Book("Romanzo seriale " + j, "Autore " + j, 2000 + j, "isbn-s-" + j));
+                    }
+                    genere.addItem(serie);
+                }
+            }
+            narrativa.addItem(genere);
+        }
+        root.addItem(narrativa);
+        Collection cinema = new Collection("Cinema");
+        cinema.addItem(new DVD("Alien", "Ridley Scott", 117, 1979));
+        cinema.addItem(new DVD("Blade Runner", "Ridley Scott", 117, 1982));
+        root.addItem(cinema);
+        narrativa.addItem(cinema); // Condivisa: visitata su entrambi i percorsi
+        for (int i = 0; i < 30; i++) {
+            root.addItem(new Magazine("Le Scienze", 600 + i, "Le Scienze Spa", 2018));
+        }
+        return root;
+    }
+}
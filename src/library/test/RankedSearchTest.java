@@ -0,0 +1,99 @@
+// File: src/library/test/RankedSearchTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import library.Book;
+import library.CatalogIndex;
+import library.Collection;
+import library.DVD;
+import library.Magazine;
+import library.RankedSearch;
+
+/**
+  Ricerca con punteggio: ordine per pertinenza, limite dei risultati, stessi risultati
+  dalla visita e dall'indice, interruzione con cancel() e con il timeout.
+ **/
+public class RankedSearchTest {
+    
+    @Test
+    public void testRankingOrder() {
+        Collection root = catalog();
+        // Titolo uguale > titolo che inizia con > titolo che contiene > solo l'autore
+        List<String> expected = List.of("Dune", "Dune Messiah", "Children of Dune", "Il nome della rosa");
+        
+        assertEquals(expected, titles(new RankedSearch("dune", 10).search(root)));
+        assertEquals(expected, titles(new RankedSearch("dune", 10).search(new CatalogIndex(root))));
+        
+        List<RankedSearch.Hit> hits = new RankedSearch("Dune", 10).search(root);
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).getScore() > hits.get(i).getScore(), hits.toString());
+        }
+    }
+    
+    @Test
+    public void testLimitKeepsBestInVisitOrder() {
+        Collection root = catalog();
+        CatalogIndex index = new CatalogIndex(root);
+        
+        assertEquals(List.of("Dune", "Dune Messiah"), titles(new RankedSearch("dune", 2).search(root)));
+        assertEquals(List.of("Dune", "Dune Messiah"), titles(new RankedSearch("dune", 2).search(index)));
+        
+        // Stesso punteggio: vince l'elemento visitato prima
+        assertEquals(List.of("Alien"), titles(new RankedSearch("ridley", 1).search(root)));
+        assertEquals(List.of("Alien"), titles(new RankedSearch("ridley", 1).search(index)));
+        
+        // Con molti elementi l'indice si ferma alle prime fasce e dà gli stessi risultati
+        Collection large = catalog();
+        for (int i = 0; i < 5000; i++) {
+            large.addItem(new Book("Saga di Dune " + i, "Autore " + i, 2000, "isbn-" + i));
+        }
+        for (String term : new String[] { "dune", "saga", "du", "autore 12", "x" }) {
+            assertEquals(titles(new RankedSearch(term, 5).search(large)),
+                    titles(new RankedSearch(term, 5).search(new CatalogIndex(large))), term);
+        }
+    }
+    
+    @Test
+    public void testCancelAndTimeout() {
+        Collection root = new Collection("Catalogo");
+        for (int i = 0; i < 50_000; i++) {
+            root.addItem(new Book("Titolo " + i, "Autore", 2000, "isbn-" + i));
+        }
+        
+        RankedSearch cancelled = new RankedSearch("titolo", 10);
+        cancelled.cancel();
+        assertTrue(cancelled.search(root).isEmpty());
+        assertFalse(cancelled.isComplete());
+        
+        RankedSearch timed = new RankedSearch("titolo", 10).timeout(1, TimeUnit.NANOSECONDS);
+        timed.search(new CatalogIndex(root));
+        assertFalse(timed.isComplete());
+        
+        RankedSearch full = new RankedSearch("titolo", 10);
+        assertEquals(10, full.search(root).size());
+        assertTrue(full.isComplete());
+        assertThrows(IllegalStateException.class, () -> full.search(root));
+    }
+    
+    private static List<String> titles(List<RankedSearch.Hit> hits) {
+        return hits.stream().map(hit -> hit.getItem().getTitle()).collect(Collectors.toList());
+    }
+    
+    private static Collection catalog() {
+        Collection root = new Collection("Catalogo");
+        root.addItem(new Book("Il nome della rosa", "Dune Eco", 1980, "978-8845292613"));
+        root.addItem(new Book("Children of Dune", "Frank Herbert", 1976, "978-0593098240"));
+        Collection cinema = new Collection("Cinema");
+        cinema.addItem(new DVD("Alien", "Ridley Scott", 117, 1979));
+        cinema.addItem(new DVD("Blade Runner", "Ridley Scott", 117, 1982));
+        root.addItem(cinema);
+        root.addItem(new Book("Dune Messiah", "Frank Herbert", 1969, "978-0593098233"));
+        root.addItem(new Magazine("Le Scienze", 600, "Le Scienze Spa", 2018));
+        root.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        return root;
+    }
+}
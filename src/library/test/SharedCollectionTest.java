@@ -0,0 +1,154 @@
+// File: src/library/test/SharedCollectionTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import library.Book;
+import library.CatalogIndex;
+import library.Collection;
+import library.LibraryItem;
+import library.SearchCache;
+import library.SearchVisitor;
+import library.TreeIterator;
+
+/**
+  Sotto-collezioni condivise tra più collezioni: le modifiche devono raggiungere
+  tutti i contenitori, anche dopo che la collezione è stata tolta da uno di essi.
+ **/
+public class SharedCollectionTest {
+    
+    @Test
+    public void testChangesReachEveryContainer() {
+        Collection rootA = new Collection("Catalogo A");
+        Collection rootB = new Collection("Catalogo B");
+        Collection shared = new Collection("Fantascienza");
+        rootA.addItem(shared);
+        SearchCache cache = new SearchCache(rootA, 8, term -> search(rootA, term));
+        assertTrue(cache.search("dune").isEmpty());
+        
+        rootB.addItem(shared);
+        rootB.removeItem(shared);
+        assertSame(rootA, shared.getParent());
+        
+        long versionA = rootA.getVersion();
+        shared.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        assertTrue(rootA.getVersion() > versionA);
+        assertEquals(1, cache.search("dune").size());
+        
+        // Condivisa da due cataloghi: ogni modifica arriva a entrambi
+        rootB.addItem(shared);
+        long versionB = rootB.getVersion();
+        versionA = rootA.getVersion();
+        shared.addItem(new Book("Dune Messiah", "Frank Herbert", 1969, "978-0593098233"));
+        assertTrue(rootA.getVersion() > versionA);
+        assertTrue(rootB.getVersion() > versionB);
+        assertEquals(2, cache.search("dune").size());
+        
+        rootA.removeItem(shared);
+        assertSame(rootB, shared.getParent());
+        assertTrue(cache.search("dune").isEmpty());
+    }
+    
+    @Test
+    public void testStatsCountSharedCollectionsOncePerOccurrence() {
+        Collection rootA = new Collection("Catalogo A");
+        Collection rootB = new Collection("Catalogo B");
+        Collection shared = new Collection("Fantascienza");
+        rootA.addItem(shared);
+        assertEquals(1, rootA.getStats().getItemCount());
+        
+        rootB.addItem(shared);
+        rootB.removeItem(shared);
+        shared.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        assertEquals(2, rootA.getStats().getItemCount());
+        
+        // Raggiunta da due percorsi sotto rootA (diretta e attraverso rootB): contata due volte,
+        // come farebbe una visita completa
+        rootB.addItem(shared);
+        rootA.addItem(rootB);
+        shared.addItem(new Book("Dune Messiah", "Frank Herbert", 1969, "978-0593098233"));
+        assertEquals(countByVisit(rootA), rootA.getStats().getItemCount());
+        assertEquals(4, rootA.getStats().getBookCount());
+        assertEquals(2, rootB.getStats().getBookCount());
+        
+        shared.removeItem(shared.getItems().get(0));
+        rootA.removeItem(rootB);
+        assertEquals(countByVisit(rootA), rootA.getStats().getItemCount());
+        assertEquals(1, rootA.getStats().getBookCount());
+        assertEquals(1, rootB.getStats().getBookCount());
+    }
+    
+    @Test
+    public void testStatsOfRootComputedBeforeSharedDescendants() {
+        // root -> {A, B}, A -> X, B -> X: le statistiche chieste prima alla radice
+        Collection root = new Collection("Catalogo");
+        Collection a = new Collection("A");
+        Collection b = new Collection("B");
+        Collection shared = new Collection("X");
+        shared.addItem(new Book("Dune", "Frank Herbert", 1965, "978-0441013593"));
+        a.addItem(shared);
+        b.addItem(shared);
+        root.addItem(a);
+        root.addItem(b);
+        
+        assertEquals(2, root.getStats().getBookCount());
+        assertEquals(countByVisit(root), root.getStats().getItemCount());
+        assertEquals(1, a.getStats().getBookCount());
+        assertEquals(1, b.getStats().getBookCount());
+        assertEquals(1, shared.getStats().getBookCount());
+        
+        shared.addItem(new Book("Dune Messiah", "Frank Herbert", 1969, "978-0593098233"));
+        assertEquals(4, root.getStats().getBookCount());
+        assertEquals(2, a.getStats().getBookCount());
+    }
+    
+    @Test
+    public void testIndexFollowsSharedCollections() {
+        Collection rootA = new Collection("Catalogo A");
+        Collection rootB = new Collection("Catalogo B");
+        Collection shared = new Collection("Fantascienza");
+        rootA.addItem(shared);
+        CatalogIndex index = new CatalogIndex(rootA);
+        
+        rootB.addItem(shared);
+        rootB.removeItem(shared);
+        Book dune = new Book("Dune", "Frank Herbert", 1965, "978-0441013593");
+        shared.addItem(dune);
+        assertEquals(List.of(dune), index.search("dune"));
+        
+        // Due percorsi sotto rootA: come SearchVisitor, l'indice restituisce il libro due volte
+        rootB.addItem(shared);
+        rootA.addItem(rootB);
+        assertEquals(List.of(dune, dune), search(rootA, "dune"));
+        assertEquals(List.of(dune, dune), index.search("dune"));
+        Book messiah = new Book("Dune Messiah", "Frank Herbert", 1969, "978-0593098233");
+        shared.addItem(messiah);
+        assertEquals(List.of(dune, messiah, dune, messiah), index.search("dune"));
+        
+        // Tolto un percorso gli elementi restano raggiungibili dall'altro, e quindi nell'indice
+        rootA.removeItem(rootB);
+        assertEquals(List.of(dune, messiah), index.search("dune"));
+        shared.removeItem(messiah);
+        shared.removeItem(dune);
+        assertTrue(index.search("dune").isEmpty());
+        assertEquals(search(rootA, "fantascienza"), index.search("fantascienza"));
+    }
+    
+    private static int countByVisit(Collection root) {
+        TreeIterator iterator = new TreeIterator(root);
+        iterator.next(); // La radice non è contata
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+    
+    private static List<LibraryItem> search(Collection root, String term) {
+        SearchVisitor visitor = new SearchVisitor(term);
+        root.accept(visitor);
+        return visitor.getResults();
+    }
+}
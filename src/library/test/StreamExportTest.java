@@ -0,0 +1,220 @@
+// File: src/library/test/StreamExportTest.java
+package library.test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static library.test.CatalogFixtures.assertRejectsDuplicates;
+import static library.test.CatalogFixtures.rejectingDuplicates;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+import library.BinaryRecordReader;
+import library.BinaryRecordWriter;
+import library.Book;
+import library.CatalogRecord;
+import library.CatalogRecordReader;
+import library.Collection;
+import library.DVD;
+import library.ImportReport;
+import library.LibraryItem;
+import library.LibraryStorage;
+import library.Magazine;
+import library.NdjsonRecordReader;
+import library.NdjsonRecordWriter;
+
+/**
+  Esportazione e importazione record per record: andata e ritorno in NDJSON e in binario
+  (compreso il rifiuto dei duplicati), e record corrotti scartati senza interrompere la
+  lettura dei successivi.
+ **/
+public class StreamExportTest {
+    private static final int STREAM_HEADER = Integer.BYTES + Short.BYTES;
+    private static final int RECORD_HEADER = Short.BYTES + 1 + Integer.BYTES;
+    private static final int RECORD_OVERHEAD = Short.BYTES + 1 + Integer.BYTES + Integer.BYTES;
+    
+    @Test
+    public void testNdjsonRoundTrip() throws Exception {
+        StringWriter out = new StringWriter();
+        try (NdjsonRecordWriter writer = new NdjsonRecordWriter(out)) {
+            new LibraryStorage().exportTo(catalog(), writer);
+        }
+        
+        CatalogRecordReader reader = new NdjsonRecordReader(new StringReader(out.toString()));
+        assertEquals(expected(), describe(reader));
+        assertEquals(0, reader.getReport().getSkipped());
+    }
+    
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        byte[] dump = binaryDump();
+        CatalogRecordReader reader = new BinaryRecordReader(Channels.newChannel(new ByteArrayInputStream(dump)));
+        assertEquals(expected(), describe(reader));
+        assertEquals(0, reader.getReport().getSkipped());
+    }
+    
+    @Test
+    public void testRejectDuplicatesSurvivesExportAndImport() throws Exception {
+        LibraryStorage storage = new LibraryStorage();
+        for (LibraryStorage.StreamFormat format : LibraryStorage.StreamFormat.values()) {
+            // LibraryStorage accetta solo nomi nella cartella corrente
+            String name = "flags-test-" + System.nanoTime() + "." + format.name().toLowerCase();
+            try {
+                storage.exportStream(rejectingDuplicates(), name, format);
+                Collection target = new Collection("Destinazione");
+                ImportReport report = storage.importStream(name, target);
+                
+                assertEquals(0, report.getSkipped(), format + ": " + report.getErrors());
+                assertFalse(target.isRejectDuplicates()); // La destinazione non cambia
+                assertRejectsDuplicates((Collection) target.getItems().get(0));
+            } finally {
+                Files.deleteIfExists(Paths.get(name));
+            }
+        }
+    }
+    
+    @Test
+    public void testCorruptRecordsAreSkipped() throws Exception {
+        // NDJSON: la riga non valida viene scartata con il suo numero
+        String ndjson = "{\"type\":\"begin\",\"name\":\"Catalogo\"}\n"
+                + "{\"type\":\"book\",\"title\":\"Dune\"\n"
+                + "{\"type\":\"dvd\",\"title\":\"Alien\",\"director\":\"Ridley Scott\",\"duration\":117,\"year\":1979}\n"
+                + "{\"type\":\"end\"}\n";
+        CatalogRecordReader ndjsonReader = new NdjsonRecordReader(new StringReader(ndjson));
+        assertEquals(List.of("BEGIN Catalogo", "ITEM Alien", "END"), describe(ndjsonReader));
+        assertEquals(1, ndjsonReader.getReport().getSkipped());
+        assertTrue(ndjsonReader.getReport().getErrors().get(0).contains("riga 2"), ndjsonReader.getReport().getErrors().toString());
+        
+        // Binario: CRC errato nel secondo record; nel quinto una lunghezza che supera la fine del
+        // file (entro il massimo consentito), che non deve interrompere la lettura
+        byte[] dump = binaryDump();
+        ByteBuffer buffer = ByteBuffer.wrap(dump);
+        int[] offsets = new int[5];
+        offsets[0] = STREAM_HEADER;
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] = offsets[i - 1] + RECORD_OVERHEAD + buffer.getInt(offsets[i - 1] + 3);
+        }
+        dump[offsets[1] + RECORD_OVERHEAD + 2] ^= 0x7F;
+        buffer.putInt(offsets[4] + 3, 1 << 20);
+        
+        CatalogRecordReader reader = new BinaryRecordReader(Channels.newChannel(new ByteArrayInputStream(dump)));
+        List<String> expected = new ArrayList<>(expected());
+        expected.remove(4);
+        expected.remove(1);
+        assertEquals(expected, describe(reader));
+        assertEquals(2, reader.getReport().getSkipped());
+        List<String> errors = reader.getReport().getErrors();
+        assertTrue(errors.get(0).contains("offset " + offsets[1]) && errors.get(0).contains("CRC"), errors.toString());
+        assertTrue(errors.get(1).contains("offset " + offsets[4]) && errors.get(1).contains("lunghezza"), errors.toString());
+    }
+    
+    @Test
+    public void testRejectedCollectionSkipsItsSubtree() throws Exception {
+        // Binario: nome vuoto (con CRC corretto) nella collezione Cinema, terzo record
+        byte[] dump = binaryDump();
+        ByteBuffer buffer = ByteBuffer.wrap(dump);
+        int start = STREAM_HEADER;
+        for (int i = 0; i < 2; i++) {
+            start += RECORD_OVERHEAD + buffer.getInt(start + 3);
+        }
+        int length = buffer.getInt(start + 3);
+        int nameLength = buffer.getInt(start + RECORD_HEADER);
+        Arrays.fill(dump, start + RECORD_HEADER + Integer.BYTES, start + RECORD_HEADER + Integer.BYTES + nameLength, (byte) ' ');
+        CRC32C crc = new CRC32C();
+        crc.update(dump, start + Short.BYTES, 1 + Integer.BYTES + length);
+        buffer.putInt(start + RECORD_HEADER + length, (int) crc.getValue());
+        
+        CatalogRecordReader reader = new BinaryRecordReader(Channels.newChannel(new ByteArrayInputStream(dump)));
+        assertEquals(List.of("BEGIN Catalogo", "ITEM Il nome della rosa", "ITEM Lezioni americane", "END"), describe(reader));
+        assertEquals(4, reader.getReport().getSkipped()); // Cinema, Alien, Riviste, Le Scienze
+        assertEquals(4, reader.getReport().getRecords());
+    }
+    
+    @Test
+    public void testImportSkipsRejectedRecords() throws Exception {
+        String ndjson = "{\"type\":\"book\",\"title\":\"Dune\",\"author\":\"Frank Herbert\",\"year\":1965,\"isbn\":\"978-0441013593\"}\n"
+                + "{\"type\":\"book\",\"title\":\"Dune\",\"author\":\"Frank Herbert\",\"year\":1965,\"isbn\":\"978-0441013593\"}\n"
+                + "{\"type\":\"begin\",\"name\":\"  \"}\n"
+                + "{\"type\":\"dvd\",\"title\":\"Alien\",\"director\":\"Ridley Scott\",\"duration\":117,\"year\":1979}\n"
+                + "{\"type\":\"begin\",\"name\":\"Interna\"}\n"
+                + "{\"type\":\"end\"}\n"
+                + "{\"type\":\"end\"}\n"
+                + "{\"type\":\"book\",\"title\":\"Lezioni americane\",\"author\":\"Italo Calvino\",\"year\":1988,\"isbn\":\"978-8804668237\"}\n"
+                + "{\"type\":\"book\",\"title\":\"Lezioni americane\",\"author\":\"Italo Calvino\",\"year\":1988,\"isbn\":\"978-8804668237\"}\n";
+        // LibraryStorage accetta solo nomi nella cartella corrente
+        String name = "import-test-" + System.nanoTime() + ".ndjson";
+        try {
+            Files.write(Paths.get(name), ndjson.getBytes(StandardCharsets.UTF_8));
+            Collection target = new Collection("Destinazione");
+            target.setRejectDuplicates(true);
+            ImportReport report = new LibraryStorage().importStream(name, target);
+            
+            // Il duplicato non interrompe l'importazione e la collezione scartata non sposta il libro finale
+            assertEquals(List.of("Dune", "Lezioni americane"),
+                    target.getItems().stream().map(LibraryItem::getTitle).collect(Collectors.toList()));
+            assertEquals(2, report.getRecords());
+            assertEquals(5, report.getSkipped()); // Duplicato, collezione vuota, Alien, Interna, duplicato
+            // I duplicati sono indicati con la riga del file, come gli altri record scartati
+            List<String> errors = report.getErrors();
+            assertTrue(errors.get(0).startsWith("riga 2: ") && errors.get(0).contains("già presente"), errors.toString());
+            assertTrue(errors.get(4).startsWith("riga 9: ") && errors.get(4).contains("già presente"), errors.toString());
+        } finally {
+            Files.deleteIfExists(Paths.get(name));
+        }
+    }
+    
+    private static byte[] binaryDump() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (BinaryRecordWriter writer = new BinaryRecordWriter(Channels.newChannel(out))) {
+            new LibraryStorage().exportTo(catalog(), writer);
+        }
+        return out.toByteArray();
+    }
+    
+    private static Collection catalog() {
+        Collection root = new Collection("Catalogo");
+        root.addItem(new Book("Il nome della rosa", "Umberto Eco", 1980, "978-8845292613"));
+        Collection cinema = new Collection("Cinema");
+        cinema.addItem(new DVD("Alien", "Ridley Scott", 117, 1979));
+        Collection riviste = new Collection("Riviste");
+        riviste.addItem(new Magazine("Le Scienze", 600, "Le Scienze Spa", 2018));
+        cinema.addItem(riviste);
+        root.addItem(cinema);
+        root.addItem(new Book("Lezioni americane", "Italo Calvino", 1988, "978-8804668237"));
+        return root;
+    }
+    
+    private static List<String> expected() {
+        return List.of("BEGIN Catalogo", "ITEM Il nome della rosa", "BEGIN Cinema", "ITEM Alien",
+            "BEGIN Riviste", "ITEM Le Scienze", "END", "END", "ITEM Lezioni americane", "END");
+    }
+    
+    private static List<String> describe(CatalogRecordReader reader) throws Exception {
+        List<String> records = new ArrayList<>();
+        while (reader.hasNext()) {
+            CatalogRecord record = reader.next();
+            switch (record.getKind()) {
+                case BEGIN_COLLECTION:
+                    records.add("BEGIN " + record.getName());
+                    break;
+                case END_COLLECTION:
+                    records.add("END");
+                    break;
+                default:
+                    records.add("ITEM " + record.getItem().getTitle());
+            }
+        }
+        reader.close();
+        return records;
+    }
+}